@@ -0,0 +1,70 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2018 ActiveEngine.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ae.benchmarks;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.openjdk.jmh.runner.RunnerException;
+
+/**
+ * Runs the JMH suites with the allocation profiler and writing their results as JSON, so they can be compared between
+ * versions.
+ * <p>
+ * Accepts the same arguments as {@code org.openjdk.jmh.Main}: {@code -prof gc}, {@code -rf json} and
+ * {@code -rff jmh-result.json} are added unless a profiler or a result format / file are given explicitly.
+ */
+public final class Main {
+
+  private Main()
+  {
+    throw new UnsupportedOperationException();
+  }
+
+  public static void main(final String[] args) throws RunnerException, IOException
+  {
+    org.openjdk.jmh.Main.main(withDefaults(args));
+  }
+
+  static String[] withDefaults(final String[] args)
+  {
+    final List<String> given = Arrays.asList(args);
+    final ArrayList<String> result = new ArrayList<>(args.length + 6);
+    if (!given.contains("-prof") && !given.contains("-lprof")) {
+      result.add("-prof");
+      result.add("gc");
+    }
+    if (!given.contains("-rf")) {
+      result.add("-rf");
+      result.add("json");
+    }
+    if (!given.contains("-rff")) {
+      result.add("-rff");
+      result.add("jmh-result.json");
+    }
+    result.addAll(given);
+    return result.toArray(new String[result.size()]);
+  }
+}
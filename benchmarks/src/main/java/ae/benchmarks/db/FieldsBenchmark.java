@@ -0,0 +1,191 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2018 ActiveEngine.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ae.benchmarks.db;
+
+import com.google.appengine.api.datastore.Email;
+import com.google.appengine.api.datastore.Entity;
+import com.google.appengine.api.datastore.Key;
+import com.google.appengine.api.datastore.PhoneNumber;
+import com.google.appengine.api.datastore.Text;
+import com.google.appengine.tools.development.testing.LocalServiceTestHelper;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Reads, writes and datastore conversions of scalar and list fields of a generated model.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FieldsBenchmark {
+
+  private final LocalServiceTestHelper helper = new LocalServiceTestHelper();
+  private final Competidor m = Competidor.m;
+
+  private Entity data;
+  private Entity target;
+  private List<Key> participaciones;
+  private List<Object> storedParticipaciones;
+  private PhoneNumber telefono;
+  private Email email;
+  private Text info;
+  private Date nacimiento;
+
+  @Setup
+  public void setUp()
+  {
+    helper.setUp();
+    data = Samples.competidor();
+    target = Samples.competidor();
+    participaciones = m.participaciones.read(data);
+    storedParticipaciones = m.participaciones.asDatastoreValues(participaciones);
+    telefono = m.telefonoPersonal.read(data);
+    email = m.email.read(data);
+    info = m.info.read(data);
+    nacimiento = m.nacimiento.read(data);
+  }
+
+  @TearDown
+  public void tearDown()
+  {
+    helper.tearDown();
+  }
+
+  @Benchmark
+  public String readUnindexedString()
+  {
+    return m.nombres.read(data);
+  }
+
+  @Benchmark
+  public String readIndexedString()
+  {
+    return m.apodo.read(data);
+  }
+
+  @Benchmark
+  public void writeUnindexedString()
+  {
+    m.nombres.write(target, "Juan Carlos");
+  }
+
+  @Benchmark
+  public void writeIndexedString()
+  {
+    m.apodo.write(target, "chino");
+  }
+
+  @Benchmark
+  public Date readDate()
+  {
+    return m.nacimiento.read(data);
+  }
+
+  @Benchmark
+  public void writeDate()
+  {
+    m.nacimiento.write(target, nacimiento);
+  }
+
+  @Benchmark
+  public PhoneNumber readPhoneNumber()
+  {
+    return m.telefonoPersonal.read(data);
+  }
+
+  @Benchmark
+  public void writePhoneNumber()
+  {
+    m.telefonoPersonal.write(target, telefono);
+  }
+
+  @Benchmark
+  public Email readEmail()
+  {
+    return m.email.read(data);
+  }
+
+  @Benchmark
+  public void writeEmail()
+  {
+    m.email.write(target, email);
+  }
+
+  @Benchmark
+  public Text readText()
+  {
+    return m.info.read(data);
+  }
+
+  @Benchmark
+  public void writeText()
+  {
+    m.info.write(target, info);
+  }
+
+  @Benchmark
+  public List<Key> readKeyList()
+  {
+    return m.participaciones.read(data);
+  }
+
+  @Benchmark
+  public void writeKeyList()
+  {
+    m.participaciones.write(target, participaciones);
+  }
+
+  @Benchmark
+  public List<Object> keyListAsDatastoreValues()
+  {
+    return m.participaciones.asDatastoreValues(participaciones);
+  }
+
+  @Benchmark
+  public List<Key> keyListAsModelValues()
+  {
+    return m.participaciones.asModelValues(storedParticipaciones);
+  }
+
+  @Benchmark
+  public List<Object> scalarsAsDatastoreValues()
+  {
+    return m.email.asDatastoreValues(email, email, email, email);
+  }
+}
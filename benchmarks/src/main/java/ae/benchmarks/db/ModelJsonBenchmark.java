@@ -0,0 +1,147 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2018 ActiveEngine.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ae.benchmarks.db;
+
+import argo.format.CompactJsonFormatter;
+import argo.jdom.JdomParser;
+import argo.jdom.JsonField;
+import argo.jdom.JsonNode;
+import argo.jdom.JsonNodeFactories;
+import argo.saj.InvalidSyntaxException;
+import com.google.appengine.api.datastore.Entity;
+import com.google.appengine.tools.development.testing.LocalServiceTestHelper;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * JSON conversions of a generated model, as done by end points when reading requests and writing responses.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ModelJsonBenchmark {
+
+  private final LocalServiceTestHelper helper = new LocalServiceTestHelper();
+  private final CompactJsonFormatter formatter = new CompactJsonFormatter();
+  private final JdomParser parser = new JdomParser();
+  private final StringBuilder out = new StringBuilder(1024);
+
+  private Entity data;
+  private JsonNode json;
+  private String text;
+
+  @Setup
+  public void setUp()
+  {
+    helper.setUp();
+    data = Samples.competidor();
+    json = withParent(Competidor.m.toJson(data));
+    text = formatter.format(json);
+  }
+
+  /**
+   * Child entities are written without their parent, but it is needed to read them.
+   */
+  private JsonNode withParent(final JsonNode json)
+  {
+    final ArrayList<JsonField> fields = new ArrayList<>(json.getFieldList());
+    final JsonNode parent = Competidor.m.competencia.makeJsonValue(data.getParent());
+    fields.add(JsonNodeFactories.field(Competidor.m.competencia.jsonName(), parent));
+    return JsonNodeFactories.object(fields);
+  }
+
+  @TearDown
+  public void tearDown()
+  {
+    helper.tearDown();
+  }
+
+  @Benchmark
+  public JsonNode toJson()
+  {
+    return Competidor.m.toJson(data);
+  }
+
+  @Benchmark
+  public String toJsonText()
+  {
+    return formatter.format(Competidor.m.toJson(data));
+  }
+
+  @Benchmark
+  public StringBuilder writeJson() throws IOException
+  {
+    out.setLength(0);
+    Competidor.m.writeJson(data, out);
+    return out;
+  }
+
+  @Benchmark
+  public Entity fromJson()
+  {
+    return Competidor.m.fromJson(json);
+  }
+
+  @Benchmark
+  public Entity fromJsonText() throws InvalidSyntaxException
+  {
+    return Competidor.m.fromJson(parser.parse(text));
+  }
+
+  @Benchmark
+  public Entity fromJsonStream() throws IOException, InvalidSyntaxException
+  {
+    return Competidor.m.fromJson(new StringReader(text));
+  }
+
+  @Benchmark
+  public Entity updatePropertiesWithJsonContents()
+  {
+    Competidor.m.updatePropertiesWithJsonContents(data, json);
+    return data;
+  }
+
+  @Benchmark
+  public Entity updatePropertiesWithJsonStream() throws IOException, InvalidSyntaxException
+  {
+    Competidor.m.updatePropertiesWithJsonContents(data, new StringReader(text));
+    return data;
+  }
+}
@@ -0,0 +1,85 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2018 ActiveEngine.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ae.benchmarks.db;
+
+import com.google.appengine.api.datastore.Email;
+import com.google.appengine.api.datastore.Entity;
+import com.google.appengine.api.datastore.Key;
+import com.google.appengine.api.datastore.PhoneNumber;
+import com.google.appengine.api.datastore.Text;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Data shared by the suites. An appengine environment must be set up before using it.
+ */
+final class Samples {
+
+  private Samples()
+  {
+    throw new UnsupportedOperationException();
+  }
+
+  static Entity competidor()
+  {
+    final Competidor m = Competidor.m;
+    final Entity data = m.make(Competencia.m.makeKey("mundial"), 42L);
+    m.nombreVisible.write(data, "Juan \"el Chino\" Pérez");
+    m.nombres.write(data, "Juan Carlos");
+    m.apellidos.write(data, "Pérez");
+    m.prefijo.write(data, "Sr.");
+    m.sufijo.write(data, (String) null);
+    m.apodo.write(data, "chino");
+    m.nacimiento.write(data, new Date(315532800000L));
+    m.sexo.write(data, "MASCULINO");
+    m.telefonoPersonal.write(data, new PhoneNumber("+54 9 11 5555-1234"));
+    m.telefonoEmergencias.write(data, new PhoneNumber("+54 9 11 5555-4321"));
+    m.email.write(data, new Email("juan.perez@example.com"));
+    m.emailEmergencias.write(data, new Email("emergencias@example.com"));
+    m.info.write(data, new Text("Competidor de prueba.\nSegunda línea con\ttabulado."));
+    m.participaciones.write(data, participaciones(8));
+    return data;
+  }
+
+  static Entity invalidCompetidor()
+  {
+    final Competidor m = Competidor.m;
+    final Entity data = m.make(Competencia.m.makeKey("mundial"), 43L);
+    m.nombreVisible.write(data, " ");
+    m.nombres.write(data, "");
+    m.apodo.write(data, "");
+    m.info.write(data, new Text(" "));
+    return data;
+  }
+
+  static List<Key> participaciones(final int count)
+  {
+    final ArrayList<Key> keys = new ArrayList<>(count);
+    for (int i = 0; i < count; i++) {
+      keys.add(Competencia.m.makeKey("competencia-" + i));
+    }
+    return keys;
+  }
+}
@@ -0,0 +1,89 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2018 ActiveEngine.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ae.benchmarks.web;
+
+import ae.web.AppEngineEndPointServlet;
+import ae.web.UserRole;
+import com.google.appengine.api.datastore.Entity;
+import com.google.appengine.api.datastore.FetchOptions;
+import com.google.appengine.api.datastore.Query;
+import java.io.IOException;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Base class of the endpoints generated for the benchmarks.
+ *
+ * Handlers only record which route was selected, so measurements reflect route dispatching and request
+ * parameters handling.
+ */
+public abstract class BenchmarkEndPoint extends AppEngineEndPointServlet
+{
+  private static final long serialVersionUID = 1L;
+
+  /**
+   * Dispatches a GET request through the generated router.
+   */
+  public final void get(final HttpServletRequest request, final HttpServletResponse response)
+      throws ServletException, IOException
+  {
+    doGet(request, response);
+  }
+
+  public final FetchOptions fetchOptions(final HttpServletRequest request)
+  {
+    return getFetchOptions(request);
+  }
+
+  public final Iterable<Query.SortPredicate> sorts(final HttpServletRequest request)
+  {
+    return getSorts(request);
+  }
+
+  protected final void handled(final HttpServletResponse response)
+  {
+    response.setStatus(HttpServletResponse.SC_OK);
+  }
+
+  @Override protected void unhandledGet(final HttpServletRequest request, final HttpServletResponse response)
+  {
+    response.setStatus(HttpServletResponse.SC_NOT_FOUND);
+  }
+
+  @Override protected UserRole getUserRole(final Entity userData)
+  {
+    return null;
+  }
+
+  @Override protected String getUserNamespace(final Entity userData)
+  {
+    return "";
+  }
+
+  @Override protected Entity getLoggedUser()
+  {
+    return null;
+  }
+}
@@ -0,0 +1,128 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2018 ActiveEngine.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ae.benchmarks.web;
+
+import com.google.common.collect.ImmutableMap;
+import java.lang.reflect.Proxy;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.Map;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletRequestWrapper;
+
+/**
+ * Minimal in-memory request, only path, method, query parameters and attributes are supported.
+ */
+final class BenchmarkRequest extends HttpServletRequestWrapper
+{
+  private final String method;
+  private final String pathInfo;
+  private final Map<String, String[]> parameters;
+  private final Map<String, Object> attributes = new HashMap<>();
+
+  private BenchmarkRequest(final String method, final String pathInfo, final Map<String, String[]> parameters)
+  {
+    super(unsupported());
+    this.method = method;
+    this.pathInfo = pathInfo;
+    this.parameters = parameters;
+  }
+
+  static BenchmarkRequest get(final String pathInfo)
+  {
+    return new BenchmarkRequest("GET", pathInfo, ImmutableMap.of());
+  }
+
+  static BenchmarkRequest get(final String pathInfo, final String query)
+  {
+    final Map<String, String[]> parameters = new HashMap<>();
+    for (final String parameter : query.split("&")) {
+      final int equals = parameter.indexOf('=');
+      parameters.put(parameter.substring(0, equals), new String[]{parameter.substring(equals + 1)});
+    }
+    return new BenchmarkRequest("GET", pathInfo, ImmutableMap.copyOf(parameters));
+  }
+
+  private static HttpServletRequest unsupported()
+  {
+    return (HttpServletRequest) Proxy.newProxyInstance(
+        HttpServletRequest.class.getClassLoader(),
+        new Class<?>[]{HttpServletRequest.class},
+        (proxy, method, args) -> {
+          throw new UnsupportedOperationException("benchmark requests do not support " + method.getName());
+        });
+  }
+
+  @Override public String getMethod()
+  {
+    return method;
+  }
+
+  @Override public String getPathInfo()
+  {
+    return pathInfo;
+  }
+
+  @Override public String getParameter(final String name)
+  {
+    final String[] values = parameters.get(name);
+    return values == null ? null : values[0];
+  }
+
+  @Override public String[] getParameterValues(final String name)
+  {
+    return parameters.get(name);
+  }
+
+  @Override public Map<String, String[]> getParameterMap()
+  {
+    return parameters;
+  }
+
+  @Override public Enumeration<String> getParameterNames()
+  {
+    return Collections.enumeration(parameters.keySet());
+  }
+
+  @Override public Object getAttribute(final String name)
+  {
+    return attributes.get(name);
+  }
+
+  @Override public Enumeration<String> getAttributeNames()
+  {
+    return Collections.enumeration(attributes.keySet());
+  }
+
+  @Override public void setAttribute(final String name, final Object value)
+  {
+    attributes.put(name, value);
+  }
+
+  @Override public void removeAttribute(final String name)
+  {
+    attributes.remove(name);
+  }
+}
@@ -0,0 +1,71 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2018 ActiveEngine.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ae.benchmarks.web;
+
+import java.lang.reflect.Proxy;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
+
+/**
+ * Minimal in-memory response, only the status is recorded.
+ */
+final class BenchmarkResponse extends HttpServletResponseWrapper
+{
+  private int status = SC_OK;
+
+  BenchmarkResponse()
+  {
+    super(unsupported());
+  }
+
+  private static HttpServletResponse unsupported()
+  {
+    return (HttpServletResponse) Proxy.newProxyInstance(
+        HttpServletResponse.class.getClassLoader(),
+        new Class<?>[]{HttpServletResponse.class},
+        (proxy, method, args) -> {
+          throw new UnsupportedOperationException("benchmark responses do not support " + method.getName());
+        });
+  }
+
+  @Override public void setStatus(final int status)
+  {
+    this.status = status;
+  }
+
+  @Override public void sendError(final int status)
+  {
+    this.status = status;
+  }
+
+  @Override public int getStatus()
+  {
+    return status;
+  }
+
+  void reset(final int status)
+  {
+    this.status = status;
+  }
+}
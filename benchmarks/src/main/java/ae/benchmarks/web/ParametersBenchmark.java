@@ -0,0 +1,153 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2018 ActiveEngine.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ae.benchmarks.web;
+
+import ae.web.Interpret;
+import com.google.appengine.api.datastore.FetchOptions;
+import com.google.appengine.api.datastore.Query;
+import com.google.appengine.tools.development.testing.LocalServiceTestHelper;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.slf4j.Logger;
+import org.slf4j.helpers.NOPLogger;
+
+/**
+ * Interpretation of request parameters: raw conversions, fetch options and sort predicates read from the query
+ * string.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ParametersBenchmark {
+
+  private final LocalServiceTestHelper helper = new LocalServiceTestHelper();
+
+  private BenchmarkEndPoint endPoint;
+  private BenchmarkRequest noOptions;
+  private BenchmarkRequest allOptions;
+  private BenchmarkRequest oneSort;
+  private BenchmarkRequest threeSorts;
+
+  private String integer;
+  private String decimal;
+  private String list;
+
+  @Setup
+  public void setUp()
+  {
+    helper.setUp();
+    endPoint = new EndPoint();
+    noOptions = BenchmarkRequest.get("/");
+    allOptions = BenchmarkRequest.get("/", "chunk=50&limit=200&offset=400&prefetch=20&fields=name,email,dni");
+    oneSort = BenchmarkRequest.get("/", "sort=-fechaNacimiento");
+    threeSorts = BenchmarkRequest.get("/", "sort=-fechaNacimiento,+nombre,apellido");
+    integer = "1234567";
+    decimal = "12345.67";
+    list = "name,email,dni,telefono,fechaNacimiento";
+  }
+
+  @TearDown
+  public void tearDown()
+  {
+    helper.tearDown();
+  }
+
+  @Benchmark
+  public Integer interpretInteger()
+  {
+    return Interpret.asInteger(integer);
+  }
+
+  @Benchmark
+  public long interpretPrimitiveLong()
+  {
+    return Interpret.asPrimitiveLong(integer);
+  }
+
+  @Benchmark
+  public Double interpretDouble()
+  {
+    return Interpret.asDouble(decimal);
+  }
+
+  @Benchmark
+  public List<String> interpretStringList()
+  {
+    return Interpret.asStringList(list);
+  }
+
+  @Benchmark
+  public FetchOptions fetchOptionsNotDefined()
+  {
+    return endPoint.fetchOptions(noOptions);
+  }
+
+  @Benchmark
+  public FetchOptions fetchOptionsFullyDefined()
+  {
+    return endPoint.fetchOptions(allOptions);
+  }
+
+  @Benchmark
+  public Iterable<Query.SortPredicate> sortsNotDefined()
+  {
+    return endPoint.sorts(noOptions);
+  }
+
+  @Benchmark
+  public Iterable<Query.SortPredicate> oneSort()
+  {
+    return endPoint.sorts(oneSort);
+  }
+
+  @Benchmark
+  public Iterable<Query.SortPredicate> threeSorts()
+  {
+    return endPoint.sorts(threeSorts);
+  }
+
+  static final class EndPoint extends BenchmarkEndPoint
+  {
+    private static final long serialVersionUID = 1L;
+
+    @Override protected Logger logger()
+    {
+      return NOPLogger.NOP_LOGGER;
+    }
+  }
+}
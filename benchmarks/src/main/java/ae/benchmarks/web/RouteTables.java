@@ -0,0 +1,153 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2018 ActiveEngine.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ae.benchmarks.web;
+
+import ae.web.processor.EndPointsCompiler;
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.StandardLocation;
+import javax.tools.ToolProvider;
+
+/**
+ * Builds route tables of any size, processed by {@link EndPointsCompiler} exactly as an application endpoint is.
+ *
+ * A table with {@code n} routes defines:
+ * <ul>
+ * <li>{@code n - 1} routes alternating a static path ({@code /static0}, {@code /static2}, ...) and a path with one
+ * parameter ({@code /items1/{id}}, {@code /items3/{id}}, ...),</li>
+ * <li>a last route with five parameters, {@code /deep/{a}/{b}/{c}/{d}/{e}}.</li>
+ * </ul>
+ */
+final class RouteTables
+{
+  static final String PACKAGE = "bench";
+
+  private RouteTables()
+  {
+    throw new UnsupportedOperationException();
+  }
+
+  static String firstStaticPath()
+  {
+    return "/static0";
+  }
+
+  static String firstParameterizedPath()
+  {
+    return "/items1/42";
+  }
+
+  static String lastPath()
+  {
+    return "/deep/1/22/333/4444/55555";
+  }
+
+  static String unknownPath()
+  {
+    return "/not/a/route";
+  }
+
+  static String className(final int routes)
+  {
+    return "Routes" + routes;
+  }
+
+  static String source(final int routes)
+  {
+    if (routes < 2) {
+      throw new IllegalArgumentException("route tables must have at least 2 routes");
+    }
+    final StringBuilder source = new StringBuilder()
+        .append("package ").append(PACKAGE).append(";\n\n")
+        .append("import ae.*;\n")
+        .append("import javax.servlet.http.HttpServletRequest;\n")
+        .append("import javax.servlet.http.HttpServletResponse;\n\n")
+        .append("@endpoint(\"/api\") public abstract class ").append(className(routes))
+        .append(" extends ").append(BenchmarkEndPoint.class.getCanonicalName()).append(" {\n");
+    for (int i = 0; i < routes - 1; i++) {
+      final String path = (i % 2 == 0) ? "/static" + i : "/items" + i + "/{id}";
+      route(source, "r" + i, path);
+    }
+    route(source, "deep", "/deep/{a}/{b}/{c}/{d}/{e}");
+    return source.append("}\n").toString();
+  }
+
+  private static void route(final StringBuilder source, final String name, final String path)
+  {
+    source.append("  @GET(\"").append(path).append("\") void ").append(name)
+          .append("(final HttpServletRequest request, final HttpServletResponse response) { handled(response); }\n");
+  }
+
+  /**
+   * Generates and compiles the route table, returning an instance of its generated servlet.
+   */
+  static BenchmarkEndPoint compile(final int routes) throws IOException, ReflectiveOperationException
+  {
+    final JavaCompiler javac = ToolProvider.getSystemJavaCompiler();
+    if (javac == null) {
+      throw new IllegalStateException("route tables are compiled at setup, benchmarks must be run with a JDK");
+    }
+
+    final Path directory = Files.createTempDirectory("ae-routes");
+    final Path sourceFile = directory.resolve(PACKAGE).resolve(className(routes) + ".java");
+    Files.createDirectories(sourceFile.getParent());
+    Files.write(sourceFile, source(routes).getBytes(StandardCharsets.UTF_8));
+
+    final DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+    try (StandardJavaFileManager files = javac.getStandardFileManager(diagnostics, null, StandardCharsets.UTF_8)) {
+      final Iterable<File> output = Collections.singleton(directory.toFile());
+      files.setLocation(StandardLocation.CLASS_OUTPUT, output);
+      files.setLocation(StandardLocation.SOURCE_OUTPUT, output);
+
+      final JavaCompiler.CompilationTask task = javac.getTask(
+          null,
+          files,
+          diagnostics,
+          Arrays.asList("-classpath", System.getProperty("java.class.path"), "-nowarn"),
+          null,
+          files.getJavaFileObjects(sourceFile.toFile()));
+      task.setProcessors(Collections.singleton(new EndPointsCompiler()));
+      if (!task.call()) {
+        throw new IllegalStateException("could not compile route table of " + routes + " routes: "
+                                        + diagnostics.getDiagnostics());
+      }
+    }
+
+    final URLClassLoader loader = new URLClassLoader(new URL[]{directory.toUri().toURL()},
+                                                     RouteTables.class.getClassLoader());
+    final Class<?> servlet = loader.loadClass(PACKAGE + '.' + className(routes) + "__aeImpl");
+    return (BenchmarkEndPoint) servlet.getDeclaredConstructor().newInstance();
+  }
+}
@@ -0,0 +1,115 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2018 ActiveEngine.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ae.benchmarks.web;
+
+import com.google.appengine.tools.development.testing.LocalServiceTestHelper;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import javax.servlet.ServletException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Route dispatching of generated servlets, for route tables of different sizes and requests matching the first
+ * routes, the last one (which has five path parameters), or none of them.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RouterBenchmark {
+
+  @Param({"10", "100", "1000"})
+  public int routes;
+
+  private final LocalServiceTestHelper helper = new LocalServiceTestHelper();
+
+  private BenchmarkEndPoint router;
+  private BenchmarkResponse response;
+  private BenchmarkRequest firstStatic;
+  private BenchmarkRequest firstParameterized;
+  private BenchmarkRequest last;
+  private BenchmarkRequest unknown;
+
+  @Setup
+  public void setUp() throws IOException, ReflectiveOperationException
+  {
+    helper.setUp();
+    router = RouteTables.compile(routes);
+    response = new BenchmarkResponse();
+    firstStatic = BenchmarkRequest.get(RouteTables.firstStaticPath());
+    firstParameterized = BenchmarkRequest.get(RouteTables.firstParameterizedPath());
+    last = BenchmarkRequest.get(RouteTables.lastPath());
+    unknown = BenchmarkRequest.get(RouteTables.unknownPath());
+  }
+
+  @TearDown
+  public void tearDown()
+  {
+    helper.tearDown();
+  }
+
+  @Benchmark
+  public int firstStaticRoute() throws ServletException, IOException
+  {
+    return dispatch(firstStatic);
+  }
+
+  @Benchmark
+  public int firstParameterizedRoute() throws ServletException, IOException
+  {
+    return dispatch(firstParameterized);
+  }
+
+  @Benchmark
+  public int lastRoute() throws ServletException, IOException
+  {
+    return dispatch(last);
+  }
+
+  @Benchmark
+  public int unknownRoute() throws ServletException, IOException
+  {
+    return dispatch(unknown);
+  }
+
+  private int dispatch(final BenchmarkRequest request) throws ServletException, IOException
+  {
+    response.reset(0);
+    router.get(request, response);
+    return response.getStatus();
+  }
+}
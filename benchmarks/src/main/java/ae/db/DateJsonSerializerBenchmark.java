@@ -0,0 +1,115 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2018 ActiveEngine.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ae.db;
+
+import argo.jdom.JsonNode;
+import java.io.IOException;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Dates serialization by {@link DateJsonSerializer}, compared with a {@link SimpleDateFormat} built at each call (as it
+ * was done before patterns were compiled), for the patterns of the {@code @json(format)} shortcuts, an ISO-8601
+ * pattern, a pattern with month and day names, and epoch milliseconds.
+ * <p>
+ * Run it through {@code ae.benchmarks.Main} to get the bytes allocated per call.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DateJsonSerializerBenchmark {
+
+  @Param({"yyyy-MM-dd", "yyyy-MM-dd hh:mm:ss", "yyyy-MM-dd hh:mm:ss.S", "yyyy-MM-dd'T'HH:mm:ss.SSSXXX",
+          "EEE, d MMM yyyy HH:mm:ss", DateJsonSerializer.EPOCH_MILLIS})
+  public String pattern;
+
+  private final Date date = new Date(1487851200123L);
+  private final StringBuilder out = new StringBuilder(64);
+
+  private DateJsonSerializer serializer;
+  private JsonNode json;
+  private String text;
+
+  @Setup
+  public void setUp()
+  {
+    serializer = new DateJsonSerializer(pattern);
+    json = serializer.toJson(date);
+    text = json.getText();
+  }
+
+  @Benchmark
+  public JsonNode toJson()
+  {
+    return serializer.toJson(date);
+  }
+
+  @Benchmark
+  public StringBuilder writeJson() throws IOException
+  {
+    out.setLength(0);
+    serializer.writeJson(date, JsonWriter.to(out));
+    return out;
+  }
+
+  @Benchmark
+  public Date fromJson()
+  {
+    return serializer.fromJson(json);
+  }
+
+  @Benchmark
+  public String simpleDateFormat()
+  {
+    if (DateJsonSerializer.EPOCH_MILLIS.equals(pattern)) {
+      return Long.toString(date.getTime());
+    }
+    return new SimpleDateFormat(pattern).format(date);
+  }
+
+  @Benchmark
+  public Date simpleDateParse() throws ParseException
+  {
+    if (DateJsonSerializer.EPOCH_MILLIS.equals(pattern)) {
+      return new Date(Long.parseLong(text));
+    }
+    return new SimpleDateFormat(pattern).parse(text);
+  }
+}
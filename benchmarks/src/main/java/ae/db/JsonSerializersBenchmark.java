@@ -0,0 +1,187 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2018 ActiveEngine.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ae.db;
+
+import argo.jdom.JsonNode;
+import com.google.appengine.api.blobstore.BlobKey;
+import com.google.appengine.api.datastore.Blob;
+import com.google.appengine.api.datastore.Category;
+import com.google.appengine.api.datastore.Email;
+import com.google.appengine.api.datastore.GeoPt;
+import com.google.appengine.api.datastore.IMHandle;
+import com.google.appengine.api.datastore.KeyFactory;
+import com.google.appengine.api.datastore.Link;
+import com.google.appengine.api.datastore.PhoneNumber;
+import com.google.appengine.api.datastore.PostalAddress;
+import com.google.appengine.api.datastore.Rating;
+import com.google.appengine.api.datastore.ShortBlob;
+import com.google.appengine.api.datastore.Text;
+import com.google.appengine.api.users.User;
+import com.google.appengine.tools.development.testing.LocalServiceTestHelper;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Every JSON serializable property type, through its {@link JsonSerializer}. It lives at {@code ae.db} as most
+ * serializers are package private.
+ * <p>
+ * Embedded entities are not measured, as they can not be serialized to JSON.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JsonSerializersBenchmark {
+
+  @Param({"Blob", "BlobKey", "Boolean", "Category", "Date", "Double", "Email", "GeoPt", "IMHandle", "Key", "Link",
+          "Long", "PhoneNumber", "PostalAddress", "Rating", "ShortBlob", "String", "Text", "User", "StringArray"})
+  public String type;
+
+  private final LocalServiceTestHelper helper = new LocalServiceTestHelper();
+  private final StringBuilder out = new StringBuilder(256);
+
+  private JsonSerializer<Object> serializer;
+  private Object value;
+  private JsonNode json;
+
+  @Setup
+  public void setUp()
+  {
+    helper.setUp();
+    switch (type) {
+      case "Blob":
+        use(BlobJsonSerializer.INSTANCE, new Blob(new byte[]{1, 2, 3, 4, 5, 6, 7, 8}));
+        break;
+      case "BlobKey":
+        use(BlobKeyJsonSerializer.INSTANCE, new BlobKey("AMIfv94JCeVvSwb4aD7CNZbTo"));
+        break;
+      case "Boolean":
+        use(BooleanJsonSerializer.INSTANCE, Boolean.TRUE);
+        break;
+      case "Category":
+        use(CategoryJsonSerializer.INSTANCE, new Category("deportes"));
+        break;
+      case "Date":
+        use(new DateJsonSerializer("yyyy-MM-dd"), new Date(315532800000L));
+        break;
+      case "Double":
+        use(DoubleJsonSerializer.INSTANCE, 3.14159d);
+        break;
+      case "Email":
+        use(EmailJsonSerializer.INSTANCE, new Email("juan.perez@example.com"));
+        break;
+      case "GeoPt":
+        use(GeoPtJsonSerializer.INSTANCE, new GeoPt(-34.6037f, -58.3816f));
+        break;
+      case "IMHandle":
+        use(IMHandleJsonSerializer.INSTANCE, new IMHandle(IMHandle.Scheme.xmpp, "juan@example.com"));
+        break;
+      case "Key":
+        use(KeyJsonSerializer.INSTANCE, KeyFactory.createKey(KeyFactory.createKey("Parent", 1L), "Child", "name"));
+        break;
+      case "Link":
+        use(LinkJsonSerializer.INSTANCE, new Link("https://github.com/matero/ae"));
+        break;
+      case "Long":
+        use(LongJsonSerializer.INSTANCE, 1234567890L);
+        break;
+      case "PhoneNumber":
+        use(PhoneNumberJsonSerializer.INSTANCE, new PhoneNumber("+54 9 11 5555-1234"));
+        break;
+      case "PostalAddress":
+        use(PostalAddressJsonSerializer.INSTANCE, new PostalAddress("Av. Siempre Viva 742"));
+        break;
+      case "Rating":
+        use(RatingJsonSerializer.INSTANCE, new Rating(42));
+        break;
+      case "ShortBlob":
+        use(ShortBlobJsonSerializer.INSTANCE, new ShortBlob(new byte[]{1, 2, 3, 4, 5, 6, 7, 8}));
+        break;
+      case "String":
+        use(StringJsonSerializer.INSTANCE, "Juan \"el Chino\" Pérez");
+        break;
+      case "Text":
+        use(TextJsonSerializer.INSTANCE, new Text("Primera línea.\nSegunda línea con\ttabulado."));
+        break;
+      case "User":
+        use(UserJsonSerializer.INSTANCE, new User("juan@example.com", "example.com", "123456", "juan"));
+        break;
+      case "StringArray":
+        use(StringJsonSerializer.ARRAY, Arrays.asList("uno", "dos", null, "cuatro", "cinco"));
+        break;
+      default:
+        throw new IllegalArgumentException("unknown type: " + type);
+    }
+  }
+
+  @SuppressWarnings("unchecked")
+  private void use(final JsonSerializer<?> serializer, final Object value)
+  {
+    this.serializer = (JsonSerializer<Object>) serializer;
+    this.value = value;
+    this.json = this.serializer.toJson(value);
+  }
+
+  @TearDown
+  public void tearDown()
+  {
+    helper.tearDown();
+  }
+
+  @Benchmark
+  public JsonNode toJson()
+  {
+    return serializer.toJson(value);
+  }
+
+  @Benchmark
+  public StringBuilder writeJson() throws IOException
+  {
+    out.setLength(0);
+    serializer.writeJson(value, JsonWriter.to(out));
+    return out;
+  }
+
+  @Benchmark
+  public Object fromJson()
+  {
+    return serializer.fromJson(json);
+  }
+}
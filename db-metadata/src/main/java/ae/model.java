@@ -37,4 +37,45 @@ public @interface model {
   boolean cache() default true;
 
   String namespace() default "";
+
+  /**
+   * Max amount of entities to keep at the in-process cache used in front of memcache, {@code 0} means no in-process
+   * cache is used. Only cached models can use it.
+   */
+  int localCacheSize() default 0;
+
+  /**
+   * Seconds an entity is kept at the in-process cache.
+   */
+  int localCacheTtl() default 60;
+
+  /**
+   * If concurrent reads of an entity missing at memcache, at the same instance, should wait for a single datastore
+   * read instead of reading it each one. Only cached models can use it.
+   */
+  boolean singleFlight() default false;
+
+  /**
+   * Milliseconds an instance holds the lease to reload an entity missing at memcache, while other instances wait for
+   * it to be cached. {@code 0} means no lease is used. Only models using {@link #singleFlight()} can use it.
+   */
+  int reloadLeaseMillis() default 0;
+
+  /**
+   * Milliseconds a save waits for concurrent saves of the model at the same instance, to write all of them with a
+   * single batch put. {@code 0} means each save is written by itself.
+   */
+  int groupCommitMillis() default 0;
+
+  /**
+   * Max amount of entities written by one group commit batch, up to 500. Only models using
+   * {@link #groupCommitMillis()} can use it.
+   */
+  int groupCommitSize() default 100;
+
+  /**
+   * Max amount of saves waiting to be written by group commits at the same instance, further saves wait for them to
+   * complete. Only models using {@link #groupCommitMillis()} can use it.
+   */
+  int groupCommitQueueSize() default 1000;
 }
@@ -41,6 +41,13 @@ abstract class MetaModel extends MetaData {
   final Fields fields;
   final boolean cached;
   final String namespace;
+  final int localCacheSize;
+  final int localCacheTtl;
+  final boolean singleFlight;
+  final int reloadLeaseMillis;
+  final int groupCommitMillis;
+  final int groupCommitSize;
+  final int groupCommitQueueSize;
 
   MetaModel(final String packageName,
             final String className,
@@ -51,7 +58,14 @@ abstract class MetaModel extends MetaData {
             final Fields modelFields,
             final ImmutableSet<Modifier> modifiers,
             final boolean cached,
-            final String namespace)
+            final String namespace,
+            final int localCacheSize,
+            final int localCacheTtl,
+            final boolean singleFlight,
+            final int reloadLeaseMillis,
+            final int groupCommitMillis,
+            final int groupCommitSize,
+            final int groupCommitQueueSize)
   {
     super(className, modifiers);
     this.packageName = packageName;
@@ -62,6 +76,13 @@ abstract class MetaModel extends MetaData {
     this.fields = modelFields;
     this.cached = cached;
     this.namespace = namespace;
+    this.localCacheSize = localCacheSize;
+    this.localCacheTtl = localCacheTtl;
+    this.singleFlight = singleFlight;
+    this.reloadLeaseMillis = reloadLeaseMillis;
+    this.groupCommitMillis = groupCommitMillis;
+    this.groupCommitSize = groupCommitSize;
+    this.groupCommitQueueSize = groupCommitQueueSize;
   }
 
   final boolean isPublic()
@@ -83,6 +104,21 @@ abstract class MetaModel extends MetaData {
     return !fields.isEmpty();
   }
 
+  final boolean useLocalCache()
+  {
+    return localCacheSize > 0;
+  }
+
+  final boolean useSingleFlight()
+  {
+    return singleFlight;
+  }
+
+  final boolean useGroupCommit()
+  {
+    return groupCommitMillis > 0;
+  }
+
   final boolean useId()
   {
     return id.isId();
@@ -170,7 +206,14 @@ abstract class MetaModel extends MetaData {
                             final Fields fields,
                             final Iterable<Modifier> modifiers,
                             final boolean cached,
-                            final String namespace)
+                            final String namespace,
+                            final int localCacheSize,
+                            final int localCacheTtl,
+                            final boolean singleFlight,
+                            final int reloadLeaseMillis,
+                            final int groupCommitMillis,
+                            final int groupCommitSize,
+                            final int groupCommitQueueSize)
   {
     if (parent == null) {
       return new RootModel(packageName,
@@ -182,7 +225,14 @@ abstract class MetaModel extends MetaData {
                            fields,
                            ImmutableSet.copyOf(modifiers),
                            cached,
-                           namespace);
+                           namespace,
+                           localCacheSize,
+                           localCacheTtl,
+                           singleFlight,
+                           reloadLeaseMillis,
+                           groupCommitMillis,
+                           groupCommitSize,
+                           groupCommitQueueSize);
     } else {
       return new ChildModel(packageName,
                             className,
@@ -194,7 +244,14 @@ abstract class MetaModel extends MetaData {
                             fields,
                             ImmutableSet.copyOf(modifiers),
                             cached,
-                            namespace);
+                            namespace,
+                            localCacheSize,
+                            localCacheTtl,
+                            singleFlight,
+                            reloadLeaseMillis,
+                            groupCommitMillis,
+                            groupCommitSize,
+                            groupCommitQueueSize);
     }
   }
 }
@@ -210,9 +267,18 @@ final class RootModel extends MetaModel {
             final Fields fields,
             final ImmutableSet<Modifier> modifiers,
             final boolean cached,
-            final String namespace)
+            final String namespace,
+            final int localCacheSize,
+            final int localCacheTtl,
+            final boolean singleFlight,
+            final int reloadLeaseMillis,
+            final int groupCommitMillis,
+            final int groupCommitSize,
+            final int groupCommitQueueSize)
   {
-    super(packageName, className, canonicalName, kind, baseClass, id, fields, modifiers, cached, namespace);
+    super(packageName, className, canonicalName, kind, baseClass, id, fields, modifiers, cached, namespace,
+          localCacheSize, localCacheTtl, singleFlight, reloadLeaseMillis, groupCommitMillis, groupCommitSize,
+          groupCommitQueueSize);
   }
 
   @Override
@@ -253,9 +319,18 @@ final class ChildModel extends MetaModel {
              final Fields fields,
              final ImmutableSet<Modifier> modifiers,
              final boolean cached,
-             final String namespace)
+             final String namespace,
+             final int localCacheSize,
+             final int localCacheTtl,
+             final boolean singleFlight,
+             final int reloadLeaseMillis,
+             final int groupCommitMillis,
+             final int groupCommitSize,
+             final int groupCommitQueueSize)
   {
-    super(packageName, className, canonicalName, kind, baseClass, id, fields, modifiers, cached, namespace);
+    super(packageName, className, canonicalName, kind, baseClass, id, fields, modifiers, cached, namespace,
+          localCacheSize, localCacheTtl, singleFlight, reloadLeaseMillis, groupCommitMillis, groupCommitSize,
+          groupCommitQueueSize);
     this.parent = parent;
   }
 
@@ -46,9 +46,14 @@ import javax.annotation.Generated;
 import javax.lang.model.element.Modifier;
 import ae.db.ChildWithId;
 import ae.db.ChildWithName;
+import ae.db.Deferred;
 import ae.db.Field;
+import ae.db.GroupCommit;
+import ae.db.JsonWriter;
+import ae.db.LocalEntityCache;
 import ae.db.RootWithId;
 import ae.db.RootWithName;
+import ae.db.SingleFlight;
 import ae.db.Validation;
 import com.google.appengine.api.memcache.AsyncMemcacheService;
 import com.google.appengine.api.memcache.MemcacheService;
@@ -58,8 +63,11 @@ import com.squareup.javapoet.ParameterSpec;
 import com.squareup.javapoet.ParameterizedTypeName;
 import com.squareup.javapoet.WildcardTypeName;
 
+import java.io.IOException;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import ae.db.Attribute;
@@ -144,6 +152,15 @@ abstract class BaseModelJavaClassBuilder<M extends MetaModel> {
     if (shouldUseNamespace()) {
       defineMemcacheWithNamespace();
     }
+    if (shouldUseLocalCache()) {
+      defineLocalCache();
+    }
+    if (shouldUseSingleFlight()) {
+      defineSingleFlight();
+    }
+    if (shouldUseGroupCommit()) {
+      defineGroupCommit();
+    }
     return baseModelClass.build();
   }
 
@@ -236,7 +253,9 @@ abstract class BaseModelJavaClassBuilder<M extends MetaModel> {
     baseModelClass.addMethod(modelFields());
     baseModelClass.addMethod(modelAttributes());
     baseModelClass.addMethod(toJson());
+    baseModelClass.addMethod(writeJson());
     baseModelClass.addMethod(updatePropertiesWithJsonContents());
+    baseModelClass.addMethod(jsonAttribute());
     baseModelClass.addMethod(doValidate());
   }
 
@@ -315,6 +334,28 @@ abstract class BaseModelJavaClassBuilder<M extends MetaModel> {
         .build();
   }
 
+  MethodSpec writeJson()
+  {
+    final MethodSpec.Builder method = methodBuilder("writeJson")
+        .addAnnotation(Override.class)
+        .addModifiers(Modifier.PUBLIC)
+        .addParameter(TypeName.get(Entity.class), "data", Modifier.FINAL)
+        .addParameter(ClassName.get(JsonWriter.class), "out", Modifier.FINAL)
+        .addException(IOException.class)
+        .beginControlFlow("if (null == data)")
+        .addStatement("out.nullValue()")
+        .addStatement("return")
+        .endControlFlow()
+        .addStatement("out.beginObject()")
+        .addStatement("$L.writeJsonField(data, out)", model.id.name);
+    for (final MetaField field : model.fields) {
+      if (!field.jsonIgnore) {
+        method.addStatement("$L.writeJsonField(data, out)", field.name);
+      }
+    }
+    return method.addStatement("out.endObject()").build();
+  }
+
   MethodSpec updatePropertiesWithJsonContents()
   {
     MethodSpec.Builder method = methodBuilder("updatePropertiesWithJsonContents")
@@ -330,6 +371,35 @@ abstract class BaseModelJavaClassBuilder<M extends MetaModel> {
     return method.build();
   }
 
+  MethodSpec jsonAttribute()
+  {
+    final MethodSpec.Builder method = methodBuilder("jsonAttribute")
+        .addAnnotation(Override.class)
+        .addModifiers(Modifier.PUBLIC, Modifier.FINAL)
+        .returns(Attribute.class)
+        .addParameter(String.class, "jsonName", Modifier.FINAL)
+        .beginControlFlow("switch (jsonName)");
+    addJsonAttributeCase(method, model.id.name);
+    if (model.hasParent()) {
+      addJsonAttributeCase(method, model.parent().name);
+    }
+    for (final MetaField field : model.fields) {
+      if (!field.jsonIgnore) {
+        addJsonAttributeCase(method, field.name);
+      }
+    }
+    return method.addCode("default:\n$>")
+        .addStatement("return null$<")
+        .endControlFlow()
+        .build();
+  }
+
+  private static void addJsonAttributeCase(final MethodSpec.Builder method, final String attribute)
+  {
+    method.addCode("case $S:\n$>", attribute)
+        .addStatement("return $L$<", attribute);
+  }
+
   MethodSpec doValidate()
   {
     MethodSpec.Builder method = methodBuilder("doValidate")
@@ -495,6 +565,12 @@ abstract class BaseModelJavaClassBuilder<M extends MetaModel> {
     baseModelClass.addMethod(deleteEntityWithoutCache());
     baseModelClass.addMethod(getEntityWithoutCache());
     baseModelClass.addMethod(checkExistsWithoutCache());
+    baseModelClass.addMethod(saveEntitiesWithoutCache());
+    baseModelClass.addMethod(deleteEntitiesWithoutCache());
+    baseModelClass.addMethod(getEntitiesWithoutCache());
+    baseModelClass.addMethod(getEntityAsyncWithoutCache());
+    baseModelClass.addMethod(checkExistsAsyncWithoutCache());
+    baseModelClass.addMethod(findKeysWithoutCache());
   }
 
   MethodSpec saveEntityWithoutCache()
@@ -504,7 +580,7 @@ abstract class BaseModelJavaClassBuilder<M extends MetaModel> {
         addModifiers(Modifiers.PROTECTED_FINAL).
         returns(ParameterizedTypeName.get(Future.class, Key.class)).
         addParameter(ParameterSpec.builder(Entity.class, "data", Modifier.FINAL).build()).
-        addStatement("return asyncDatastore().put(data)").
+        addStatement("return putUncached(data)").
         build();
   }
 
@@ -515,7 +591,7 @@ abstract class BaseModelJavaClassBuilder<M extends MetaModel> {
         addModifiers(Modifiers.PROTECTED_FINAL).
         returns(ParameterizedTypeName.get(Future.class, Void.class)).
         addParameter(ParameterSpec.builder(Key.class, "key", Modifier.FINAL).build()).
-        addStatement("return asyncDatastore().delete(key)").
+        addStatement("return deleteUncached(key)").
         build();
   }
 
@@ -551,6 +627,77 @@ abstract class BaseModelJavaClassBuilder<M extends MetaModel> {
         build();
   }
 
+  MethodSpec saveEntitiesWithoutCache()
+  {
+    return MethodSpec.methodBuilder("saveEntities").
+        addAnnotation(Override.class).
+        addModifiers(Modifiers.PROTECTED_FINAL).
+        returns(ParameterizedTypeName.get(ClassName.get(Future.class), KEY_LIST_TYPE)).
+        addParameter(ParameterSpec.builder(ENTITY_LIST_TYPE, "data", Modifier.FINAL).build()).
+        addStatement("return putUncached(data)").
+        build();
+  }
+
+  MethodSpec deleteEntitiesWithoutCache()
+  {
+    return MethodSpec.methodBuilder("deleteEntities").
+        addAnnotation(Override.class).
+        addModifiers(Modifiers.PROTECTED_FINAL).
+        returns(ParameterizedTypeName.get(Future.class, Void.class)).
+        addParameter(ParameterSpec.builder(KEY_LIST_TYPE, "keys", Modifier.FINAL).build()).
+        addStatement("return deleteUncached(keys)").
+        build();
+  }
+
+  MethodSpec getEntitiesWithoutCache()
+  {
+    return MethodSpec.methodBuilder("getEntities").
+        addAnnotation(Override.class).
+        addModifiers(Modifiers.PROTECTED_FINAL).
+        returns(ParameterizedTypeName.get(Map.class, Key.class, Entity.class)).
+        addParameter(ParameterSpec.builder(KEY_LIST_TYPE, "keys", Modifier.FINAL).build()).
+        addStatement("return getInBatches(keys)").
+        build();
+  }
+
+  MethodSpec getEntityAsyncWithoutCache()
+  {
+    return MethodSpec.methodBuilder("getEntityAsync").
+        addAnnotation(Override.class).
+        addModifiers(Modifiers.PROTECTED_FINAL).
+        returns(ParameterizedTypeName.get(Deferred.class, Entity.class)).
+        addParameter(ParameterSpec.builder(Key.class, "key", Modifier.FINAL).build()).
+        addStatement("return getFromDatastoreAsync(key)").
+        build();
+  }
+
+  MethodSpec checkExistsAsyncWithoutCache()
+  {
+    return MethodSpec.methodBuilder("checkExistsAsync").
+        addAnnotation(Override.class).
+        addModifiers(Modifiers.PROTECTED_FINAL).
+        returns(ParameterizedTypeName.get(Deferred.class, Boolean.class)).
+        addParameter(ParameterSpec.builder(Key.class, "key", Modifier.FINAL).build()).
+        addStatement("return getFromDatastoreAsync(key).map(data -> data != null)").
+        build();
+  }
+
+  MethodSpec findKeysWithoutCache()
+  {
+    return MethodSpec.methodBuilder("findKeys").
+        addAnnotation(Override.class).
+        addModifiers(Modifiers.PROTECTED_FINAL).
+        returns(KEY_LIST_TYPE).
+        addParameter(ParameterSpec.builder(Query.class, "query", Modifier.FINAL).build()).
+        addParameter(ParameterSpec.builder(FetchOptions.class, "fetchOptions", Modifier.FINAL).build()).
+        addParameter(ParameterSpec.builder(TypeName.INT, "ttl", Modifier.FINAL).build()).
+        addStatement("return runKeysQuery(query, fetchOptions)").
+        build();
+  }
+
+  static final ParameterizedTypeName KEY_LIST_TYPE = ParameterizedTypeName.get(List.class, Key.class);
+  static final ParameterizedTypeName ENTITY_LIST_TYPE = ParameterizedTypeName.get(List.class, Entity.class);
+
   boolean shouldUseNamespace()
   {
     return !model.namespace.isEmpty();
@@ -586,6 +733,65 @@ abstract class BaseModelJavaClassBuilder<M extends MetaModel> {
         build();
   }
 
+  boolean shouldUseLocalCache()
+  {
+    return model.useLocalCache();
+  }
+
+  void defineLocalCache()
+  {
+    baseModelClass.addField(FieldSpec.builder(LocalEntityCache.class, "_localCache", Modifiers.PRIVATE_FINAL)
+        .initializer("new $T($S, $L, $LL)",
+                     ClassName.get(LocalEntityCache.class),
+                     model.kind,
+                     model.localCacheSize,
+                     TimeUnit.SECONDS.toMillis(model.localCacheTtl))
+        .build());
+    baseModelClass.addMethod(MethodSpec.methodBuilder("localCache").
+        addAnnotation(Override.class).
+        addModifiers(Modifiers.PROTECTED_FINAL).
+        returns(ClassName.get(LocalEntityCache.class)).
+        addStatement("return _localCache").
+        build());
+  }
+
+  boolean shouldUseSingleFlight()
+  {
+    return model.useSingleFlight();
+  }
+
+  void defineSingleFlight()
+  {
+    baseModelClass.addField(FieldSpec.builder(SingleFlight.class, "_singleFlight", Modifiers.PRIVATE_FINAL)
+        .initializer("new $T($LL)", ClassName.get(SingleFlight.class), model.reloadLeaseMillis)
+        .build());
+    baseModelClass.addMethod(MethodSpec.methodBuilder("singleFlight").
+        addAnnotation(Override.class).
+        addModifiers(Modifiers.PROTECTED_FINAL).
+        returns(ClassName.get(SingleFlight.class)).
+        addStatement("return _singleFlight").
+        build());
+  }
+
+  boolean shouldUseGroupCommit()
+  {
+    return model.useGroupCommit();
+  }
+
+  void defineGroupCommit()
+  {
+    baseModelClass.addField(FieldSpec.builder(GroupCommit.class, "_groupCommit", Modifiers.PRIVATE_FINAL)
+        .initializer("new $T($LL, $L, $L)", ClassName.get(GroupCommit.class), model.groupCommitMillis,
+                     model.groupCommitSize, model.groupCommitQueueSize)
+        .build());
+    baseModelClass.addMethod(MethodSpec.methodBuilder("groupCommit").
+        addAnnotation(Override.class).
+        addModifiers(Modifiers.PROTECTED_FINAL).
+        returns(ClassName.get(GroupCommit.class)).
+        addStatement("return _groupCommit").
+        build());
+  }
+
   boolean shouldDefineWrapper()
   {
     return model.hasFields();
@@ -88,7 +88,14 @@ class ModelInterpreter {
                               getModelFields(attrs),
                               modelClass.getModifiers(),
                               modelIsCached(modelClass),
-                              modelNamespace(modelClass));
+                              modelNamespace(modelClass),
+                              modelLocalCacheSize(modelClass),
+                              modelLocalCacheTtl(modelClass),
+                              modelUsesSingleFlight(modelClass),
+                              modelReloadLeaseMillis(modelClass),
+                              modelGroupCommitMillis(modelClass),
+                              modelGroupCommitSize(modelClass),
+                              modelGroupCommitQueueSize(modelClass));
   }
 
   TypeElement modelClass(final Element modelElement) throws IllegalArgumentException
@@ -140,6 +147,93 @@ class ModelInterpreter {
     return model.namespace();
   }
 
+  int modelLocalCacheSize(final TypeElement modelClass)
+  {
+    final model model = modelAnnotation(modelClass);
+    final int localCacheSize = model.localCacheSize();
+    if (localCacheSize == 0) {
+      return 0;
+    }
+    if (!model.cache()) {
+      throw new ModelException(modelClass, "localCacheSize can only be defined for cached models");
+    }
+    if (localCacheSize < 2) {
+      throw new ModelException(modelClass, "localCacheSize must be 0 (no local cache) or greater than 1");
+    }
+    return localCacheSize;
+  }
+
+  int modelLocalCacheTtl(final TypeElement modelClass)
+  {
+    final model model = modelAnnotation(modelClass);
+    final int localCacheTtl = model.localCacheTtl();
+    if (localCacheTtl <= 0) {
+      throw new ModelException(modelClass, "localCacheTtl must be greater than 0");
+    }
+    return localCacheTtl;
+  }
+
+  boolean modelUsesSingleFlight(final TypeElement modelClass)
+  {
+    final model model = modelAnnotation(modelClass);
+    if (model.singleFlight() && !model.cache()) {
+      throw new ModelException(modelClass, "singleFlight can only be defined for cached models");
+    }
+    return model.singleFlight();
+  }
+
+  int modelReloadLeaseMillis(final TypeElement modelClass)
+  {
+    final model model = modelAnnotation(modelClass);
+    final int reloadLeaseMillis = model.reloadLeaseMillis();
+    if (reloadLeaseMillis == 0) {
+      return 0;
+    }
+    if (!model.singleFlight()) {
+      throw new ModelException(modelClass, "reloadLeaseMillis can only be defined for models using singleFlight");
+    }
+    if (reloadLeaseMillis < 0) {
+      throw new ModelException(modelClass, "reloadLeaseMillis must be 0 (no lease) or greater than 0");
+    }
+    return reloadLeaseMillis;
+  }
+
+  int modelGroupCommitMillis(final TypeElement modelClass)
+  {
+    final model model = modelAnnotation(modelClass);
+    final int groupCommitMillis = model.groupCommitMillis();
+    if (groupCommitMillis < 0) {
+      throw new ModelException(modelClass, "groupCommitMillis must be 0 (no group commit) or greater than 0");
+    }
+    return groupCommitMillis;
+  }
+
+  int modelGroupCommitSize(final TypeElement modelClass)
+  {
+    final model model = modelAnnotation(modelClass);
+    final int groupCommitSize = model.groupCommitSize();
+    if (model.groupCommitMillis() == 0) {
+      return groupCommitSize;
+    }
+    if (groupCommitSize < 1 || groupCommitSize > 500) {
+      throw new ModelException(modelClass, "groupCommitSize must be between 1 and 500");
+    }
+    return groupCommitSize;
+  }
+
+  int modelGroupCommitQueueSize(final TypeElement modelClass)
+  {
+    final model model = modelAnnotation(modelClass);
+    final int groupCommitQueueSize = model.groupCommitQueueSize();
+    if (model.groupCommitMillis() == 0) {
+      return groupCommitQueueSize;
+    }
+    if (groupCommitQueueSize < model.groupCommitSize()) {
+      throw new ModelException(modelClass, "groupCommitQueueSize can not be less than groupCommitSize");
+    }
+    return groupCommitQueueSize;
+  }
+
   String baseClass(final TypeElement modelClass)
   {
     final TypeMirror superclass = modelClass.getSuperclass();
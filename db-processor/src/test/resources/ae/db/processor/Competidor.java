@@ -35,7 +35,7 @@ import ae.Record;
 import com.google.appengine.api.datastore.Key;
 import ae.model;
 
-@model(cache = false, namespace = "otro_namespace")
+@model(cache = false, namespace = "otro_namespace", groupCommitMillis = 5, groupCommitSize = 50)
 class Competencia extends __Competencia
 {
   static class R extends Record
@@ -50,7 +50,7 @@ class Competencia extends __Competencia
   }
 }
 
-@model(kind = "competidores")
+@model(kind = "competidores", singleFlight = true, reloadLeaseMillis = 200)
 public class Competidor extends __Competidor
 {
   static class R extends Record
@@ -82,6 +82,7 @@ public class Competidor extends __Competidor
                .where(apodo.eq(valor))
                .sortedBy(apodo.asc())
                .limit(10)
+               .byKeys()
                .asList();
   }
 
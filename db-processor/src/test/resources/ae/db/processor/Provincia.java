@@ -3,7 +3,7 @@ package ae.db.processor;
 import ae.Record;
 import ae.model;
 
-@model(kind = "provincias") class Provincia extends __Provincia
+@model(kind = "provincias", localCacheSize = 64, localCacheTtl = 300) class Provincia extends __Provincia
 {
   private static final class R extends Record
   {
@@ -3,19 +3,26 @@ package processor.test;
 import static ae.db.DSL.*;
 
 import ae.db.Attribute;
+import ae.db.Deferred;
 import ae.db.Field;
+import ae.db.GroupCommit;
+import ae.db.JsonWriter;
 import ae.db.RootWithName;
 import ae.db.Validation;
 import argo.jdom.JsonNode;
 import argo.jdom.JsonNodeFactories;
 import com.google.appengine.api.datastore.Entity;
 import com.google.appengine.api.datastore.EntityNotFoundException;
+import com.google.appengine.api.datastore.FetchOptions;
 import com.google.appengine.api.datastore.Key;
 import com.google.appengine.api.datastore.Query;
 import com.google.appengine.api.memcache.AsyncMemcacheService;
 import com.google.appengine.api.memcache.MemcacheService;
 import com.google.appengine.api.memcache.MemcacheServiceFactory;
 import com.google.common.collect.ImmutableList;
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.Future;
 import javax.annotation.Generated;
 import org.slf4j.Logger;
@@ -36,6 +43,8 @@ abstract class __Competencia extends RootWithName {
 
   private final ImmutableList<Field<?>> _fields = ImmutableList.of();
 
+  private final GroupCommit _groupCommit = new GroupCommit(5L, 50, 1000);
+
   __Competencia() {
   }
 
@@ -72,10 +81,31 @@ abstract class __Competencia extends RootWithName {
     return JsonNodeFactories.object(ImmutableList.of(nombre.makeJsonFieldFrom(data)));
   }
 
+  @Override
+  public void writeJson(final Entity data, final JsonWriter out) throws IOException {
+    if (null == data) {
+      out.nullValue();
+      return;
+    }
+    out.beginObject();
+    nombre.writeJsonField(data, out);
+    out.endObject();
+  }
+
   @Override
   public final void updatePropertiesWithJsonContents(final Entity data, final JsonNode json) {
   }
 
+  @Override
+  public final Attribute jsonAttribute(final String jsonName) {
+    switch (jsonName) {
+      case "nombre":
+        return nombre;
+      default:
+        return null;
+    }
+  }
+
   @Override
   protected final void doValidate(final Entity data, final Validation validation) {
     nombre.validate(data, validation);
@@ -91,12 +121,12 @@ abstract class __Competencia extends RootWithName {
 
   @Override
   protected final Future<Key> saveEntity(final Entity data) {
-    return asyncDatastore().put(data);
+    return putUncached(data);
   }
 
   @Override
   protected final Future<Void> deleteEntity(final Key key) {
-    return asyncDatastore().delete(key);
+    return deleteUncached(key);
   }
 
   @Override
@@ -112,6 +142,36 @@ abstract class __Competencia extends RootWithName {
     return data != null;
   }
 
+  @Override
+  protected final Future<List<Key>> saveEntities(final List<Entity> data) {
+    return putUncached(data);
+  }
+
+  @Override
+  protected final Future<Void> deleteEntities(final List<Key> keys) {
+    return deleteUncached(keys);
+  }
+
+  @Override
+  protected final Map<Key, Entity> getEntities(final List<Key> keys) {
+    return getInBatches(keys);
+  }
+
+  @Override
+  protected final Deferred<Entity> getEntityAsync(final Key key) {
+    return getFromDatastoreAsync(key);
+  }
+
+  @Override
+  protected final Deferred<Boolean> checkExistsAsync(final Key key) {
+    return getFromDatastoreAsync(key).map(data -> data != null);
+  }
+
+  @Override
+  protected final List<Key> findKeys(final Query query, final FetchOptions fetchOptions, final int ttl) {
+    return runKeysQuery(query, fetchOptions);
+  }
+
   @Override
   protected final MemcacheService memcache() {
     return MemcacheServiceFactory.getMemcacheService("otro_namespace");
@@ -121,4 +181,9 @@ abstract class __Competencia extends RootWithName {
   protected final AsyncMemcacheService asyncMemcache() {
     return MemcacheServiceFactory.getAsyncMemcacheService("otro_namespace");
   }
+
+  @Override
+  protected final GroupCommit groupCommit() {
+    return _groupCommit;
+  }
 }
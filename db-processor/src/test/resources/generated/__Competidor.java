@@ -9,6 +9,8 @@ import ae.db.Field;
 import ae.db.IndexedEmail;
 import ae.db.IndexedPhoneNumber;
 import ae.db.IndexedString;
+import ae.db.JsonWriter;
+import ae.db.SingleFlight;
 import ae.db.UnindexedDate;
 import ae.db.UnindexedEmail;
 import ae.db.UnindexedKeyList;
@@ -24,6 +26,7 @@ import com.google.appengine.api.datastore.Key;
 import com.google.appengine.api.datastore.PhoneNumber;
 import com.google.appengine.api.datastore.Text;
 import com.google.common.collect.ImmutableList;
+import java.io.IOException;
 import java.util.Date;
 import java.util.List;
 import javax.annotation.Generated;
@@ -75,6 +78,8 @@ abstract class __Competidor extends ChildWithId {
 
   private final ImmutableList<Field<?>> _fields = ImmutableList.of(nombreVisible, nombres, apellidos, prefijo, sufijo, apodo, nacimiento, sexo, telefonoPersonal, telefonoEmergencias, email, emailEmergencias, info, participaciones);
 
+  private final SingleFlight _singleFlight = new SingleFlight(200L);
+
   __Competidor() {
   }
 
@@ -111,6 +116,31 @@ abstract class __Competidor extends ChildWithId {
     return JsonNodeFactories.object(ImmutableList.of(personId.makeJsonFieldFrom(data),nombreVisible.makeJsonFieldFrom(data),nombres.makeJsonFieldFrom(data),apellidos.makeJsonFieldFrom(data),prefijo.makeJsonFieldFrom(data),sufijo.makeJsonFieldFrom(data),apodo.makeJsonFieldFrom(data),nacimiento.makeJsonFieldFrom(data),sexo.makeJsonFieldFrom(data),telefonoPersonal.makeJsonFieldFrom(data),telefonoEmergencias.makeJsonFieldFrom(data),email.makeJsonFieldFrom(data),emailEmergencias.makeJsonFieldFrom(data),info.makeJsonFieldFrom(data),participaciones.makeJsonFieldFrom(data)));
   }
 
+  @Override
+  public void writeJson(final Entity data, final JsonWriter out) throws IOException {
+    if (null == data) {
+      out.nullValue();
+      return;
+    }
+    out.beginObject();
+    personId.writeJsonField(data, out);
+    nombreVisible.writeJsonField(data, out);
+    nombres.writeJsonField(data, out);
+    apellidos.writeJsonField(data, out);
+    prefijo.writeJsonField(data, out);
+    sufijo.writeJsonField(data, out);
+    apodo.writeJsonField(data, out);
+    nacimiento.writeJsonField(data, out);
+    sexo.writeJsonField(data, out);
+    telefonoPersonal.writeJsonField(data, out);
+    telefonoEmergencias.writeJsonField(data, out);
+    email.writeJsonField(data, out);
+    emailEmergencias.writeJsonField(data, out);
+    info.writeJsonField(data, out);
+    participaciones.writeJsonField(data, out);
+    out.endObject();
+  }
+
   @Override
   public final void updatePropertiesWithJsonContents(final Entity data, final JsonNode json) {
     nombreVisible.write(data, json);
@@ -129,6 +159,46 @@ abstract class __Competidor extends ChildWithId {
     participaciones.write(data, json);
   }
 
+  @Override
+  public final Attribute jsonAttribute(final String jsonName) {
+    switch (jsonName) {
+      case "personId":
+        return personId;
+      case "competencia":
+        return competencia;
+      case "nombreVisible":
+        return nombreVisible;
+      case "nombres":
+        return nombres;
+      case "apellidos":
+        return apellidos;
+      case "prefijo":
+        return prefijo;
+      case "sufijo":
+        return sufijo;
+      case "apodo":
+        return apodo;
+      case "nacimiento":
+        return nacimiento;
+      case "sexo":
+        return sexo;
+      case "telefonoPersonal":
+        return telefonoPersonal;
+      case "telefonoEmergencias":
+        return telefonoEmergencias;
+      case "email":
+        return email;
+      case "emailEmergencias":
+        return emailEmergencias;
+      case "info":
+        return info;
+      case "participaciones":
+        return participaciones;
+      default:
+        return null;
+    }
+  }
+
   @Override
   protected final void doValidate(final Entity data, final Validation validation) {
     nombreVisible.validate(data, validation);
@@ -297,6 +367,11 @@ abstract class __Competidor extends ChildWithId {
     return new Wrapper(data);
   }
 
+  @Override
+  protected final SingleFlight singleFlight() {
+    return _singleFlight;
+  }
+
   public final class Builder {
     final Entity entity;
 
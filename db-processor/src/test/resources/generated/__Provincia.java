@@ -5,6 +5,8 @@ import static ae.db.DSL.*;
 import ae.db.Attribute;
 import ae.db.Field;
 import ae.db.IndexedString;
+import ae.db.JsonWriter;
+import ae.db.LocalEntityCache;
 import ae.db.RootWithName;
 import ae.db.UnindexedString;
 import ae.db.Validation;
@@ -13,6 +15,7 @@ import argo.jdom.JsonNodeFactories;
 import com.google.appengine.api.datastore.Entity;
 import com.google.appengine.api.datastore.Key;
 import com.google.common.collect.ImmutableList;
+import java.io.IOException;
 import javax.annotation.Generated;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -36,6 +39,8 @@ abstract class __Provincia extends RootWithName {
 
   private final ImmutableList<Field<?>> _fields = ImmutableList.of(nombre, capital);
 
+  private final LocalEntityCache _localCache = new LocalEntityCache("provincias", 64, 300000L);
+
   __Provincia() {
   }
 
@@ -72,12 +77,39 @@ abstract class __Provincia extends RootWithName {
     return JsonNodeFactories.object(ImmutableList.of(codigo.makeJsonFieldFrom(data),nombre.makeJsonFieldFrom(data),capital.makeJsonFieldFrom(data)));
   }
 
+  @Override
+  public void writeJson(final Entity data, final JsonWriter out) throws IOException {
+    if (null == data) {
+      out.nullValue();
+      return;
+    }
+    out.beginObject();
+    codigo.writeJsonField(data, out);
+    nombre.writeJsonField(data, out);
+    capital.writeJsonField(data, out);
+    out.endObject();
+  }
+
   @Override
   public final void updatePropertiesWithJsonContents(final Entity data, final JsonNode json) {
     nombre.write(data, json);
     capital.write(data, json);
   }
 
+  @Override
+  public final Attribute jsonAttribute(final String jsonName) {
+    switch (jsonName) {
+      case "codigo":
+        return codigo;
+      case "nombre":
+        return nombre;
+      case "capital":
+        return capital;
+      default:
+        return null;
+    }
+  }
+
   @Override
   protected final void doValidate(final Entity data, final Validation validation) {
     codigo.validate(data, validation);
@@ -115,6 +147,11 @@ abstract class __Provincia extends RootWithName {
     return new Wrapper(data);
   }
 
+  @Override
+  protected final LocalEntityCache localCache() {
+    return _localCache;
+  }
+
   final class Builder {
     final Entity entity;
 
@@ -24,11 +24,28 @@
 package ae.db;
 
 import argo.jdom.JsonField;
+import com.google.appengine.api.datastore.Cursor;
 import com.google.appengine.api.datastore.Entity;
 import com.google.appengine.api.datastore.EntityNotFoundException;
+import com.google.appengine.api.datastore.FetchOptions;
 import com.google.appengine.api.datastore.Key;
 import com.google.appengine.api.datastore.Query;
+import com.google.appengine.api.memcache.AsyncMemcacheService;
+import com.google.appengine.api.memcache.Expiration;
 import com.google.appengine.api.memcache.MemcacheService;
+import com.google.appengine.api.memcache.MemcacheService.IdentifiableValue;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+import com.google.common.hash.Hashing;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
 
@@ -40,6 +57,36 @@ import java.util.concurrent.Future;
 public abstract class ActiveEntity extends ActiveElement implements EntityModel {
   private static final long serialVersionUID = -6755700696013461574L;
 
+  /**
+   * Max amount of entities (or keys) the datastore accepts on a single put or delete call.
+   */
+  protected static final int MAX_BATCH_WRITE_SIZE = 500;
+
+  /**
+   * Max amount of keys the datastore accepts on a single get call.
+   */
+  protected static final int MAX_BATCH_READ_SIZE = 1000;
+
+  /**
+   * Seconds memcache remembers that an entity doesn't exist.
+   */
+  protected static final int TOMBSTONE_TTL_SECONDS = 30;
+
+  /**
+   * Seconds memcache keeps the write lock of an entity whose writer never released it.
+   */
+  protected static final int WRITE_LOCK_TTL_SECONDS = 32;
+
+  /**
+   * Seconds memcache keeps the read lock of an entity whose reader never cached it.
+   */
+  protected static final int READ_LOCK_TTL_SECONDS = 10;
+
+  /**
+   * Times a write lock is tried to be updated at memcache, when concurrent readers or writers update it meanwhile.
+   */
+  private static final int MAX_CAS_ATTEMPTS = 8;
+
   protected ActiveEntity()
   {
     // nothing to do
@@ -55,33 +102,161 @@ public abstract class ActiveEntity extends ActiveElement implements EntityModel
     // nothing to do
   }
 
+  /**
+   * Saves the entity or, if a {@link UnitOfWork} is open at the current thread, enqueues a copy of it there. Enqueued
+   * entities with a complete key, or whose key the model completes (see {@link #completeKey(Key)}), are written when
+   * the unit of work is flushed.
+   */
   @Override
   public final Key save(final Entity data)
   {
     verify(data);
+    final UnitOfWork work = UnitOfWork.current();
     try {
-      return saveEntity(data).get();
+      if (work == null) {
+        return commit(data).get();
+      }
+      final Entity enqueued = enqueued(data);
+      final Future<Key> saved = work.save(this, enqueued);
+      return enqueued.getKey().isComplete() ? enqueued.getKey() : saved.get();
     } catch (final InterruptedException | ExecutionException e) {
       throw new PersistenceException("could not save entity", e);
     }
   }
 
+  /**
+   * Saves the entity, as part of a batch of concurrent saves if the model uses a {@link GroupCommit}.
+   */
+  private Future<Key> commit(final Entity data) throws InterruptedException
+  {
+    final GroupCommit group = groupCommit();
+    return group == null ? saveEntity(data) : group.save(data, this::saveEntities);
+  }
+
+  /**
+   * Saves the entity, write locking it at memcache until the datastore put completes, so concurrent reads don't cache
+   * the entity state previous to the put. The lock is released once the put is known to be completed (see
+   * {@link WriteFuture}), or after {@link #WRITE_LOCK_TTL_SECONDS}. Cached queries of the kind are discarded when the
+   * put is issued and again when it's completed.
+   */
   protected Future<Key> saveEntity(final Entity data)
   {
-    final Future<Key> key = asyncDatastore().put(data);
-    {
-      final Key dataKey = data.getKey();
-      if (dataKey != null) {
-        memcache().delete(dataKey);
+    final Key dataKey = data.getKey();
+    final MemcacheService cache = memcache();
+    final String namespace = dataKey.getNamespace();
+    if (!dataKey.isComplete()) {
+      invalidateQueries(cache, namespace);
+      return new WriteFuture<>(asyncDatastore().put(data), () -> invalidateQueries(cache, namespace));
+    }
+    final List<Key> locked = ImmutableList.of(dataKey);
+    lockForWrite(cache, locked);
+    final LocalEntityCache local = localCache();
+    if (local != null) {
+      local.invalidate(cache, dataKey);
+    }
+    invalidateQueries(cache, namespace);
+    return new WriteFuture<>(asyncDatastore().put(data), () -> {
+      unlockForWrite(cache, locked);
+      invalidateQueries(cache, namespace);
+    });
+  }
+
+  @Override
+  public final List<Key> saveAll(final Iterable<Entity> data)
+  {
+    final List<Entity> entities = verifiedEntities(data);
+    if (entities.isEmpty()) {
+      return ImmutableList.of();
+    }
+    final UnitOfWork work = UnitOfWork.current();
+    try {
+      if (work == null) {
+        return saveEntities(entities).get();
+      }
+      final List<Key> enqueuedKeys = new ArrayList<>(entities.size());
+      final List<Future<Key>> saved = new ArrayList<>(entities.size());
+      for (final Entity e : entities) {
+        final Entity enqueued = enqueued(e);
+        enqueuedKeys.add(enqueued.getKey());
+        saved.add(work.save(this, enqueued));
       }
+      final List<Key> keys = new ArrayList<>(entities.size());
+      for (int i = 0; i < entities.size(); i++) {
+        final Key key = enqueuedKeys.get(i);
+        keys.add(key.isComplete() ? key : saved.get(i).get());
+      }
+      return keys;
+    } catch (final InterruptedException | ExecutionException e) {
+      throw new PersistenceException("could not save entities", e);
+    }
+  }
+
+  protected Future<List<Key>> saveEntities(final List<Entity> data)
+  {
+    final List<Key> cachedKeys = new ArrayList<>(data.size());
+    final Set<String> namespaces = new HashSet<>();
+    for (final Entity e : data) {
+      final Key dataKey = e.getKey();
+      if (dataKey.isComplete()) {
+        cachedKeys.add(dataKey);
+      }
+      namespaces.add(dataKey.getNamespace());
+    }
+    final MemcacheService cache = memcache();
+    if (cachedKeys.isEmpty()) {
+      invalidateQueries(cache, namespaces);
+      return new WriteFuture<>(putInBatches(data), () -> invalidateQueries(cache, namespaces));
+    }
+    lockForWrite(cache, cachedKeys);
+    final LocalEntityCache local = localCache();
+    if (local != null) {
+      local.invalidate(cache, cachedKeys);
+    }
+    invalidateQueries(cache, namespaces);
+    return new WriteFuture<>(putInBatches(data), () -> {
+      unlockForWrite(cache, cachedKeys);
+      invalidateQueries(cache, namespaces);
+    });
+  }
+
+  protected final Future<List<Key>> putInBatches(final List<Entity> data)
+  {
+    if (data.size() <= MAX_BATCH_WRITE_SIZE) {
+      return asyncDatastore().put(data);
+    }
+    final List<Future<List<Key>>> puts = new ArrayList<>();
+    for (final List<Entity> batch : Lists.partition(data, MAX_BATCH_WRITE_SIZE)) {
+      puts.add(asyncDatastore().put(batch));
+    }
+    return new BatchFuture<>(puts, ActiveEntity::concatenateKeys);
+  }
+
+  private static List<Key> concatenateKeys(final List<List<Key>> batches)
+  {
+    final List<Key> keys = new ArrayList<>();
+    for (final List<Key> batch : batches) {
+      keys.addAll(batch);
     }
-    return key;
+    return keys;
   }
 
   @Override
   public void delete(final Key key)
   {
     verify(key);
+    removeEntity(key);
+  }
+
+  /**
+   * Deletes the entity or, if a {@link UnitOfWork} is open at the current thread, enqueues its deletion there.
+   */
+  protected final void removeEntity(final Key key)
+  {
+    final UnitOfWork work = UnitOfWork.current();
+    if (work != null) {
+      work.delete(this, key);
+      return;
+    }
     try {
       deleteEntity(key).get();
     } catch (final InterruptedException | ExecutionException e) {
@@ -89,11 +264,214 @@ public abstract class ActiveEntity extends ActiveElement implements EntityModel
     }
   }
 
+  /**
+   * Deletes the entity, write locking it at memcache until the datastore delete completes, as
+   * {@link #saveEntity(Entity)} does.
+   */
   protected Future<Void> deleteEntity(final Key key)
   {
-    Future<Void> deleteDone = asyncDatastore().delete(key);
-    memcache().delete(key);
-    return deleteDone;
+    final MemcacheService cache = memcache();
+    final List<Key> locked = ImmutableList.of(key);
+    lockForWrite(cache, locked);
+    final LocalEntityCache local = localCache();
+    if (local != null) {
+      local.invalidate(cache, key);
+    }
+    invalidateQueries(cache, key.getNamespace());
+    return new WriteFuture<>(asyncDatastore().delete(key), () -> {
+      unlockForWrite(cache, locked);
+      invalidateQueries(cache, key.getNamespace());
+    });
+  }
+
+  @Override
+  public void deleteAll(final Iterable<Key> keys)
+  {
+    final List<Key> verifiedKeys = verifiedKeys(keys);
+    if (verifiedKeys.isEmpty()) {
+      return;
+    }
+    final UnitOfWork work = UnitOfWork.current();
+    if (work != null) {
+      for (final Key key : verifiedKeys) {
+        work.delete(this, key);
+      }
+      return;
+    }
+    try {
+      deleteEntities(verifiedKeys).get();
+    } catch (final InterruptedException | ExecutionException e) {
+      throw new PersistenceException("could not delete entities", e);
+    }
+  }
+
+  protected Future<Void> deleteEntities(final List<Key> keys)
+  {
+    final MemcacheService cache = memcache();
+    lockForWrite(cache, keys);
+    final LocalEntityCache local = localCache();
+    if (local != null) {
+      local.invalidate(cache, keys);
+    }
+    final Set<String> namespaces = new HashSet<>();
+    for (final Key key : keys) {
+      namespaces.add(key.getNamespace());
+    }
+    invalidateQueries(cache, namespaces);
+    return new WriteFuture<>(deleteInBatches(keys), () -> {
+      unlockForWrite(cache, keys);
+      invalidateQueries(cache, namespaces);
+    });
+  }
+
+  /**
+   * Marks at memcache that the entities are being written, so the values cached for them are discarded and reads
+   * started before the writes complete can't cache the state they read. The mark counts the writers of each entity,
+   * and it's updated with compare-and-set, so overlapping writers keep it until the last of them releases it.
+   */
+  private static void lockForWrite(final MemcacheService cache, final List<Key> keys)
+  {
+    final Expiration expiration = writeLockExpiration();
+    final Set<Key> pending = new HashSet<>(keys);
+    for (int attempt = 0; attempt < MAX_CAS_ATTEMPTS && !pending.isEmpty(); attempt++) {
+      final Map<Key, IdentifiableValue> cached = cache.getIdentifiables(pending);
+      final Map<Key, WriteLock> added = new HashMap<>();
+      final Map<Key, MemcacheService.CasValues> replaced = new HashMap<>();
+      for (final Key key : pending) {
+        final IdentifiableValue value = cached.get(key);
+        if (value == null) {
+          added.put(key, WriteLock.FIRST);
+        } else {
+          replaced.put(key, new MemcacheService.CasValues(value, WriteLock.after(value.getValue()), expiration));
+        }
+      }
+      if (!added.isEmpty()) {
+        pending.removeAll(cache.putAll(added, expiration, MemcacheService.SetPolicy.ADD_ONLY_IF_NOT_PRESENT));
+      }
+      if (!replaced.isEmpty()) {
+        pending.removeAll(cache.putIfUntouched(replaced));
+      }
+    }
+    if (!pending.isEmpty()) {
+      // too much contention, better to lose the count than to let readers cache while writing
+      final Map<Key, WriteLock> locks = new HashMap<>();
+      for (final Key key : pending) {
+        locks.put(key, WriteLock.FIRST);
+      }
+      cache.putAll(locks, expiration);
+    }
+  }
+
+  /**
+   * Releases the marks set by {@link #lockForWrite(MemcacheService, List)}. Once the last writer of an entity
+   * releases its mark, readers can cache the entity again.
+   */
+  private static void unlockForWrite(final MemcacheService cache, final List<Key> keys)
+  {
+    final Set<Key> pending = new HashSet<>(keys);
+    for (int attempt = 0; attempt < MAX_CAS_ATTEMPTS && !pending.isEmpty(); attempt++) {
+      final Map<Key, MemcacheService.CasValues> released = new HashMap<>();
+      for (final Map.Entry<Key, IdentifiableValue> cached : cache.getIdentifiables(pending).entrySet()) {
+        final Object value = cached.getValue().getValue();
+        if (value instanceof WriteLock) {
+          final WriteLock lock = (WriteLock) value;
+          released.put(cached.getKey(), lock.writers == 1
+                                        ? new MemcacheService.CasValues(cached.getValue(), CacheLock.READING,
+                                                                        readLockExpiration())
+                                        : new MemcacheService.CasValues(cached.getValue(), lock.released(),
+                                                                        writeLockExpiration()));
+        }
+      }
+      pending.retainAll(released.keySet()); // marks already expired are not released
+      if (!released.isEmpty()) {
+        pending.removeAll(cache.putIfUntouched(released));
+      }
+    }
+  }
+
+  private static Expiration writeLockExpiration()
+  {
+    return Expiration.byDeltaSeconds(WRITE_LOCK_TTL_SECONDS);
+  }
+
+  /**
+   * Changes the version of the query results cached for the kind at the namespace, so they are discarded.
+   */
+  private void invalidateQueries(final MemcacheService cache, final String namespace)
+  {
+    cache.increment(queryVersionKey(namespace), 1L, System.currentTimeMillis());
+  }
+
+  private void invalidateQueries(final MemcacheService cache, final Set<String> namespaces)
+  {
+    final List<String> versionKeys = new ArrayList<>(namespaces.size());
+    for (final String namespace : namespaces) {
+      versionKeys.add(queryVersionKey(namespace));
+    }
+    cache.incrementAll(versionKeys, 1L, System.currentTimeMillis());
+  }
+
+  /**
+   * Saves the entity straight to the datastore, as models not cached at memcache do. Query results and responses
+   * cached for the kind are still discarded when the put is issued and again when it's completed.
+   */
+  protected final Future<Key> putUncached(final Entity data)
+  {
+    final MemcacheService cache = memcache();
+    final String namespace = data.getKey().getNamespace();
+    invalidateQueries(cache, namespace);
+    return new WriteFuture<>(asyncDatastore().put(data), () -> invalidateQueries(cache, namespace));
+  }
+
+  /**
+   * Saves the entities straight to the datastore, as {@link #putUncached(Entity)} does.
+   */
+  protected final Future<List<Key>> putUncached(final List<Entity> data)
+  {
+    final Set<String> namespaces = new HashSet<>();
+    for (final Entity e : data) {
+      namespaces.add(e.getKey().getNamespace());
+    }
+    final MemcacheService cache = memcache();
+    invalidateQueries(cache, namespaces);
+    return new WriteFuture<>(putInBatches(data), () -> invalidateQueries(cache, namespaces));
+  }
+
+  /**
+   * Deletes the entity straight from the datastore, as {@link #putUncached(Entity)} saves it.
+   */
+  protected final Future<Void> deleteUncached(final Key key)
+  {
+    final MemcacheService cache = memcache();
+    final String namespace = key.getNamespace();
+    invalidateQueries(cache, namespace);
+    return new WriteFuture<>(asyncDatastore().delete(key), () -> invalidateQueries(cache, namespace));
+  }
+
+  /**
+   * Deletes the entities straight from the datastore, as {@link #putUncached(Entity)} saves them.
+   */
+  protected final Future<Void> deleteUncached(final List<Key> keys)
+  {
+    final Set<String> namespaces = new HashSet<>();
+    for (final Key key : keys) {
+      namespaces.add(key.getNamespace());
+    }
+    final MemcacheService cache = memcache();
+    invalidateQueries(cache, namespaces);
+    return new WriteFuture<>(deleteInBatches(keys), () -> invalidateQueries(cache, namespaces));
+  }
+
+  protected final Future<Void> deleteInBatches(final List<Key> keys)
+  {
+    if (keys.size() <= MAX_BATCH_WRITE_SIZE) {
+      return asyncDatastore().delete(keys);
+    }
+    final List<Future<Void>> deletes = new ArrayList<>();
+    for (final List<Key> batch : Lists.partition(keys, MAX_BATCH_WRITE_SIZE)) {
+      deletes.add(asyncDatastore().delete(batch));
+    }
+    return new BatchFuture<>(deletes, done -> null);
   }
 
   @Override
@@ -101,7 +479,7 @@ public abstract class ActiveEntity extends ActiveElement implements EntityModel
   {
     verify(key);
     try {
-      return getEntity(key);
+      return loadEntity(key);
     } catch (final EntityNotFoundException e) {
       return null;
     }
@@ -111,47 +489,560 @@ public abstract class ActiveEntity extends ActiveElement implements EntityModel
   public Entity get(final Key key) throws EntityNotFoundException
   {
     verify(key);
+    return loadEntity(key);
+  }
+
+  /**
+   * Gets the entity, after writing the ones enqueued for the model at the current thread's {@link UnitOfWork}.
+   */
+  protected final Entity loadEntity(final Key key) throws EntityNotFoundException
+  {
+    flushWrites();
     return getEntity(key);
   }
 
+  /**
+   * Writes the entities enqueued for the model at the current thread's {@link UnitOfWork}, so they can be read.
+   */
+  protected final void flushWrites()
+  {
+    final UnitOfWork work = UnitOfWork.current();
+    if (work != null) {
+      work.flush(this);
+    }
+  }
+
   protected Entity getEntity(final Key key) throws EntityNotFoundException
   {
     final MemcacheService cache = memcache();
-    Entity data = (Entity) cache.get(key);
-    if (data == null) {
+    final LocalEntityCache local = localCache();
+    if (local == null) {
+      return getEntity(cache, key);
+    }
+    final long generation = local.generation(cache, key);
+    final Entity cached = local.get(key, generation);
+    if (cached != null) {
+      return cached;
+    }
+    final Entity data = getEntity(cache, key);
+    local.put(key, data, generation);
+    return data;
+  }
+
+  private Entity getEntity(final MemcacheService cache, final Key key) throws EntityNotFoundException
+  {
+    final Object cached = cache.get(key);
+    if (cached instanceof Tombstone) {
+      throw new EntityNotFoundException(key);
+    }
+    if (cached instanceof Entity) {
+      return (Entity) cached;
+    }
+    return loadEntity(cache, key);
+  }
+
+  /**
+   * Reads an entity missing at memcache from the datastore, and caches it (or its tombstone). If the model uses
+   * {@link #singleFlight()}, concurrent loads of the same key are coordinated.
+   */
+  private Entity loadEntity(final MemcacheService cache, final Key key) throws EntityNotFoundException
+  {
+    final SingleFlight flight = singleFlight();
+    if (flight == null) {
+      return readThrough(cache, key);
+    }
+    return flight.load(cache, key, k -> readThrough(cache, k));
+  }
+
+  /**
+   * Reads the entity from the datastore, caching it at memcache only if it wasn't written meanwhile. When the entity
+   * doesn't exist, a tombstone is cached instead, so next reads of the key don't go to the datastore. The tombstone
+   * lives for {@link #tombstoneExpiration()}, and it is removed when the entity is saved.
+   */
+  private Entity readThrough(final MemcacheService cache, final Key key) throws EntityNotFoundException
+  {
+    final IdentifiableValue lock = lockForRead(cache, key);
+    final Entity data;
+    try {
       data = datastore().get(key);
-      cache.put(key, data);
+    } catch (final EntityNotFoundException e) {
+      if (lock != null) {
+        cache.putIfUntouched(key, lock, Tombstone.INSTANCE, tombstoneExpiration());
+      }
+      throw e;
+    }
+    if (lock != null) {
+      cache.putIfUntouched(key, lock, data);
     }
     return data;
   }
 
+  /**
+   * Marks at memcache that the entity is being read from the datastore, before reading it. The read value is cached
+   * with {@code putIfUntouched}, which is rejected if a write locked the entity after the mark was set.
+   *
+   * @return the mark, or {@code null} if the entity can't be cached now (because it is being written).
+   */
+  private static IdentifiableValue lockForRead(final MemcacheService cache, final Key key)
+  {
+    cache.put(key, CacheLock.READING, readLockExpiration(), MemcacheService.SetPolicy.ADD_ONLY_IF_NOT_PRESENT);
+    return readLock(cache.getIdentifiable(key));
+  }
+
+  private static IdentifiableValue readLock(final IdentifiableValue cached)
+  {
+    return cached != null && cached.getValue() == CacheLock.READING ? cached : null;
+  }
+
+  private static Expiration readLockExpiration()
+  {
+    return Expiration.byDeltaSeconds(READ_LOCK_TTL_SECONDS);
+  }
+
+  /**
+   * @return how long memcache remembers that an entity doesn't exist.
+   */
+  protected Expiration tombstoneExpiration()
+  {
+    return Expiration.byDeltaSeconds(TOMBSTONE_TTL_SECONDS);
+  }
+
+  @Override
+  public Map<Key, Entity> findAll(final Iterable<Key> keys)
+  {
+    final List<Key> verifiedKeys = verifiedKeys(keys);
+    if (verifiedKeys.isEmpty()) {
+      return ImmutableMap.of();
+    }
+    flushWrites();
+    return getEntities(verifiedKeys);
+  }
+
+  /**
+   * Loads all the entities identified by {@code keys}, using one memcache call to get the cached ones, one datastore
+   * call to get the rest and one memcache call to cache the ones loaded from datastore.
+   *
+   * @param keys keys of the entities to load, <em>never</em> {@code null}.
+   * @return the found entities mapped by key, following the order of {@code keys}. Keys of entities not found are
+   *         not mapped.
+   */
+  protected Map<Key, Entity> getEntities(final List<Key> keys)
+  {
+    final MemcacheService cache = memcache();
+    final LocalEntityCache local = localCache();
+    if (local == null) {
+      return getEntities(cache, keys);
+    }
+    final Map<Key, Long> generations = new HashMap<>();
+    final Map<Key, Entity> localHits = new HashMap<>();
+    final List<Key> localMisses = new ArrayList<>(keys.size());
+    for (final Key key : keys) {
+      final long generation = local.generation(cache, key);
+      final Entity data = local.get(key, generation);
+      if (data == null) {
+        generations.put(key, generation);
+        localMisses.add(key);
+      } else {
+        localHits.put(key, data);
+      }
+    }
+    final Map<Key, Entity> loaded = localMisses.isEmpty() ? ImmutableMap.of() : getEntities(cache, localMisses);
+    for (final Map.Entry<Key, Entity> e : loaded.entrySet()) {
+      local.put(e.getKey(), e.getValue(), generations.get(e.getKey()));
+    }
+    final Map<Key, Entity> result = new LinkedHashMap<>();
+    for (final Key key : keys) {
+      final Entity data = localHits.containsKey(key) ? localHits.get(key) : loaded.get(key);
+      if (data != null) {
+        result.put(key, data);
+      }
+    }
+    return result;
+  }
+
+  private Map<Key, Entity> getEntities(final MemcacheService cache, final List<Key> keys)
+  {
+    final Map<Key, Object> cached = cache.getAll(keys);
+    final List<Key> misses = new ArrayList<>();
+    for (final Key key : keys) {
+      final Object value = cached.get(key);
+      if (value == null || value instanceof CacheLock || value instanceof WriteLock) {
+        misses.add(key);
+      }
+    }
+    final Map<Key, Entity> loaded;
+    if (misses.isEmpty()) {
+      loaded = ImmutableMap.of();
+    } else {
+      final Map<Key, IdentifiableValue> locks = lockForRead(cache, misses);
+      loaded = getInBatches(misses);
+      if (!locks.isEmpty()) {
+        final Map<Key, MemcacheService.CasValues> values = new HashMap<>();
+        for (final Map.Entry<Key, IdentifiableValue> lock : locks.entrySet()) {
+          final Entity data = loaded.get(lock.getKey());
+          if (data == null) {
+            values.put(lock.getKey(),
+                       new MemcacheService.CasValues(lock.getValue(), Tombstone.INSTANCE, tombstoneExpiration()));
+          } else {
+            values.put(lock.getKey(), new MemcacheService.CasValues(lock.getValue(), data));
+          }
+        }
+        cache.putIfUntouched(values);
+      }
+    }
+    final Map<Key, Entity> result = new LinkedHashMap<>();
+    for (final Key key : keys) {
+      final Object data = loaded.containsKey(key) ? loaded.get(key) : cached.get(key);
+      if (data instanceof Entity) {
+        result.put(key, (Entity) data);
+      }
+    }
+    return result;
+  }
+
+  private static Map<Key, IdentifiableValue> lockForRead(final MemcacheService cache, final List<Key> keys)
+  {
+    final Map<Key, CacheLock> locks = new HashMap<>();
+    for (final Key key : keys) {
+      locks.put(key, CacheLock.READING);
+    }
+    cache.putAll(locks, readLockExpiration(), MemcacheService.SetPolicy.ADD_ONLY_IF_NOT_PRESENT);
+    final Map<Key, IdentifiableValue> marks = new HashMap<>();
+    for (final Map.Entry<Key, IdentifiableValue> e : cache.getIdentifiables(keys).entrySet()) {
+      final IdentifiableValue mark = readLock(e.getValue());
+      if (mark != null) {
+        marks.put(e.getKey(), mark);
+      }
+    }
+    return marks;
+  }
+
+  protected final Map<Key, Entity> getInBatches(final List<Key> keys)
+  {
+    if (keys.size() <= MAX_BATCH_READ_SIZE) {
+      return datastore().get(keys);
+    }
+    final List<Future<Map<Key, Entity>>> gets = new ArrayList<>();
+    for (final List<Key> batch : Lists.partition(keys, MAX_BATCH_READ_SIZE)) {
+      gets.add(asyncDatastore().get(batch));
+    }
+    try {
+      return new BatchFuture<>(gets, ActiveEntity::mergeEntities).get();
+    } catch (final InterruptedException | ExecutionException e) {
+      throw new PersistenceException("could not get entities", e);
+    }
+  }
+
+  private static Map<Key, Entity> mergeEntities(final List<Map<Key, Entity>> batches)
+  {
+    final Map<Key, Entity> entities = new HashMap<>();
+    for (final Map<Key, Entity> batch : batches) {
+      entities.putAll(batch);
+    }
+    return entities;
+  }
+
+  @Override
+  public final Deferred<Entity> findAsync(final Key key)
+  {
+    verify(key);
+    flushWrites();
+    return getEntityAsync(key);
+  }
+
+  /**
+   * Runs the same lookups than {@link #getEntity(Key)}: in-process cache, memcache and finally the datastore,
+   * backfilling the caches with the found entity (or its tombstone). Every step is an asynchronous call chained to
+   * the previous one, so this method returns without waiting for any of them: the memcache lookup is issued at once,
+   * and the following steps are issued as the returned value is checked or requested.
+   */
+  protected Deferred<Entity> getEntityAsync(final Key key)
+  {
+    final AsyncMemcacheService cache = asyncMemcache();
+    final LocalEntityCache local = localCache();
+    if (local == null) {
+      return getEntityAsync(cache, key);
+    }
+    return local.generationAsync(cache, key).flatMap(generation -> {
+      final Entity cached = local.get(key, generation);
+      if (cached != null) {
+        return Deferred.value(cached);
+      }
+      return getEntityAsync(cache, key).map(data -> {
+        if (data != null) {
+          local.put(key, data, generation);
+        }
+        return data;
+      });
+    });
+  }
+
+  private Deferred<Entity> getEntityAsync(final AsyncMemcacheService cache, final Key key)
+  {
+    return Deferred.of(cache.get(key)).flatMap(cached -> {
+      if (cached instanceof Tombstone) {
+        return Deferred.value(null);
+      }
+      if (cached instanceof Entity) {
+        return Deferred.value((Entity) cached);
+      }
+      return lockForReadAsync(cache, key).flatMap(lock -> getFromDatastoreAsync(key).flatMap(data -> {
+        if (lock == null) {
+          return Deferred.value(data);
+        }
+        final Future<Boolean> backfill = data == null
+                                         ? cache.putIfUntouched(key, lock, Tombstone.INSTANCE, tombstoneExpiration())
+                                         : cache.putIfUntouched(key, lock, data);
+        return Deferred.of(backfill).map(backfilled -> data);
+      }));
+    });
+  }
+
+  /**
+   * Marks the entity as being read as {@link #lockForRead(MemcacheService, Key)} does, without waiting for memcache.
+   */
+  private static Deferred<IdentifiableValue> lockForReadAsync(final AsyncMemcacheService cache, final Key key)
+  {
+    return Deferred.of(cache.put(key, CacheLock.READING, readLockExpiration(),
+                                 MemcacheService.SetPolicy.ADD_ONLY_IF_NOT_PRESENT))
+                   .flatMap(added -> cache.getIdentifiable(key))
+                   .map(ActiveEntity::readLock);
+  }
+
+  /**
+   * @return the entity read directly from the datastore, or {@code null} if it doesn't exist.
+   */
+  protected final Deferred<Entity> getFromDatastoreAsync(final Key key)
+  {
+    return Deferred.of(asyncDatastore().get(key)).recover(failure -> {
+      if (failure instanceof EntityNotFoundException) {
+        return Deferred.value(null);
+      }
+      return Deferred.failure(failure);
+    });
+  }
+
+  @Override
+  public final Deferred<Boolean> existsAsync(final Key key)
+  {
+    verify(key);
+    flushWrites();
+    return checkExistsAsync(key);
+  }
+
+  protected Deferred<Boolean> checkExistsAsync(final Key key)
+  {
+    return getEntityAsync(key).map(data -> data != null);
+  }
+
+  @Override
+  public final Deferred<Key> saveAsync(final Entity data)
+  {
+    verify(data);
+    final UnitOfWork work = UnitOfWork.current();
+    if (work != null) {
+      return work.save(this, enqueued(data));
+    }
+    return Deferred.of(saveEntity(data)); // group commit leaders would block for its window
+  }
+
+  @Override
+  public final Deferred<Void> deleteAsync(final Key key)
+  {
+    verify(key);
+    final UnitOfWork work = UnitOfWork.current();
+    return work == null ? Deferred.of(deleteEntity(key)) : work.delete(this, key);
+  }
+
+  /**
+   * Finds the keys of the entities matching the query, caching them at memcache for {@code ttl} seconds. The cached
+   * keys are discarded once any entity of the kind is saved or deleted at the namespace of the query.
+   *
+   * @param query        query to run, it is run as keys only.
+   * @param fetchOptions options used to run the query.
+   * @param ttl          max amount of seconds the keys are cached.
+   * @return the keys of the entities matching the query.
+   */
+  protected List<Key> findKeys(final Query query, final FetchOptions fetchOptions, final int ttl)
+  {
+    final MemcacheService cache = memcache();
+    final String versionKey = queryVersionKey(query.getNamespace());
+    final String resultKey = queryResultKey(query, fetchOptions);
+    final Map<String, Object> cached = cache.getAll(ImmutableList.of(versionKey, resultKey));
+    Long version = (Long) cached.get(versionKey);
+    if (version == null) {
+      cache.put(versionKey, System.currentTimeMillis(), null, MemcacheService.SetPolicy.ADD_ONLY_IF_NOT_PRESENT);
+      version = (Long) cache.get(versionKey);
+      if (version == null) {
+        return runKeysQuery(query, fetchOptions);
+      }
+    } else {
+      final Object result = cached.get(resultKey);
+      if (result instanceof QueryKeys && ((QueryKeys) result).version == version) {
+        return ((QueryKeys) result).keys;
+      }
+    }
+    final List<Key> keys = runKeysQuery(query, fetchOptions);
+    cache.put(resultKey, new QueryKeys(version, keys), Expiration.byDeltaSeconds(ttl));
+    return keys;
+  }
+
+  /**
+   * Runs the query directly at the datastore, as keys only.
+   *
+   * @return the keys of the entities matching the query.
+   */
+  protected final List<Key> runKeysQuery(final Query query, final FetchOptions fetchOptions)
+  {
+    final boolean keysOnly = query.isKeysOnly();
+    query.setKeysOnly();
+    try {
+      final List<Key> keys = new ArrayList<>();
+      for (final Entity data : datastore().prepare(query).asIterable(fetchOptions)) {
+        keys.add(data.getKey());
+      }
+      return keys;
+    } finally {
+      if (!keysOnly) {
+        query.clearKeysOnly();
+      }
+    }
+  }
+
+  private String queryVersionKey(final String namespace)
+  {
+    return writeVersionKey(kind(), namespace);
+  }
+
+  /**
+   * @return the memcache key of the version incremented every time an entity of the kind is saved or deleted at the
+   * namespace.
+   */
+  public static String writeVersionKey(final String kind, final String namespace)
+  {
+    return "ae.queries:" + kind + ':' + namespace;
+  }
+
+  static String queryResultKey(final Query query, final FetchOptions fetchOptions)
+  {
+    final StringBuilder description = new StringBuilder()
+        .append(query.getKind()).append('|')
+        .append(query.getNamespace()).append('|')
+        .append(query.getAncestor()).append('|')
+        .append(query.isKeysOnly()).append('|')
+        .append(query.getDistinct()).append('|')
+        .append(query.getFilter()).append('|')
+        .append(query.getSortPredicates()).append('|')
+        .append(fetchOptions.getLimit()).append('|')
+        .append(fetchOptions.getOffset()).append('|')
+        .append(webSafe(fetchOptions.getStartCursor())).append('|')
+        .append(webSafe(fetchOptions.getEndCursor()));
+    return "ae.query:" + Hashing.sha256().hashString(description, StandardCharsets.UTF_8);
+  }
+
+  private static String webSafe(final Cursor cursor)
+  {
+    return cursor == null ? null : cursor.toWebSafeString();
+  }
+
   @Override
   public boolean exists(final Entity data)
   {
     verify(data);
-    return checkExists(data.getKey());
+    return entityExists(data.getKey());
   }
 
   @Override
   public boolean exists(final Key key)
   {
     verify(key);
+    return entityExists(key);
+  }
+
+  /**
+   * Checks if the entity exists, after writing the ones enqueued for the model at the current thread's
+   * {@link UnitOfWork}.
+   */
+  protected final boolean entityExists(final Key key)
+  {
+    flushWrites();
     return checkExists(key);
   }
 
   protected boolean checkExists(final Key key)
   {
     final MemcacheService cache = memcache();
-    if (!cache.contains(key)) {
-      final Entity data;
-      try {
-        data = datastore().get(key);
-      } catch (final EntityNotFoundException e) {
-        return false;
-      }
-      cache.put(key, data);
+    final LocalEntityCache local = localCache();
+    if (local != null && local.contains(key, local.generation(cache, key))) {
+      return true;
     }
-    return true;
+    try {
+      getEntity(cache, key);
+      return true;
+    } catch (final EntityNotFoundException e) {
+      return false;
+    }
+  }
+
+  /**
+   * @return the in-process cache used in front of memcache, or {@code null} if the model doesn't use one.
+   */
+  protected LocalEntityCache localCache()
+  {
+    return null;
+  }
+
+  /**
+   * @return the coordinator of reloads of entities missing at memcache, or {@code null} if the model doesn't use one.
+   */
+  protected SingleFlight singleFlight()
+  {
+    return null;
+  }
+
+  /**
+   * Completes the key of an entity enqueued at a {@link UnitOfWork}, so it can be written with the other enqueued
+   * writes instead of at once.
+   *
+   * @param incomplete the incomplete key of an entity of this model.
+   * @return the complete key of the entity, or {@code null} if the model can't complete it without a put.
+   */
+  protected Key completeKey(final Key incomplete)
+  {
+    return null;
+  }
+
+  /**
+   * @return a copy of the entity to enqueue at a unit of work, so later changes to the entity aren't written; with
+   * its key completed if the model can do it.
+   */
+  private Entity enqueued(final Entity data)
+  {
+    final Key key = data.getKey();
+    final Key completed = key.isComplete() ? null : completeKey(key);
+    if (completed == null) {
+      return data.clone();
+    }
+    final Entity enqueued = new Entity(completed);
+    enqueued.setPropertiesFrom(data);
+    return enqueued;
+  }
+
+  /**
+   * @return the writer grouping concurrent saves in batches, or {@code null} if the model doesn't use one.
+   */
+  protected GroupCommit groupCommit()
+  {
+    return null;
+  }
+
+  /**
+   * @return the counters of the in-process cache, or {@code null} if the model doesn't use one.
+   */
+  public final LocalEntityCache.Stats localCacheStats()
+  {
+    final LocalEntityCache local = localCache();
+    return local == null ? null : local.stats();
   }
 
   protected void verify(final Entity data) throws EntityModel.IllegalEntityKind, NullPointerException
@@ -169,11 +1060,39 @@ public abstract class ActiveEntity extends ActiveElement implements EntityModel
     if (key == null) {
       throw new NullPointerException("key");
     }
-    if (isKindOf(key)) {
+    if (!isKindOf(key)) {
       throw new IllegalEntityKind(key, getClass());
     }
   }
 
+  protected List<Entity> verifiedEntities(final Iterable<Entity> data) throws NullPointerException,
+                                                                              EntityModel.IllegalEntityKind
+  {
+    if (data == null) {
+      throw new NullPointerException("data");
+    }
+    final List<Entity> entities = new ArrayList<>();
+    for (final Entity e : data) {
+      verify(e);
+      entities.add(e);
+    }
+    return entities;
+  }
+
+  protected List<Key> verifiedKeys(final Iterable<Key> keys) throws NullPointerException,
+                                                                    EntityModel.IllegalEntityKind
+  {
+    if (keys == null) {
+      throw new NullPointerException("keys");
+    }
+    final List<Key> verifiedKeys = new ArrayList<>();
+    for (final Key key : keys) {
+      verify(key);
+      verifiedKeys.add(key);
+    }
+    return verifiedKeys;
+  }
+
   @Override
   public Validation validate(final Entity data, final String successMessage)
   {
@@ -244,4 +1163,64 @@ public abstract class ActiveEntity extends ActiveElement implements EntityModel
   }
 
   protected abstract Iterable<JsonField> jsonKeyFields(Key key);
+
+  /**
+   * Value cached at memcache for keys of entities that doesn't exist.
+   */
+  enum Tombstone {
+    INSTANCE
+  }
+
+  /**
+   * Value cached at memcache for the keys of the entities matching a query.
+   */
+  static final class QueryKeys implements java.io.Serializable {
+    private static final long serialVersionUID = 1L;
+
+    final long version;
+    final ArrayList<Key> keys;
+
+    QueryKeys(final long version, final List<Key> keys)
+    {
+      this.version = version;
+      this.keys = new ArrayList<>(keys);
+    }
+  }
+
+  /**
+   * Value cached at memcache for keys of entities being read from the datastore. It's also left by the last writer of
+   * an entity when releasing its {@link WriteLock}, so the next reader can cache the entity.
+   */
+  enum CacheLock {
+    READING
+  }
+
+  /**
+   * Value cached at memcache for keys of entities being written, counting their writers.
+   */
+  static final class WriteLock implements java.io.Serializable {
+    private static final long serialVersionUID = 1L;
+
+    static final WriteLock FIRST = new WriteLock(1);
+
+    final int writers;
+
+    WriteLock(final int writers)
+    {
+      this.writers = writers;
+    }
+
+    /**
+     * @return the lock to cache when an entity whose cached value is {@code cached} starts being written.
+     */
+    static WriteLock after(final Object cached)
+    {
+      return cached instanceof WriteLock ? new WriteLock(((WriteLock) cached).writers + 1) : FIRST;
+    }
+
+    WriteLock released()
+    {
+      return new WriteLock(writers - 1);
+    }
+  }
 }
@@ -29,6 +29,7 @@ import argo.jdom.JsonNodeFactories;
 import argo.jdom.JsonStringNode;
 import com.google.appengine.api.datastore.Entity;
 import com.google.common.collect.ImmutableList;
+import java.io.IOException;
 
 public interface Attribute extends java.io.Serializable {
 
@@ -54,6 +55,17 @@ public interface Attribute extends java.io.Serializable {
     return JsonNodeFactories.field(jsonName(), makeJsonValue(data));
   }
 
+  default void writeJsonField(final Entity data, final JsonWriter out) throws IOException
+  {
+    out.name(jsonName().getText());
+    writeJsonValue(data, out);
+  }
+
+  default void writeJsonValue(final Entity data, final JsonWriter out) throws IOException
+  {
+    out.value(makeJsonValue(data));
+  }
+
   Object interpretJson(JsonNode json);
 
   ImmutableList<Constraint> constraints();
@@ -68,6 +80,7 @@ abstract class AttrData implements Attribute {
   private final String canonicalName;
   private final String field;
   private final JsonStringNode jsonName;
+  private final JsonWriter.Name encodedJsonName;
   private final String jsonPath;
   private final ImmutableList<Constraint> constraints;
 
@@ -80,6 +93,7 @@ abstract class AttrData implements Attribute {
     this.canonicalName = canonicalName;
     this.field = field;
     this.jsonName = jsonName;
+    this.encodedJsonName = JsonWriter.Name.of(jsonName.getText());
     this.jsonPath = jsonPath;
     this.constraints = constraints;
   }
@@ -102,6 +116,13 @@ abstract class AttrData implements Attribute {
     return jsonName;
   }
 
+  @Override
+  public final void writeJsonField(final Entity data, final JsonWriter out) throws IOException
+  {
+    out.name(encodedJsonName);
+    writeJsonValue(data, out);
+  }
+
   @Override
   public final String jsonPath()
   {
@@ -0,0 +1,107 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2018 ActiveEngine.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ae.db;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Function;
+
+/**
+ * {@link Future} combining the results of several datastore calls issued for the same batch operation.
+ * <p>
+ * Used when a batch must be split in chunks to respect datastore limits, so the caller still waits for only one
+ * {@link Future}.
+ *
+ * @param <P> type of the result of each partial operation.
+ * @param <R> type of the combined result.
+ */
+final class BatchFuture<P, R> implements Future<R> {
+
+  private final List<Future<P>> parts;
+  private final Function<List<P>, R> combiner;
+
+  BatchFuture(final List<Future<P>> parts, final Function<List<P>, R> combiner)
+  {
+    this.parts = parts;
+    this.combiner = combiner;
+  }
+
+  @Override
+  public boolean cancel(final boolean mayInterruptIfRunning)
+  {
+    boolean cancelled = false;
+    for (final Future<P> part : parts) {
+      cancelled |= part.cancel(mayInterruptIfRunning);
+    }
+    return cancelled;
+  }
+
+  @Override
+  public boolean isCancelled()
+  {
+    for (final Future<P> part : parts) {
+      if (part.isCancelled()) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  @Override
+  public boolean isDone()
+  {
+    for (final Future<P> part : parts) {
+      if (!part.isDone()) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  @Override
+  public R get() throws InterruptedException, ExecutionException
+  {
+    final List<P> results = new ArrayList<>(parts.size());
+    for (final Future<P> part : parts) {
+      results.add(part.get());
+    }
+    return combiner.apply(results);
+  }
+
+  @Override
+  public R get(final long timeout, final TimeUnit unit) throws InterruptedException, ExecutionException,
+                                                               TimeoutException
+  {
+    final long deadline = System.nanoTime() + unit.toNanos(timeout);
+    final List<P> results = new ArrayList<>(parts.size());
+    for (final Future<P> part : parts) {
+      results.add(part.get(deadline - System.nanoTime(), TimeUnit.NANOSECONDS));
+    }
+    return combiner.apply(results);
+  }
+}
@@ -25,6 +25,7 @@ package ae.db;
 
 import argo.jdom.JsonNode;
 import argo.jdom.JsonNodeFactories;
+import java.io.IOException;
 
 enum BooleanJsonSerializer implements JsonSerializer<Boolean> {
   INSTANCE;
@@ -40,6 +41,16 @@ enum BooleanJsonSerializer implements JsonSerializer<Boolean> {
     return JsonNodeFactories.booleanNode(value);
   }
 
+  @Override
+  public void writeJson(final Boolean value, final JsonWriter out) throws IOException
+  {
+    if (value == null) {
+      out.nullValue();
+    } else {
+      out.bool(value);
+    }
+  }
+
   @Override
   public Boolean fromJson(final JsonNode json, final String jsonPath)
   {
@@ -176,7 +176,7 @@ public abstract class ChildActiveEntity<P extends ActiveEntity> extends ActiveEn
 
   public final SelectChildEntities selectAll()
   {
-    return new SelectChildEntities(makeQuery(), FetchOptions.Builder.withDefaults());
+    return new SelectChildEntities(makeQuery(), FetchOptions.Builder.withDefaults(), this);
   }
 
   public final SelectChildEntities selectAll(final FetchOptions fetchOptions)
@@ -184,17 +184,17 @@ public abstract class ChildActiveEntity<P extends ActiveEntity> extends ActiveEn
     if (fetchOptions == null) {
       throw new NullPointerException("fetchOptions");
     }
-    return new SelectChildEntities(makeQuery(), fetchOptions);
+    return new SelectChildEntities(makeQuery(), fetchOptions, this);
   }
 
   public final SelectChildEntities selectKeys()
   {
-    return new SelectChildEntities(makeQuery().setKeysOnly(), FetchOptions.Builder.withDefaults());
+    return new SelectChildEntities(makeQuery().setKeysOnly(), FetchOptions.Builder.withDefaults(), this);
   }
 
   public final SelectChildEntities select(final Filterable<?>... projectedProperties)
   {
-    return new SelectChildEntities(projection(projectedProperties), FetchOptions.Builder.withDefaults());
+    return new SelectChildEntities(projection(projectedProperties), FetchOptions.Builder.withDefaults(), this);
   }
 
   public final SelectChildEntities select(final FetchOptions fetchOptions,
@@ -203,12 +203,12 @@ public abstract class ChildActiveEntity<P extends ActiveEntity> extends ActiveEn
     if (fetchOptions == null) {
       throw new NullPointerException("fetchOptions");
     }
-    return new SelectChildEntities(projection(projectedProperties), fetchOptions);
+    return new SelectChildEntities(projection(projectedProperties), fetchOptions, this);
   }
 
   public final SelectChildEntities select(final Iterable<Filterable<?>> projectedProperties)
   {
-    return new SelectChildEntities(projection(projectedProperties), FetchOptions.Builder.withDefaults());
+    return new SelectChildEntities(projection(projectedProperties), FetchOptions.Builder.withDefaults(), this);
   }
 
   public final SelectChildEntities select(final FetchOptions fetchOptions,
@@ -217,16 +217,16 @@ public abstract class ChildActiveEntity<P extends ActiveEntity> extends ActiveEn
     if (fetchOptions == null) {
       throw new NullPointerException("fetchOptions");
     }
-    return new SelectChildEntities(projection(projectedProperties), fetchOptions);
+    return new SelectChildEntities(projection(projectedProperties), fetchOptions, this);
   }
 
   public static final class SelectChildEntities extends RootActiveEntity.SelectEntities {
 
     private static final long serialVersionUID = 5591903627552341816L;
 
-    SelectChildEntities(final Query query, final FetchOptions fetchOptions)
+    SelectChildEntities(final Query query, final FetchOptions fetchOptions, final ActiveEntity model)
     {
-      super(query, fetchOptions);
+      super(query, fetchOptions, model);
     }
 
     public final SelectEntities withoutAncestor()
@@ -27,12 +27,14 @@ import argo.jdom.JsonField;
 import argo.jdom.JsonNode;
 import com.google.appengine.api.datastore.*;
 import com.google.common.collect.ImmutableList;
-import java.util.concurrent.ExecutionException;
 
 public abstract class ChildWithId<P extends ActiveEntity> extends ChildActiveEntity<P> implements WithId {
 
   private static final long serialVersionUID = 240124574244515721L;
 
+  private final IdPool idPool = new IdPool(IdPool.CHILD_BLOCK_SIZE,
+                                           (parent, size) -> asyncDatastore().allocateIds(parent, kind(), size));
+
   protected ChildWithId()
   {
     // nothing to do
@@ -68,6 +70,60 @@ public abstract class ChildWithId<P extends ActiveEntity> extends ChildActiveEnt
     return data;
   }
 
+  /**
+   * Makes an entity with a complete key, using an ID reserved in advance, so its key can be used before it's saved.
+   *
+   * @param parent parent of the new entity.
+   * @return the new entity.
+   */
+  public Entity makeWithAllocatedId(final Entity parent)
+  {
+    if (parent == null) {
+      throw new NullPointerException("parent");
+    }
+    return makeWithAllocatedId(parent.getKey());
+  }
+
+  /**
+   * Makes an entity with a complete key, using an ID reserved in advance, so its key can be used before it's saved.
+   *
+   * @param parentKey key of the parent of the new entity.
+   * @return the new entity.
+   */
+  public Entity makeWithAllocatedId(final Key parentKey)
+  {
+    return make(parentKey, allocateId(parentKey));
+  }
+
+  /**
+   * @param parentKey key of the parent.
+   * @return an ID reserved for this kind under the parent, not used by any other of its entities.
+   * @throws PersistenceException if no ID could be reserved.
+   */
+  public long allocateId(final Key parentKey)
+  {
+    if (parentKey == null) {
+      throw new NullPointerException("parentKey");
+    }
+    if (!modelParent().isKindOf(parentKey)) {
+      throw new IllegalParentKind(parentKey, getClass());
+    }
+    return idPool.next(parentKey);
+  }
+
+  /**
+   * Completes the key with an ID reserved for its parent.
+   */
+  @Override
+  protected Key completeKey(final Key incomplete)
+  {
+    final Key parentKey = incomplete.getParent();
+    if (parentKey == null || !parentKey.isComplete()) {
+      return null;
+    }
+    return KeyFactory.createKey(parentKey, kind(), allocateId(parentKey));
+  }
+
   public Entity make(final Entity parent)
   {
     final Entity data = newEntity(parent);
@@ -156,19 +212,14 @@ public abstract class ChildWithId<P extends ActiveEntity> extends ChildActiveEnt
   public void deleteById(final long id)
   {
     final Key key = makeKey(id);
-    try {
-      deleteEntity(key).get();
-    } catch (final InterruptedException | ExecutionException e) {
-      throw new PersistenceException("could not delete entity", e);
-    }
-
+    removeEntity(key);
   }
 
   public Entity findById(final long id)
   {
     final Key key = makeKey(id);
     try {
-      return getEntity(key);
+      return loadEntity(key);
     } catch (final EntityNotFoundException e) {
       return null;
     }
@@ -177,40 +228,32 @@ public abstract class ChildWithId<P extends ActiveEntity> extends ChildActiveEnt
   public Entity getById(final long id) throws EntityNotFoundException
   {
     final Key key = makeKey(id);
-    return getEntity(key);
+    return loadEntity(key);
   }
 
   public boolean existsById(final long id)
   {
     final Key key = makeKey(id);
-    return checkExists(key);
+    return entityExists(key);
   }
 
   public void deleteByParentAndId(final Entity parent, final long id)
   {
     final Key key = makeKey(parent, id);
-    try {
-      deleteEntity(key).get();
-    } catch (final InterruptedException | ExecutionException e) {
-      throw new PersistenceException("could not delete entity", e);
-    }
+    removeEntity(key);
   }
 
   public void deleteByParentKeyAndId(final Key parentKey, final long id)
   {
     final Key key = makeKey(parentKey, id);
-    try {
-      deleteEntity(key).get();
-    } catch (final InterruptedException | ExecutionException e) {
-      throw new PersistenceException("could not delete entity", e);
-    }
+    removeEntity(key);
   }
 
   public Entity findByParentAndId(final Entity parent, final long id)
   {
     final Key key = makeKey(parent, id);
     try {
-      return getEntity(key);
+      return loadEntity(key);
     } catch (final EntityNotFoundException e) {
       return null;
     }
@@ -220,7 +263,7 @@ public abstract class ChildWithId<P extends ActiveEntity> extends ChildActiveEnt
   {
     final Key key = makeKey(parentKey, id);
     try {
-      return getEntity(key);
+      return loadEntity(key);
     } catch (final EntityNotFoundException e) {
       return null;
     }
@@ -229,25 +272,25 @@ public abstract class ChildWithId<P extends ActiveEntity> extends ChildActiveEnt
   public Entity getByParentAndId(final Entity parent, final long id) throws EntityNotFoundException
   {
     final Key key = makeKey(parent, id);
-    return getEntity(key);
+    return loadEntity(key);
   }
 
   public Entity getByParentKeyAndId(final Key parentKey, final long id) throws EntityNotFoundException
   {
     final Key key = makeKey(parentKey, id);
-    return getEntity(key);
+    return loadEntity(key);
   }
 
   public boolean existsByParentAndId(final Entity parent, final long id)
   {
     final Key key = makeKey(parent, id);
-    return checkExists(key);
+    return entityExists(key);
   }
 
   public boolean existsByParentKeyAndId(final Key parentKey, final long id)
   {
     final Key key = makeKey(parentKey, id);
-    return checkExists(key);
+    return entityExists(key);
   }
 
   @Override
@@ -29,7 +29,6 @@ import com.google.appengine.api.datastore.*;
 import com.google.appengine.api.datastore.Query.FilterOperator;
 import com.google.appengine.api.datastore.Query.FilterPredicate;
 import com.google.common.collect.ImmutableList;
-import java.util.concurrent.ExecutionException;
 
 public abstract class ChildWithName<P extends ActiveEntity> extends ChildActiveEntity<P> implements WithName {
 
@@ -146,28 +145,20 @@ public abstract class ChildWithName<P extends ActiveEntity> extends ChildActiveE
   public void deleteByParentAndName(final Entity parent, final String name)
   {
     final Key key = makeKey(parent, name);
-    try {
-      deleteEntity(key).get();
-    } catch (final InterruptedException | ExecutionException e) {
-      throw new PersistenceException("could not delete entity", e);
-    }
+    removeEntity(key);
   }
 
   public void deleteByParentKeyAndName(final Key parentKey, final String name)
   {
     final Key key = makeKey(parentKey, name);
-    try {
-      deleteEntity(key).get();
-    } catch (final InterruptedException | ExecutionException e) {
-      throw new PersistenceException("could not delete entity", e);
-    }
+    removeEntity(key);
   }
 
   public Entity findByParentAndName(final Entity parent, final String name)
   {
     final Key key = makeKey(parent, name);
     try {
-      return getEntity(key);
+      return loadEntity(key);
     } catch (final EntityNotFoundException e) {
       return null;
     }
@@ -177,7 +168,7 @@ public abstract class ChildWithName<P extends ActiveEntity> extends ChildActiveE
   {
     final Key key = makeKey(parentKey, name);
     try {
-      return getEntity(key);
+      return loadEntity(key);
     } catch (final EntityNotFoundException e) {
       return null;
     }
@@ -186,25 +177,25 @@ public abstract class ChildWithName<P extends ActiveEntity> extends ChildActiveE
   public Entity getByParentAndName(final Entity parent, final String name) throws EntityNotFoundException
   {
     final Key key = makeKey(parent, name);
-    return getEntity(key);
+    return loadEntity(key);
   }
 
   public Entity getByParentKeyAndName(final Key parentKey, final String name) throws EntityNotFoundException
   {
     final Key key = makeKey(parentKey, name);
-    return getEntity(key);
+    return loadEntity(key);
   }
 
   public boolean existsByParentAndName(final Entity parent, final String name)
   {
     final Key key = makeKey(parent, name);
-    return checkExists(key);
+    return entityExists(key);
   }
 
   public boolean existsByParentKeyAndName(final Key parentKey, final String name)
   {
     final Key key = makeKey(parentKey, name);
-    return checkExists(key);
+    return entityExists(key);
   }
 
   @Override
@@ -26,19 +26,36 @@ package ae.db;
 import argo.jdom.JsonNode;
 import argo.jdom.JsonNodeFactories;
 
+import java.io.IOException;
 import java.text.ParseException;
-import java.text.SimpleDateFormat;
 import java.util.Date;
 
+/**
+ * Serializes dates as JSON strings formatted by a {@link java.text.SimpleDateFormat} pattern, or as JSON numbers of
+ * milliseconds since the epoch when the pattern is {@link #EPOCH_MILLIS}.
+ * <p>
+ * Patterns are compiled once, by {@link DatePattern}, so serializers can be shared between threads. Dates are written
+ * and read at the default locale and time zone current when they are serialized.
+ */
 public class DateJsonSerializer implements JsonSerializer<Date> {
 
   private static final long serialVersionUID = -4321000415258159924L;
 
+  /** Pattern serializing dates as their milliseconds since 1970-01-01T00:00:00Z. */
+  public static final String EPOCH_MILLIS = "#millis";
+
   private final String datePattern;
+  private final transient DatePattern format;
 
   public DateJsonSerializer(final String datePattern)
   {
     this.datePattern = datePattern;
+    this.format = EPOCH_MILLIS.equals(datePattern) ? null : DatePattern.of(datePattern);
+  }
+
+  private Object readResolve()
+  {
+    return new DateJsonSerializer(datePattern);
   }
 
   @Override
@@ -47,7 +64,22 @@ public class DateJsonSerializer implements JsonSerializer<Date> {
     if (value == null) {
       return JsonNodeFactories.nullNode();
     }
-    return JsonNodeFactories.string(new SimpleDateFormat(datePattern).format(value));
+    if (format == null) {
+      return JsonNodeFactories.number(Long.toString(value.getTime()));
+    }
+    return JsonNodeFactories.string(format.format(value));
+  }
+
+  @Override
+  public void writeJson(final Date value, final JsonWriter out) throws IOException
+  {
+    if (value == null) {
+      out.nullValue();
+    } else if (format == null) {
+      out.number(value.getTime());
+    } else {
+      out.string(format.format(value));
+    }
   }
 
   @Override
@@ -55,14 +87,10 @@ public class DateJsonSerializer implements JsonSerializer<Date> {
   {
     if (json.isNullNode(jsonPath)) {
       return null;
+    } else if (format == null) {
+      return new Date(Long.parseLong(json.getNumberValue(jsonPath)));
     } else {
-      final String value = json.getStringValue(jsonPath);
-      final SimpleDateFormat parser = new SimpleDateFormat(datePattern);
-      try {
-        return parser.parse(value);
-      } catch (final ParseException e) {
-        throw new IllegalArgumentException("Could not interpret '" + value + "' as date.", e);
-      }
+      return parse(json.getStringValue(jsonPath));
     }
   }
 
@@ -71,14 +99,19 @@ public class DateJsonSerializer implements JsonSerializer<Date> {
   {
     if (json.isNullNode()) {
       return null;
+    } else if (format == null) {
+      return new Date(Long.parseLong(json.getNumberValue()));
     } else {
-      final String value = json.getStringValue();
-      final SimpleDateFormat parser = new SimpleDateFormat(datePattern);
-      try {
-        return parser.parse(value);
-      } catch (final ParseException e) {
-        throw new IllegalArgumentException("Could not interpret '" + value + "' as date.", e);
-      }
+      return parse(json.getStringValue());
+    }
+  }
+
+  private Date parse(final String value)
+  {
+    try {
+      return format.parse(value);
+    } catch (final ParseException e) {
+      throw new IllegalArgumentException("Could not interpret '" + value + "' as date.", e);
     }
   }
 }
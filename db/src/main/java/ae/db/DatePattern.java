@@ -0,0 +1,351 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2018 ActiveEngine.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ae.db;
+
+import java.text.DecimalFormat;
+import java.text.NumberFormat;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeFormatterBuilder;
+import java.time.format.SignStyle;
+import java.time.format.TextStyle;
+import java.time.temporal.ChronoField;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.GregorianCalendar;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TimeZone;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * A {@link SimpleDateFormat} pattern, compiled to an immutable {@link DateTimeFormatter} for the default locale and
+ * time zone current when it's used.
+ * <p>
+ * Patterns with letters whose text differs at {@code java.time} (era, week and time zone names, week years and week
+ * numbers) are formatted by a per thread {@code SimpleDateFormat}. So are locales with non gregorian calendars or
+ * digits, and dates before 1900, as {@link TimeZone} ignores the local mean times used before then. Texts are always
+ * parsed by {@code SimpleDateFormat}, so its lenient interpretation is kept.
+ * <p>
+ * Month names of patterns without a day of month are written in their standalone form (as in "luty 2017"), instead of
+ * the genitive form {@code SimpleDateFormat} uses for them in languages such as Polish or Russian (as in
+ * "23 lutego 2017").
+ */
+final class DatePattern {
+
+  private static final ConcurrentMap<String, DatePattern> COMPILED = new ConcurrentHashMap<>();
+
+  /** 1900-01-01, plus a day so any time zone offset stays after it. */
+  private static final long SUPPORTED_START = -2208902400000L;
+
+  final String pattern;
+  private final List<Token> tokens;
+  private volatile Compiled current;
+
+  private DatePattern(final String pattern)
+  {
+    this.pattern = pattern;
+    this.tokens = tokenize(pattern);
+  }
+
+  /**
+   * @return the pattern, shared by every caller.
+   */
+  static DatePattern of(final String pattern)
+  {
+    return COMPILED.computeIfAbsent(pattern, DatePattern::new);
+  }
+
+  String format(final Date date)
+  {
+    return compiled().format(date);
+  }
+
+  Date parse(final String text) throws ParseException
+  {
+    return compiled().parse(text);
+  }
+
+  /**
+   * @return the pattern compiled for the current default locale and time zone, compiling it again once they change.
+   * @throws IllegalArgumentException if the pattern is invalid, as {@code SimpleDateFormat} always did when used.
+   */
+  private Compiled compiled()
+  {
+    final Locale locale = Locale.getDefault(Locale.Category.FORMAT);
+    final TimeZone zone = TimeZone.getDefault();
+    Compiled compiled = current;
+    if (compiled == null || !compiled.isFor(locale, zone)) {
+      compiled = new Compiled(pattern, tokens, locale, zone);
+      current = compiled;
+    }
+    return compiled;
+  }
+
+  static Compiled compile(final String pattern, final Locale locale, final ZoneId zone)
+  {
+    return new Compiled(pattern, tokenize(pattern), locale, TimeZone.getTimeZone(zone));
+  }
+
+  /**
+   * Splits a {@code SimpleDateFormat} pattern at its fields and literal texts.
+   */
+  static List<Token> tokenize(final String pattern)
+  {
+    final List<Token> tokens = new ArrayList<>();
+    final StringBuilder literal = new StringBuilder();
+    int i = 0;
+    while (i < pattern.length()) {
+      final char c = pattern.charAt(i);
+      if (c == '\'') {
+        if (i + 1 < pattern.length() && pattern.charAt(i + 1) == '\'') {
+          literal.append('\'');
+          i += 2;
+        } else {
+          i++;
+          while (i < pattern.length()) {
+            if (pattern.charAt(i) == '\'') {
+              if (i + 1 < pattern.length() && pattern.charAt(i + 1) == '\'') {
+                literal.append('\'');
+                i += 2;
+              } else {
+                break;
+              }
+            } else {
+              literal.append(pattern.charAt(i++));
+            }
+          }
+          i++; // closing quote
+        }
+      } else if ((c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z')) {
+        if (literal.length() > 0) {
+          tokens.add(new Token('\0', 0, literal.toString()));
+          literal.setLength(0);
+        }
+        int end = i + 1;
+        while (end < pattern.length() && pattern.charAt(end) == c) {
+          end++;
+        }
+        tokens.add(new Token(c, end - i, null));
+        i = end;
+      } else {
+        literal.append(c);
+        i++;
+      }
+    }
+    if (literal.length() > 0) {
+      tokens.add(new Token('\0', 0, literal.toString()));
+    }
+    return tokens;
+  }
+
+  static final class Token {
+
+    /** Pattern letter of the field, or {@code 0} for literal texts. */
+    final char letter;
+    final int count;
+    final String text;
+
+    Token(final char letter, final int count, final String text)
+    {
+      this.letter = letter;
+      this.count = count;
+      this.text = text;
+    }
+  }
+
+  /**
+   * The pattern compiled for a locale and a time zone.
+   */
+  static final class Compiled {
+
+    final Locale locale;
+    final TimeZone zone;
+    /** formats the pattern, or {@code null} if it's left to {@code SimpleDateFormat} */
+    final DateTimeFormatter formatter;
+    private final ThreadLocal<SimpleDateFormat> legacy;
+
+    Compiled(final String pattern, final List<Token> tokens, final Locale locale, final TimeZone zone)
+    {
+      final SimpleDateFormat reference = new SimpleDateFormat(pattern, locale);
+      reference.setTimeZone(zone);
+      this.locale = locale;
+      this.zone = zone;
+      this.formatter = usesGregorianCalendarAndAsciiDigits(reference)
+                       ? formatterFor(tokens, locale, zone.toZoneId())
+                       : null;
+      this.legacy = ThreadLocal.withInitial(() -> (SimpleDateFormat) reference.clone());
+    }
+
+    boolean isFor(final Locale locale, final TimeZone zone)
+    {
+      return this.locale.equals(locale) && this.zone.getID().equals(zone.getID()) && this.zone.hasSameRules(zone);
+    }
+
+    String format(final Date date)
+    {
+      if (formatter == null || date.getTime() < SUPPORTED_START) {
+        return legacy.get().format(date);
+      }
+      return formatter.format(Instant.ofEpochMilli(date.getTime()));
+    }
+
+    Date parse(final String text) throws ParseException
+    {
+      return legacy.get().parse(text);
+    }
+
+    private static boolean usesGregorianCalendarAndAsciiDigits(final SimpleDateFormat reference)
+    {
+      if (reference.getCalendar().getClass() != GregorianCalendar.class) {
+        return false;
+      }
+      final NumberFormat numbers = reference.getNumberFormat();
+      return numbers instanceof DecimalFormat
+             && ((DecimalFormat) numbers).getDecimalFormatSymbols().getZeroDigit() == '0';
+    }
+
+    /**
+     * Builds a formatter producing the same text as {@code SimpleDateFormat} for the pattern, or {@code null} if it
+     * uses letters whose text differs at {@code java.time}.
+     */
+    static DateTimeFormatter formatterFor(final List<Token> tokens, final Locale locale, final ZoneId zone)
+    {
+      boolean standalone = true;
+      for (final Token token : tokens) {
+        standalone &= token.letter != 'd';
+      }
+      final DateTimeFormatterBuilder builder = new DateTimeFormatterBuilder();
+      for (final Token token : tokens) {
+        if (token.letter == '\0') {
+          builder.appendLiteral(token.text);
+          continue;
+        }
+        if (token.count > 19) {
+          return null;
+        }
+        switch (token.letter) {
+          case 'y':
+            if (token.count == 2) {
+              builder.appendValueReduced(ChronoField.YEAR_OF_ERA, 2, 2, 2000);
+            } else {
+              builder.appendValue(ChronoField.YEAR_OF_ERA, token.count, 19, SignStyle.NORMAL);
+            }
+            break;
+          case 'M':
+          case 'L':
+            if (token.count <= 2) {
+              builder.appendValue(ChronoField.MONTH_OF_YEAR, token.count, 19, SignStyle.NORMAL);
+            } else if (standalone || token.letter == 'L') {
+              appendStandaloneMonth(builder, locale, token.count == 3);
+            } else {
+              builder.appendText(ChronoField.MONTH_OF_YEAR, token.count == 3 ? TextStyle.SHORT : TextStyle.FULL);
+            }
+            break;
+          case 'E':
+            builder.appendText(ChronoField.DAY_OF_WEEK, token.count < 4 ? TextStyle.SHORT : TextStyle.FULL);
+            break;
+          case 'a':
+            builder.appendText(ChronoField.AMPM_OF_DAY, TextStyle.SHORT);
+            break;
+          case 'Z':
+            builder.appendOffset("+HHMM", "+0000");
+            break;
+          case 'X':
+            if (token.count == 1) {
+              return null; // java.time writes offsets under an hour as Z, instead of +00
+            }
+            builder.appendOffset(token.count == 2 ? "+HHMM" : "+HH:MM", "Z");
+            break;
+          default:
+            final ChronoField field = numericField(token.letter);
+            if (field == null) {
+              return null;
+            }
+            builder.appendValue(field, token.count, 19, SignStyle.NORMAL);
+            break;
+        }
+      }
+      return builder.toFormatter(locale).withZone(zone);
+    }
+
+    /**
+     * Appends the standalone month names of the locale, from {@link Calendar} as they are wrong at {@code java.time}
+     * up to Java 8.
+     */
+    private static void appendStandaloneMonth(final DateTimeFormatterBuilder builder,
+                                              final Locale locale,
+                                              final boolean abbreviated)
+    {
+      final int style = abbreviated ? Calendar.SHORT_STANDALONE : Calendar.LONG_STANDALONE;
+      final Map<String, Integer> names = Calendar.getInstance(locale).getDisplayNames(Calendar.MONTH, style, locale);
+      if (names == null || names.size() != 12) {
+        builder.appendText(ChronoField.MONTH_OF_YEAR, abbreviated ? TextStyle.SHORT : TextStyle.FULL);
+        return;
+      }
+      final Map<Long, String> months = new HashMap<>();
+      for (final Map.Entry<String, Integer> name : names.entrySet()) {
+        months.put(name.getValue() + 1L, name.getKey());
+      }
+      builder.appendText(ChronoField.MONTH_OF_YEAR, months);
+    }
+
+    private static ChronoField numericField(final char letter)
+    {
+      switch (letter) {
+        case 'd':
+          return ChronoField.DAY_OF_MONTH;
+        case 'D':
+          return ChronoField.DAY_OF_YEAR;
+        case 'F':
+          return ChronoField.ALIGNED_WEEK_OF_MONTH;
+        case 'u':
+          return ChronoField.DAY_OF_WEEK;
+        case 'H':
+          return ChronoField.HOUR_OF_DAY;
+        case 'h':
+          return ChronoField.CLOCK_HOUR_OF_AMPM;
+        case 'k':
+          return ChronoField.CLOCK_HOUR_OF_DAY;
+        case 'K':
+          return ChronoField.HOUR_OF_AMPM;
+        case 'm':
+          return ChronoField.MINUTE_OF_HOUR;
+        case 's':
+          return ChronoField.SECOND_OF_MINUTE;
+        case 'S':
+          return ChronoField.MILLI_OF_SECOND;
+        default:
+          return null;
+      }
+    }
+  }
+}
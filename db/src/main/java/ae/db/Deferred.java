@@ -0,0 +1,298 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2018 ActiveEngine.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ae.db;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Function;
+
+/**
+ * Composable {@link Future}, used to chain appengine asynchronous calls.
+ * <p>
+ * Appengine async services return plain {@link Future}s, which offer no way to be notified on completion. So each
+ * step of a chain is started as soon as the result of the previous one is known: when the chain is checked with
+ * {@link #isDone()} and the previous step is already completed, or when its value is requested with {@link #get()}.
+ * No thread is blocked until {@link #get()} is called, so several chains can be started at once and then awaited.
+ *
+ * @param <T> type of the value produced by the chain.
+ */
+public abstract class Deferred<T> implements Future<T> {
+
+  Deferred()
+  {
+    // only subclasses defined here are allowed
+  }
+
+  /**
+   * @return {@code future} as a {@link Deferred}.
+   */
+  public static <T> Deferred<T> of(final Future<T> future)
+  {
+    if (future == null) {
+      throw new NullPointerException("future");
+    }
+    if (future instanceof Deferred) {
+      return (Deferred<T>) future;
+    }
+    return new Wrapped<>(future);
+  }
+
+  /**
+   * @return a {@link Deferred} already completed with {@code value}.
+   */
+  public static <T> Deferred<T> value(final T value)
+  {
+    return new Completed<>(value, null);
+  }
+
+  /**
+   * @return a {@link Deferred} already failed with {@code cause}.
+   */
+  public static <T> Deferred<T> failure(final Throwable cause)
+  {
+    if (cause == null) {
+      throw new NullPointerException("cause");
+    }
+    return new Completed<>(null, cause);
+  }
+
+  /**
+   * @return a {@link Deferred} producing the result of applying {@code function} to the value of this one.
+   */
+  public final <R> Deferred<R> map(final Function<? super T, ? extends R> function)
+  {
+    if (function == null) {
+      throw new NullPointerException("function");
+    }
+    return new Chained<>(this, value -> value(function.apply(value)), null);
+  }
+
+  /**
+   * @return a {@link Deferred} producing the value of the {@link Future} returned by {@code function} when applied
+   *         to the value of this one.
+   */
+  public final <R> Deferred<R> flatMap(final Function<? super T, ? extends Future<R>> function)
+  {
+    if (function == null) {
+      throw new NullPointerException("function");
+    }
+    return new Chained<>(this, function, null);
+  }
+
+  /**
+   * @return a {@link Deferred} producing the same value than this one or, if this one fails, the value of the
+   *         {@link Future} returned by {@code function} when applied to the failure cause.
+   */
+  public final Deferred<T> recover(final Function<? super Throwable, ? extends Future<T>> function)
+  {
+    if (function == null) {
+      throw new NullPointerException("function");
+    }
+    return new Chained<T, T>(this, Deferred::value, function);
+  }
+
+  private static final class Wrapped<T> extends Deferred<T> {
+
+    private final Future<T> future;
+
+    Wrapped(final Future<T> future)
+    {
+      this.future = future;
+    }
+
+    @Override
+    public boolean cancel(final boolean mayInterruptIfRunning)
+    {
+      return future.cancel(mayInterruptIfRunning);
+    }
+
+    @Override
+    public boolean isCancelled()
+    {
+      return future.isCancelled();
+    }
+
+    @Override
+    public boolean isDone()
+    {
+      return future.isDone();
+    }
+
+    @Override
+    public T get() throws InterruptedException, ExecutionException
+    {
+      return future.get();
+    }
+
+    @Override
+    public T get(final long timeout, final TimeUnit unit) throws InterruptedException, ExecutionException,
+                                                                 TimeoutException
+    {
+      return future.get(timeout, unit);
+    }
+  }
+
+  private static final class Completed<T> extends Deferred<T> {
+
+    private final T value;
+    private final Throwable failure;
+
+    Completed(final T value, final Throwable failure)
+    {
+      this.value = value;
+      this.failure = failure;
+    }
+
+    @Override
+    public boolean cancel(final boolean mayInterruptIfRunning)
+    {
+      return false;
+    }
+
+    @Override
+    public boolean isCancelled()
+    {
+      return false;
+    }
+
+    @Override
+    public boolean isDone()
+    {
+      return true;
+    }
+
+    @Override
+    public T get() throws ExecutionException
+    {
+      if (failure != null) {
+        throw new ExecutionException(failure);
+      }
+      return value;
+    }
+
+    @Override
+    public T get(final long timeout, final TimeUnit unit) throws ExecutionException
+    {
+      return get();
+    }
+  }
+
+  private static final class Chained<S, T> extends Deferred<T> {
+
+    private final Future<S> source;
+    private final Function<? super S, ? extends Future<T>> onValue;
+    private final Function<? super Throwable, ? extends Future<T>> onFailure;
+    private Future<T> next;
+
+    Chained(final Future<S> source,
+            final Function<? super S, ? extends Future<T>> onValue,
+            final Function<? super Throwable, ? extends Future<T>> onFailure)
+    {
+      this.source = source;
+      this.onValue = onValue;
+      this.onFailure = onFailure;
+    }
+
+    private synchronized Future<T> next(final long timeout, final TimeUnit unit) throws InterruptedException,
+                                                                                         TimeoutException
+    {
+      if (next == null) {
+        try {
+          final S value = unit == null ? source.get() : source.get(timeout, unit);
+          next = onValue.apply(value);
+        } catch (final ExecutionException e) {
+          next = onFailure == null ? failure(e.getCause()) : apply(onFailure, e.getCause());
+        } catch (final RuntimeException e) {
+          next = failure(e);
+        }
+      }
+      return next;
+    }
+
+    private static <T> Future<T> apply(final Function<? super Throwable, ? extends Future<T>> onFailure,
+                                       final Throwable cause)
+    {
+      try {
+        return onFailure.apply(cause);
+      } catch (final RuntimeException e) {
+        return failure(e);
+      }
+    }
+
+    @Override
+    public synchronized boolean cancel(final boolean mayInterruptIfRunning)
+    {
+      if (next == null) {
+        return source.cancel(mayInterruptIfRunning);
+      }
+      return next.cancel(mayInterruptIfRunning);
+    }
+
+    @Override
+    public synchronized boolean isCancelled()
+    {
+      if (next == null) {
+        return source.isCancelled();
+      }
+      return next.isCancelled();
+    }
+
+    @Override
+    public boolean isDone()
+    {
+      if (!source.isDone()) {
+        return false;
+      }
+      try {
+        return next(0L, null).isDone();
+      } catch (final InterruptedException e) {
+        Thread.currentThread().interrupt();
+        return false;
+      } catch (final TimeoutException e) {
+        return false;
+      }
+    }
+
+    @Override
+    public T get() throws InterruptedException, ExecutionException
+    {
+      try {
+        return next(0L, null).get();
+      } catch (final TimeoutException e) {
+        throw new IllegalStateException("unexpected timeout while waiting without timeout", e);
+      }
+    }
+
+    @Override
+    public T get(final long timeout, final TimeUnit unit) throws InterruptedException, ExecutionException,
+                                                                 TimeoutException
+    {
+      final long deadline = System.nanoTime() + unit.toNanos(timeout);
+      final Future<T> n = next(timeout, unit);
+      return n.get(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+    }
+  }
+}
@@ -25,6 +25,7 @@ package ae.db;
 
 import argo.jdom.JsonNode;
 import argo.jdom.JsonNodeFactories;
+import java.io.IOException;
 
 enum DoubleJsonSerializer implements JsonSerializer<Double> {
   INSTANCE;
@@ -40,6 +41,16 @@ enum DoubleJsonSerializer implements JsonSerializer<Double> {
     return JsonNodeFactories.number(value.toString());
   }
 
+  @Override
+  public void writeJson(final Double value, final JsonWriter out) throws IOException
+  {
+    if (value == null) {
+      out.nullValue();
+    } else {
+      out.number(value.toString());
+    }
+  }
+
   @Override
   public Double fromJson(final JsonNode json, final String jsonPath)
   {
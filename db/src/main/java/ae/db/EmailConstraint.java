@@ -24,8 +24,15 @@
 package ae.db;
 
 import com.google.appengine.api.datastore.Email;
-import java.util.regex.Pattern;
 
+/**
+ * Validates email addresses as defined by RFC 822 (without comments): a mailbox ({@code user@example.com} or
+ * {@code User <user@example.com>}, optionally with a source route) or a group of mailboxes
+ * ({@code team: a@example.com, b@example.com;}), with folding white space between their tokens.
+ * <p>
+ * Addresses are validated by a single pass parser, so validation takes linear time in the length of the value, and
+ * values longer than {@link #MAX_LENGTH} are rejected without being parsed.
+ */
 public final class EmailConstraint {
 
   private EmailConstraint()
@@ -35,8 +42,10 @@ public final class EmailConstraint {
 
   private static final String NAME = "email";
 
-  private static final Pattern PATTERN = Pattern.compile(
-      "(?:(?:\\r\\n)?[ \\t])*(?:(?:(?:[^()<>@,;:\\\\\".\\[\\] \\000-\\031]+(?:(?:(?:\\r\\n)?[ \\t])+|\\Z|(?=[\\[\"()<>@,;:\\\\\".\\[\\]]))|\"(?:[^\\\"\\r\\\\]|\\\\.|(?:(?:\\r\\n)?[ \\t]))*\"(?:(?:\\r\\n)?[ \\t])*)(?:\\.(?:(?:\\r\\n)?[ \\t])*(?:[^()<>@,;:\\\\\".\\[\\] \\000-\\031]+(?:(?:(?:\\r\\n)?[ \\t])+|\\Z|(?=[\\[\"()<>@,;:\\\\\".\\[\\]]))|\"(?:[^\\\"\\r\\\\]|\\\\.|(?:(?:\\r\\n)?[ \\t]))*\"(?:(?:\\r\\n)?[ \\t])*))*@(?:(?:\\r\\n)?[ \\t])*(?:[^()<>@,;:\\\\\".\\[\\] \\000-\\031]+(?:(?:(?:\\r\\n)?[ \\t])+|\\Z|(?=[\\[\"()<>@,;:\\\\\".\\[\\]]))|\\[([^\\[\\]\\r\\\\]|\\\\.)*\\](?:(?:\\r\\n)?[ \\t])*)(?:\\.(?:(?:\\r\\n)?[ \\t])*(?:[^()<>@,;:\\\\\".\\[\\] \\000-\\031]+(?:(?:(?:\\r\\n)?[ \\t])+|\\Z|(?=[\\[\"()<>@,;:\\\\\".\\[\\]]))|\\[([^\\[\\]\\r\\\\]|\\\\.)*\\](?:(?:\\r\\n)?[ \\t])*))*|(?:[^()<>@,;:\\\\\".\\[\\] \\000-\\031]+(?:(?:(?:\\r\\n)?[ \\t])+|\\Z|(?=[\\[\"()<>@,;:\\\\\".\\[\\]]))|\"(?:[^\\\"\\r\\\\]|\\\\.|(?:(?:\\r\\n)?[ \\t]))*\"(?:(?:\\r\\n)?[ \\t])*)*\\<(?:(?:\\r\\n)?[ \\t])*(?:@(?:[^()<>@,;:\\\\\".\\[\\] \\000-\\031]+(?:(?:(?:\\r\\n)?[ \\t])+|\\Z|(?=[\\[\"()<>@,;:\\\\\".\\[\\]]))|\\[([^\\[\\]\\r\\\\]|\\\\.)*\\](?:(?:\\r\\n)?[ \\t])*)(?:\\.(?:(?:\\r\\n)?[ \\t])*(?:[^()<>@,;:\\\\\".\\[\\] \\000-\\031]+(?:(?:(?:\\r\\n)?[ \\t])+|\\Z|(?=[\\[\"()<>@,;:\\\\\".\\[\\]]))|\\[([^\\[\\]\\r\\\\]|\\\\.)*\\](?:(?:\\r\\n)?[ \\t])*))*(?:,@(?:(?:\\r\\n)?[ \\t])*(?:[^()<>@,;:\\\\\".\\[\\] \\000-\\031]+(?:(?:(?:\\r\\n)?[ \\t])+|\\Z|(?=[\\[\"()<>@,;:\\\\\".\\[\\]]))|\\[([^\\[\\]\\r\\\\]|\\\\.)*\\](?:(?:\\r\\n)?[ \\t])*)(?:\\.(?:(?:\\r\\n)?[ \\t])*(?:[^()<>@,;:\\\\\".\\[\\] \\000-\\031]+(?:(?:(?:\\r\\n)?[ \\t])+|\\Z|(?=[\\[\"()<>@,;:\\\\\".\\[\\]]))|\\[([^\\[\\]\\r\\\\]|\\\\.)*\\](?:(?:\\r\\n)?[ \\t])*))*)*:(?:(?:\\r\\n)?[ \\t])*)?(?:[^()<>@,;:\\\\\".\\[\\] \\000-\\031]+(?:(?:(?:\\r\\n)?[ \\t])+|\\Z|(?=[\\[\"()<>@,;:\\\\\".\\[\\]]))|\"(?:[^\\\"\\r\\\\]|\\\\.|(?:(?:\\r\\n)?[ \\t]))*\"(?:(?:\\r\\n)?[ \\t])*)(?:\\.(?:(?:\\r\\n)?[ \\t])*(?:[^()<>@,;:\\\\\".\\[\\] \\000-\\031]+(?:(?:(?:\\r\\n)?[ \\t])+|\\Z|(?=[\\[\"()<>@,;:\\\\\".\\[\\]]))|\"(?:[^\\\"\\r\\\\]|\\\\.|(?:(?:\\r\\n)?[ \\t]))*\"(?:(?:\\r\\n)?[ \\t])*))*@(?:(?:\\r\\n)?[ \\t])*(?:[^()<>@,;:\\\\\".\\[\\] \\000-\\031]+(?:(?:(?:\\r\\n)?[ \\t])+|\\Z|(?=[\\[\"()<>@,;:\\\\\".\\[\\]]))|\\[([^\\[\\]\\r\\\\]|\\\\.)*\\](?:(?:\\r\\n)?[ \\t])*)(?:\\.(?:(?:\\r\\n)?[ \\t])*(?:[^()<>@,;:\\\\\".\\[\\] \\000-\\031]+(?:(?:(?:\\r\\n)?[ \\t])+|\\Z|(?=[\\[\"()<>@,;:\\\\\".\\[\\]]))|\\[([^\\[\\]\\r\\\\]|\\\\.)*\\](?:(?:\\r\\n)?[ \\t])*))*\\>(?:(?:\\r\\n)?[ \\t])*)|(?:[^()<>@,;:\\\\\".\\[\\] \\000-\\031]+(?:(?:(?:\\r\\n)?[ \\t])+|\\Z|(?=[\\[\"()<>@,;:\\\\\".\\[\\]]))|\"(?:[^\\\"\\r\\\\]|\\\\.|(?:(?:\\r\\n)?[ \\t]))*\"(?:(?:\\r\\n)?[ \\t])*)*:(?:(?:\\r\\n)?[ \\t])*(?:(?:(?:[^()<>@,;:\\\\\".\\[\\] \\000-\\031]+(?:(?:(?:\\r\\n)?[ \\t])+|\\Z|(?=[\\[\"()<>@,;:\\\\\".\\[\\]]))|\"(?:[^\\\"\\r\\\\]|\\\\.|(?:(?:\\r\\n)?[ \\t]))*\"(?:(?:\\r\\n)?[ \\t])*)(?:\\.(?:(?:\\r\\n)?[ \\t])*(?:[^()<>@,;:\\\\\".\\[\\] \\000-\\031]+(?:(?:(?:\\r\\n)?[ \\t])+|\\Z|(?=[\\[\"()<>@,;:\\\\\".\\[\\]]))|\"(?:[^\\\"\\r\\\\]|\\\\.|(?:(?:\\r\\n)?[ \\t]))*\"(?:(?:\\r\\n)?[ \\t])*))*@(?:(?:\\r\\n)?[ \\t])*(?:[^()<>@,;:\\\\\".\\[\\] \\000-\\031]+(?:(?:(?:\\r\\n)?[ \\t])+|\\Z|(?=[\\[\"()<>@,;:\\\\\".\\[\\]]))|\\[([^\\[\\]\\r\\\\]|\\\\.)*\\](?:(?:\\r\\n)?[ \\t])*)(?:\\.(?:(?:\\r\\n)?[ \\t])*(?:[^()<>@,;:\\\\\".\\[\\] \\000-\\031]+(?:(?:(?:\\r\\n)?[ \\t])+|\\Z|(?=[\\[\"()<>@,;:\\\\\".\\[\\]]))|\\[([^\\[\\]\\r\\\\]|\\\\.)*\\](?:(?:\\r\\n)?[ \\t])*))*|(?:[^()<>@,;:\\\\\".\\[\\] \\000-\\031]+(?:(?:(?:\\r\\n)?[ \\t])+|\\Z|(?=[\\[\"()<>@,;:\\\\\".\\[\\]]))|\"(?:[^\\\"\\r\\\\]|\\\\.|(?:(?:\\r\\n)?[ \\t]))*\"(?:(?:\\r\\n)?[ \\t])*)*\\<(?:(?:\\r\\n)?[ \\t])*(?:@(?:[^()<>@,;:\\\\\".\\[\\] \\000-\\031]+(?:(?:(?:\\r\\n)?[ \\t])+|\\Z|(?=[\\[\"()<>@,;:\\\\\".\\[\\]]))|\\[([^\\[\\]\\r\\\\]|\\\\.)*\\](?:(?:\\r\\n)?[ \\t])*)(?:\\.(?:(?:\\r\\n)?[ \\t])*(?:[^()<>@,;:\\\\\".\\[\\] \\000-\\031]+(?:(?:(?:\\r\\n)?[ \\t])+|\\Z|(?=[\\[\"()<>@,;:\\\\\".\\[\\]]))|\\[([^\\[\\]\\r\\\\]|\\\\.)*\\](?:(?:\\r\\n)?[ \\t])*))*(?:,@(?:(?:\\r\\n)?[ \\t])*(?:[^()<>@,;:\\\\\".\\[\\] \\000-\\031]+(?:(?:(?:\\r\\n)?[ \\t])+|\\Z|(?=[\\[\"()<>@,;:\\\\\".\\[\\]]))|\\[([^\\[\\]\\r\\\\]|\\\\.)*\\](?:(?:\\r\\n)?[ \\t])*)(?:\\.(?:(?:\\r\\n)?[ \\t])*(?:[^()<>@,;:\\\\\".\\[\\] \\000-\\031]+(?:(?:(?:\\r\\n)?[ \\t])+|\\Z|(?=[\\[\"()<>@,;:\\\\\".\\[\\]]))|\\[([^\\[\\]\\r\\\\]|\\\\.)*\\](?:(?:\\r\\n)?[ \\t])*))*)*:(?:(?:\\r\\n)?[ \\t])*)?(?:[^()<>@,;:\\\\\".\\[\\] \\000-\\031]+(?:(?:(?:\\r\\n)?[ \\t])+|\\Z|(?=[\\[\"()<>@,;:\\\\\".\\[\\]]))|\"(?:[^\\\"\\r\\\\]|\\\\.|(?:(?:\\r\\n)?[ \\t]))*\"(?:(?:\\r\\n)?[ \\t])*)(?:\\.(?:(?:\\r\\n)?[ \\t])*(?:[^()<>@,;:\\\\\".\\[\\] \\000-\\031]+(?:(?:(?:\\r\\n)?[ \\t])+|\\Z|(?=[\\[\"()<>@,;:\\\\\".\\[\\]]))|\"(?:[^\\\"\\r\\\\]|\\\\.|(?:(?:\\r\\n)?[ \\t]))*\"(?:(?:\\r\\n)?[ \\t])*))*@(?:(?:\\r\\n)?[ \\t])*(?:[^()<>@,;:\\\\\".\\[\\] \\000-\\031]+(?:(?:(?:\\r\\n)?[ \\t])+|\\Z|(?=[\\[\"()<>@,;:\\\\\".\\[\\]]))|\\[([^\\[\\]\\r\\\\]|\\\\.)*\\](?:(?:\\r\\n)?[ \\t])*)(?:\\.(?:(?:\\r\\n)?[ \\t])*(?:[^()<>@,;:\\\\\".\\[\\] \\000-\\031]+(?:(?:(?:\\r\\n)?[ \\t])+|\\Z|(?=[\\[\"()<>@,;:\\\\\".\\[\\]]))|\\[([^\\[\\]\\r\\\\]|\\\\.)*\\](?:(?:\\r\\n)?[ \\t])*))*\\>(?:(?:\\r\\n)?[ \\t])*)(?:,\\s*(?:(?:[^()<>@,;:\\\\\".\\[\\] \\000-\\031]+(?:(?:(?:\\r\\n)?[ \\t])+|\\Z|(?=[\\[\"()<>@,;:\\\\\".\\[\\]]))|\"(?:[^\\\"\\r\\\\]|\\\\.|(?:(?:\\r\\n)?[ \\t]))*\"(?:(?:\\r\\n)?[ \\t])*)(?:\\.(?:(?:\\r\\n)?[ \\t])*(?:[^()<>@,;:\\\\\".\\[\\] \\000-\\031]+(?:(?:(?:\\r\\n)?[ \\t])+|\\Z|(?=[\\[\"()<>@,;:\\\\\".\\[\\]]))|\"(?:[^\\\"\\r\\\\]|\\\\.|(?:(?:\\r\\n)?[ \\t]))*\"(?:(?:\\r\\n)?[ \\t])*))*@(?:(?:\\r\\n)?[ \\t])*(?:[^()<>@,;:\\\\\".\\[\\] \\000-\\031]+(?:(?:(?:\\r\\n)?[ \\t])+|\\Z|(?=[\\[\"()<>@,;:\\\\\".\\[\\]]))|\\[([^\\[\\]\\r\\\\]|\\\\.)*\\](?:(?:\\r\\n)?[ \\t])*)(?:\\.(?:(?:\\r\\n)?[ \\t])*(?:[^()<>@,;:\\\\\".\\[\\] \\000-\\031]+(?:(?:(?:\\r\\n)?[ \\t])+|\\Z|(?=[\\[\"()<>@,;:\\\\\".\\[\\]]))|\\[([^\\[\\]\\r\\\\]|\\\\.)*\\](?:(?:\\r\\n)?[ \\t])*))*|(?:[^()<>@,;:\\\\\".\\[\\] \\000-\\031]+(?:(?:(?:\\r\\n)?[ \\t])+|\\Z|(?=[\\[\"()<>@,;:\\\\\".\\[\\]]))|\"(?:[^\\\"\\r\\\\]|\\\\.|(?:(?:\\r\\n)?[ \\t]))*\"(?:(?:\\r\\n)?[ \\t])*)*\\<(?:(?:\\r\\n)?[ \\t])*(?:@(?:[^()<>@,;:\\\\\".\\[\\] \\000-\\031]+(?:(?:(?:\\r\\n)?[ \\t])+|\\Z|(?=[\\[\"()<>@,;:\\\\\".\\[\\]]))|\\[([^\\[\\]\\r\\\\]|\\\\.)*\\](?:(?:\\r\\n)?[ \\t])*)(?:\\.(?:(?:\\r\\n)?[ \\t])*(?:[^()<>@,;:\\\\\".\\[\\] \\000-\\031]+(?:(?:(?:\\r\\n)?[ \\t])+|\\Z|(?=[\\[\"()<>@,;:\\\\\".\\[\\]]))|\\[([^\\[\\]\\r\\\\]|\\\\.)*\\](?:(?:\\r\\n)?[ \\t])*))*(?:,@(?:(?:\\r\\n)?[ \\t])*(?:[^()<>@,;:\\\\\".\\[\\] \\000-\\031]+(?:(?:(?:\\r\\n)?[ \\t])+|\\Z|(?=[\\[\"()<>@,;:\\\\\".\\[\\]]))|\\[([^\\[\\]\\r\\\\]|\\\\.)*\\](?:(?:\\r\\n)?[ \\t])*)(?:\\.(?:(?:\\r\\n)?[ \\t])*(?:[^()<>@,;:\\\\\".\\[\\] \\000-\\031]+(?:(?:(?:\\r\\n)?[ \\t])+|\\Z|(?=[\\[\"()<>@,;:\\\\\".\\[\\]]))|\\[([^\\[\\]\\r\\\\]|\\\\.)*\\](?:(?:\\r\\n)?[ \\t])*))*)*:(?:(?:\\r\\n)?[ \\t])*)?(?:[^()<>@,;:\\\\\".\\[\\] \\000-\\031]+(?:(?:(?:\\r\\n)?[ \\t])+|\\Z|(?=[\\[\"()<>@,;:\\\\\".\\[\\]]))|\"(?:[^\\\"\\r\\\\]|\\\\.|(?:(?:\\r\\n)?[ \\t]))*\"(?:(?:\\r\\n)?[ \\t])*)(?:\\.(?:(?:\\r\\n)?[ \\t])*(?:[^()<>@,;:\\\\\".\\[\\] \\000-\\031]+(?:(?:(?:\\r\\n)?[ \\t])+|\\Z|(?=[\\[\"()<>@,;:\\\\\".\\[\\]]))|\"(?:[^\\\"\\r\\\\]|\\\\.|(?:(?:\\r\\n)?[ \\t]))*\"(?:(?:\\r\\n)?[ \\t])*))*@(?:(?:\\r\\n)?[ \\t])*(?:[^()<>@,;:\\\\\".\\[\\] \\000-\\031]+(?:(?:(?:\\r\\n)?[ \\t])+|\\Z|(?=[\\[\"()<>@,;:\\\\\".\\[\\]]))|\\[([^\\[\\]\\r\\\\]|\\\\.)*\\](?:(?:\\r\\n)?[ \\t])*)(?:\\.(?:(?:\\r\\n)?[ \\t])*(?:[^()<>@,;:\\\\\".\\[\\] \\000-\\031]+(?:(?:(?:\\r\\n)?[ \\t])+|\\Z|(?=[\\[\"()<>@,;:\\\\\".\\[\\]]))|\\[([^\\[\\]\\r\\\\]|\\\\.)*\\](?:(?:\\r\\n)?[ \\t])*))*\\>(?:(?:\\r\\n)?[ \\t])*))*)?;\\s*)");
+  /**
+   * Max length of a valid address: a local part of 64 characters, the {@code '@'} and a domain of 255 characters.
+   */
+  static final int MAX_LENGTH = 320;
 
   private static String makeMessageFor(final Attribute attr)
   {
@@ -49,7 +58,7 @@ public final class EmailConstraint {
     @Override
     public boolean isInvalid(final String value)
     {
-      return !PATTERN.matcher(value).matches();
+      return !isValid(value);
     }
 
     @Override
@@ -71,7 +80,7 @@ public final class EmailConstraint {
     @Override
     public boolean isInvalid(final Email value)
     {
-      return !PATTERN.matcher(value.getEmail()).matches();
+      return !isValid(value.getEmail());
     }
 
     @Override
@@ -86,4 +95,303 @@ public final class EmailConstraint {
       return NAME;
     }
   }
+
+  static boolean isValid(final String value)
+  {
+    return value.length() <= MAX_LENGTH && new Parser(value).address();
+  }
+
+  /**
+   * Recursive descent parser of the address grammar. Every token ends at a position determined by its first
+   * characters, so no alternative is retried more than once per token and the whole value is scanned in linear time.
+   * <p>
+   * Each parsing method receives the position where its element starts, and returns the position where it ends
+   * (including the white space following it), or {@code -1} if the element isn't there.
+   */
+  private static final class Parser {
+    private final String value;
+    private final int length;
+
+    Parser(final String value)
+    {
+      this.value = value;
+      this.length = value.length();
+    }
+
+    boolean address()
+    {
+      final int start = spaces(0);
+      return mailbox(start) == length || group(start) == length;
+    }
+
+    /* group = phrase ":" [mailbox *("," mailbox)] ";" */
+    private int group(final int from)
+    {
+      int pos = phrase(from);
+      if (!at(pos, ':')) {
+        return -1;
+      }
+      pos = spaces(pos + 1);
+      if (!at(pos, ';')) {
+        pos = mailbox(pos);
+        while (at(pos, ',')) {
+          pos = mailbox(whitespace(pos + 1));
+        }
+      }
+      if (!at(pos, ';')) {
+        return -1;
+      }
+      return whitespace(pos + 1);
+    }
+
+    /* mailbox = addr-spec | phrase route-addr */
+    private int mailbox(final int from)
+    {
+      if (from < 0) {
+        return -1;
+      }
+      final int end = addrSpec(from);
+      if (end >= 0) {
+        return end;
+      }
+      return routeAddr(phrase(from));
+    }
+
+    /* phrase = *word */
+    private int phrase(final int from)
+    {
+      int pos = from;
+      while (pos >= 0 && pos < length && isWordStart(value.charAt(pos))) {
+        pos = word(pos);
+      }
+      return pos;
+    }
+
+    /* route-addr = "<" [route] addr-spec ">", route = "@" domain *("," "@" domain) ":" */
+    private int routeAddr(final int from)
+    {
+      if (!at(from, '<')) {
+        return -1;
+      }
+      int pos = spaces(from + 1);
+      if (at(pos, '@')) {
+        pos = domain(pos + 1);
+        while (at(pos, ',') && at(pos + 1, '@')) {
+          pos = domain(spaces(pos + 2));
+        }
+        if (!at(pos, ':')) {
+          return -1;
+        }
+        pos = spaces(pos + 1);
+      }
+      pos = addrSpec(pos);
+      if (!at(pos, '>')) {
+        return -1;
+      }
+      return spaces(pos + 1);
+    }
+
+    /* addr-spec = word *("." word) "@" domain */
+    private int addrSpec(final int from)
+    {
+      int pos = word(from);
+      while (at(pos, '.')) {
+        pos = word(spaces(pos + 1));
+      }
+      if (!at(pos, '@')) {
+        return -1;
+      }
+      return domain(spaces(pos + 1));
+    }
+
+    /* domain = sub-domain *("." sub-domain) */
+    private int domain(final int from)
+    {
+      int pos = subDomain(from);
+      while (at(pos, '.')) {
+        pos = subDomain(spaces(pos + 1));
+      }
+      return pos;
+    }
+
+    private int subDomain(final int from)
+    {
+      return at(from, '[') ? domainLiteral(from) : atom(from);
+    }
+
+    private int word(final int from)
+    {
+      return at(from, '"') ? quotedString(from) : atom(from);
+    }
+
+    /**
+     * An atom must be followed by white space, a special character, or the end of the value.
+     */
+    private int atom(final int from)
+    {
+      if (from < 0) {
+        return -1;
+      }
+      int pos = from;
+      while (pos < length && isAtomChar(value.charAt(pos))) {
+        pos++;
+      }
+      if (pos == from) {
+        return -1;
+      }
+      if (pos == length || isSpecial(value.charAt(pos))) {
+        return pos;
+      }
+      final int end = spaces(pos);
+      return end == pos ? -1 : end;
+    }
+
+    private int quotedString(final int from)
+    {
+      int pos = from + 1;
+      while (pos < length) {
+        final char c = value.charAt(pos);
+        if (c == '"') {
+          return spaces(pos + 1);
+        } else if (c == '\\') {
+          if (pos + 1 == length || isLineTerminator(value.charAt(pos + 1))) {
+            return -1;
+          }
+          pos += 2;
+        } else if (c == '\r') {
+          final int folded = fold(pos);
+          if (folded < 0) {
+            return -1;
+          }
+          pos = folded;
+        } else {
+          pos++;
+        }
+      }
+      return -1;
+    }
+
+    private int domainLiteral(final int from)
+    {
+      int pos = from + 1;
+      while (pos < length) {
+        final char c = value.charAt(pos);
+        if (c == ']') {
+          return spaces(pos + 1);
+        } else if (c == '[' || c == '\r') {
+          return -1;
+        } else if (c == '\\') {
+          if (pos + 1 == length || isLineTerminator(value.charAt(pos + 1))) {
+            return -1;
+          }
+          pos += 2;
+        } else {
+          pos++;
+        }
+      }
+      return -1;
+    }
+
+    /**
+     * Skips linear white space: spaces and tabs, optionally preceded by CRLF.
+     */
+    private int spaces(final int from)
+    {
+      if (from < 0) {
+        return -1;
+      }
+      int pos = from;
+      while (pos < length) {
+        final char c = value.charAt(pos);
+        if (c == ' ' || c == '\t') {
+          pos++;
+        } else if (c == '\r') {
+          final int folded = fold(pos);
+          if (folded < 0) {
+            return pos;
+          }
+          pos = folded;
+        } else {
+          return pos;
+        }
+      }
+      return pos;
+    }
+
+    /**
+     * @return the position after a CRLF followed by a space or a tab, or {@code -1} if it isn't there.
+     */
+    private int fold(final int pos)
+    {
+      if (pos + 2 < length && value.charAt(pos + 1) == '\n') {
+        final char c = value.charAt(pos + 2);
+        if (c == ' ' || c == '\t') {
+          return pos + 3;
+        }
+      }
+      return -1;
+    }
+
+    /**
+     * Skips any white space, as allowed around the separators of the mailboxes of a group.
+     */
+    private int whitespace(final int from)
+    {
+      if (from < 0) {
+        return -1;
+      }
+      int pos = from;
+      while (pos < length && isWhitespace(value.charAt(pos))) {
+        pos++;
+      }
+      return pos;
+    }
+
+    private boolean at(final int pos, final char c)
+    {
+      return pos >= 0 && pos < length && value.charAt(pos) == c;
+    }
+
+    private static boolean isWordStart(final char c)
+    {
+      return c == '"' || isAtomChar(c);
+    }
+
+    private static boolean isAtomChar(final char c)
+    {
+      return c > '\031' && c != ' ' && !isSpecial(c);
+    }
+
+    private static boolean isSpecial(final char c)
+    {
+      switch (c) {
+        case '(':
+        case ')':
+        case '<':
+        case '>':
+        case '@':
+        case ',':
+        case ';':
+        case ':':
+        case '\\':
+        case '"':
+        case '.':
+        case '[':
+        case ']':
+          return true;
+        default:
+          return false;
+      }
+    }
+
+    private static boolean isWhitespace(final char c)
+    {
+      return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
+    }
+
+    private static boolean isLineTerminator(final char c)
+    {
+      return c == '\n' || c == '\r' || c == '\u0085' || c == '\u2028' || c == '\u2029';
+    }
+  }
 }
@@ -26,6 +26,7 @@ package ae.db;
 import argo.jdom.JsonNode;
 import argo.jdom.JsonNodeFactories;
 import com.google.appengine.api.datastore.Email;
+import java.io.IOException;
 
 enum EmailJsonSerializer implements JsonSerializer<Email> {
   INSTANCE;
@@ -41,6 +42,16 @@ enum EmailJsonSerializer implements JsonSerializer<Email> {
     return JsonNodeFactories.string(value.getEmail());
   }
 
+  @Override
+  public void writeJson(final Email value, final JsonWriter out) throws IOException
+  {
+    if (value == null) {
+      out.nullValue();
+    } else {
+      out.string(value.getEmail());
+    }
+  }
+
   @Override
   public Email fromJson(final JsonNode json, final String jsonPath)
   {
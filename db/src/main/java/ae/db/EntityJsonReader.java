@@ -0,0 +1,275 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2018 ActiveEngine.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ae.db;
+
+import argo.jdom.JsonField;
+import argo.jdom.JsonNode;
+import argo.jdom.JsonNodeFactories;
+import argo.saj.JsonListener;
+import com.google.appengine.api.datastore.EmbeddedEntity;
+import com.google.appengine.api.datastore.Entity;
+import com.google.appengine.api.datastore.Key;
+import com.google.appengine.api.datastore.PropertyContainer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.function.Consumer;
+
+/**
+ * Reads entities from the events of a JSON parser, without building the JSON document.
+ * <p>
+ * Each member of an entity object is resolved with {@link EntityModel#jsonAttribute(String)}: field values are written
+ * to the entity as soon as they are read, only the members defining its key are kept until the object ends. Members
+ * not defined by the model are skipped. The document can be a single object (or {@code null}), or, when reading
+ * several entities, an array of objects.
+ */
+final class EntityJsonReader implements JsonListener {
+
+  private final EntityModel model;
+  private final Entity updated;
+  private final Consumer<Entity> action;
+  private final boolean many;
+
+  private final ArrayList<JsonField> keyFields = new ArrayList<>(2);
+  private final ArrayDeque<Container> containers = new ArrayDeque<>();
+
+  private boolean inArray;
+  private int depth;
+  private int count;
+  private PropertyContainer properties;
+  private Attribute attribute;
+
+  private EntityJsonReader(final EntityModel model,
+                           final Entity updated,
+                           final Consumer<Entity> action,
+                           final boolean many)
+  {
+    this.model = model;
+    this.updated = updated;
+    this.action = action;
+    this.many = many;
+  }
+
+  static EntityJsonReader reading(final EntityModel model, final Consumer<Entity> action, final boolean many)
+  {
+    return new EntityJsonReader(model, null, action, many);
+  }
+
+  static EntityJsonReader updating(final EntityModel model, final Entity data)
+  {
+    return new EntityJsonReader(model, data, null, false);
+  }
+
+  /**
+   * @return amount of entity objects read.
+   */
+  int count()
+  {
+    return count;
+  }
+
+  @Override
+  public void startDocument()
+  {
+    // nothing to do
+  }
+
+  @Override
+  public void endDocument()
+  {
+    // nothing to do
+  }
+
+  @Override
+  public void startArray()
+  {
+    if (depth == 0 && many) {
+      inArray = true;
+    } else if (depth < entityDepth()) {
+      throw new IllegalArgumentException("a JSON object was expected for " + model.kind() + " entities.");
+    } else if (attribute != null) {
+      containers.push(new Container(false));
+    }
+    depth++;
+  }
+
+  @Override
+  public void endArray()
+  {
+    depth--;
+    if (depth >= entityDepth() && attribute != null) {
+      value(containers.pop().toJson());
+    }
+  }
+
+  @Override
+  public void startObject()
+  {
+    if (depth == entityDepth() - 1) {
+      properties = updated == null ? new EmbeddedEntity() : updated;
+      keyFields.clear();
+    } else if (depth < entityDepth()) {
+      throw new IllegalArgumentException("a JSON object was expected for " + model.kind() + " entities.");
+    } else if (attribute != null) {
+      containers.push(new Container(true));
+    }
+    depth++;
+  }
+
+  @Override
+  public void endObject()
+  {
+    depth--;
+    if (depth == entityDepth() - 1) {
+      endEntity();
+    } else if (attribute != null) {
+      value(containers.pop().toJson());
+    }
+  }
+
+  @Override
+  public void startField(final String name)
+  {
+    if (depth == entityDepth()) {
+      attribute = model.jsonAttribute(name);
+    } else if (attribute != null) {
+      containers.peek().name = name;
+    }
+  }
+
+  @Override
+  public void endField()
+  {
+    if (depth == entityDepth()) {
+      attribute = null;
+    }
+  }
+
+  @Override
+  public void stringValue(final String value)
+  {
+    scalar(JsonNodeFactories.string(value));
+  }
+
+  @Override
+  public void numberValue(final String value)
+  {
+    scalar(JsonNodeFactories.number(value));
+  }
+
+  @Override
+  public void trueValue()
+  {
+    scalar(JsonNodeFactories.trueNode());
+  }
+
+  @Override
+  public void falseValue()
+  {
+    scalar(JsonNodeFactories.falseNode());
+  }
+
+  @Override
+  public void nullValue()
+  {
+    if (depth == 0) {
+      return; // null document, there is no entity to read
+    }
+    scalar(JsonNodeFactories.nullNode());
+  }
+
+  private int entityDepth()
+  {
+    return inArray ? 2 : 1;
+  }
+
+  private void scalar(final JsonNode value)
+  {
+    if (depth < entityDepth()) {
+      throw new IllegalArgumentException("a JSON object was expected for " + model.kind() + " entities.");
+    }
+    value(value);
+  }
+
+  private void value(final JsonNode value)
+  {
+    if (attribute == null) {
+      return;
+    }
+    if (!containers.isEmpty()) {
+      containers.peek().add(value);
+    } else if (attribute instanceof Field) {
+      ((Field<?>) attribute).readJsonValue(properties, value);
+    } else {
+      keyFields.add(JsonNodeFactories.field(attribute.jsonName(), value));
+    }
+  }
+
+  private void endEntity()
+  {
+    count++;
+    if (updated != null) {
+      return;
+    }
+    final Key key = model.keyFromJson(JsonNodeFactories.object(keyFields));
+    if (key == null) {
+      throw new IllegalArgumentException("no " + model.modelIdentifier().field() + " defined.");
+    }
+    final Entity data = new Entity(key);
+    data.setPropertiesFrom(properties);
+    properties = null;
+    action.accept(data);
+  }
+
+  /**
+   * Array or object being read as the value of an attribute.
+   */
+  private static final class Container {
+
+    final boolean object;
+    final ArrayList<JsonNode> elements;
+    final ArrayList<JsonField> fields;
+    String name;
+
+    Container(final boolean object)
+    {
+      this.object = object;
+      this.elements = object ? null : new ArrayList<>();
+      this.fields = object ? new ArrayList<>() : null;
+    }
+
+    void add(final JsonNode value)
+    {
+      if (object) {
+        fields.add(JsonNodeFactories.field(name, value));
+      } else {
+        elements.add(value);
+      }
+    }
+
+    JsonNode toJson()
+    {
+      return object ? JsonNodeFactories.object(fields) : JsonNodeFactories.array(elements);
+    }
+  }
+}
@@ -27,6 +27,8 @@ import argo.jdom.JsonField;
 import argo.jdom.JsonNode;
 import argo.jdom.JsonNodeFactories;
 import argo.jdom.JsonStringNode;
+import argo.saj.InvalidSyntaxException;
+import argo.saj.SajParser;
 import com.google.appengine.api.datastore.Cursor;
 import com.google.appengine.api.datastore.DatastoreService;
 import com.google.appengine.api.datastore.DatastoreServiceFactory;
@@ -41,10 +43,15 @@ import com.google.appengine.api.datastore.QueryResultIterable;
 import com.google.appengine.api.datastore.QueryResultIterator;
 import com.google.appengine.api.datastore.QueryResultList;
 import com.google.common.collect.ImmutableList;
-import com.google.common.collect.Iterables;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
 
 public interface EntityModel extends java.io.Serializable {
 
@@ -121,7 +128,11 @@ public interface EntityModel extends java.io.Serializable {
     if (elements == null) {
       return JsonNodeFactories.nullNode();
     }
-    final Collection<JsonNode> nodes = new java.util.ArrayList<>(Iterables.size(elements));
+    if (elements instanceof Collection) {
+      return toJson((Collection<Entity>) elements);
+    }
+    // elements are iterated only once, as iterating query results runs the query again
+    final Collection<JsonNode> nodes = new java.util.ArrayList<>();
     for (final Entity e : elements) {
       nodes.add(toJson(e));
     }
@@ -134,7 +145,7 @@ public interface EntityModel extends java.io.Serializable {
       return JsonNodeFactories.nullNode();
     }
     if (elements.hasNext()) {
-      final java.util.LinkedList<JsonNode> nodes = new java.util.LinkedList<>();
+      final Collection<JsonNode> nodes = new java.util.ArrayList<>();
       do {
         nodes.add(toJson(elements.next()));
       } while (elements.hasNext());
@@ -144,12 +155,100 @@ public interface EntityModel extends java.io.Serializable {
     }
   }
 
+  /**
+   * Writes the JSON representation of {@code data} straight to {@code out}, without building it as a tree first.
+   * By default it is written as the node built by {@link #toJson(Entity)}, generated models write each field
+   * directly.
+   *
+   * @param data entity to write, can be {@code null}.
+   * @param out destination of the JSON text.
+   * @throws IOException if {@code out} can not be written.
+   */
+  default void writeJson(final Entity data, final JsonWriter out) throws IOException
+  {
+    out.value(toJson(data));
+  }
+
+  default void writeJson(final Entity data, final Appendable out) throws IOException
+  {
+    final JsonWriter json = JsonWriter.to(out);
+    writeJson(data, json);
+    json.flush();
+  }
+
+  default void writeJson(final Entity data, final OutputStream out) throws IOException
+  {
+    final JsonWriter json = JsonWriter.to(out);
+    writeJson(data, json);
+    json.flush();
+  }
+
   Entity fromJson(JsonNode data);
 
   Key keyFromJson(JsonNode json);
 
   void updatePropertiesWithJsonContents(Entity data, JsonNode json);
 
+  /**
+   * @param jsonName name of a member of the JSON representation of the model entities.
+   * @return the attribute represented by the member, or {@code null} if it is not part of the model.
+   */
+  default Attribute jsonAttribute(final String jsonName)
+  {
+    for (final Attribute attribute : modelAttributes()) {
+      if (attribute.jsonName().getText().equals(jsonName)) {
+        return attribute;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Reads an entity from a JSON object as {@link #fromJson(JsonNode)} does, but parsing it as a stream: its members
+   * are written to the entity as they are read, so no JSON document is built.
+   *
+   * @param json JSON text of the object.
+   * @return the entity read, or {@code null} if the JSON text is {@code null}.
+   * @throws InvalidSyntaxException if {@code json} is not valid JSON.
+   * @throws IllegalArgumentException if {@code json} is not a JSON object, or it doesn't define the entity key.
+   */
+  default Entity fromJson(final Reader json) throws IOException, InvalidSyntaxException
+  {
+    final Entity[] result = new Entity[1];
+    new SajParser().parse(json, EntityJsonReader.reading(this, data -> result[0] = data, false));
+    return result[0];
+  }
+
+  /**
+   * Reads entities from a JSON array of objects (or a single object), handing each one to {@code action} as soon as
+   * its object has been read, so bulk contents are never fully held in memory.
+   *
+   * @param json JSON text of the entities.
+   * @param action operation to perform with each entity read.
+   * @return the amount of entities read.
+   * @throws InvalidSyntaxException if {@code json} is not valid JSON.
+   * @throws IllegalArgumentException if some element is not a JSON object, or it doesn't define the entity key.
+   */
+  default int fromJson(final Reader json, final Consumer<Entity> action) throws IOException, InvalidSyntaxException
+  {
+    final EntityJsonReader reader = EntityJsonReader.reading(this, action, true);
+    new SajParser().parse(json, reader);
+    return reader.count();
+  }
+
+  /**
+   * Updates the properties of {@code data} with the members of a JSON object, as they are parsed. Properties of
+   * fields not present at {@code json} are left untouched.
+   *
+   * @throws InvalidSyntaxException if {@code json} is not valid JSON.
+   * @throws IllegalArgumentException if {@code json} is not a JSON object.
+   */
+  default void updatePropertiesWithJsonContents(final Entity data, final Reader json)
+      throws IOException, InvalidSyntaxException
+  {
+    new SajParser().parse(json, EntityJsonReader.updating(this, data));
+  }
+
   Key save(Entity data) throws IllegalEntityKind, NullPointerException;
 
   /**
@@ -167,6 +266,61 @@ public interface EntityModel extends java.io.Serializable {
 
   boolean exists(Key key) throws IllegalEntityKind, NullPointerException;
 
+  /**
+   * Finds all the entities identified by the keys, using batch calls instead of one call per key.
+   *
+   * @param keys Keys of the entities to find.
+   * @return the found entities mapped by its key. Keys of entities that doesn't exist are not mapped.
+   */
+  Map<Key, Entity> findAll(Iterable<Key> keys) throws IllegalEntityKind, NullPointerException;
+
+  /**
+   * Saves all the entities, using batch calls instead of one call per entity.
+   *
+   * @param data Entities to save.
+   * @return the keys of the saved entities, in the same order they were provided.
+   */
+  List<Key> saveAll(Iterable<Entity> data) throws IllegalEntityKind, NullPointerException;
+
+  /**
+   * Deletes all the entities identified by the keys, using batch calls instead of one call per key.
+   *
+   * @param keys Keys of the entities to delete.
+   */
+  void deleteAll(Iterable<Key> keys) throws IllegalEntityKind, NullPointerException;
+
+  /**
+   * Starts finding the entity identified by the key, without waiting for memcache nor the datastore.
+   *
+   * @param key Key of the entity to find.
+   * @return the entity, or {@code null} if it doesn't exist, once it is known.
+   */
+  Deferred<Entity> findAsync(Key key) throws IllegalEntityKind, NullPointerException;
+
+  /**
+   * Starts checking if the entity identified by the key exists, without waiting for memcache nor the datastore.
+   *
+   * @param key Key of the entity to check.
+   * @return if the entity exists, once it is known.
+   */
+  Deferred<Boolean> existsAsync(Key key) throws IllegalEntityKind, NullPointerException;
+
+  /**
+   * Starts saving the entity, without waiting for the datastore.
+   *
+   * @param data Entity to save.
+   * @return the key of the saved entity, once it is saved.
+   */
+  Deferred<Key> saveAsync(Entity data) throws IllegalEntityKind, NullPointerException;
+
+  /**
+   * Starts deleting the entity identified by the key, without waiting for the datastore.
+   *
+   * @param key Key of the entity to delete.
+   * @return completes once the entity is deleted.
+   */
+  Deferred<Void> deleteAsync(Key key) throws IllegalEntityKind, NullPointerException;
+
   default Query makeQuery()
   {
     return new Query(kind());
@@ -214,6 +368,17 @@ public interface EntityModel extends java.io.Serializable {
     }
 
     public abstract JsonNode makeJsonValue(Key key);
+
+    @Override
+    public final void writeJsonValue(final Entity data, final JsonWriter out) throws IOException
+    {
+      writeJsonValue(data.getKey(), out);
+    }
+
+    public void writeJsonValue(final Key key, final JsonWriter out) throws IOException
+    {
+      out.value(makeJsonValue(key));
+    }
   }
 
   public static abstract class Select implements java.io.Serializable {
@@ -222,18 +387,98 @@ public interface EntityModel extends java.io.Serializable {
 
     final Query query;
     private final FetchOptions fetchOptions;
+    private final ActiveEntity model;
+    private boolean byKeys;
+    private int cacheTtl;
 
     protected Select(final Query query, final FetchOptions fetchOptions)
+    {
+      this(query, fetchOptions, null);
+    }
+
+    Select(final Query query, final FetchOptions fetchOptions, final ActiveEntity model)
     {
       this.query = query;
       this.fetchOptions = fetchOptions;
+      this.model = model;
+    }
+
+    /**
+     * Caches the keys of the entities found by the query at memcache, so {@link #asList()}, {@link #asIterable()} and
+     * {@link #asIterator()} resolve repeated queries with one memcache call plus one batch get through the entities
+     * cache. Cached keys are discarded after {@code ttl} seconds, or when any entity of the kind is saved or deleted.
+     * <p>
+     * Non ancestor queries are eventually consistent, so keys cached right after a write may not reflect it until
+     * they expire.
+     *
+     * @param ttl max amount of seconds the keys are cached.
+     * @return this select.
+     */
+    public Select cached(final int ttl)
+    {
+      if (ttl <= 0) {
+        throw new IllegalArgumentException("ttl <= 0");
+      }
+      checkResolvableByKeys();
+      this.cacheTtl = ttl;
+      return this;
+    }
+
+    /**
+     * Makes {@link #asList()}, {@link #asIterable()} and {@link #asIterator()} run the query as keys only, and then
+     * resolve the entities through the entities cache: one memcache call for all the keys, one batch get at the
+     * datastore for the ones not cached, and one memcache call to cache the entities loaded from the datastore.
+     * <p>
+     * For kinds whose entities are usually cached, it reduces the datastore read operations and the bytes moved per
+     * query.
+     *
+     * @return this select.
+     */
+    public Select byKeys()
+    {
+      checkResolvableByKeys();
+      this.byKeys = true;
+      return this;
+    }
+
+    private void checkResolvableByKeys()
+    {
+      if (model == null) {
+        throw new IllegalStateException("only selects made by a model can be resolved by keys");
+      }
+      if (!query.getProjections().isEmpty()) {
+        throw new IllegalStateException("projection queries can't be resolved by keys");
+      }
+    }
+
+    private boolean resolvedByKeys()
+    {
+      return byKeys || cacheTtl > 0;
     }
 
     public List<Entity> asList()
     {
+      if (resolvedByKeys()) {
+        return listByKeys();
+      }
       return prepare().asList(this.fetchOptions);
     }
 
+    private List<Entity> listByKeys()
+    {
+      final List<Key> keys = cacheTtl > 0
+                             ? model.findKeys(this.query, this.fetchOptions, cacheTtl)
+                             : model.runKeysQuery(this.query, this.fetchOptions);
+      if (query.isKeysOnly()) {
+        final List<Entity> result = new ArrayList<>(keys.size());
+        for (final Key key : keys) {
+          result.add(new Entity(key));
+        }
+        return result;
+      }
+      return new ArrayList<>(model.findAll(keys).values());
+    }
+
     public QueryResultList<Entity> asQueryResultList()
     {
       return prepare().asQueryResultList(this.fetchOptions);
@@ -241,6 +486,9 @@ public interface EntityModel extends java.io.Serializable {
 
     public Iterable<Entity> asIterable()
     {
+      if (resolvedByKeys()) {
+        return listByKeys();
+      }
       return prepare().asIterable(this.fetchOptions);
     }
 
@@ -251,6 +499,9 @@ public interface EntityModel extends java.io.Serializable {
 
     public Iterator<Entity> asIterator()
     {
+      if (resolvedByKeys()) {
+        return listByKeys().iterator();
+      }
       return prepare().asIterator(this.fetchOptions);
     }
 
@@ -320,9 +571,9 @@ public interface EntityModel extends java.io.Serializable {
 
     private static final long serialVersionUID = 8141301362335037541L;
 
-    SorteableSelect(final Query query, final FetchOptions fetchOptions)
+    SorteableSelect(final Query query, final FetchOptions fetchOptions, final ActiveEntity model)
     {
-      super(query, fetchOptions);
+      super(query, fetchOptions, model);
     }
 
     public final Select sortedBy(final Query.SortPredicate sort)
@@ -377,9 +628,9 @@ public interface EntityModel extends java.io.Serializable {
 
     private static final long serialVersionUID = 5591903627552341816L;
 
-    SelectEntities(final Query query, final FetchOptions fetchOptions)
+    SelectEntities(final Query query, final FetchOptions fetchOptions, final ActiveEntity model)
     {
-      super(query, fetchOptions);
+      super(query, fetchOptions, model);
     }
 
     public final SorteableSelect where(final Query.Filter filter)
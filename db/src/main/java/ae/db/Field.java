@@ -30,6 +30,7 @@ import argo.jdom.JsonStringNode;
 import com.google.appengine.api.datastore.Entity;
 import com.google.appengine.api.datastore.PropertyContainer;
 import com.google.common.collect.ImmutableList;
+import java.io.IOException;
 
 public interface Field<T> extends Attribute {
 
@@ -111,6 +112,17 @@ public interface Field<T> extends Attribute {
 
   @Override
   T interpretJson(JsonNode json);
+
+  /**
+   * @param value JSON value of this field, not an object containing it.
+   * @return the value represented by the node.
+   */
+  T interpretJsonValue(JsonNode value);
+
+  default void readJsonValue(final PropertyContainer data, final JsonNode value)
+  {
+    write(data, interpretJsonValue(value));
+  }
 }
 
 abstract class FieldData<T> extends AttrData implements Field<T> {
@@ -154,12 +166,24 @@ abstract class FieldData<T> extends AttrData implements Field<T> {
     return jsonSerializer.toJson(value);
   }
 
+  @Override
+  public final void writeJsonValue(final Entity data, final JsonWriter out) throws IOException
+  {
+    jsonSerializer.writeJson(read(data), out);
+  }
+
   @Override
   public final T interpretJson(final JsonNode json)
   {
     return jsonSerializer.fromJson(json, jsonPath());
   }
 
+  @Override
+  public final T interpretJsonValue(final JsonNode value)
+  {
+    return jsonSerializer.fromJson(value);
+  }
+
   @Override
   public final void validate(final Entity data, final Validation validation)
   {
@@ -0,0 +1,255 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2018 ActiveEngine.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ae.db;
+
+import com.google.appengine.api.datastore.Entity;
+import com.google.appengine.api.datastore.Key;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+/**
+ * Writes the entities saved concurrently at one application instance with a single batch put, used by models
+ * declaring {@code @model(groupCommitMillis = n)} to reduce the datastore round trips of many small saves.
+ * <p>
+ * The first save that finds no open batch opens one and becomes its leader: it waits up to {@code window}
+ * milliseconds, or until the batch is full, while concurrent saves join the batch. Then the leader closes the batch,
+ * writes it and completes the saves that joined it. No thread other than the callers' is used.
+ * <p>
+ * Writes to an entity group are never batched together nor written concurrently, so they are applied in order: a save
+ * whose entity group is being written by a batch waits until that batch completes. Saves also wait while
+ * {@code maxPending} entities are already waiting or being written, failing with a {@link PersistenceException} if
+ * they can't join a batch within {@code maxWait} milliseconds.
+ * <p>
+ * As leaders block the caller for the window, asynchronous saves aren't grouped.
+ */
+public final class GroupCommit {
+
+  /**
+   * Default milliseconds a save waits to join a batch.
+   */
+  public static final long DEFAULT_MAX_WAIT = 10_000L;
+
+  private final long window;
+  private final int maxBatchSize;
+  private final int maxPending;
+  private final long maxWait;
+
+  private Batch open;
+  private int pending;
+  private final Map<Key, Batch> writingGroups = new HashMap<>();
+
+  /**
+   * @param window       milliseconds a batch waits for concurrent saves.
+   * @param maxBatchSize max amount of entities written by a batch.
+   * @param maxPending   max amount of entities waiting or being written.
+   */
+  public GroupCommit(final long window, final int maxBatchSize, final int maxPending)
+  {
+    this(window, maxBatchSize, maxPending, DEFAULT_MAX_WAIT);
+  }
+
+  /**
+   * @param window       milliseconds a batch waits for concurrent saves.
+   * @param maxBatchSize max amount of entities written by a batch.
+   * @param maxPending   max amount of entities waiting or being written.
+   * @param maxWait      milliseconds a save waits to join a batch.
+   */
+  public GroupCommit(final long window, final int maxBatchSize, final int maxPending, final long maxWait)
+  {
+    if (window <= 0) {
+      throw new IllegalArgumentException("window <= 0");
+    }
+    if (maxBatchSize <= 0) {
+      throw new IllegalArgumentException("maxBatchSize <= 0");
+    }
+    if (maxPending < maxBatchSize) {
+      throw new IllegalArgumentException("maxPending < maxBatchSize");
+    }
+    if (maxWait <= 0) {
+      throw new IllegalArgumentException("maxWait <= 0");
+    }
+    this.window = window;
+    this.maxBatchSize = maxBatchSize;
+    this.maxPending = maxPending;
+    this.maxWait = maxWait;
+  }
+
+  /**
+   * Saves an entity as part of a batch. Leaders return once their batch is written, other saves return as soon as they
+   * join a batch.
+   *
+   * @param data   entity to save.
+   * @param writer writes a batch, with one datastore put.
+   * @return the key of the saved entity, once its batch is written.
+   * @throws InterruptedException if interrupted while waiting to join a batch.
+   * @throws PersistenceException  if the save couldn't join a batch within {@code maxWait} milliseconds.
+   */
+  public Future<Key> save(final Entity data, final Writer writer) throws InterruptedException
+  {
+    final Key group = entityGroupOf(data.getKey());
+    final CompletableFuture<Key> saved = new CompletableFuture<>();
+    final Batch batch;
+    final boolean leader;
+    synchronized (this) {
+      final long deadline = System.currentTimeMillis() + maxWait;
+      while ((group != null && writingGroups.containsKey(group)) || pending >= maxPending) {
+        final long wait = deadline - System.currentTimeMillis();
+        if (wait <= 0) {
+          throw new PersistenceException("could not join a batch within " + maxWait + "ms, "
+                                         + pending + " entities are waiting or being written");
+        }
+        wait(wait);
+      }
+      leader = open == null;
+      if (leader) {
+        open = new Batch();
+      }
+      batch = open;
+      batch.add(data, saved, group);
+      pending++;
+      if (group != null) {
+        writingGroups.put(group, batch);
+      }
+      if (batch.size() >= maxBatchSize) {
+        open = null;
+        notifyAll(); // so its leader writes it now
+      }
+    }
+    if (leader) {
+      lead(batch, writer);
+    }
+    return saved;
+  }
+
+  private void lead(final Batch batch, final Writer writer)
+  {
+    boolean interrupted = false;
+    synchronized (this) {
+      final long deadline = System.currentTimeMillis() + window;
+      for (long wait = window; open == batch && wait > 0; wait = deadline - System.currentTimeMillis()) {
+        try {
+          wait(wait);
+        } catch (final InterruptedException e) {
+          interrupted = true; // joined saves still wait for this batch
+          break;
+        }
+      }
+      if (open == batch) {
+        open = null;
+      }
+    }
+    try {
+      batch.write(writer);
+    } finally {
+      synchronized (this) {
+        pending -= batch.size();
+        for (final Key group : batch.groups) {
+          writingGroups.remove(group, batch);
+        }
+        notifyAll();
+      }
+      if (interrupted) {
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+
+  /**
+   * @return the key of the root entity of the key's entity group, or {@code null} if it's a new root entity.
+   */
+  static Key entityGroupOf(final Key key)
+  {
+    Key root = key;
+    while (root.getParent() != null) {
+      root = root.getParent();
+    }
+    return root.isComplete() ? root : null;
+  }
+
+  /**
+   * @return amount of entities waiting or being written right now.
+   */
+  public synchronized int pendingCount()
+  {
+    return pending;
+  }
+
+  /**
+   * Writes a batch of entities with one datastore put.
+   */
+  @FunctionalInterface
+  public interface Writer {
+    Future<List<Key>> write(List<Entity> data);
+  }
+
+  private static final class Batch {
+
+    final List<Entity> entities = new ArrayList<>();
+    final List<CompletableFuture<Key>> saved = new ArrayList<>();
+    final List<Key> groups = new ArrayList<>();
+
+    void add(final Entity data, final CompletableFuture<Key> result, final Key group)
+    {
+      entities.add(data);
+      saved.add(result);
+      if (group != null) {
+        groups.add(group);
+      }
+    }
+
+    int size()
+    {
+      return entities.size();
+    }
+
+    void write(final Writer writer)
+    {
+      try {
+        final List<Key> keys = writer.write(entities).get();
+        for (int i = 0; i < saved.size(); i++) {
+          saved.get(i).complete(keys.get(i));
+        }
+      } catch (final ExecutionException e) {
+        fail(e.getCause());
+      } catch (final InterruptedException e) {
+        Thread.currentThread().interrupt();
+        fail(e);
+      } catch (final RuntimeException e) {
+        fail(e);
+      }
+    }
+
+    private void fail(final Throwable cause)
+    {
+      for (final CompletableFuture<Key> result : saved) {
+        result.completeExceptionally(cause);
+      }
+    }
+  }
+}
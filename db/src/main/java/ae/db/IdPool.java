@@ -0,0 +1,207 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2018 ActiveEngine.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ae.db;
+
+import com.google.appengine.api.NamespaceManager;
+import com.google.appengine.api.datastore.Key;
+import com.google.appengine.api.datastore.KeyRange;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Hands out datastore IDs reserved in blocks, so entities of a kind can get a complete key without a put.
+ * <p>
+ * IDs are reserved by {@code allocateIds} calls, one block for root entities of each namespace and one per parent for
+ * child entities (parent keys include their namespace). Root blocks are reserved at the namespace current when they
+ * run out, which is the namespace their IDs are taken for.
+ * Taking an ID is a single atomic increment; when only a quarter of the current block remains, the next block is
+ * requested asynchronously, so it's usually ready when the current one runs out. Only the first ID of a kind (or
+ * parent), and an ID taken while the next block is still on its way, wait for the datastore.
+ * <p>
+ * Reserved IDs not handed out before the instance stops are just never used.
+ */
+public final class IdPool {
+
+  /** Amount of IDs reserved for root entities at once. */
+  public static final int ROOT_BLOCK_SIZE = 1000;
+
+  /** Amount of IDs reserved for the children of a parent at once. */
+  public static final int CHILD_BLOCK_SIZE = 20;
+
+  /** Max amount of parents whose IDs are kept, the IDs of the least recently used parent are discarded once reached. */
+  static final int MAX_PARENTS = 10000;
+
+  /**
+   * Max amount of namespaces whose root IDs are kept, the IDs of the least recently used namespace are discarded once
+   * reached.
+   */
+  static final int MAX_NAMESPACES = 1000;
+
+  private final long blockSize;
+  private final long refillAt;
+  private final Allocator allocator;
+
+  private final Map<String, Ids> roots = leastRecentlyUsed(MAX_NAMESPACES);
+  private final Map<Key, Ids> children = leastRecentlyUsed(MAX_PARENTS);
+
+  /**
+   * @param blockSize amount of IDs reserved by each {@code allocateIds} call.
+   * @param allocator reserves blocks of IDs.
+   */
+  public IdPool(final int blockSize, final Allocator allocator)
+  {
+    if (blockSize <= 0) {
+      throw new IllegalArgumentException("blockSize <= 0");
+    }
+    if (allocator == null) {
+      throw new NullPointerException("allocator");
+    }
+    this.blockSize = blockSize;
+    this.refillAt = blockSize / 4;
+    this.allocator = allocator;
+  }
+
+  /**
+   * @param parent key of the parent of the entity, or {@code null} for root entities at the current namespace.
+   * @return an ID not used by any other entity of the kind with the same parent.
+   * @throws PersistenceException if no block of IDs could be reserved.
+   */
+  public long next(final Key parent)
+  {
+    return idsOf(parent).next();
+  }
+
+  private Ids idsOf(final Key parent)
+  {
+    if (parent == null) {
+      return rootsOf(NamespaceManager.get());
+    }
+    synchronized (children) {
+      return children.computeIfAbsent(parent, Ids::new);
+    }
+  }
+
+  private Ids rootsOf(final String namespace)
+  {
+    synchronized (roots) {
+      return roots.computeIfAbsent(namespace == null ? "" : namespace, k -> new Ids(null));
+    }
+  }
+
+  /**
+   * @return a map discarding its least recently used entry once it has more than {@code max} entries, to be used
+   * while synchronized on it.
+   */
+  private static <K> Map<K, Ids> leastRecentlyUsed(final int max)
+  {
+    return new LinkedHashMap<K, Ids>(16, 0.75f, true)
+    {
+      private static final long serialVersionUID = 1L;
+
+      @Override protected boolean removeEldestEntry(final Map.Entry<K, Ids> eldest)
+      {
+        return size() > max;
+      }
+    };
+  }
+
+  /**
+   * Reserves blocks of IDs, usually with {@code AsyncDatastoreService.allocateIds}.
+   */
+  @FunctionalInterface
+  public interface Allocator {
+    /**
+     * @param parent key of the parent of the entities, or {@code null} for root entities at the current namespace.
+     * @param size   amount of IDs to reserve.
+     * @return the reserved IDs.
+     */
+    Future<KeyRange> allocate(Key parent, long size);
+  }
+
+  private final class Ids {
+
+    private final Key parent;
+    private final AtomicReference<Block> current = new AtomicReference<>(new Block(1L, 0L));
+    private final AtomicReference<Future<KeyRange>> following = new AtomicReference<>();
+
+    Ids(final Key parent)
+    {
+      this.parent = parent;
+    }
+
+    long next()
+    {
+      while (true) {
+        final Block block = current.get();
+        final long id = block.next.getAndIncrement();
+        if (id <= block.last) {
+          if (block.last - id == refillAt) {
+            following.set(allocator.allocate(parent, blockSize)); // only one taker gets this ID
+          }
+          return id;
+        }
+        final Block reserved = reserve();
+        // if other taker replaced the exhausted block first, the IDs it reserved are discarded
+        current.compareAndSet(block, reserved);
+      }
+    }
+
+    private Block reserve()
+    {
+      Future<KeyRange> ids = following.getAndSet(null);
+      if (ids == null) {
+        ids = allocator.allocate(parent, blockSize);
+      }
+      try {
+        return new Block(ids.get());
+      } catch (final InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new PersistenceException("could not allocate ids", e);
+      } catch (final ExecutionException e) {
+        throw new PersistenceException("could not allocate ids", e.getCause());
+      }
+    }
+  }
+
+  private static final class Block {
+
+    final AtomicLong next;
+    final long last;
+
+    Block(final KeyRange range)
+    {
+      this(range.getStart().getId(), range.getEnd().getId());
+    }
+
+    Block(final long first, final long last)
+    {
+      this.next = new AtomicLong(first);
+      this.last = last;
+    }
+  }
+}
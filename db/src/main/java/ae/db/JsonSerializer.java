@@ -25,6 +25,7 @@ package ae.db;
 
 import argo.jdom.JsonNodeFactories;
 import argo.jdom.JsonNode;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -32,6 +33,14 @@ public interface JsonSerializer<T> extends java.io.Serializable {
 
   JsonNode toJson(T value);
 
+  /**
+   * Writes {@code value} straight to {@code out}; by default it is written as the node built by {@link #toJson}.
+   */
+  default void writeJson(final T value, final JsonWriter out) throws IOException
+  {
+    out.value(toJson(value));
+  }
+
   T fromJson(JsonNode json, String jsonPath);
 
   T fromJson(JsonNode json);
@@ -94,6 +103,20 @@ final class JsonArraySerializer<E> implements JsonSerializer<List<E>> {
     return JsonNodeFactories.array(elements);
   }
 
+  @Override
+  public void writeJson(final List<E> value, final JsonWriter out) throws IOException
+  {
+    if (value == null) {
+      out.nullValue();
+      return;
+    }
+    out.beginArray();
+    for (final E element : value) {
+      elementJsonSerializer.writeJson(element, out);
+    }
+    out.endArray();
+  }
+
   @Override
   public List<E> fromJson(final JsonNode json, final String jsonPath)
   {
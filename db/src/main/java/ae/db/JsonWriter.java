@@ -0,0 +1,505 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2018 ActiveEngine.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ae.db;
+
+import argo.format.CompactJsonFormatter;
+import argo.format.JsonFormatter;
+import argo.jdom.JsonNode;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Writes compact JSON straight to its destination, without building an intermediate tree of {@link JsonNode}s.
+ * <p>
+ * Separators are emitted automatically: a value written inside an array or after a {@link #name(Name) field name}
+ * is preceded by a comma when needed. Field names known before hand should be encoded once as {@link Name}s, so
+ * writing them is just a copy.
+ */
+public abstract class JsonWriter {
+
+  private static final JsonFormatter COMPACT_JSON = new CompactJsonFormatter();
+
+  private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+  private boolean[] first = new boolean[8];
+  private int depth;
+  private boolean afterName;
+
+  JsonWriter()
+  {
+    // only the nested implementations can extend this class
+  }
+
+  /**
+   * @param out destination of the JSON text.
+   * @return a writer appending to {@code out}.
+   */
+  public static JsonWriter to(final Appendable out)
+  {
+    if (out == null) {
+      throw new NullPointerException("out");
+    }
+    return new ToAppendable(out);
+  }
+
+  /**
+   * @param out destination of the UTF-8 encoded JSON text.
+   * @return a buffered writer, {@link #flush()} must be called once everything is written.
+   */
+  public static JsonWriter to(final OutputStream out)
+  {
+    if (out == null) {
+      throw new NullPointerException("out");
+    }
+    return new ToOutputStream(out);
+  }
+
+  /**
+   * Field name encoded as JSON, including quotes and the colon separating it from its value.
+   */
+  public static final class Name implements java.io.Serializable {
+
+    private static final long serialVersionUID = 2412093861306722617L;
+
+    final String text;
+    final byte[] utf8;
+
+    private Name(final String text)
+    {
+      this.text = text;
+      this.utf8 = text.getBytes(StandardCharsets.UTF_8);
+    }
+
+    public static Name of(final String name)
+    {
+      final StringBuilder encoded = new StringBuilder(name.length() + 3);
+      try {
+        quote(name, encoded);
+      } catch (final IOException e) {
+        throw new AssertionError("StringBuilder does not throw IOException", e);
+      }
+      return new Name(encoded.append(':').toString());
+    }
+
+    @Override
+    public String toString()
+    {
+      return text;
+    }
+  }
+
+  public final JsonWriter beginObject() throws IOException
+  {
+    beforeValue();
+    write('{');
+    push();
+    return this;
+  }
+
+  public final JsonWriter endObject() throws IOException
+  {
+    pop();
+    write('}');
+    return this;
+  }
+
+  public final JsonWriter beginArray() throws IOException
+  {
+    beforeValue();
+    write('[');
+    push();
+    return this;
+  }
+
+  public final JsonWriter endArray() throws IOException
+  {
+    pop();
+    write(']');
+    return this;
+  }
+
+  public final JsonWriter name(final Name name) throws IOException
+  {
+    beforeName();
+    write(name);
+    afterName = true;
+    return this;
+  }
+
+  public final JsonWriter name(final String name) throws IOException
+  {
+    beforeName();
+    quote(name, text());
+    write(':');
+    afterName = true;
+    return this;
+  }
+
+  public final JsonWriter string(final String value) throws IOException
+  {
+    if (value == null) {
+      return nullValue();
+    }
+    beforeValue();
+    quote(value, text());
+    return this;
+  }
+
+  public final JsonWriter number(final long value) throws IOException
+  {
+    beforeValue();
+    write(Long.toString(value));
+    return this;
+  }
+
+  /**
+   * @param value textual representation of a JSON number, written as is.
+   */
+  public final JsonWriter number(final String value) throws IOException
+  {
+    if (value == null) {
+      return nullValue();
+    }
+    beforeValue();
+    write(value);
+    return this;
+  }
+
+  public final JsonWriter bool(final boolean value) throws IOException
+  {
+    beforeValue();
+    write(value ? "true" : "false");
+    return this;
+  }
+
+  public final JsonWriter nullValue() throws IOException
+  {
+    beforeValue();
+    write("null");
+    return this;
+  }
+
+  /**
+   * Writes an already built JSON tree, for values that have no direct serialization.
+   */
+  public final JsonWriter value(final JsonNode value) throws IOException
+  {
+    beforeValue();
+    write(COMPACT_JSON.format(value));
+    return this;
+  }
+
+  /**
+   * Ends the current top level value with a line break, as used by newline delimited JSON.
+   */
+  public final JsonWriter newLine() throws IOException
+  {
+    if (depth != 0) {
+      throw new IllegalStateException("a line break can only follow a top level value");
+    }
+    write('\n');
+    return this;
+  }
+
+  /**
+   * Writes any buffered content and flushes the destination, when it is flushable.
+   */
+  public abstract void flush() throws IOException;
+
+  /**
+   * @return destination of escaped string contents.
+   */
+  abstract Appendable text();
+
+  abstract void write(char c) throws IOException;
+
+  abstract void write(String s) throws IOException;
+
+  abstract void write(Name name) throws IOException;
+
+  private void beforeName() throws IOException
+  {
+    if (depth == 0 || afterName) {
+      throw new IllegalStateException("a field name can only be written inside an object");
+    }
+    separate();
+  }
+
+  private void beforeValue() throws IOException
+  {
+    if (afterName) {
+      afterName = false;
+    } else if (depth != 0) {
+      separate();
+    }
+  }
+
+  private void separate() throws IOException
+  {
+    if (first[depth]) {
+      first[depth] = false;
+    } else {
+      write(',');
+    }
+  }
+
+  private void push()
+  {
+    if (++depth == first.length) {
+      first = Arrays.copyOf(first, depth * 2);
+    }
+    first[depth] = true;
+  }
+
+  private void pop()
+  {
+    if (depth == 0 || afterName) {
+      throw new IllegalStateException("nothing to close");
+    }
+    depth--;
+  }
+
+  private static void quote(final String value, final Appendable out) throws IOException
+  {
+    out.append('"');
+    int start = 0;
+    final int length = value.length();
+    for (int i = 0; i < length; i++) {
+      final char c = value.charAt(i);
+      if (c >= 0x20 && c != '"' && c != '\\') {
+        continue;
+      }
+      out.append(value, start, i);
+      start = i + 1;
+      switch (c) {
+        case '"':
+          out.append("\\\"");
+          break;
+        case '\\':
+          out.append("\\\\");
+          break;
+        case '\n':
+          out.append("\\n");
+          break;
+        case '\r':
+          out.append("\\r");
+          break;
+        case '\t':
+          out.append("\\t");
+          break;
+        case '\b':
+          out.append("\\b");
+          break;
+        case '\f':
+          out.append("\\f");
+          break;
+        default:
+          out.append("\\u00").append(HEX_DIGITS[c >> 4]).append(HEX_DIGITS[c & 0xF]);
+      }
+    }
+    out.append(value, start, length).append('"');
+  }
+
+  static final class ToAppendable extends JsonWriter {
+
+    private final Appendable out;
+
+    ToAppendable(final Appendable out)
+    {
+      this.out = out;
+    }
+
+    @Override
+    Appendable text()
+    {
+      return out;
+    }
+
+    @Override
+    void write(final char c) throws IOException
+    {
+      out.append(c);
+    }
+
+    @Override
+    void write(final String s) throws IOException
+    {
+      out.append(s);
+    }
+
+    @Override
+    void write(final Name name) throws IOException
+    {
+      out.append(name.text);
+    }
+
+    @Override
+    public void flush() throws IOException
+    {
+      if (out instanceof java.io.Flushable) {
+        ((java.io.Flushable) out).flush();
+      }
+    }
+  }
+
+  static final class ToOutputStream extends JsonWriter {
+
+    private static final int BUFFER_SIZE = 8192;
+
+    private final OutputStream out;
+    private final byte[] buffer = new byte[BUFFER_SIZE];
+    private int count;
+
+    /**
+     * Encodes characters into the buffer as UTF-8.
+     */
+    private final Appendable chars = new Appendable() {
+      private char highSurrogate;
+
+      @Override
+      public Appendable append(final CharSequence csq) throws IOException
+      {
+        return append(csq, 0, csq.length());
+      }
+
+      @Override
+      public Appendable append(final CharSequence csq, final int start, final int end) throws IOException
+      {
+        for (int i = start; i < end; i++) {
+          append(csq.charAt(i));
+        }
+        return this;
+      }
+
+      @Override
+      public Appendable append(final char c) throws IOException
+      {
+        if (highSurrogate != 0) {
+          final char high = highSurrogate;
+          highSurrogate = 0;
+          if (Character.isLowSurrogate(c)) {
+            final int codePoint = Character.toCodePoint(high, c);
+            ensure(4);
+            buffer[count++] = (byte) (0xF0 | (codePoint >> 18));
+            buffer[count++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+            buffer[count++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+            buffer[count++] = (byte) (0x80 | (codePoint & 0x3F));
+            return this;
+          }
+          unpaired();
+        }
+        if (c < 0x80) {
+          ensure(1);
+          buffer[count++] = (byte) c;
+        } else if (c < 0x800) {
+          ensure(2);
+          buffer[count++] = (byte) (0xC0 | (c >> 6));
+          buffer[count++] = (byte) (0x80 | (c & 0x3F));
+        } else if (Character.isHighSurrogate(c)) {
+          highSurrogate = c;
+        } else if (Character.isLowSurrogate(c)) {
+          unpaired();
+        } else {
+          ensure(3);
+          buffer[count++] = (byte) (0xE0 | (c >> 12));
+          buffer[count++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+          buffer[count++] = (byte) (0x80 | (c & 0x3F));
+        }
+        return this;
+      }
+
+      /**
+       * Surrogates not forming a pair can't be encoded, they are replaced by {@code '?'} as
+       * {@link String#getBytes(java.nio.charset.Charset)} does.
+       */
+      private void unpaired() throws IOException
+      {
+        ensure(1);
+        buffer[count++] = (byte) '?';
+      }
+    };
+
+    ToOutputStream(final OutputStream out)
+    {
+      this.out = out;
+    }
+
+    @Override
+    Appendable text()
+    {
+      return chars;
+    }
+
+    @Override
+    void write(final char c) throws IOException
+    {
+      chars.append(c);
+    }
+
+    @Override
+    void write(final String s) throws IOException
+    {
+      chars.append(s);
+    }
+
+    @Override
+    void write(final Name name) throws IOException
+    {
+      final byte[] bytes = name.utf8;
+      if (bytes.length > BUFFER_SIZE - count) {
+        drain();
+        if (bytes.length > BUFFER_SIZE) {
+          out.write(bytes);
+          return;
+        }
+      }
+      System.arraycopy(bytes, 0, buffer, count, bytes.length);
+      count += bytes.length;
+    }
+
+    @Override
+    public void flush() throws IOException
+    {
+      drain();
+      out.flush();
+    }
+
+    private void ensure(final int space) throws IOException
+    {
+      if (space > BUFFER_SIZE - count) {
+        drain();
+      }
+    }
+
+    private void drain() throws IOException
+    {
+      if (count > 0) {
+        out.write(buffer, 0, count);
+        count = 0;
+      }
+    }
+  }
+}
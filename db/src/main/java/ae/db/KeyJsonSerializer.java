@@ -27,6 +27,7 @@ import argo.jdom.JsonNode;
 import argo.jdom.JsonNodeFactories;
 import com.google.appengine.api.datastore.Key;
 import com.google.appengine.api.datastore.KeyFactory;
+import java.io.IOException;
 
 enum KeyJsonSerializer implements JsonSerializer<Key> {
   INSTANCE;
@@ -42,6 +43,16 @@ enum KeyJsonSerializer implements JsonSerializer<Key> {
     return JsonNodeFactories.string(KeyFactory.keyToString(value));
   }
 
+  @Override
+  public void writeJson(final Key value, final JsonWriter out) throws IOException
+  {
+    if (value == null) {
+      out.nullValue();
+    } else {
+      out.string(KeyFactory.keyToString(value));
+    }
+  }
+
   @Override
   public Key fromJson(final JsonNode json, final String jsonPath)
   {
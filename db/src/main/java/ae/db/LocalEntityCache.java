@@ -0,0 +1,464 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2018 ActiveEngine.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ae.db;
+
+import com.google.appengine.api.datastore.Entity;
+import com.google.appengine.api.datastore.Key;
+import com.google.appengine.api.memcache.AsyncMemcacheService;
+import com.google.appengine.api.memcache.MemcacheService;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * In-process cache of entities, used in front of memcache by models declaring {@code @model(localCacheSize = n)}.
+ * <p>
+ * The cache is bounded: new entities enter a small LRU <em>window</em>, and when the window overflows its eldest
+ * entity is admitted at the <em>main</em> LRU segment only if it was accessed more frequently than the entity it
+ * would evict (W-TinyLFU admission, using a count-min sketch to estimate frequencies). Every entry expires after a
+ * fixed time to live.
+ * <p>
+ * As each application instance has its own local cache, writes are signaled to other instances by a per kind
+ * generation stamp kept at memcache. Every write increments the stamp, and the stamp is re-read from memcache at most
+ * once per {@code generationCheckInterval} milliseconds, so stale entries at other instances stop being served within
+ * that window. Stamps start at the current time, and an instance finding its stamp missing drops every cached entry,
+ * so an evicted stamp never makes stale entries look valid again. Entries are mapped by {@link Key}, which includes
+ * the namespace, and stamps are kept per namespace.
+ * <p>
+ * Entities are copied when cached and when returned, so callers can't change the cached state.
+ */
+public final class LocalEntityCache {
+
+  private static final int WINDOW_PERCENTAGE = 1;
+
+  private static final long DEFAULT_GENERATION_CHECK_INTERVAL = 1000L;
+
+  private final String kind;
+  private final int windowCapacity;
+  private final int mainCapacity;
+  private final long timeToLive;
+  private final long generationCheckInterval;
+  private final FrequencySketch sketch;
+
+  private final LinkedHashMap<Key, Entry> window = new LinkedHashMap<>(16, 0.75f, true);
+  private final LinkedHashMap<Key, Entry> main = new LinkedHashMap<>(16, 0.75f, true);
+  private final Map<String, Generation> generations = new HashMap<>();
+
+  private long hits;
+  private long misses;
+  private long evictions;
+
+  /**
+   * @param kind       kind of the cached entities.
+   * @param capacity   max amount of entities to keep at the cache.
+   * @param timeToLive max amount of milliseconds an entity is kept at the cache.
+   */
+  public LocalEntityCache(final String kind, final int capacity, final long timeToLive)
+  {
+    this(kind, capacity, timeToLive, DEFAULT_GENERATION_CHECK_INTERVAL);
+  }
+
+  /**
+   * @param kind                    kind of the cached entities.
+   * @param capacity                max amount of entities to keep at the cache.
+   * @param timeToLive              max amount of milliseconds an entity is kept at the cache.
+   * @param generationCheckInterval max amount of milliseconds that the kind generation stamp is used without
+   *                                re-reading it from memcache.
+   */
+  public LocalEntityCache(final String kind,
+                          final int capacity,
+                          final long timeToLive,
+                          final long generationCheckInterval)
+  {
+    if (kind == null) {
+      throw new NullPointerException("kind");
+    }
+    if (capacity < 2) {
+      throw new IllegalArgumentException("capacity < 2");
+    }
+    if (timeToLive <= 0) {
+      throw new IllegalArgumentException("timeToLive <= 0");
+    }
+    if (generationCheckInterval < 0) {
+      throw new IllegalArgumentException("generationCheckInterval < 0");
+    }
+    this.kind = kind;
+    this.windowCapacity = Math.max(1, capacity * WINDOW_PERCENTAGE / 100);
+    this.mainCapacity = capacity - this.windowCapacity;
+    this.timeToLive = timeToLive;
+    this.generationCheckInterval = generationCheckInterval;
+    this.sketch = new FrequencySketch(capacity);
+  }
+
+  /**
+   * Gets the current generation of the entities kind at the namespace of the key.
+   * <p>
+   * It must be read <em>before</em> loading an entity to cache, so writes done while the entity is loaded make the
+   * cached entry stale.
+   *
+   * @param memcache memcache service where the generation stamp is kept.
+   * @param key      key of the entity to get or to cache.
+   * @return the current generation.
+   */
+  public long generation(final MemcacheService memcache, final Key key)
+  {
+    final String namespace = key.getNamespace();
+    final long now = System.currentTimeMillis();
+    final Long checked = checkedGeneration(namespace, now);
+    if (checked != null) {
+      return checked;
+    }
+    final String stampKey = generationStampKey(namespace);
+    final Long stamp = (Long) memcache.get(stampKey);
+    if (stamp != null) {
+      return checkGeneration(namespace, stamp, now);
+    }
+    memcache.put(stampKey, now, null, MemcacheService.SetPolicy.ADD_ONLY_IF_NOT_PRESENT);
+    return resetGeneration(namespace, (Long) memcache.get(stampKey), now);
+  }
+
+  /**
+   * Gets the current generation as {@link #generation(MemcacheService, Key)} does, without waiting for memcache.
+   *
+   * @param memcache memcache service where the generation stamp is kept.
+   * @param key      key of the entity to get or to cache.
+   * @return the current generation, once it is known.
+   */
+  public Deferred<Long> generationAsync(final AsyncMemcacheService memcache, final Key key)
+  {
+    final String namespace = key.getNamespace();
+    final long now = System.currentTimeMillis();
+    final Long checked = checkedGeneration(namespace, now);
+    if (checked != null) {
+      return Deferred.value(checked);
+    }
+    final String stampKey = generationStampKey(namespace);
+    return Deferred.of(memcache.get(stampKey)).flatMap(stamp -> {
+      if (stamp != null) {
+        return Deferred.value(checkGeneration(namespace, (Long) stamp, now));
+      }
+      return Deferred.of(memcache.put(stampKey, now, null, MemcacheService.SetPolicy.ADD_ONLY_IF_NOT_PRESENT))
+                     .flatMap(added -> memcache.get(stampKey))
+                     .map(current -> resetGeneration(namespace, (Long) current, now));
+    });
+  }
+
+  /**
+   * @return the generation of the namespace, if it was checked less than {@code generationCheckInterval} ago.
+   */
+  private synchronized Long checkedGeneration(final String namespace, final long now)
+  {
+    final Generation generation = generations.get(namespace);
+    return generation != null && now - generation.checkedAt < generationCheckInterval ? generation.value : null;
+  }
+
+  private synchronized long checkGeneration(final String namespace, final long stamp, final long checkedAt)
+  {
+    generations.put(namespace, new Generation(stamp, checkedAt));
+    return stamp;
+  }
+
+  /**
+   * The stamp was never set or it was evicted, entries cached with a previous stamp could match a new one, so all of
+   * them are dropped.
+   */
+  private synchronized long resetGeneration(final String namespace, final Long stamp, final long checkedAt)
+  {
+    window.clear();
+    main.clear();
+    return checkGeneration(namespace, stamp == null ? checkedAt : stamp, checkedAt);
+  }
+
+  /**
+   * @param key        key of the cached entity.
+   * @param generation current generation of the entities kind.
+   * @return a copy of the cached entity, or {@code null} if it isn't cached, it expired or it is stale.
+   */
+  public synchronized Entity get(final Key key, final long generation)
+  {
+    final Entry entry = lookup(key, generation);
+    return entry == null ? null : entry.data.clone();
+  }
+
+  /**
+   * @param key        key of the cached entity.
+   * @param generation current generation of the entities kind.
+   * @return {@code true} if the entity is cached and it is not expired nor stale.
+   */
+  public synchronized boolean contains(final Key key, final long generation)
+  {
+    return lookup(key, generation) != null;
+  }
+
+  private Entry lookup(final Key key, final long generation)
+  {
+    sketch.increment(key);
+    Entry entry = window.get(key);
+    if (entry == null) {
+      entry = main.get(key);
+    }
+    if (entry == null) {
+      misses++;
+      return null;
+    }
+    if (entry.generation != generation || entry.expiresAt <= System.currentTimeMillis()) {
+      window.remove(key);
+      main.remove(key);
+      misses++;
+      return null;
+    }
+    hits++;
+    return entry;
+  }
+
+  /**
+   * Caches a copy of the entity.
+   *
+   * @param key        key of the entity to cache.
+   * @param data       entity to cache.
+   * @param generation generation of the entities kind read before loading {@code data}.
+   */
+  public synchronized void put(final Key key, final Entity data, final long generation)
+  {
+    final Entry entry = new Entry(data.clone(), generation, System.currentTimeMillis() + timeToLive);
+    if (main.containsKey(key)) {
+      main.put(key, entry);
+      return;
+    }
+    window.put(key, entry);
+    if (window.size() > windowCapacity) {
+      admitWindowEldest();
+    }
+  }
+
+  private void admitWindowEldest()
+  {
+    final Iterator<Map.Entry<Key, Entry>> eldestInWindow = window.entrySet().iterator();
+    final Map.Entry<Key, Entry> candidate = eldestInWindow.next();
+    eldestInWindow.remove();
+    if (main.size() < mainCapacity) {
+      main.put(candidate.getKey(), candidate.getValue());
+      return;
+    }
+    final Iterator<Map.Entry<Key, Entry>> eldestInMain = main.entrySet().iterator();
+    final Map.Entry<Key, Entry> victim = eldestInMain.next();
+    if (sketch.frequency(candidate.getKey()) > sketch.frequency(victim.getKey())) {
+      eldestInMain.remove();
+      main.put(candidate.getKey(), candidate.getValue());
+    }
+    evictions++;
+  }
+
+  /**
+   * Removes the entity from this cache and increments the generation stamp of its kind, so other instances stop
+   * using their cached copies.
+   *
+   * @param memcache memcache service where the generation stamp is kept.
+   * @param key      key of the written entity.
+   */
+  public void invalidate(final MemcacheService memcache, final Key key)
+  {
+    final String namespace = key.getNamespace();
+    synchronized (this) {
+      window.remove(key);
+      main.remove(key);
+    }
+    final Long value = memcache.increment(generationStampKey(namespace), 1L, System.currentTimeMillis());
+    synchronized (this) {
+      if (value == null) {
+        generations.remove(namespace);
+      } else {
+        generations.put(namespace, new Generation(value, System.currentTimeMillis()));
+      }
+    }
+  }
+
+  /**
+   * Removes the entities from this cache and increments the generation stamps of its kind, so other instances stop
+   * using their cached copies.
+   *
+   * @param memcache memcache service where the generation stamps are kept.
+   * @param keys     keys of the written entities.
+   */
+  public void invalidate(final MemcacheService memcache, final Iterable<Key> keys)
+  {
+    final Map<String, Key> keyByNamespace = new HashMap<>();
+    for (final Key key : keys) {
+      keyByNamespace.put(key.getNamespace(), key);
+      synchronized (this) {
+        window.remove(key);
+        main.remove(key);
+      }
+    }
+    for (final Key key : keyByNamespace.values()) {
+      invalidate(memcache, key);
+    }
+  }
+
+  String generationStampKey(final String namespace)
+  {
+    return "ae.generation:" + kind + ':' + namespace;
+  }
+
+  public synchronized int size()
+  {
+    return window.size() + main.size();
+  }
+
+  public synchronized Stats stats()
+  {
+    return new Stats(hits, misses, evictions, size());
+  }
+
+  @Override
+  public String toString()
+  {
+    return "LocalEntityCache{kind=" + kind + ", " + stats() + '}';
+  }
+
+  /**
+   * Snapshot of the local cache counters.
+   */
+  public static final class Stats implements java.io.Serializable {
+
+    private static final long serialVersionUID = 4383920578452108826L;
+
+    public final long hits;
+    public final long misses;
+    public final long evictions;
+    public final int size;
+
+    Stats(final long hits, final long misses, final long evictions, final int size)
+    {
+      this.hits = hits;
+      this.misses = misses;
+      this.evictions = evictions;
+      this.size = size;
+    }
+
+    @Override
+    public String toString()
+    {
+      return "Stats{hits=" + hits + ", misses=" + misses + ", evictions=" + evictions + ", size=" + size + '}';
+    }
+  }
+
+  private static final class Entry {
+
+    final Entity data;
+    final long generation;
+    final long expiresAt;
+
+    Entry(final Entity data, final long generation, final long expiresAt)
+    {
+      this.data = data;
+      this.generation = generation;
+      this.expiresAt = expiresAt;
+    }
+  }
+
+  private static final class Generation {
+
+    final long value;
+    final long checkedAt;
+
+    Generation(final long value, final long checkedAt)
+    {
+      this.value = value;
+      this.checkedAt = checkedAt;
+    }
+  }
+
+  /**
+   * Count-min sketch with 4 rows of saturating counters, periodically halved so old accesses are forgotten.
+   */
+  private static final class FrequencySketch {
+
+    private static final int MAX_FREQUENCY = 15;
+    private static final int[] SEEDS = {0x97cb3127, 0x5a2f4b9d, 0x2c1b3c6d, 0x7fb5e3b1};
+
+    private final byte[][] counters;
+    private final int mask;
+    private final int sampleSize;
+    private int additions;
+
+    FrequencySketch(final int capacity)
+    {
+      final int width = Integer.highestOneBit(Math.max(16, capacity) - 1) << 1;
+      this.counters = new byte[SEEDS.length][width];
+      this.mask = width - 1;
+      this.sampleSize = 10 * capacity;
+    }
+
+    void increment(final Object element)
+    {
+      final int hash = spread(element.hashCode());
+      boolean added = false;
+      for (int row = 0; row < SEEDS.length; row++) {
+        final int index = indexOf(hash, row);
+        if (counters[row][index] < MAX_FREQUENCY) {
+          counters[row][index]++;
+          added = true;
+        }
+      }
+      if (added && ++additions >= sampleSize) {
+        reset();
+      }
+    }
+
+    int frequency(final Object element)
+    {
+      final int hash = spread(element.hashCode());
+      int frequency = MAX_FREQUENCY;
+      for (int row = 0; row < SEEDS.length; row++) {
+        frequency = Math.min(frequency, counters[row][indexOf(hash, row)]);
+      }
+      return frequency;
+    }
+
+    private int indexOf(final int hash, final int row)
+    {
+      int h = (hash ^ SEEDS[row]) * 0x9e3779b9;
+      h ^= h >>> 16;
+      return h & mask;
+    }
+
+    private void reset()
+    {
+      for (final byte[] row : counters) {
+        for (int i = 0; i < row.length; i++) {
+          row[i] >>>= 1;
+        }
+      }
+      additions /= 2;
+    }
+
+    private static int spread(final int hashCode)
+    {
+      final int h = hashCode * 0x85ebca6b;
+      return h ^ (h >>> 15);
+    }
+  }
+}
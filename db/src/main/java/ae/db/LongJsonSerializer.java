@@ -25,6 +25,7 @@ package ae.db;
 
 import argo.jdom.JsonNode;
 import argo.jdom.JsonNodeFactories;
+import java.io.IOException;
 
 enum LongJsonSerializer implements JsonSerializer<Long> {
   INSTANCE;
@@ -40,6 +41,16 @@ enum LongJsonSerializer implements JsonSerializer<Long> {
     return JsonNodeFactories.number(value.toString());
   }
 
+  @Override
+  public void writeJson(final Long value, final JsonWriter out) throws IOException
+  {
+    if (value == null) {
+      out.nullValue();
+    } else {
+      out.number(value);
+    }
+  }
+
   @Override
   public Long fromJson(final JsonNode json, final String jsonPath)
   {
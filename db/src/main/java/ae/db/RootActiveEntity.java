@@ -44,7 +44,7 @@ public abstract class RootActiveEntity extends ActiveEntity {
     if (fetchOptions == null) {
       throw new NullPointerException("fetchOptions");
     }
-    return new SelectEntities(makeQuery(), fetchOptions);
+    return new SelectEntities(makeQuery(), fetchOptions, this);
   }
 
   public final SelectEntities selectKeys()
@@ -57,7 +57,7 @@ public abstract class RootActiveEntity extends ActiveEntity {
     if (fetchOptions == null) {
       throw new NullPointerException("fetchOptions");
     }
-    return new SelectEntities(makeQuery().setKeysOnly(), fetchOptions);
+    return new SelectEntities(makeQuery().setKeysOnly(), fetchOptions, this);
   }
 
   public final SelectEntities select(final Filterable<?>... projectedProperties)
@@ -70,7 +70,7 @@ public abstract class RootActiveEntity extends ActiveEntity {
     if (fetchOptions == null) {
       throw new NullPointerException("fetchOptions");
     }
-    return new SelectEntities(projection(projectedProperties), fetchOptions);
+    return new SelectEntities(projection(projectedProperties), fetchOptions, this);
   }
 
   public final SelectEntities select(final Iterable<Filterable<?>> projectedProperties)
@@ -84,6 +84,6 @@ public abstract class RootActiveEntity extends ActiveEntity {
     if (fetchOptions == null) {
       throw new NullPointerException("fetchOptions");
     }
-    return new SelectEntities(projection(projectedProperties), fetchOptions);
+    return new SelectEntities(projection(projectedProperties), fetchOptions, this);
   }
 }
@@ -31,13 +31,15 @@ import com.google.appengine.api.datastore.Key;
 import com.google.appengine.api.datastore.KeyFactory;
 import com.google.common.collect.ImmutableList;
 
-import java.util.concurrent.ExecutionException;
 
 public abstract class RootWithId extends RootActiveEntity implements WithId
 {
 
   private static final long serialVersionUID = -4301518873000440300L;
 
+  private final IdPool idPool = new IdPool(IdPool.ROOT_BLOCK_SIZE,
+                                           (parent, size) -> asyncDatastore().allocateIds(kind(), size));
+
   protected RootWithId()
   {
     // nothing more to do
@@ -65,6 +67,39 @@ public abstract class RootWithId extends RootActiveEntity implements WithId
     return data;
   }
 
+  /**
+   * Makes an entity with a complete key, using an ID reserved in advance, so its key can be used before it's saved.
+   *
+   * @return the new entity.
+   */
+  public Entity makeWithAllocatedId()
+  {
+    return make(allocateId());
+  }
+
+  /**
+   * @return an ID reserved for this kind, not used by any other of its entities.
+   * @throws PersistenceException if no ID could be reserved.
+   */
+  public long allocateId()
+  {
+    return idPool.next(null);
+  }
+
+  /**
+   * Completes the key with an ID reserved for the namespace of the key.
+   */
+  @Override
+  protected Key completeKey(final Key incomplete)
+  {
+    final String namespace = namespace(incomplete.getNamespace());
+    try {
+      return makeKey(allocateId());
+    } finally {
+      setNamespace(namespace);
+    }
+  }
+
   @Override
   public final Entity newEntity(final long id)
   {
@@ -80,18 +115,14 @@ public abstract class RootWithId extends RootActiveEntity implements WithId
   public void deleteById(final long id)
   {
     final Key key = makeKey(id);
-    try {
-      deleteEntity(key).get();
-    } catch (final InterruptedException | ExecutionException e) {
-      throw new PersistenceException("could not delete entity", e);
-    }
+    removeEntity(key);
   }
 
   public Entity findById(final long id)
   {
     final Key key = makeKey(id);
     try {
-      return getEntity(key);
+      return loadEntity(key);
     } catch (final EntityNotFoundException e) {
       return null;
     }
@@ -101,13 +132,13 @@ public abstract class RootWithId extends RootActiveEntity implements WithId
       throws EntityNotFoundException
   {
     final Key key = makeKey(id);
-    return getEntity(key);
+    return loadEntity(key);
   }
 
   public boolean existsById(final long id)
   {
     final Key key = makeKey(id);
-    return checkExists(key);
+    return entityExists(key);
   }
 
   @Override
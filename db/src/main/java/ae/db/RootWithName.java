@@ -30,7 +30,6 @@ import com.google.appengine.api.datastore.EntityNotFoundException;
 import com.google.appengine.api.datastore.Key;
 import com.google.appengine.api.datastore.KeyFactory;
 import com.google.common.collect.ImmutableList;
-import java.util.concurrent.ExecutionException;
 
 public abstract class RootWithName extends RootActiveEntity implements WithName {
 
@@ -68,7 +67,7 @@ public abstract class RootWithName extends RootActiveEntity implements WithName
   {
     final Key key = makeKey(name);
     try {
-      return getEntity(key);
+      return loadEntity(key);
     } catch (final EntityNotFoundException e) {
       return null;
     }
@@ -77,23 +76,19 @@ public abstract class RootWithName extends RootActiveEntity implements WithName
   public Entity getByName(final String name) throws EntityNotFoundException
   {
     final Key key = makeKey(name);
-    return getEntity(key);
+    return loadEntity(key);
   }
 
   public void deleteByName(final String name)
   {
     final Key key = makeKey(name);
-    try {
-      deleteEntity(key).get();
-    } catch (final InterruptedException | ExecutionException e) {
-      throw new PersistenceException("could not delete entity", e);
-    }
+    removeEntity(key);
   }
 
   public boolean existsByName(final String name)
   {
     final Key key = makeKey(name);
-    return checkExists(key);
+    return entityExists(key);
   }
 
   @Override
@@ -0,0 +1,173 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2018 ActiveEngine.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ae.db;
+
+import com.google.appengine.api.datastore.Entity;
+import com.google.appengine.api.datastore.EntityNotFoundException;
+import com.google.appengine.api.datastore.Key;
+import com.google.appengine.api.datastore.KeyFactory;
+import com.google.appengine.api.memcache.Expiration;
+import com.google.appengine.api.memcache.MemcacheService;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Coordinates the reload of entities missing at memcache, used by models declaring {@code @model(singleFlight = true)}
+ * to avoid read spikes at the datastore when a hot entity is evicted or invalidated.
+ * <p>
+ * Concurrent misses of the same key at one application instance wait for a single load. Optionally, a lease kept at
+ * memcache coordinates the instances too: the instance that adds the lease loads the entity, while the others poll
+ * memcache until the loaded entity (or its tombstone) is cached there, or until the lease expires, in which case they
+ * load the entity by themselves.
+ */
+public final class SingleFlight {
+
+  private static final long POLL_INTERVAL = 20L;
+
+  private final long leaseTime;
+  private final ConcurrentMap<Key, CompletableFuture<Entity>> loading = new ConcurrentHashMap<>();
+
+  /**
+   * @param leaseTime milliseconds an instance holds the lease to load an entity, {@code 0} means no lease is used.
+   */
+  public SingleFlight(final long leaseTime)
+  {
+    if (leaseTime < 0) {
+      throw new IllegalArgumentException("leaseTime < 0");
+    }
+    this.leaseTime = leaseTime;
+  }
+
+  /**
+   * Loads an entity missing at memcache.
+   *
+   * @param memcache memcache service where the entity is cached, and where the lease is kept.
+   * @param key      key of the entity to load.
+   * @param loader   reads the entity from the datastore and caches it (or its tombstone) at memcache.
+   * @return the loaded entity.
+   * @throws EntityNotFoundException if the entity doesn't exist.
+   */
+  public Entity load(final MemcacheService memcache, final Key key, final Loader loader) throws EntityNotFoundException
+  {
+    final CompletableFuture<Entity> load = new CompletableFuture<>();
+    final CompletableFuture<Entity> inFlight = loading.putIfAbsent(key, load);
+    if (inFlight != null) {
+      return await(inFlight);
+    }
+    try {
+      final Entity data = leased(memcache, key, loader);
+      load.complete(data);
+      return data;
+    } catch (final EntityNotFoundException | RuntimeException e) {
+      load.completeExceptionally(e);
+      throw e;
+    } finally {
+      loading.remove(key, load);
+    }
+  }
+
+  /**
+   * @return amount of keys being loaded right now.
+   */
+  public int loadingCount()
+  {
+    return loading.size();
+  }
+
+  private static Entity await(final CompletableFuture<Entity> load) throws EntityNotFoundException
+  {
+    boolean interrupted = false;
+    try {
+      while (true) {
+        try {
+          return load.get();
+        } catch (final InterruptedException e) {
+          interrupted = true;
+        } catch (final ExecutionException e) {
+          final Throwable cause = e.getCause();
+          if (cause instanceof EntityNotFoundException) {
+            throw (EntityNotFoundException) cause;
+          }
+          if (cause instanceof RuntimeException) {
+            throw (RuntimeException) cause;
+          }
+          throw new PersistenceException("could not load entity", cause);
+        }
+      }
+    } finally {
+      if (interrupted) {
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+
+  private Entity leased(final MemcacheService memcache, final Key key, final Loader loader)
+          throws EntityNotFoundException
+  {
+    if (leaseTime == 0) {
+      return loader.load(key);
+    }
+    final String lease = leaseKey(key);
+    if (memcache.put(lease, Boolean.TRUE, Expiration.byDeltaMillis((int) leaseTime),
+                     MemcacheService.SetPolicy.ADD_ONLY_IF_NOT_PRESENT)) {
+      try {
+        return loader.load(key);
+      } finally {
+        memcache.delete(lease);
+      }
+    }
+    final long deadline = System.currentTimeMillis() + leaseTime;
+    for (long wait = deadline - System.currentTimeMillis(); wait > 0; wait = deadline - System.currentTimeMillis()) {
+      try {
+        Thread.sleep(Math.min(wait, POLL_INTERVAL));
+      } catch (final InterruptedException e) {
+        Thread.currentThread().interrupt();
+        break;
+      }
+      final Object cached = memcache.get(key);
+      if (cached instanceof Entity) {
+        return (Entity) cached;
+      }
+      if (cached instanceof ActiveEntity.Tombstone) {
+        throw new EntityNotFoundException(key);
+      }
+    }
+    return loader.load(key);
+  }
+
+  static String leaseKey(final Key key)
+  {
+    return "ae.lease:" + KeyFactory.keyToString(key);
+  }
+
+  /**
+   * Reads an entity from the datastore, caching it at memcache.
+   */
+  @FunctionalInterface
+  public interface Loader {
+    Entity load(Key key) throws EntityNotFoundException;
+  }
+}
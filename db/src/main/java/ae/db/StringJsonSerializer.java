@@ -27,6 +27,7 @@ import static argo.jdom.JsonNodeFactories.string;
 import static argo.jdom.JsonNodeFactories.nullNode;
 
 import argo.jdom.JsonNode;
+import java.io.IOException;
 
 enum StringJsonSerializer implements JsonSerializer<String> {
   INSTANCE;
@@ -42,6 +43,16 @@ enum StringJsonSerializer implements JsonSerializer<String> {
     return string(value);
   }
 
+  @Override
+  public void writeJson(final String value, final JsonWriter out) throws IOException
+  {
+    if (value == null) {
+      out.nullValue();
+    } else {
+      out.string(value);
+    }
+  }
+
   @Override
   public String fromJson(final JsonNode json, final String jsonPath)
   {
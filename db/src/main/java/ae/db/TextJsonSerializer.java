@@ -28,6 +28,7 @@ import static argo.jdom.JsonNodeFactories.string;
 
 import argo.jdom.JsonNode;
 import com.google.appengine.api.datastore.Text;
+import java.io.IOException;
 
 enum TextJsonSerializer implements JsonSerializer<Text> {
   INSTANCE;
@@ -43,6 +44,16 @@ enum TextJsonSerializer implements JsonSerializer<Text> {
     return string(value.getValue());
   }
 
+  @Override
+  public void writeJson(final Text value, final JsonWriter out) throws IOException
+  {
+    if (value == null) {
+      out.nullValue();
+    } else {
+      out.string(value.getValue());
+    }
+  }
+
   @Override
   public Text fromJson(final JsonNode json, final String jsonPath)
   {
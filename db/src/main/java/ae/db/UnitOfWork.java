@@ -0,0 +1,331 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2018 ActiveEngine.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ae.db;
+
+import com.google.appengine.api.datastore.Entity;
+import com.google.appengine.api.datastore.Key;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Coalesces the writes of a thread, usually the ones done while handling a request, so they are sent together.
+ * <p>
+ * While a unit of work is open at the current thread, {@link ActiveEntity} saves and deletes are enqueued instead of
+ * written. Consecutive writes of the same key are coalesced, the last one wins. When the unit of work is flushed
+ * (explicitly, or when it's closed) each model writes its enqueued entities with one batched put and its deleted keys
+ * with one batched delete, all of them started at once, and releases the cache locks of all its keys together.
+ * So the amount of calls to the datastore and memcache depends on the amount of kinds written, not on the amount of
+ * writes.
+ * <p>
+ * Saved entities are enqueued as copies, so changes done to them after saving aren't written. Saving an entity with a
+ * complete key returns its key at once, as does saving an entity whose model completes its key with a reserved ID
+ * ({@link RootWithId}, {@link ChildWithId}). Saving any other entity with an incomplete key waits for its key to be
+ * allocated, flushing every enqueued write. Reading a model by key flushes the writes enqueued for it first, but
+ * queries don't, so they may miss the enqueued writes.
+ * <p>
+ * A unit of work is bound to the thread that began it, and it's <em>not</em> thread safe. Units of work can be nested:
+ * only the outermost one flushes when closed.
+ */
+public final class UnitOfWork implements AutoCloseable {
+
+  private static final ThreadLocal<UnitOfWork> CURRENT = new ThreadLocal<>();
+
+  private final Map<ActiveEntity, Writes> writes = new LinkedHashMap<>();
+  private int depth;
+
+  private UnitOfWork()
+  {
+    // use begin()
+  }
+
+  /**
+   * Opens a unit of work at the current thread, or joins the one already opened there.
+   *
+   * @return the unit of work to close once the writes are done.
+   */
+  public static UnitOfWork begin()
+  {
+    UnitOfWork work = CURRENT.get();
+    if (work == null) {
+      work = new UnitOfWork();
+      CURRENT.set(work);
+    }
+    work.depth++;
+    return work;
+  }
+
+  /**
+   * @return the unit of work opened at the current thread, or {@code null} if there is none.
+   */
+  public static UnitOfWork current()
+  {
+    return CURRENT.get();
+  }
+
+  /**
+   * @return {@code true} if there are no enqueued writes.
+   */
+  public boolean isEmpty()
+  {
+    return writes.isEmpty();
+  }
+
+  Deferred<Key> save(final ActiveEntity model, final Entity data)
+  {
+    return writesOf(model).save(data);
+  }
+
+  Deferred<Void> delete(final ActiveEntity model, final Key key)
+  {
+    return writesOf(model).delete(key);
+  }
+
+  private Writes writesOf(final ActiveEntity model)
+  {
+    Writes pending = writes.get(model);
+    if (pending == null) {
+      pending = new Writes(model);
+      writes.put(model, pending);
+    }
+    return pending;
+  }
+
+  /**
+   * Writes the entities enqueued for {@code model}, if any.
+   */
+  void flush(final ActiveEntity model)
+  {
+    final Writes pending = writes.remove(model);
+    if (pending != null) {
+      await(pending.start());
+    }
+  }
+
+  /**
+   * Writes every enqueued entity and deletion, waiting for all of them to complete.
+   *
+   * @throws PersistenceException if some write fails, after waiting for the other ones.
+   */
+  public void flush()
+  {
+    if (writes.isEmpty()) {
+      return;
+    }
+    final List<Future<?>> started = new ArrayList<>(writes.size() * 2);
+    for (final Writes pending : writes.values()) {
+      started.addAll(pending.start());
+    }
+    writes.clear();
+    await(started);
+  }
+
+  private static void await(final List<Future<?>> started)
+  {
+    Throwable failure = null;
+    for (final Future<?> write : started) {
+      try {
+        write.get();
+      } catch (final InterruptedException e) {
+        Thread.currentThread().interrupt();
+        failure = failure == null ? e : failure;
+      } catch (final ExecutionException e) {
+        failure = failure == null ? e.getCause() : failure;
+      }
+    }
+    if (failure != null) {
+      throw new PersistenceException("could not write unit of work", failure);
+    }
+  }
+
+  /**
+   * Leaves the unit of work. When leaving the outermost one, enqueued writes are flushed and the unit of work is
+   * unbound from the thread.
+   *
+   * @throws PersistenceException if some write fails.
+   */
+  @Override
+  public void close()
+  {
+    if (depth == 0) {
+      throw new IllegalStateException("unit of work already closed");
+    }
+    if (--depth > 0) {
+      return;
+    }
+    try {
+      flush();
+    } finally {
+      CURRENT.remove();
+    }
+  }
+
+  /**
+   * Writes enqueued for a model.
+   */
+  private final class Writes {
+
+    private final ActiveEntity model;
+    private final Map<Key, Entity> puts = new LinkedHashMap<>();
+    private final List<Entity> inserts = new ArrayList<>();
+    private final LinkedHashSet<Key> deletes = new LinkedHashSet<>();
+    private final Map<Pending<Key>, Key> saved = new LinkedHashMap<>();
+    private final List<Pending<Key>> inserted = new ArrayList<>();
+    private final List<Pending<Void>> deleted = new ArrayList<>();
+
+    Writes(final ActiveEntity model)
+    {
+      this.model = model;
+    }
+
+    Deferred<Key> save(final Entity data)
+    {
+      final Pending<Key> result = new Pending<>(model);
+      final Key key = data.getKey();
+      if (key.isComplete()) {
+        deletes.remove(key);
+        puts.remove(key); // so it's written following the order of its last save
+        puts.put(key, data);
+        saved.put(result, key);
+      } else {
+        inserts.add(data);
+        inserted.add(result);
+      }
+      return result;
+    }
+
+    Deferred<Void> delete(final Key key)
+    {
+      puts.remove(key);
+      deletes.add(key);
+      final Pending<Void> result = new Pending<>(model);
+      deleted.add(result);
+      return result;
+    }
+
+    /**
+     * Starts the batched put and the batched delete of the model. Writes superseded by a later write of the same key
+     * complete with it.
+     */
+    List<Future<?>> start()
+    {
+      final List<Future<?>> started = new ArrayList<>(2);
+      Deferred<List<Key>> put = null;
+      if (!puts.isEmpty() || !inserts.isEmpty()) {
+        final List<Entity> entities = new ArrayList<>(puts.size() + inserts.size());
+        entities.addAll(puts.values());
+        entities.addAll(inserts);
+        put = Deferred.of(model.saveEntities(entities));
+        started.add(put);
+      }
+      Deferred<Void> delete = null;
+      if (!deletes.isEmpty()) {
+        delete = Deferred.of(model.deleteEntities(new ArrayList<>(deletes)));
+        started.add(delete);
+      }
+      final Deferred<?> lastPut = put == null ? delete : put;
+      for (final Map.Entry<Pending<Key>, Key> result : saved.entrySet()) {
+        final Key key = result.getValue();
+        result.getKey().started(lastPut.map(done -> key));
+      }
+      final int firstInsert = puts.size();
+      for (int i = 0; i < inserted.size(); i++) {
+        final int index = firstInsert + i;
+        inserted.get(i).started(put.map(keys -> keys.get(index)));
+      }
+      final Deferred<?> lastDelete = delete == null ? put : delete;
+      for (final Pending<Void> result : deleted) {
+        result.started(lastDelete.map(done -> null));
+      }
+      return started;
+    }
+  }
+
+  /**
+   * Result of an enqueued write. Waiting for it flushes the writes of its model, if they weren't flushed yet.
+   */
+  private final class Pending<T> extends Deferred<T> {
+
+    private final ActiveEntity model;
+    private Future<T> write;
+
+    Pending(final ActiveEntity model)
+    {
+      this.model = model;
+    }
+
+    void started(final Future<T> write)
+    {
+      this.write = write;
+    }
+
+    private Future<T> write()
+    {
+      if (write == null) {
+        flush(model);
+        if (write == null) {
+          throw new IllegalStateException("unit of work closed before writing");
+        }
+      }
+      return write;
+    }
+
+    @Override
+    public boolean cancel(final boolean mayInterruptIfRunning)
+    {
+      return false;
+    }
+
+    @Override
+    public boolean isCancelled()
+    {
+      return false;
+    }
+
+    @Override
+    public boolean isDone()
+    {
+      return write != null && write.isDone();
+    }
+
+    @Override
+    public T get() throws InterruptedException, ExecutionException
+    {
+      return write().get();
+    }
+
+    @Override
+    public T get(final long timeout, final TimeUnit unit) throws InterruptedException, ExecutionException,
+                                                                 TimeoutException
+    {
+      return write().get(timeout, unit);
+    }
+  }
+}
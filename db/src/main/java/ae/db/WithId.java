@@ -29,6 +29,7 @@ import argo.jdom.JsonStringNode;
 import com.google.appengine.api.datastore.Entity;
 import com.google.appengine.api.datastore.Key;
 import com.google.common.collect.ImmutableList;
+import java.io.IOException;
 
 public interface WithId extends java.io.Serializable {
 
@@ -152,6 +153,12 @@ abstract class BasicId extends ActiveEntity.Identifier {
     return JsonNodeFactories.number(key.getId());
   }
 
+  @Override
+  public void writeJsonValue(final Key key, final JsonWriter out) throws IOException
+  {
+    out.number(key.getId());
+  }
+
   @Override
   public void validate(final Entity data, final Validation validation)
   {
@@ -29,6 +29,7 @@ import argo.jdom.JsonStringNode;
 import com.google.appengine.api.datastore.Entity;
 import com.google.appengine.api.datastore.Key;
 import com.google.common.collect.ImmutableList;
+import java.io.IOException;
 
 public interface WithName extends java.io.Serializable {
 
@@ -85,6 +86,12 @@ public interface WithName extends java.io.Serializable {
       return JsonNodeFactories.string(key.getName());
     }
 
+    @Override
+    public void writeJsonValue(final Key key, final JsonWriter out) throws IOException
+    {
+      out.string(key.getName());
+    }
+
     @Override
     public void validate(final Entity data, final Validation validation)
     {
@@ -0,0 +1,111 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2018 ActiveEngine.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ae.db;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * {@link Deferred} of a datastore write that releases the memcache locks taken by its writer once the write completes.
+ * <p>
+ * The locks are released by the first thread that finds the write completed, through {@link #isDone()} or
+ * {@link #get()}, so the write is known to be done only after its locks are released. The locks of writes nobody
+ * waits for expire by themselves, after {@link ActiveEntity#WRITE_LOCK_TTL_SECONDS}.
+ *
+ * @param <T> type of the value produced by the write.
+ */
+final class WriteFuture<T> extends Deferred<T> {
+
+  private final Future<T> write;
+  private final Runnable release;
+  private boolean released;
+
+  WriteFuture(final Future<T> write, final Runnable release)
+  {
+    this.write = write;
+    this.release = release;
+  }
+
+  private synchronized void release()
+  {
+    if (!released) {
+      released = true;
+      release.run();
+    }
+  }
+
+  @Override
+  public boolean cancel(final boolean mayInterruptIfRunning)
+  {
+    return write.cancel(mayInterruptIfRunning);
+  }
+
+  @Override
+  public boolean isCancelled()
+  {
+    return write.isCancelled();
+  }
+
+  @Override
+  public boolean isDone()
+  {
+    if (!write.isDone()) {
+      return false;
+    }
+    release();
+    return true;
+  }
+
+  @Override
+  public T get() throws InterruptedException, ExecutionException
+  {
+    final T value;
+    try {
+      value = write.get();
+    } catch (final ExecutionException | CancellationException e) {
+      release();
+      throw e;
+    }
+    release();
+    return value;
+  }
+
+  @Override
+  public T get(final long timeout, final TimeUnit unit) throws InterruptedException, ExecutionException,
+                                                               TimeoutException
+  {
+    final T value;
+    try {
+      value = write.get(timeout, unit);
+    } catch (final ExecutionException | CancellationException e) {
+      release();
+      throw e;
+    }
+    release();
+    return value;
+  }
+}
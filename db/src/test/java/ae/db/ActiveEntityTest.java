@@ -0,0 +1,446 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2018 ActiveEngine.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ae.db;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.google.appengine.api.datastore.DatastoreServiceFactory;
+import com.google.appengine.api.datastore.Entity;
+import com.google.appengine.api.datastore.Key;
+import com.google.appengine.api.memcache.MemcacheService;
+import com.google.appengine.api.memcache.MemcacheServiceFactory;
+import com.google.appengine.tools.development.testing.LocalDatastoreServiceTestConfig;
+import com.google.appengine.tools.development.testing.LocalMemcacheServiceTestConfig;
+import com.google.appengine.tools.development.testing.LocalServiceTestHelper;
+import com.google.apphosting.api.ApiProxy;
+import com.google.common.collect.ImmutableList;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+public class ActiveEntityTest {
+
+  private final LocalServiceTestHelper helper = new LocalServiceTestHelper(new LocalDatastoreServiceTestConfig(),
+                                                                           new LocalMemcacheServiceTestConfig());
+
+  private final Country country = new Country();
+
+  @BeforeMethod
+  public void setUp()
+  {
+    helper.setUp();
+  }
+
+  @AfterMethod
+  public void tearDown()
+  {
+    helper.tearDown();
+  }
+
+  @Test
+  public void findAll_should_map_only_existing_entities_following_keys_order()
+  {
+    // given
+    final Key ar = country.save(country.make("AR", "Argentina"));
+    final Key uy = country.save(country.make("UY", "Uruguay"));
+    final Key cl = country.makeKey("CL");
+    country.find(uy); // now UY is cached at memcache
+
+    // when
+    final Map<Key, Entity> found = country.findAll(ImmutableList.of(uy, cl, ar));
+
+    // then
+    assertThat(found.keySet()).containsExactly(uy, ar);
+    assertThat(country.name.read(found.get(ar))).isEqualTo("Argentina");
+  }
+
+  @Test
+  public void saveAll_should_save_batches_bigger_than_datastore_limits()
+  {
+    // given
+    final List<Entity> countries = new ArrayList<>();
+    for (int i = 0; i < 1200; i++) {
+      countries.add(country.make("C" + i, "Country " + i));
+    }
+
+    // when
+    final List<Key> keys = country.saveAll(countries);
+
+    // then
+    assertThat(keys).hasSize(1200);
+    assertThat(country.findAll(keys)).hasSize(1200);
+
+    // and when
+    country.deleteAll(keys);
+
+    // then
+    assertThat(country.findAll(keys)).isEmpty();
+  }
+
+  @Test
+  public void missing_entities_should_be_remembered_until_saved()
+  {
+    // given
+    final Key key = country.makeKey("BR");
+
+    // when
+    assertThat(country.exists(key)).isFalse();
+
+    // then, datastore is not used to know that the entity doesn't exist
+    DatastoreServiceFactory.getDatastoreService().put(country.make("BR", "Brasil"));
+    assertThat(country.exists(key)).isFalse();
+    assertThat(country.find(key)).isNull();
+
+    // and when, the entity is saved through the model
+    country.save(country.make("BR", "Brasil"));
+
+    // then
+    assertThat(country.exists(key)).isTrue();
+    assertThat(MemcacheServiceFactory.getMemcacheService().get(key)).isInstanceOf(Entity.class);
+  }
+
+  @Test
+  public void async_operations_should_chain_cache_and_datastore_lookups() throws Exception
+  {
+    // given
+    final Key ar = country.saveAsync(country.make("AR", "Argentina")).get();
+    final Key cl = country.makeKey("CL");
+
+    // when, both lookups are started before waiting for any of them
+    final Deferred<Entity> foundAr = country.findAsync(ar);
+    final Deferred<Boolean> clExists = country.existsAsync(cl);
+
+    // then
+    assertThat(country.name.read(foundAr.get())).isEqualTo("Argentina");
+    assertThat(clExists.get()).isFalse();
+    assertThat(MemcacheServiceFactory.getMemcacheService().get(ar)).isInstanceOf(Entity.class);
+    assertThat(MemcacheServiceFactory.getMemcacheService().get(cl)).isInstanceOf(ActiveEntity.Tombstone.class);
+
+    // and when
+    country.deleteAsync(ar).get();
+
+    // then
+    assertThat(country.findAsync(ar).get()).isNull();
+  }
+
+  @Test
+  public void async_lookups_should_return_without_waiting_for_any_call() throws Exception
+  {
+    // given
+    final Key ar = country.save(country.make("AR", "Argentina"));
+    final Key uy = country.save(country.make("UY", "Uruguay"));
+    final Key cl = country.makeKey("CL");
+    final ApiCalls calls = ApiCalls.install();
+    try {
+      // when, lookups are started but none is awaited
+      final Deferred<Entity> foundAr = country.findAsync(ar);
+      final Deferred<Entity> foundUy = country.findAsync(uy);
+      final Deferred<Boolean> clExists = country.existsAsync(cl);
+
+      // then, nothing was waited for
+      assertThat(calls.syncCalls()).isZero();
+      assertThat(country.name.read(foundAr.get())).isEqualTo("Argentina");
+      assertThat(country.name.read(foundUy.get())).isEqualTo("Uruguay");
+      assertThat(clExists.get()).isFalse();
+      assertThat(calls.syncCalls()).isZero();
+      assertThat(calls.datastoreGets()).isEqualTo(3);
+    } finally {
+      calls.uninstall();
+    }
+  }
+
+  @Test
+  public void entities_being_written_should_not_be_cached_by_readers()
+  {
+    // given, a write of AR in progress
+    final Key ar = country.save(country.make("AR", "Argentina"));
+    MemcacheServiceFactory.getMemcacheService().put(ar, ActiveEntity.WriteLock.FIRST);
+
+    // when
+    final Entity found = country.find(ar);
+
+    // then
+    assertThat(country.name.read(found)).isEqualTo("Argentina");
+    assertThat(MemcacheServiceFactory.getMemcacheService().get(ar)).isInstanceOf(ActiveEntity.WriteLock.class);
+    assertThat(country.exists(ar)).isTrue();
+    assertThat(country.findAll(ImmutableList.of(ar))).containsOnlyKeys(ar);
+  }
+
+  @Test
+  public void writes_should_release_their_locks_when_completed()
+  {
+    // given
+    final Key ar = country.save(country.make("AR", "Argentina"));
+
+    // then, readers can cache it again
+    assertThat(MemcacheServiceFactory.getMemcacheService().get(ar)).isEqualTo(ActiveEntity.CacheLock.READING);
+
+    // and when
+    country.find(ar);
+    country.delete(ar);
+
+    // then
+    assertThat(MemcacheServiceFactory.getMemcacheService().get(ar)).isEqualTo(ActiveEntity.CacheLock.READING);
+    assertThat(country.find(ar)).isNull();
+  }
+
+  @Test
+  public void async_writes_should_release_their_locks_once_awaited() throws Exception
+  {
+    // given
+    final Key ar = country.save(country.make("AR", "Argentina"));
+    final String versionKey = ActiveEntity.writeVersionKey(country.kind(), "");
+    assertThat(country.selectAll().cached(60).asList()).hasSize(1);
+    final Object version = MemcacheServiceFactory.getMemcacheService().get(versionKey);
+
+    // when
+    final Deferred<Key> save = country.saveAsync(country.make("AR", "Argentina!"));
+    final Deferred<Key> other = country.saveAsync(country.make("UY", "Uruguay"));
+
+    // then, cached selects are discarded as soon as the saves are issued, and readers can't cache AR meanwhile
+    assertThat(MemcacheServiceFactory.getMemcacheService().get(versionKey)).isNotEqualTo(version);
+    assertThat(MemcacheServiceFactory.getMemcacheService().get(ar)).isInstanceOf(ActiveEntity.WriteLock.class);
+
+    // and when
+    save.get();
+    other.get();
+
+    // then
+    assertThat(MemcacheServiceFactory.getMemcacheService().get(ar)).isEqualTo(ActiveEntity.CacheLock.READING);
+    assertThat(country.name.read(country.find(ar))).isEqualTo("Argentina!");
+    assertThat(MemcacheServiceFactory.getMemcacheService().get(ar)).isInstanceOf(Entity.class);
+    assertThat(country.selectAll().cached(60).asList()).hasSize(2);
+  }
+
+  @Test
+  public void overlapping_writers_should_keep_the_lock_until_the_last_one_completes() throws Exception
+  {
+    // given
+    final Key ar = country.save(country.make("AR", "Argentina"));
+
+    // when, two writes of AR overlap
+    final Future<Key> first = country.saveEntity(country.make("AR", "Argentina!"));
+    final Future<Key> second = country.saveEntity(country.make("AR", "Argentina!!"));
+    first.get();
+
+    // then, readers can't cache AR until the second one completes
+    assertThat(country.find(ar)).isNotNull();
+    assertThat(MemcacheServiceFactory.getMemcacheService().get(ar)).isInstanceOf(ActiveEntity.WriteLock.class);
+
+    // and when
+    second.get();
+
+    // then
+    assertThat(country.name.read(country.find(ar))).isEqualTo("Argentina!!");
+    assertThat(MemcacheServiceFactory.getMemcacheService().get(ar)).isInstanceOf(Entity.class);
+  }
+
+  @Test
+  public void cached_selects_should_be_discarded_when_the_kind_is_written()
+  {
+    // given
+    country.save(country.make("AR", "Argentina"));
+    assertThat(country.selectAll().cached(60).asList()).hasSize(1);
+
+    // when, the kind is written without the model, cached keys are still used
+    DatastoreServiceFactory.getDatastoreService().put(country.make("UY", "Uruguay"));
+
+    // then
+    assertThat(country.selectAll().cached(60).asList()).hasSize(1);
+    assertThat(country.selectAll().asList()).hasSize(2);
+
+    // and when, the kind is written through the model
+    country.save(country.make("CL", "Chile"));
+
+    // then
+    assertThat(country.selectAll().cached(60).asList()).extracting(data -> data.getKey().getName())
+        .containsExactly("AR", "CL", "UY");
+    assertThat(country.selectKeys().cached(60).asList()).hasSize(3);
+  }
+
+  @Test
+  public void writes_of_uncached_models_should_change_the_write_version_of_the_kind() throws Exception
+  {
+    // given, a model written as db-processor generates models with cache = false
+    final Country uncached = new Country()
+    {
+      @Override
+      protected Future<Key> saveEntity(final Entity data)
+      {
+        return putUncached(data);
+      }
+
+      @Override
+      protected Future<Void> deleteEntity(final Key key)
+      {
+        return deleteUncached(key);
+      }
+    };
+    final MemcacheService memcache = MemcacheServiceFactory.getMemcacheService();
+    final String versionKey = ActiveEntity.writeVersionKey(uncached.kind(), "");
+    memcache.put(versionKey, 1L);
+
+    // when
+    final Key ar = uncached.save(uncached.make("AR", "Argentina"));
+
+    // then, once when the put is issued and again when it's completed
+    assertThat(memcache.get(versionKey)).isEqualTo(3L);
+    assertThat(memcache.get(ar)).isNull();
+
+    // and when
+    uncached.delete(ar);
+
+    // then
+    assertThat(memcache.get(versionKey)).isEqualTo(5L);
+  }
+
+  @Test
+  public void async_saves_should_not_wait_for_the_group_commit_window() throws Exception
+  {
+    // given
+    final GroupCommit groupCommit = new GroupCommit(60_000L, 100, 100);
+    final Country grouped = new Country()
+    {
+      @Override
+      protected GroupCommit groupCommit()
+      {
+        return groupCommit;
+      }
+    };
+
+    // when
+    final Key ar = grouped.saveAsync(grouped.make("AR", "Argentina")).get(5L, TimeUnit.SECONDS);
+
+    // then
+    assertThat(grouped.find(ar)).isNotNull();
+    assertThat(groupCommit.pendingCount()).isZero();
+  }
+
+  @Test
+  public void selects_by_keys_should_resolve_entities_through_memcache()
+  {
+    // given
+    final Key ar = country.save(country.make("AR", "Argentina"));
+    final Key uy = country.save(country.make("UY", "Uruguay"));
+    country.find(uy); // now UY is cached at memcache
+
+    // when
+    final List<Entity> found = country.selectAll().byKeys().asList();
+
+    // then
+    assertThat(found).extracting(Entity::getKey).containsExactly(ar, uy);
+    assertThat(MemcacheServiceFactory.getMemcacheService().get(ar)).isInstanceOf(Entity.class);
+  }
+
+  /**
+   * Counts the blocking calls and the datastore gets issued through the {@link ApiProxy}.
+   */
+  @SuppressWarnings({"rawtypes", "unchecked"})
+  private static final class ApiCalls implements ApiProxy.Delegate<ApiProxy.Environment> {
+
+    private final ApiProxy.Delegate<ApiProxy.Environment> delegate;
+    private final AtomicInteger syncCalls = new AtomicInteger();
+    private final AtomicInteger datastoreGets = new AtomicInteger();
+
+    private ApiCalls(final ApiProxy.Delegate<ApiProxy.Environment> delegate)
+    {
+      this.delegate = delegate;
+    }
+
+    static ApiCalls install()
+    {
+      final ApiCalls calls = new ApiCalls(ApiProxy.getDelegate());
+      ApiProxy.setDelegate(calls);
+      return calls;
+    }
+
+    void uninstall()
+    {
+      ApiProxy.setDelegate(delegate);
+    }
+
+    int syncCalls()
+    {
+      return syncCalls.get();
+    }
+
+    int datastoreGets()
+    {
+      return datastoreGets.get();
+    }
+
+    private void record(final String packageName, final String methodName)
+    {
+      if ("datastore_v3".equals(packageName) && "Get".equals(methodName)) {
+        datastoreGets.incrementAndGet();
+      }
+    }
+
+    @Override
+    public byte[] makeSyncCall(final ApiProxy.Environment environment,
+                               final String packageName,
+                               final String methodName,
+                               final byte[] request)
+    {
+      syncCalls.incrementAndGet();
+      record(packageName, methodName);
+      return delegate.makeSyncCall(environment, packageName, methodName, request);
+    }
+
+    @Override
+    public Future<byte[]> makeAsyncCall(final ApiProxy.Environment environment,
+                                        final String packageName,
+                                        final String methodName,
+                                        final byte[] request,
+                                        final ApiProxy.ApiConfig apiConfig)
+    {
+      record(packageName, methodName);
+      return delegate.makeAsyncCall(environment, packageName, methodName, request, apiConfig);
+    }
+
+    @Override
+    public void log(final ApiProxy.Environment environment, final ApiProxy.LogRecord record)
+    {
+      delegate.log(environment, record);
+    }
+
+    @Override
+    public void flushLogs(final ApiProxy.Environment environment)
+    {
+      delegate.flushLogs(environment);
+    }
+
+    @Override
+    public List<Thread> getRequestThreads(final ApiProxy.Environment environment)
+    {
+      return delegate.getRequestThreads(environment);
+    }
+  }
+}
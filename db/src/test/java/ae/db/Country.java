@@ -0,0 +1,135 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2018 ActiveEngine.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ae.db;
+
+import static ae.db.DSL.canonicalName;
+import static ae.db.DSL.fieldName;
+import static ae.db.DSL.jsonName;
+import static ae.db.DSL.jsonPath;
+import static ae.db.DSL.noConstraints;
+import static ae.db.DSL.nullable;
+import static ae.db.DSL.propertyName;
+
+import argo.jdom.JsonNode;
+import argo.jdom.JsonNodeFactories;
+import com.google.appengine.api.datastore.Entity;
+import com.google.common.collect.ImmutableList;
+import java.io.IOException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Model written as db-processor would generate it, used to test {@link ActiveEntity} behavior.
+ */
+class Country extends RootWithName {
+
+  private static final long serialVersionUID = 1L;
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(Country.class);
+
+  final WithName.Name code = new WithName.Name(canonicalName("ae.db.Country.code"),
+                                               fieldName("code"),
+                                               jsonName("code"),
+                                               jsonPath("code"),
+                                               noConstraints);
+
+  final UnindexedString name = new UnindexedString(canonicalName("ae.db.Country.name"),
+                                                   propertyName("name"),
+                                                   fieldName("name"),
+                                                   nullable,
+                                                   jsonName("name"),
+                                                   jsonPath("name"),
+                                                   noConstraints);
+
+  @Override
+  protected Logger logger()
+  {
+    return LOGGER;
+  }
+
+  @Override
+  public String kind()
+  {
+    return "Country";
+  }
+
+  @Override
+  public WithName.Name modelIdentifier()
+  {
+    return code;
+  }
+
+  @Override
+  public ImmutableList<Field<?>> modelFields()
+  {
+    return ImmutableList.of(name);
+  }
+
+  @Override
+  public ImmutableList<Attribute> modelAttributes()
+  {
+    return ImmutableList.of(code, name);
+  }
+
+  @Override
+  public JsonNode toJson(final Entity data)
+  {
+    if (null == data) {
+      return JsonNodeFactories.nullNode();
+    }
+    return JsonNodeFactories.object(ImmutableList.of(code.makeJsonFieldFrom(data), name.makeJsonFieldFrom(data)));
+  }
+
+  @Override
+  public void writeJson(final Entity data, final JsonWriter out) throws IOException
+  {
+    if (null == data) {
+      out.nullValue();
+      return;
+    }
+    out.beginObject();
+    code.writeJsonField(data, out);
+    name.writeJsonField(data, out);
+    out.endObject();
+  }
+
+  @Override
+  public void updatePropertiesWithJsonContents(final Entity data, final JsonNode json)
+  {
+    name.write(data, json);
+  }
+
+  @Override
+  protected void doValidate(final Entity data, final Validation validation)
+  {
+    name.validate(data, validation);
+  }
+
+  Entity make(final String code, final String name)
+  {
+    final Entity data = make(code);
+    this.name.write(data, name);
+    return data;
+  }
+}
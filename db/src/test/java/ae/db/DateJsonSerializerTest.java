@@ -0,0 +1,248 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2018 ActiveEngine.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ae.db;
+
+import static argo.jdom.JsonNodeFactories.field;
+import static argo.jdom.JsonNodeFactories.number;
+import static argo.jdom.JsonNodeFactories.object;
+import static argo.jdom.JsonNodeFactories.string;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import argo.jdom.JsonNode;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.time.ZoneId;
+import java.util.Date;
+import java.util.Locale;
+import java.util.Random;
+import java.util.TimeZone;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+public class DateJsonSerializerTest {
+
+  private static final String[] PATTERNS = {
+      "yyyy-MM-dd", "hh:mm:ss", "hh:mm", "yyyy-MM-dd hh:mm", "yyyy-MM-dd hh:mm:ss", "yyyy-MM-dd hh:mm:ss.S",
+      "yyyy-MM-dd'T'HH:mm:ss.SSSXXX", "yyyy-MM-dd'T'HH:mm:ssX", "yyyyMMdd'T'HHmmssZ", "yyMMddkkmmss", "d/M/yy K",
+      "y.M.d H:m:s.S", "''yyyy'' 'at' [HH]", "EEE, d MMM yyyy HH:mm:ss Z", "EEEE d 'de' MMMM 'de' yyyy",
+      "MMM d, yyyy h:mm a", "yyyy-MM-dd'T'HH:mm:ss.SSSzzz", "yyyy-'W'ww-u", "G yyyy DDD"
+  };
+
+  private static final String[] ZONES = {
+      "UTC", "America/Argentina/Buenos_Aires", "America/New_York", "Asia/Kolkata", "Australia/Lord_Howe",
+      "Europe/Paris"
+  };
+
+  private static final Locale[] LOCALES = {Locale.US, new Locale("es", "AR"), Locale.FRANCE};
+
+  @DataProvider
+  public Object[][] patterns()
+  {
+    final Object[][] patterns = new Object[PATTERNS.length * ZONES.length * LOCALES.length][];
+    int i = 0;
+    for (final String pattern : PATTERNS) {
+      for (final String zone : ZONES) {
+        for (final Locale locale : LOCALES) {
+          patterns[i++] = new Object[]{pattern, zone, locale};
+        }
+      }
+    }
+    return patterns;
+  }
+
+  @Test(dataProvider = "patterns")
+  public void should_format_and_parse_as_simple_date_format(final String pattern,
+                                                           final String zone,
+                                                           final Locale locale) throws ParseException
+  {
+    // given
+    final DatePattern.Compiled compiled = DatePattern.compile(pattern, locale, ZoneId.of(zone));
+    final SimpleDateFormat reference = new SimpleDateFormat(pattern, locale);
+    reference.setTimeZone(TimeZone.getTimeZone(zone));
+    final Random random = new Random(pattern.hashCode());
+
+    for (int i = 0; i < 1000; i++) {
+      // years 1400 to 2600, crossing the gregorian calendar adoption
+      final Date date = new Date(-17987443200000L + (long) (random.nextDouble() * 37869120000000L));
+
+      // when
+      final String text = compiled.format(date);
+
+      // then
+      assertThat(text).as("%s formatted as %s", date.getTime(), pattern).isEqualTo(reference.format(date));
+      assertThat(compiled.parse(text)).as("%s parsed as %s", text, pattern).isEqualTo(reference.parse(text));
+    }
+  }
+
+  @Test
+  public void should_parse_lenient_texts_as_simple_date_format() throws ParseException
+  {
+    final String[] texts = {
+        "2017-02-30 10:15:00", "2017-2-3 1:5:0", "2017-02-23 12:15:00", "2017-02-23 13:15:00", "2017-02-23 10:15:00.5",
+        "2017-02-23 10:15:00 trailing", "02017-02-23 10:15:00", "2017-02-23 10:15:60", "2017-03-26 02:30:00"
+    };
+    for (final String zone : ZONES) {
+      // given
+      final DatePattern.Compiled compiled = DatePattern.compile("yyyy-MM-dd hh:mm:ss", Locale.US, ZoneId.of(zone));
+      final SimpleDateFormat reference = new SimpleDateFormat("yyyy-MM-dd hh:mm:ss", Locale.US);
+      reference.setTimeZone(TimeZone.getTimeZone(zone));
+      for (final String text : texts) {
+        // when
+        final Date parsed = compiled.parse(text);
+
+        // then
+        assertThat(parsed).as("%s at %s", text, zone).isEqualTo(reference.parse(text));
+      }
+    }
+  }
+
+  @Test
+  public void should_leave_unsupported_patterns_to_simple_date_format()
+  {
+    final ZoneId utc = ZoneId.of("UTC");
+    assertThat(DatePattern.compile("yyyy-MM-dd'T'HH:mm:ss.SSSXXX", Locale.US, utc).formatter).isNotNull();
+    assertThat(DatePattern.compile("EEE, d MMM yyyy", Locale.US, utc).formatter).isNotNull();
+    assertThat(DatePattern.compile("yyyy-MM-dd zzz", Locale.US, utc).formatter).isNull();
+    assertThat(DatePattern.compile("yyyy-MM-dd", new Locale("th", "TH", "TH"), utc).formatter).isNull();
+  }
+
+  @Test
+  public void should_write_standalone_month_names_when_there_is_no_day()
+  {
+    // given
+    final Date date = new Date(1487851200000L); // 2017-02-23T12:00:00Z
+    final ZoneId utc = ZoneId.of("UTC");
+    final Locale polish = new Locale("pl", "PL");
+    final Locale russian = new Locale("ru", "RU");
+
+    // then
+    assertThat(DatePattern.compile("MMMM yyyy", polish, utc).format(date)).isEqualTo("luty 2017");
+    assertThat(DatePattern.compile("LLLL yyyy", polish, utc).format(date)).isEqualTo("luty 2017");
+    assertThat(DatePattern.compile("d MMMM yyyy", polish, utc).format(date)).isEqualTo("23 lutego 2017");
+    assertThat(DatePattern.compile("MMMM yyyy", russian, utc).format(date)).isEqualToIgnoringCase("февраль 2017");
+    assertThat(DatePattern.compile("d MMMM yyyy", russian, utc).format(date)).isEqualTo("23 февраля 2017");
+    assertThat(DatePattern.compile("MMMM yyyy", Locale.US, utc).format(date)).isEqualTo("February 2017");
+  }
+
+  @Test
+  public void should_format_at_the_default_locale_and_time_zone_current_when_used() throws ParseException
+  {
+    // given
+    final Locale locale = Locale.getDefault(Locale.Category.FORMAT);
+    final TimeZone zone = TimeZone.getDefault();
+    final DateJsonSerializer serializer = new DateJsonSerializer("EEEE d 'de' MMMM 'de' yyyy HH:mm");
+    final Date date = new Date(1487851200000L); // 2017-02-23T12:00:00Z
+    try {
+      Locale.setDefault(Locale.Category.FORMAT, Locale.US);
+      TimeZone.setDefault(TimeZone.getTimeZone("UTC"));
+      assertThat(serializer.toJson(date).getText()).isEqualTo("Thursday 23 de February de 2017 12:00");
+
+      // when
+      Locale.setDefault(Locale.Category.FORMAT, new Locale("es", "AR"));
+      TimeZone.setDefault(TimeZone.getTimeZone("America/Argentina/Buenos_Aires"));
+
+      // then
+      assertThat(serializer.toJson(date).getText()).isEqualTo("jueves 23 de febrero de 2017 09:00");
+      assertThat(serializer.fromJson(string("jueves 23 de febrero de 2017 09:00"))).isEqualTo(date);
+    } finally {
+      Locale.setDefault(Locale.Category.FORMAT, locale);
+      TimeZone.setDefault(zone);
+    }
+  }
+
+  @Test
+  public void should_share_compiled_patterns()
+  {
+    assertThat(DatePattern.of("yyyy-MM-dd")).isSameAs(DatePattern.of("yyyy-MM-dd"));
+  }
+
+  @Test
+  public void should_fail_on_invalid_patterns_when_used()
+  {
+    // given
+    final DateJsonSerializer serializer = new DateJsonSerializer("yyyy-MM-dd ii");
+
+    // then
+    assertThatThrownBy(() -> serializer.toJson(new Date())).isInstanceOf(IllegalArgumentException.class);
+  }
+
+  @Test
+  public void should_reject_texts_that_are_not_dates()
+  {
+    // given
+    final DateJsonSerializer serializer = new DateJsonSerializer("yyyy-MM-dd");
+
+    // then
+    assertThatThrownBy(() -> serializer.fromJson(string("mañana")))
+        .isInstanceOf(IllegalArgumentException.class)
+        .hasMessage("Could not interpret 'mañana' as date.");
+  }
+
+  @Test
+  public void should_serialize_epoch_millis_as_numbers() throws IOException
+  {
+    // given
+    final DateJsonSerializer serializer = new DateJsonSerializer(DateJsonSerializer.EPOCH_MILLIS);
+    final Date date = new Date(1487851200000L);
+    final StringBuilder out = new StringBuilder();
+
+    // when
+    final JsonNode json = serializer.toJson(date);
+    serializer.writeJson(date, JsonWriter.to(out));
+
+    // then
+    assertThat(json.isNumberValue()).isTrue();
+    assertThat(json.getText()).isEqualTo("1487851200000");
+    assertThat(out.toString()).isEqualTo("1487851200000");
+    assertThat(serializer.fromJson(json)).isEqualTo(date);
+    assertThat(serializer.fromJson(object(field(string("at"), number(1487851200000L))), "at")).isEqualTo(date);
+  }
+
+  @Test
+  public void should_keep_its_pattern_when_deserialized() throws Exception
+  {
+    // given
+    final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+      out.writeObject(new DateJsonSerializer("yyyy-MM-dd"));
+    }
+
+    // when
+    final DateJsonSerializer serializer;
+    try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+      serializer = (DateJsonSerializer) in.readObject();
+    }
+
+    // then
+    final SimpleDateFormat reference = new SimpleDateFormat("yyyy-MM-dd");
+    final Date date = new Date(1487851200000L);
+    assertThat(serializer.toJson(date).getText()).isEqualTo(reference.format(date));
+  }
+}
@@ -0,0 +1,119 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2018 ActiveEngine.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ae.db;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import argo.saj.InvalidSyntaxException;
+import com.google.appengine.api.datastore.Entity;
+import com.google.appengine.tools.development.testing.LocalServiceTestHelper;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+public class EntityJsonReaderTest {
+
+  private final LocalServiceTestHelper helper = new LocalServiceTestHelper();
+
+  private final Country country = new Country();
+
+  @BeforeMethod
+  public void setUp()
+  {
+    helper.setUp();
+  }
+
+  @AfterMethod
+  public void tearDown()
+  {
+    helper.tearDown();
+  }
+
+  @Test
+  public void should_read_an_entity_skipping_unknown_members() throws IOException, InvalidSyntaxException
+  {
+    //given:
+    final String json = "{\"name\":\"Argentina\",\"extra\":{\"a\":[1,{\"b\":null}]},\"code\":\"ar\"}";
+    //when:
+    final Entity data = country.fromJson(new StringReader(json));
+    //then:
+    assertThat(data.getKey()).isEqualTo(country.makeKey("ar"));
+    assertThat(country.name.read(data)).isEqualTo("Argentina");
+    assertThat(data.isUnindexedProperty("name")).isTrue();
+    assertThat(data.getProperties()).hasSize(1);
+  }
+
+  @Test
+  public void should_read_null_documents() throws IOException, InvalidSyntaxException
+  {
+    assertThat(country.fromJson(new StringReader("null"))).isNull();
+  }
+
+  @Test
+  public void should_read_each_element_of_an_array() throws IOException, InvalidSyntaxException
+  {
+    //given:
+    final String json = "[{\"code\":\"ar\",\"name\":\"Argentina\"},{\"code\":\"uy\",\"name\":null}]";
+    final List<Entity> read = new ArrayList<>();
+    //when:
+    final int count = country.fromJson(new StringReader(json), read::add);
+    //then:
+    assertThat(count).isEqualTo(2);
+    assertThat(read).extracting(Entity::getKey).containsExactly(country.makeKey("ar"), country.makeKey("uy"));
+    assertThat(country.name.read(read.get(0))).isEqualTo("Argentina");
+    assertThat(country.name.read(read.get(1))).isNull();
+  }
+
+  @Test
+  public void should_only_update_the_properties_present() throws IOException, InvalidSyntaxException
+  {
+    //given:
+    final Entity data = country.make("ar");
+    country.name.write(data, "Argentina");
+    //when:
+    country.updatePropertiesWithJsonContents(data, new StringReader("{}"));
+    //then:
+    assertThat(country.name.read(data)).isEqualTo("Argentina");
+    //when:
+    country.updatePropertiesWithJsonContents(data, new StringReader("{\"name\":\"República Argentina\"}"));
+    //then:
+    assertThat(country.name.read(data)).isEqualTo("República Argentina");
+  }
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void should_reject_entities_without_key() throws IOException, InvalidSyntaxException
+  {
+    country.fromJson(new StringReader("{\"name\":\"Argentina\"}"));
+  }
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void should_reject_elements_that_are_not_objects() throws IOException, InvalidSyntaxException
+  {
+    country.fromJson(new StringReader("[{\"code\":\"ar\"},1]"), data -> { });
+  }
+}
@@ -0,0 +1,268 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2018 ActiveEngine.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ae.db;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import com.google.appengine.api.datastore.Entity;
+import com.google.appengine.api.datastore.Key;
+import com.google.appengine.api.datastore.KeyFactory;
+import com.google.appengine.tools.development.testing.LocalServiceTestHelper;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+public class GroupCommitTest {
+
+  private final LocalServiceTestHelper helper = new LocalServiceTestHelper();
+
+  private final List<List<Entity>> batches = Collections.synchronizedList(new ArrayList<>());
+
+  private final GroupCommit.Writer writer = data -> {
+    batches.add(new ArrayList<>(data));
+    final List<Key> keys = new ArrayList<>(data.size());
+    for (final Entity entity : data) {
+      keys.add(entity.getKey());
+    }
+    return CompletableFuture.completedFuture(keys);
+  };
+
+  @BeforeMethod
+  public void setUp()
+  {
+    helper.setUp();
+    batches.clear();
+  }
+
+  @AfterMethod
+  public void tearDown()
+  {
+    helper.tearDown();
+  }
+
+  @Test
+  public void concurrent_saves_should_be_written_by_one_batch() throws Exception
+  {
+    // given
+    final GroupCommit commit = new GroupCommit(5000L, 8, 100);
+    final ExecutorService threads = Executors.newFixedThreadPool(8);
+    try {
+      // when
+      final List<Future<Key>> results = new ArrayList<>();
+      for (long id = 1; id <= 8; id++) {
+        final Entity data = new Entity(KeyFactory.createKey("Kind", id));
+        results.add(threads.submit(() -> commit.save(data, writer).get()));
+      }
+
+      // then
+      for (int i = 0; i < results.size(); i++) {
+        assertThat(results.get(i).get(5L, TimeUnit.SECONDS)).isEqualTo(KeyFactory.createKey("Kind", i + 1L));
+      }
+      assertThat(batches).hasSize(1);
+      assertThat(batches.get(0)).hasSize(8);
+      assertThat(commit.pendingCount()).isZero();
+    } finally {
+      threads.shutdownNow();
+    }
+  }
+
+  @Test
+  public void a_lone_save_should_be_written_once_the_window_elapses() throws Exception
+  {
+    // given
+    final GroupCommit commit = new GroupCommit(20L, 100, 100);
+    final Entity data = new Entity(KeyFactory.createKey("Kind", 1L));
+
+    // when
+    final Key key = commit.save(data, writer).get(5L, TimeUnit.SECONDS);
+
+    // then
+    assertThat(key).isEqualTo(data.getKey());
+    assertThat(batches).hasSize(1);
+  }
+
+  @Test
+  public void saves_to_the_same_entity_group_should_be_written_by_different_batches() throws Exception
+  {
+    // given
+    final GroupCommit commit = new GroupCommit(200L, 100, 100);
+    final Key root = KeyFactory.createKey("Kind", 1L);
+    final Entity first = new Entity(root);
+    final Entity second = new Entity(KeyFactory.createKey(root, "Child", 1L));
+    final ExecutorService threads = Executors.newFixedThreadPool(2);
+    try {
+      // when
+      final Future<Key> firstSaved = threads.submit(() -> commit.save(first, writer).get());
+      while (commit.pendingCount() == 0) {
+        Thread.sleep(1L);
+      }
+      final Future<Key> secondSaved = threads.submit(() -> commit.save(second, writer).get());
+
+      // then
+      assertThat(firstSaved.get(5L, TimeUnit.SECONDS)).isEqualTo(first.getKey());
+      assertThat(secondSaved.get(5L, TimeUnit.SECONDS)).isEqualTo(second.getKey());
+      assertThat(batches).hasSize(2);
+      assertThat(batches.get(0)).containsExactly(first);
+      assertThat(batches.get(1)).containsExactly(second);
+    } finally {
+      threads.shutdownNow();
+    }
+  }
+
+  @Test
+  public void saves_should_wait_while_the_queue_is_full() throws Exception
+  {
+    // given
+    final GroupCommit commit = new GroupCommit(5000L, 1, 1);
+    final CountDownLatch release = new CountDownLatch(1);
+    final GroupCommit.Writer slowWriter = data -> {
+      try {
+        release.await();
+      } catch (final InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      return writer.write(data);
+    };
+    final Entity first = new Entity(KeyFactory.createKey("Kind", 1L));
+    final Entity second = new Entity(KeyFactory.createKey("Kind", 2L));
+    final ExecutorService threads = Executors.newFixedThreadPool(2);
+    try {
+      // when
+      final Future<Key> firstSaved = threads.submit(() -> commit.save(first, slowWriter).get());
+      while (commit.pendingCount() == 0) {
+        Thread.sleep(1L);
+      }
+      final Future<Key> secondSaved = threads.submit(() -> commit.save(second, slowWriter).get());
+      Thread.sleep(100L); // lets the second save reach the full queue
+
+      // then
+      assertThat(secondSaved.isDone()).isFalse();
+      assertThat(commit.pendingCount()).isEqualTo(1);
+      release.countDown();
+      assertThat(firstSaved.get(5L, TimeUnit.SECONDS)).isEqualTo(first.getKey());
+      assertThat(secondSaved.get(5L, TimeUnit.SECONDS)).isEqualTo(second.getKey());
+      assertThat(batches).hasSize(2);
+    } finally {
+      threads.shutdownNow();
+    }
+  }
+
+  @Test
+  public void saves_should_fail_when_they_cannot_join_a_batch_in_time() throws Exception
+  {
+    // given
+    final GroupCommit commit = new GroupCommit(5000L, 1, 1, 50L);
+    final CountDownLatch release = new CountDownLatch(1);
+    final GroupCommit.Writer slowWriter = data -> {
+      try {
+        release.await();
+      } catch (final InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      return writer.write(data);
+    };
+    final Entity first = new Entity(KeyFactory.createKey("Kind", 1L));
+    final Entity second = new Entity(KeyFactory.createKey("Kind", 2L));
+    final ExecutorService threads = Executors.newFixedThreadPool(1);
+    try {
+      final Future<Key> firstSaved = threads.submit(() -> commit.save(first, slowWriter).get());
+      while (commit.pendingCount() == 0) {
+        Thread.sleep(1L);
+      }
+
+      // when/then
+      assertThatThrownBy(() -> commit.save(second, writer)).isInstanceOf(PersistenceException.class);
+      assertThat(commit.pendingCount()).isEqualTo(1);
+      release.countDown();
+      assertThat(firstSaved.get(5L, TimeUnit.SECONDS)).isEqualTo(first.getKey());
+    } finally {
+      threads.shutdownNow();
+    }
+  }
+
+  @Test
+  public void a_failed_batch_should_fail_all_its_saves() throws Exception
+  {
+    // given
+    final GroupCommit commit = new GroupCommit(5000L, 2, 100);
+    final IllegalStateException failure = new IllegalStateException("datastore unavailable");
+    final GroupCommit.Writer failingWriter = data -> {
+      final CompletableFuture<List<Key>> keys = new CompletableFuture<>();
+      keys.completeExceptionally(failure);
+      return keys;
+    };
+    final Entity first = new Entity(KeyFactory.createKey("Kind", 1L));
+    final Entity second = new Entity(KeyFactory.createKey("Kind", 2L));
+    final ExecutorService threads = Executors.newFixedThreadPool(2);
+    try {
+      // when
+      final Future<Key> firstSaved = threads.submit(() -> commit.save(first, failingWriter).get());
+      final Future<Key> secondSaved = threads.submit(() -> commit.save(second, failingWriter).get());
+
+      // then
+      assertThatThrownBy(() -> firstSaved.get(5L, TimeUnit.SECONDS))
+          .isInstanceOf(ExecutionException.class)
+          .hasRootCauseInstanceOf(IllegalStateException.class);
+      assertThatThrownBy(() -> secondSaved.get(5L, TimeUnit.SECONDS))
+          .isInstanceOf(ExecutionException.class)
+          .hasRootCauseInstanceOf(IllegalStateException.class);
+      assertThat(commit.pendingCount()).isZero();
+    } finally {
+      threads.shutdownNow();
+    }
+  }
+
+  @Test
+  public void entity_group_should_be_the_root_key()
+  {
+    // given
+    final Key root = KeyFactory.createKey("Kind", 1L);
+
+    // when/then
+    assertThat(GroupCommit.entityGroupOf(root)).isEqualTo(root);
+    assertThat(GroupCommit.entityGroupOf(KeyFactory.createKey(root, "Child", 1L))).isEqualTo(root);
+    assertThat(GroupCommit.entityGroupOf(new Entity("Child", root).getKey())).isEqualTo(root);
+    assertThat(GroupCommit.entityGroupOf(new Entity("Kind").getKey())).isNull();
+  }
+
+  @Test
+  public void invalid_limits_should_be_rejected()
+  {
+    assertThatThrownBy(() -> new GroupCommit(0L, 1, 1)).isInstanceOf(IllegalArgumentException.class);
+    assertThatThrownBy(() -> new GroupCommit(1L, 0, 1)).isInstanceOf(IllegalArgumentException.class);
+    assertThatThrownBy(() -> new GroupCommit(1L, 2, 1)).isInstanceOf(IllegalArgumentException.class);
+    assertThatThrownBy(() -> new GroupCommit(1L, 1, 1, 0L)).isInstanceOf(IllegalArgumentException.class);
+  }
+}
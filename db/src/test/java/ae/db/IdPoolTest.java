@@ -0,0 +1,277 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2018 ActiveEngine.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ae.db;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import com.google.appengine.api.NamespaceManager;
+import com.google.appengine.api.datastore.DatastoreServiceFactory;
+import com.google.appengine.api.datastore.Key;
+import com.google.appengine.api.datastore.KeyFactory;
+import com.google.appengine.api.datastore.KeyRange;
+import com.google.appengine.tools.development.testing.LocalDatastoreServiceTestConfig;
+import com.google.appengine.tools.development.testing.LocalServiceTestHelper;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+public class IdPoolTest {
+
+  private final LocalServiceTestHelper helper = new LocalServiceTestHelper(new LocalDatastoreServiceTestConfig());
+
+  private final List<Key> allocatedFor = new ArrayList<>();
+
+  @BeforeMethod
+  public void setUp()
+  {
+    helper.setUp();
+    allocatedFor.clear();
+  }
+
+  @AfterMethod
+  public void tearDown()
+  {
+    helper.tearDown();
+  }
+
+  /**
+   * @return an allocator reserving consecutive blocks, starting at 1.
+   */
+  private IdPool.Allocator consecutiveBlocks()
+  {
+    final long[] next = {1L};
+    return (parent, size) -> {
+      allocatedFor.add(parent);
+      final KeyRange range = new KeyRange(parent, "Kind", next[0], next[0] + size - 1);
+      next[0] += size;
+      return CompletableFuture.completedFuture(range);
+    };
+  }
+
+  @Test
+  public void ids_should_be_taken_in_order_from_the_reserved_blocks()
+  {
+    // given
+    final IdPool pool = new IdPool(8, consecutiveBlocks());
+
+    // when
+    final List<Long> ids = new ArrayList<>();
+    for (int i = 0; i < 20; i++) {
+      ids.add(pool.next(null));
+    }
+
+    // then
+    for (int i = 0; i < 20; i++) {
+      assertThat(ids.get(i)).isEqualTo(i + 1L);
+    }
+    assertThat(allocatedFor).hasSize(3);
+  }
+
+  @Test
+  public void next_block_should_be_requested_before_the_current_one_runs_out()
+  {
+    // given
+    final List<CompletableFuture<KeyRange>> requested = new ArrayList<>();
+    final IdPool pool = new IdPool(8, (parent, size) -> {
+      final CompletableFuture<KeyRange> range = new CompletableFuture<>();
+      if (requested.isEmpty()) {
+        range.complete(new KeyRange(parent, "Kind", 1L, 8L));
+      }
+      requested.add(range);
+      return range;
+    });
+
+    // when
+    for (int i = 1; i <= 5; i++) {
+      pool.next(null);
+    }
+    final int requestedBeforeRefill = requested.size();
+    pool.next(null);
+
+    // then
+    assertThat(requestedBeforeRefill).isEqualTo(1);
+    assertThat(requested).hasSize(2);
+    assertThat(pool.next(null)).isEqualTo(7L); // the pending block isn't waited for yet
+    assertThat(pool.next(null)).isEqualTo(8L);
+    requested.get(1).complete(new KeyRange(null, "Kind", 9L, 16L));
+    assertThat(pool.next(null)).isEqualTo(9L);
+    assertThat(requested).hasSize(2);
+  }
+
+  @Test
+  public void children_of_each_parent_should_use_their_own_blocks()
+  {
+    // given
+    final IdPool pool = new IdPool(4, consecutiveBlocks());
+    final Key parent = KeyFactory.createKey("Parent", 1L);
+    final Key otherParent = KeyFactory.createKey("Parent", 2L);
+
+    // when
+    final long root = pool.next(null);
+    final long child = pool.next(parent);
+    final long otherChild = pool.next(otherParent);
+
+    // then
+    assertThat(root).isEqualTo(1L);
+    assertThat(child).isEqualTo(5L);
+    assertThat(otherChild).isEqualTo(9L);
+    assertThat(allocatedFor).containsExactly(null, parent, otherParent);
+  }
+
+  @Test
+  public void ids_of_the_least_recently_used_parent_should_be_discarded_once_full()
+  {
+    // given
+    final IdPool pool = new IdPool(8, consecutiveBlocks());
+    final Key first = KeyFactory.createKey("Parent", 1L);
+    final Key second = KeyFactory.createKey("Parent", 2L);
+    for (long id = 1; id <= IdPool.MAX_PARENTS; id++) {
+      pool.next(KeyFactory.createKey("Parent", id));
+    }
+    pool.next(first);
+    allocatedFor.clear();
+
+    // when
+    pool.next(KeyFactory.createKey("Parent", IdPool.MAX_PARENTS + 1L));
+    pool.next(first);
+    pool.next(second);
+
+    // then
+    assertThat(allocatedFor).containsExactly(KeyFactory.createKey("Parent", IdPool.MAX_PARENTS + 1L), second);
+  }
+
+  @Test
+  public void roots_of_each_namespace_should_use_their_own_blocks()
+  {
+    // given
+    final List<String> allocatedAt = new ArrayList<>();
+    final IdPool.Allocator blocks = consecutiveBlocks();
+    final IdPool pool = new IdPool(4, (parent, size) -> {
+      allocatedAt.add(NamespaceManager.get());
+      return blocks.allocate(parent, size);
+    });
+    final String namespace = NamespaceManager.get();
+    try {
+      // when
+      NamespaceManager.set("tenant1");
+      final long first = pool.next(null);
+      final long second = pool.next(null);
+      NamespaceManager.set("tenant2");
+      final long other = pool.next(null);
+      NamespaceManager.set("tenant1");
+      final long third = pool.next(null);
+
+      // then
+      assertThat(first).isEqualTo(1L);
+      assertThat(second).isEqualTo(2L);
+      assertThat(other).isEqualTo(5L);
+      assertThat(third).isEqualTo(3L);
+      assertThat(allocatedAt).containsExactly("tenant1", "tenant2", "tenant1"); // the last one refills tenant1
+    } finally {
+      NamespaceManager.set(namespace);
+    }
+  }
+
+  @Test
+  public void concurrent_takers_should_never_get_the_same_id() throws Exception
+  {
+    // given
+    final List<KeyRange> blocks = new ArrayList<>();
+    for (long first = 1; first < 100_000; first += 100) {
+      blocks.add(new KeyRange(null, "Kind", first, first + 99));
+    }
+    final AtomicInteger allocations = new AtomicInteger();
+    final IdPool pool = new IdPool(100, (parent, size) ->
+        CompletableFuture.completedFuture(blocks.get(allocations.getAndIncrement())));
+    final ExecutorService threads = Executors.newFixedThreadPool(8);
+    try {
+      // when
+      final List<Future<List<Long>>> taken = new ArrayList<>();
+      for (int i = 0; i < 8; i++) {
+        taken.add(threads.submit(() -> {
+          final List<Long> ids = new ArrayList<>();
+          for (int j = 0; j < 1000; j++) {
+            ids.add(pool.next(null));
+          }
+          return ids;
+        }));
+      }
+
+      // then
+      final Set<Long> ids = new HashSet<>();
+      for (final Future<List<Long>> result : taken) {
+        ids.addAll(result.get(5L, TimeUnit.SECONDS));
+      }
+      assertThat(ids).hasSize(8000);
+    } finally {
+      threads.shutdownNow();
+    }
+  }
+
+  @Test
+  public void failed_reservation_should_be_reported()
+  {
+    // given
+    final IllegalStateException failure = new IllegalStateException("datastore unavailable");
+    final IdPool pool = new IdPool(8, (parent, size) -> {
+      final CompletableFuture<KeyRange> range = new CompletableFuture<>();
+      range.completeExceptionally(failure);
+      return range;
+    });
+
+    // when/then
+    assertThatThrownBy(() -> pool.next(null))
+        .isInstanceOf(PersistenceException.class)
+        .hasCause(failure);
+  }
+
+  @Test
+  public void ids_reserved_by_the_datastore_should_not_be_reused()
+  {
+    // given
+    final IdPool pool = new IdPool(10, (parent, size) ->
+        DatastoreServiceFactory.getAsyncDatastoreService().allocateIds(parent, "Kind", size));
+
+    // when
+    final Set<Long> ids = new HashSet<>();
+    for (int i = 0; i < 25; i++) {
+      ids.add(pool.next(null));
+    }
+    final KeyRange next = DatastoreServiceFactory.getDatastoreService().allocateIds("Kind", 1L);
+
+    // then
+    assertThat(ids).hasSize(25).doesNotContain(next.getStart().getId());
+  }
+}
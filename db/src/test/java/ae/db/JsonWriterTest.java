@@ -0,0 +1,133 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2018 ActiveEngine.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ae.db;
+
+import static java.util.Arrays.asList;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import argo.format.CompactJsonFormatter;
+import com.google.appengine.api.datastore.Entity;
+import com.google.appengine.tools.development.testing.LocalServiceTestHelper;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+public class JsonWriterTest {
+
+  private final LocalServiceTestHelper helper = new LocalServiceTestHelper();
+
+  private final Country country = new Country();
+
+  private final CompactJsonFormatter formatter = new CompactJsonFormatter();
+
+  @BeforeMethod
+  public void setUp()
+  {
+    helper.setUp();
+  }
+
+  @AfterMethod
+  public void tearDown()
+  {
+    helper.tearDown();
+  }
+
+  @Test
+  public void should_write_the_same_json_as_the_formatted_tree() throws IOException
+  {
+    //given:
+    final Entity data = new Entity("Country", "ar");
+    country.name.write(data, "Argentina \"AR\"\\\n\u0001 ñandú 😀");
+    //when:
+    final StringBuilder json = new StringBuilder();
+    country.writeJson(data, json);
+    //then:
+    assertThat(json.toString()).isEqualTo(formatter.format(country.toJson(data)));
+  }
+
+  @Test
+  public void should_write_utf8_to_output_streams() throws IOException
+  {
+    //given:
+    final Entity data = new Entity("Country", "ar");
+    country.name.write(data, "Argentina ñandú 😀");
+    //when:
+    final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    country.writeJson(data, bytes);
+    //then:
+    assertThat(new String(bytes.toByteArray(), StandardCharsets.UTF_8))
+        .isEqualTo(formatter.format(country.toJson(data)));
+  }
+
+  @Test
+  public void should_replace_unpaired_surrogates_as_string_encoding_does() throws IOException
+  {
+    //given:
+    final String text = "lone high \uD83D, lone low \uDE00, reversed \uDE00\uD83D, paired \uD83D\uDE00, last \uD83D";
+    //when:
+    final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    final JsonWriter out = JsonWriter.to(bytes);
+    out.beginArray().string(text).endArray();
+    out.flush();
+    //then:
+    final StringBuilder json = new StringBuilder();
+    JsonWriter.to(json).beginArray().string(text).endArray();
+    assertThat(bytes.toByteArray()).isEqualTo(json.toString().getBytes(StandardCharsets.UTF_8));
+  }
+
+  @Test
+  public void should_write_null_entities_and_null_values() throws IOException
+  {
+    //given:
+    final Entity data = new Entity("Country", "uy");
+    //when:
+    final StringBuilder json = new StringBuilder();
+    final JsonWriter out = JsonWriter.to(json);
+    out.beginArray();
+    country.writeJson(data, out);
+    country.writeJson(null, out);
+    out.endArray();
+    //then:
+    assertThat(json.toString()).isEqualTo("[{\"code\":\"uy\",\"name\":null},null]");
+  }
+
+  @Test
+  public void should_write_arrays_with_separators() throws IOException
+  {
+    //given:
+    final StringBuilder json = new StringBuilder();
+    final JsonWriter out = JsonWriter.to(json);
+    //when:
+    out.beginObject().name("values");
+    StringJsonSerializer.ARRAY.writeJson(asList("a", null, "b"), out);
+    out.name("empty");
+    StringJsonSerializer.ARRAY.writeJson(asList(), out);
+    out.endObject();
+    //then:
+    assertThat(json.toString()).isEqualTo("{\"values\":[\"a\",null,\"b\"],\"empty\":[]}");
+  }
+}
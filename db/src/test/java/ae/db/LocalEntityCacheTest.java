@@ -0,0 +1,235 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2018 ActiveEngine.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ae.db;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.google.appengine.api.datastore.Entity;
+import com.google.appengine.api.datastore.Key;
+import com.google.appengine.api.datastore.KeyFactory;
+import com.google.appengine.api.memcache.MemcacheService;
+import com.google.appengine.api.memcache.MemcacheServiceFactory;
+import com.google.appengine.tools.development.testing.LocalMemcacheServiceTestConfig;
+import com.google.appengine.tools.development.testing.LocalServiceTestHelper;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+public class LocalEntityCacheTest {
+
+  private final LocalServiceTestHelper helper = new LocalServiceTestHelper(new LocalMemcacheServiceTestConfig());
+
+  @BeforeMethod
+  public void setUp()
+  {
+    helper.setUp();
+  }
+
+  @AfterMethod
+  public void tearDown()
+  {
+    helper.tearDown();
+  }
+
+  private static Entity entity(final long id)
+  {
+    final Entity data = new Entity(key(id));
+    data.setProperty("name", "entity " + id);
+    return data;
+  }
+
+  private static Key key(final long id)
+  {
+    return KeyFactory.createKey("Kind", id);
+  }
+
+  @Test
+  public void should_return_copies_of_cached_entities()
+  {
+    // given
+    final LocalEntityCache cache = new LocalEntityCache("Kind", 10, 60000L);
+    final Entity data = entity(1L);
+    cache.put(data.getKey(), data, 0L);
+
+    // when
+    data.setProperty("name", "changed after put");
+    final Entity cached = cache.get(key(1L), 0L);
+    cached.setProperty("name", "changed after get");
+
+    // then
+    assertThat(cache.get(key(1L), 0L).getProperty("name")).isEqualTo("entity 1");
+  }
+
+  @Test
+  public void should_miss_entities_cached_on_another_generation()
+  {
+    // given
+    final LocalEntityCache cache = new LocalEntityCache("Kind", 10, 60000L);
+    cache.put(key(1L), entity(1L), 0L);
+
+    // expect
+    assertThat(cache.get(key(1L), 1L)).isNull();
+    assertThat(cache.size()).isZero();
+  }
+
+  @Test
+  public void should_miss_expired_entities() throws InterruptedException
+  {
+    // given
+    final LocalEntityCache cache = new LocalEntityCache("Kind", 10, 1L);
+    cache.put(key(1L), entity(1L), 0L);
+
+    // when
+    Thread.sleep(5L);
+
+    // then
+    assertThat(cache.contains(key(1L), 0L)).isFalse();
+  }
+
+  @Test
+  public void should_never_keep_more_entities_than_its_capacity()
+  {
+    // given
+    final LocalEntityCache cache = new LocalEntityCache("Kind", 10, 60000L);
+
+    // when
+    for (long id = 1; id <= 100; id++) {
+      cache.put(key(id), entity(id), 0L);
+    }
+
+    // then
+    assertThat(cache.size()).isEqualTo(10);
+    assertThat(cache.stats().evictions).isEqualTo(90L);
+  }
+
+  @Test
+  public void should_keep_frequently_used_entities_over_new_ones()
+  {
+    // given, a full cache where entity 1 is frequently used
+    final LocalEntityCache cache = new LocalEntityCache("Kind", 10, 60000L);
+    for (long id = 1; id <= 10; id++) {
+      cache.put(key(id), entity(id), 0L);
+    }
+    for (int i = 0; i < 5; i++) {
+      cache.get(key(1L), 0L);
+    }
+
+    // when, a lot of entities used only once are cached
+    for (long id = 11; id <= 100; id++) {
+      cache.put(key(id), entity(id), 0L);
+    }
+
+    // then
+    assertThat(cache.contains(key(1L), 0L)).isTrue();
+  }
+
+  @Test
+  public void should_count_hits_and_misses()
+  {
+    // given
+    final LocalEntityCache cache = new LocalEntityCache("Kind", 10, 60000L);
+    cache.put(key(1L), entity(1L), 0L);
+
+    // when
+    cache.get(key(1L), 0L);
+    cache.get(key(2L), 0L);
+    cache.get(key(3L), 0L);
+
+    // then
+    final LocalEntityCache.Stats stats = cache.stats();
+    assertThat(stats.hits).isEqualTo(1L);
+    assertThat(stats.misses).isEqualTo(2L);
+  }
+
+  @Test
+  public void writes_at_one_instance_should_make_stale_the_entities_cached_at_other_instances()
+  {
+    // given, two instances caching the same entity
+    final MemcacheService memcache = MemcacheServiceFactory.getMemcacheService();
+    final LocalEntityCache instance1 = new LocalEntityCache("Kind", 10, 60000L, 0L);
+    final LocalEntityCache instance2 = new LocalEntityCache("Kind", 10, 60000L, 0L);
+    instance1.put(key(1L), entity(1L), instance1.generation(memcache, key(1L)));
+    instance2.put(key(1L), entity(1L), instance2.generation(memcache, key(1L)));
+
+    // when, the entity is written at the first instance
+    instance1.invalidate(memcache, key(1L));
+
+    // then
+    assertThat(instance1.get(key(1L), instance1.generation(memcache, key(1L)))).isNull();
+    assertThat(instance2.get(key(1L), instance2.generation(memcache, key(1L)))).isNull();
+  }
+
+  @Test
+  public void evicted_generation_stamps_should_make_stale_every_cached_entity()
+  {
+    // given, two instances caching the same entity after a write of its kind
+    final MemcacheService memcache = MemcacheServiceFactory.getMemcacheService();
+    final LocalEntityCache instance1 = new LocalEntityCache("Kind", 10, 60000L, 0L);
+    final LocalEntityCache instance2 = new LocalEntityCache("Kind", 10, 60000L, 0L);
+    instance1.invalidate(memcache, key(2L));
+    instance1.put(key(1L), entity(1L), instance1.generation(memcache, key(1L)));
+    instance2.put(key(1L), entity(1L), instance2.generation(memcache, key(1L)));
+
+    // when, memcache evicts the stamp and the kind is written again at the first instance
+    memcache.delete(instance1.generationStampKey(""));
+    final long evictedAt = System.currentTimeMillis();
+    instance1.invalidate(memcache, key(2L));
+
+    // then
+    assertThat((Long) memcache.get(instance1.generationStampKey(""))).isGreaterThan(evictedAt);
+    assertThat(instance2.get(key(1L), instance2.generation(memcache, key(1L)))).isNull();
+
+    // and when, the stamp is evicted again, but the kind is not written
+    instance2.put(key(1L), entity(1L), instance2.generation(memcache, key(1L)));
+    memcache.delete(instance2.generationStampKey(""));
+
+    // then
+    assertThat(instance2.get(key(1L), instance2.generation(memcache, key(1L)))).isNull();
+  }
+
+  @Test
+  public void generations_read_asynchronously_should_match_the_ones_read_synchronously() throws Exception
+  {
+    // given, a kind written once
+    final MemcacheService memcache = MemcacheServiceFactory.getMemcacheService();
+    final LocalEntityCache writer = new LocalEntityCache("Kind", 10, 60000L, 0L);
+    final LocalEntityCache reader = new LocalEntityCache("Kind", 10, 60000L, 0L);
+    writer.invalidate(memcache, key(2L));
+
+    // when
+    final long generation = reader.generationAsync(MemcacheServiceFactory.getAsyncMemcacheService(), key(1L)).get();
+
+    // then
+    assertThat(generation).isEqualTo(reader.generation(memcache, key(1L)));
+
+    // and when, the stamp is evicted
+    reader.put(key(1L), entity(1L), generation);
+    memcache.delete(reader.generationStampKey(""));
+    final long reset = reader.generationAsync(MemcacheServiceFactory.getAsyncMemcacheService(), key(1L)).get();
+
+    // then, the stamp is set again and the cached entries are dropped
+    assertThat(memcache.get(reader.generationStampKey(""))).isEqualTo(reset);
+    assertThat(reader.size()).isZero();
+  }
+}
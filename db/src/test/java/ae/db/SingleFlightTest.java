@@ -0,0 +1,166 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2018 ActiveEngine.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ae.db;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import com.google.appengine.api.datastore.Entity;
+import com.google.appengine.api.datastore.EntityNotFoundException;
+import com.google.appengine.api.datastore.Key;
+import com.google.appengine.api.datastore.KeyFactory;
+import com.google.appengine.api.memcache.MemcacheService;
+import com.google.appengine.api.memcache.MemcacheServiceFactory;
+import com.google.appengine.tools.development.testing.LocalMemcacheServiceTestConfig;
+import com.google.appengine.tools.development.testing.LocalServiceTestHelper;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+public class SingleFlightTest {
+
+  private final LocalServiceTestHelper helper = new LocalServiceTestHelper(new LocalMemcacheServiceTestConfig());
+
+  @BeforeMethod
+  public void setUp()
+  {
+    helper.setUp();
+  }
+
+  @AfterMethod
+  public void tearDown()
+  {
+    helper.tearDown();
+  }
+
+  @Test
+  public void concurrent_misses_should_wait_for_a_single_load() throws Exception
+  {
+    // given
+    final SingleFlight flight = new SingleFlight(0L);
+    final MemcacheService memcache = MemcacheServiceFactory.getMemcacheService();
+    final Key key = KeyFactory.createKey("Kind", 1L);
+    final Entity data = new Entity(key);
+    final AtomicInteger loads = new AtomicInteger();
+    final CountDownLatch loading = new CountDownLatch(1);
+    final CountDownLatch release = new CountDownLatch(1);
+    final SingleFlight.Loader loader = k -> {
+      loads.incrementAndGet();
+      loading.countDown();
+      try {
+        release.await();
+      } catch (final InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      return data;
+    };
+    final ExecutorService threads = Executors.newFixedThreadPool(8);
+    try {
+      // when
+      final List<Future<Entity>> results = new ArrayList<>();
+      results.add(threads.submit(() -> flight.load(memcache, key, loader)));
+      loading.await();
+      final CountDownLatch waiting = new CountDownLatch(7);
+      for (int i = 1; i < 8; i++) {
+        results.add(threads.submit(() -> {
+          waiting.countDown();
+          return flight.load(memcache, key, loader);
+        }));
+      }
+      waiting.await();
+      Thread.sleep(100L); // lets the waiting threads join the in-flight load
+      release.countDown();
+
+      // then
+      for (final Future<Entity> result : results) {
+        assertThat(result.get(5L, TimeUnit.SECONDS)).isSameAs(data);
+      }
+      assertThat(loads.get()).isEqualTo(1);
+      assertThat(flight.loadingCount()).isZero();
+    } finally {
+      threads.shutdownNow();
+    }
+  }
+
+  @Test
+  public void without_the_lease_should_wait_for_the_entity_loaded_by_other_instance() throws Exception
+  {
+    // given
+    final SingleFlight flight = new SingleFlight(1000L);
+    final MemcacheService memcache = MemcacheServiceFactory.getMemcacheService();
+    final Key key = KeyFactory.createKey("Kind", 1L);
+    final Entity data = new Entity(key);
+    memcache.put(SingleFlight.leaseKey(key), Boolean.TRUE); // other instance is loading it
+    memcache.put(key, data); // and it already cached it
+
+    // when
+    final Entity loaded = flight.load(memcache, key, k -> {
+      throw new AssertionError("entity must not be loaded");
+    });
+
+    // then
+    assertThat(loaded).isEqualTo(data);
+  }
+
+  @Test
+  public void without_the_lease_should_report_entities_the_other_instance_did_not_find()
+  {
+    // given
+    final SingleFlight flight = new SingleFlight(1000L);
+    final MemcacheService memcache = MemcacheServiceFactory.getMemcacheService();
+    final Key key = KeyFactory.createKey("Kind", 1L);
+    memcache.put(SingleFlight.leaseKey(key), Boolean.TRUE);
+    memcache.put(key, ActiveEntity.Tombstone.INSTANCE);
+
+    // when, then
+    assertThatThrownBy(() -> flight.load(memcache, key, k -> {
+      throw new AssertionError("entity must not be loaded");
+    })).isInstanceOf(EntityNotFoundException.class);
+  }
+
+  @Test
+  public void expired_leases_should_let_the_entity_be_loaded() throws Exception
+  {
+    // given
+    final SingleFlight flight = new SingleFlight(50L);
+    final MemcacheService memcache = MemcacheServiceFactory.getMemcacheService();
+    final Key key = KeyFactory.createKey("Kind", 1L);
+    final Entity data = new Entity(key);
+    memcache.put(SingleFlight.leaseKey(key), Boolean.TRUE); // other instance never caches the entity
+
+    // when
+    final Entity loaded = flight.load(memcache, key, k -> data);
+
+    // then
+    assertThat(loaded).isSameAs(data);
+  }
+}
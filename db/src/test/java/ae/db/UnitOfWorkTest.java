@@ -0,0 +1,254 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2018 ActiveEngine.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ae.db;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import com.google.appengine.api.datastore.AsyncDatastoreService;
+import com.google.appengine.api.datastore.DatastoreServiceFactory;
+import com.google.appengine.api.datastore.Entity;
+import com.google.appengine.api.datastore.Key;
+import com.google.appengine.tools.development.testing.LocalDatastoreServiceTestConfig;
+import com.google.appengine.tools.development.testing.LocalMemcacheServiceTestConfig;
+import com.google.appengine.tools.development.testing.LocalServiceTestHelper;
+import com.google.common.collect.ImmutableList;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+public class UnitOfWorkTest {
+
+  private final LocalServiceTestHelper helper = new LocalServiceTestHelper(new LocalDatastoreServiceTestConfig(),
+                                                                           new LocalMemcacheServiceTestConfig());
+
+  private final List<String> datastoreCalls = new ArrayList<>();
+
+  private final Country country = new Country() {
+    private static final long serialVersionUID = 1L;
+
+    @Override
+    protected AsyncDatastoreService asyncDatastore()
+    {
+      final AsyncDatastoreService datastore = super.asyncDatastore();
+      return (AsyncDatastoreService) Proxy.newProxyInstance(
+          AsyncDatastoreService.class.getClassLoader(),
+          new Class<?>[]{AsyncDatastoreService.class},
+          (proxy, method, args) -> {
+            datastoreCalls.add(method.getName());
+            try {
+              return method.invoke(datastore, args);
+            } catch (final InvocationTargetException e) {
+              throw e.getCause();
+            }
+          });
+    }
+  };
+
+  @BeforeMethod
+  public void setUp()
+  {
+    helper.setUp();
+    datastoreCalls.clear();
+  }
+
+  @AfterMethod
+  public void tearDown()
+  {
+    final UnitOfWork work = UnitOfWork.current();
+    if (work != null) {
+      work.close();
+    }
+    helper.tearDown();
+  }
+
+  @Test
+  public void writes_should_be_batched_when_the_unit_of_work_is_closed()
+  {
+    // given
+    final Key ar = country.save(country.make("AR", "Argentina"));
+    datastoreCalls.clear();
+
+    // when
+    final Key uy, cl;
+    try (UnitOfWork work = UnitOfWork.begin()) {
+      uy = country.save(country.make("UY", "Uruguay"));
+      cl = country.save(country.make("CL", "Chile"));
+      country.save(country.make("PE", "Peru"));
+      country.deleteByName("AR");
+      country.deleteByName("PE");
+
+      // then, nothing is written yet
+      assertThat(datastoreCalls).isEmpty();
+      assertThat(work.isEmpty()).isFalse();
+    }
+
+    // then
+    assertThat(datastoreCalls).containsExactly("put", "delete");
+    assertThat(UnitOfWork.current()).isNull();
+    assertThat(country.find(ar)).isNull();
+    assertThat(country.name.read(country.find(uy))).isEqualTo("Uruguay");
+    assertThat(country.name.read(country.find(cl))).isEqualTo("Chile");
+    assertThat(country.findByName("PE")).isNull();
+  }
+
+  @Test
+  public void last_write_of_a_key_should_win()
+  {
+    // when
+    try (UnitOfWork work = UnitOfWork.begin()) {
+      country.save(country.make("AR", "Argentina"));
+      country.delete(country.makeKey("AR"));
+      country.save(country.make("AR", "República Argentina"));
+    }
+
+    // then
+    assertThat(country.name.read(country.findByName("AR"))).isEqualTo("República Argentina");
+  }
+
+  @Test
+  public void changes_done_after_saving_should_not_be_written()
+  {
+    // when
+    try (UnitOfWork work = UnitOfWork.begin()) {
+      final Entity ar = country.make("AR", "Argentina");
+      country.save(ar);
+      country.name.write(ar, "República Argentina");
+    }
+
+    // then
+    assertThat(country.name.read(country.findByName("AR"))).isEqualTo("Argentina");
+  }
+
+  @Test
+  public void entities_whose_keys_the_model_completes_should_be_enqueued()
+  {
+    // given
+    final Country completing = new Country() {
+      private static final long serialVersionUID = 1L;
+
+      @Override
+      protected Key completeKey(final Key incomplete)
+      {
+        return makeKey("AR");
+      }
+    };
+    final Entity ar = new Entity(completing.kind());
+    completing.name.write(ar, "Argentina");
+
+    // when
+    final Key key;
+    try (UnitOfWork work = UnitOfWork.begin()) {
+      key = completing.save(ar);
+
+      // then, nothing is written yet
+      assertThat(key).isEqualTo(completing.makeKey("AR"));
+      assertThat(work.isEmpty()).isFalse();
+    }
+
+    // then
+    assertThat(completing.name.read(completing.find(key))).isEqualTo("Argentina");
+  }
+
+  @Test
+  public void entities_read_by_key_should_include_enqueued_writes()
+  {
+    try (UnitOfWork work = UnitOfWork.begin()) {
+      // given
+      country.save(country.make("AR", "Argentina"));
+
+      // when
+      final Entity found = country.findByName("AR");
+
+      // then
+      assertThat(country.name.read(found)).isEqualTo("Argentina");
+      assertThat(work.isEmpty()).isTrue();
+    }
+  }
+
+  @Test
+  public void async_writes_should_complete_once_flushed() throws Exception
+  {
+    try (UnitOfWork work = UnitOfWork.begin()) {
+      // given
+      final Deferred<Key> saved = country.saveAsync(country.make("AR", "Argentina"));
+      final Deferred<Void> deleted = country.deleteAsync(country.makeKey("UY"));
+      assertThat(saved.isDone()).isFalse();
+
+      // when
+      work.flush();
+
+      // then
+      assertThat(saved.get()).isEqualTo(country.makeKey("AR"));
+      assertThat(deleted.get()).isNull();
+      assertThat(datastoreCalls).containsExactly("put", "delete");
+    }
+  }
+
+  @Test
+  public void waiting_for_an_enqueued_write_should_flush_it() throws Exception
+  {
+    try (UnitOfWork work = UnitOfWork.begin()) {
+      // when
+      final Key ar = country.saveAsync(country.make("AR", "Argentina")).get();
+
+      // then
+      assertThat(DatastoreServiceFactory.getDatastoreService().get(ar)).isNotNull();
+      assertThat(work.isEmpty()).isTrue();
+    }
+  }
+
+  @Test
+  public void nested_units_of_work_should_be_flushed_by_the_outermost_one()
+  {
+    try (UnitOfWork outer = UnitOfWork.begin()) {
+      // when
+      try (UnitOfWork inner = UnitOfWork.begin()) {
+        assertThat(inner).isSameAs(outer);
+        country.saveAll(ImmutableList.of(country.make("AR", "Argentina"), country.make("UY", "Uruguay")));
+      }
+
+      // then
+      assertThat(outer.isEmpty()).isFalse();
+      assertThat(datastoreCalls).isEmpty();
+    }
+    assertThat(datastoreCalls).containsExactly("put");
+    assertThat(UnitOfWork.current()).isNull();
+  }
+
+  @Test
+  public void closing_a_closed_unit_of_work_should_fail()
+  {
+    // given
+    final UnitOfWork work = UnitOfWork.begin();
+    work.close();
+
+    // then
+    assertThatThrownBy(work::close).isInstanceOf(IllegalStateException.class);
+  }
+}
@@ -0,0 +1,70 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2018 ActiveEngine.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ae;
+
+import static java.lang.annotation.ElementType.METHOD;
+import static java.lang.annotation.RetentionPolicy.SOURCE;
+
+import java.lang.annotation.Retention;
+import java.lang.annotation.Target;
+
+/**
+ * Indicates that the responses of a GET action are cached, so the action is not run while its cached response is
+ * valid.
+ *
+ * Responses are cached per namespace and query string, at memcache and at an in-process cache, along with the headers
+ * set by the action. They are discarded once any entity of the declared kinds is saved or deleted at the namespace of
+ * the request through its model, or after {@link #ttl()} seconds. Only responses with status {@code 200} that don't
+ * set cookies are cached.
+ */
+@Retention(SOURCE)
+@Target(METHOD)
+public @interface cached {
+  /**
+   * @return max amount of seconds a response is cached.
+   */
+  int ttl() default 60;
+
+  /**
+   * @return request properties, other than its path, query string and namespace, that select different responses.
+   */
+  Vary[] varyBy() default {};
+
+  /**
+   * @return kinds of the models read by the action, writes to them discard the cached responses.
+   */
+  String[] kinds() default {};
+
+  /**
+   * @return max amount of responses kept at the in-process cache, {@code 0} means only memcache is used.
+   */
+  int localCacheSize() default 100;
+
+  enum Vary {
+    /**
+     * the id of the logged user.
+     */
+    USER
+  }
+}
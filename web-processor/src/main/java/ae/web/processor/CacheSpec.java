@@ -0,0 +1,84 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2018 ActiveEngine.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ae.web.processor;
+
+import ae.cached;
+import ae.web.ResponseCache;
+import com.google.common.collect.ImmutableList;
+import com.squareup.javapoet.ClassName;
+import com.squareup.javapoet.CodeBlock;
+
+import java.util.Arrays;
+
+/**
+ * Caching of the responses of a route, as declared by {@code @cached}.
+ */
+final class CacheSpec
+{
+  private static final ClassName RESPONSE_CACHE_CLASS = ClassName.get(ResponseCache.class);
+
+  final int ttl;
+  final int localCacheSize;
+  final boolean varyByUser;
+  final ImmutableList<String> kinds;
+
+  CacheSpec(final int ttl,
+            final int localCacheSize,
+            final boolean varyByUser,
+            final ImmutableList<String> kinds)
+  {
+    this.ttl = ttl;
+    this.localCacheSize = localCacheSize;
+    this.varyByUser = varyByUser;
+    this.kinds = kinds;
+  }
+
+  static CacheSpec of(final cached declaration)
+  {
+    final ImmutableList<cached.Vary> varyBy = ImmutableList.copyOf(declaration.varyBy());
+    return new CacheSpec(declaration.ttl(),
+                         declaration.localCacheSize(),
+                         varyBy.contains(cached.Vary.USER),
+                         ImmutableList.copyOf(Arrays.asList(declaration.kinds())));
+  }
+
+  /**
+   * @param name name of the cached route, unique at the application.
+   * @return the construction of the {@code ResponseCache} used by the route.
+   */
+  CodeBlock initializer(final String name)
+  {
+    final CodeBlock.Builder initializer = CodeBlock.builder()
+                                                   .add("new $T($S, $L, $L, ", RESPONSE_CACHE_CLASS, name, ttl, localCacheSize);
+    if (varyByUser) {
+      initializer.add("$T.VARY_BY_USER", RESPONSE_CACHE_CLASS);
+    } else {
+      initializer.add("0");
+    }
+    for (final String kind : kinds) {
+      initializer.add(", $S", kind);
+    }
+    return initializer.add(")").build();
+  }
+}
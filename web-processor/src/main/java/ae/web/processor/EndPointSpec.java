@@ -31,7 +31,10 @@ import com.squareup.javapoet.ClassName;
 import com.squareup.javapoet.TypeName;
 
 import java.text.DateFormat;
+import java.util.Arrays;
 import java.util.Date;
+import java.util.LinkedHashSet;
+import java.util.Set;
 
 import static com.google.common.collect.Iterables.any;
 
@@ -89,6 +92,19 @@ class EndPointSpec
     return any(routes, Has.RoleConstraints);
   }
 
+  /**
+   * @return the roles checked by the routes, in order of appearance. Each role is represented at role masks by the
+   * bit of its position.
+   */
+  ImmutableList<String> roles()
+  {
+    final Set<String> roles = new LinkedHashSet<>();
+    for (final Route route : routes) {
+      roles.addAll(Arrays.asList(route.roles));
+    }
+    return ImmutableList.copyOf(roles);
+  }
+
   ClassName routerClassName()
   {
     return ClassName.bestGuess(routerClass);
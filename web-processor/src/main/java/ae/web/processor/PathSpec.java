@@ -1,8 +1,11 @@
 package ae.web.processor;
 
 import com.google.common.collect.ImmutableList;
+import com.squareup.javapoet.CodeBlock;
+import com.squareup.javapoet.TypeName;
 
 import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.VariableElement;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -116,6 +119,49 @@ final class PathSpec
     }
   }
 
+  /**
+   * Splits an url pattern at its slashes, except for those found at the regex of its parameters.
+   * <p/>
+   * "/users/{id}/posts" becomes "users", "{id}" and "posts".
+   *
+   * @param urlPattern
+   * @return the segments of the url pattern, empty for the index pattern
+   */
+  static ImmutableList<String> segmentsOf(final String urlPattern)
+  {
+    if (urlPattern == null || urlPattern.isEmpty() || "/".equals(urlPattern)) {
+      return ImmutableList.of();
+    }
+    final ImmutableList.Builder<String> segments = ImmutableList.builder();
+    int from = urlPattern.charAt(0) == '/' ? 1 : 0;
+    int braces = 0;
+    for (int i = from; i < urlPattern.length(); i++) {
+      final char c = urlPattern.charAt(i);
+      if (c == '{') {
+        braces++;
+      } else if (c == '}') {
+        braces--;
+      } else if (c == '/' && braces == 0) {
+        segments.add(urlPattern.substring(from, i));
+        from = i + 1;
+      }
+    }
+    return segments.add(urlPattern.substring(from)).build();
+  }
+
+  /**
+   * @param segment
+   * @return the name of the parameter when the segment is just a parameter without regex (as "{id}"), null otherwise.
+   */
+  static String plainParameterAt(final String segment)
+  {
+    final Matcher matcher = PATTERN_FOR_VARIABLE_PARTS_OF_ROUTE.matcher(segment);
+    if (matcher.matches() && matcher.group(3) == null) {
+      return matcher.group(1);
+    }
+    return null;
+  }
+
   /**
    * Replace any specified POSIX character classes with the Java equivalent.
    *
@@ -161,13 +207,23 @@ final class PathSpec
                          final ExecutableElement method,
                          final boolean useCredentials,
                          final String[] roles,
-                         final String namespace)
+                         final String namespace,
+                         final ImmutableList<CodeBlock> arguments,
+                         final CacheSpec cache,
+                         final CodeBlock entityTag)
   {
     final String handler = method.getSimpleName().toString();
     if (isStatic()) {
-      return new Route(path, verb, pattern, useCredentials, roles, namespace, handler);
+      return new Route(path, verb, pattern, useCredentials, roles, namespace, handler, cache, entityTag);
     } else {
-      return new Route(path, verb, pattern, regex, useCredentials, roles, namespace, handler, parameters);
+      final ImmutableList.Builder<TypeName> argumentTypes = ImmutableList.builder();
+      if (!arguments.isEmpty()) {
+        for (final VariableElement argument : method.getParameters().subList(2, method.getParameters().size())) {
+          argumentTypes.add(TypeName.get(argument.asType()));
+        }
+      }
+      return new Route(path, verb, pattern, regex, useCredentials, roles, namespace, handler, parameters, arguments,
+                       argumentTypes.build(), cache, entityTag);
     }
   }
 }
@@ -23,16 +23,10 @@
  */
 package ae.web.processor;
 
-import ae.web.RouterServlet;
 import com.google.common.base.Strings;
 import com.google.common.collect.ImmutableList;
-import com.squareup.javapoet.ClassName;
 import com.squareup.javapoet.CodeBlock;
-import com.squareup.javapoet.FieldSpec;
-import com.squareup.javapoet.MethodSpec;
-
-import javax.lang.model.element.Modifier;
-import java.util.regex.Pattern;
+import com.squareup.javapoet.TypeName;
 
 final class Route
 {
@@ -45,6 +39,14 @@ final class Route
   final boolean useCredentials;
   final String[] roles;
   final String namespace;
+  /* path parameters passed to the handler, empty when the handler reads them as request attributes */
+  final ImmutableList<CodeBlock> arguments;
+  /* types of the path parameters passed to the handler */
+  final ImmutableList<TypeName> argumentTypes;
+  /* caching of the route responses, null when they aren't cached */
+  final CacheSpec cache;
+  /* call computing the entity tag checked before running the handler, null when there is none */
+  final CodeBlock entityTag;
 
   Route(final String path,
         final HttpVerb verb,
@@ -52,9 +54,12 @@ final class Route
         final boolean useCredentials,
         final String[] roles,
         final String namespace,
-        final String handler)
+        final String handler,
+        final CacheSpec cache,
+        final CodeBlock entityTag)
   {
-    this(path, verb, pattern, pattern, useCredentials, roles, namespace, handler, ImmutableList.of());
+    this(path, verb, pattern, pattern, useCredentials, roles, namespace, handler, ImmutableList.of(), ImmutableList.of(),
+         ImmutableList.of(), cache, entityTag);
   }
 
   Route(final String path,
@@ -65,7 +70,11 @@ final class Route
         final String[] roles,
         final String namespace,
         final String handler,
-        final ImmutableList<String> parameters)
+        final ImmutableList<String> parameters,
+        final ImmutableList<CodeBlock> arguments,
+        final ImmutableList<TypeName> argumentTypes,
+        final CacheSpec cache,
+        final CodeBlock entityTag)
   {
     this.path = path;
     this.verb = verb;
@@ -79,7 +88,11 @@ final class Route
     }
     this.namespace = namespace;
     this.parameters = parameters;
+    this.arguments = arguments;
+    this.argumentTypes = argumentTypes;
     this.handler = handler;
+    this.cache = cache;
+    this.entityTag = entityTag;
   }
 
   @Override public int hashCode()
@@ -112,25 +125,17 @@ final class Route
     return this.roles.length > 0;
   }
 
-  String rolesExpr()
+  /**
+   * @param checkedRoles roles checked by the endpoint, each one represented by the bit of its position.
+   * @return the mask of the roles authorized by the route.
+   */
+  long rolesMask(final ImmutableList<String> checkedRoles)
   {
-    switch (this.roles.length) {
-      case 1:
-        return "userRoleIs(userData, $S)";
-      case 2:
-        return "userRoleIsIn(userData, $S, $S)";
-      case 3:
-        return "userRoleIsIn(userData, $S, $S, $S)";
-      case 4:
-        return "userRoleIsIn(userData, $S, $S, $S, $S)";
-      default:
-        throw new IllegalStateException("roles count not supported!");
+    long mask = 0L;
+    for (final String role : this.roles) {
+      mask |= 1L << checkedRoles.indexOf(role);
     }
-  }
-
-  String routeField()
-  {
-    return this.verb.name() + '_' + handler;
+    return mask;
   }
 
   boolean isParameterized()
@@ -143,13 +148,51 @@ final class Route
     return parameters.size();
   }
 
-  MethodSpec.Builder makeMatcher(final MethodSpec.Builder httpVerbHandler)
+  boolean hasTypedParameters()
   {
-    if (isIndex()) {
-      return httpVerbHandler.beginControlFlow("if (indexPath.matches(request))", ClassName.bestGuess("ae.web.RouterServlet.IndexPath"));
-    } else {
-      return httpVerbHandler.beginControlFlow("if ($L.matches(request))", routeField());
+    return !arguments.isEmpty();
+  }
+
+  boolean hasEntityTag()
+  {
+    return entityTag != null;
+  }
+
+  boolean isCached()
+  {
+    return cache != null;
+  }
+
+  /**
+   * @return the field of the {@code ResponseCache} used by the route.
+   */
+  String cacheField()
+  {
+    return handler + "_cache";
+  }
+
+  /**
+   * Path parameters are converted once, before checking the entity tag or running the handler, into local variables
+   * named by their position at the handler arguments.
+   *
+   * @return the local variable holding the path parameter passed as the handler argument at {@code position}.
+   */
+  static CodeBlock argument(final int position)
+  {
+    return CodeBlock.of("argument$L", position);
+  }
+
+  /**
+   * @param response the response to pass to the handler.
+   * @return the call to the route handler.
+   */
+  CodeBlock handlerCall(final String response)
+  {
+    final CodeBlock.Builder call = CodeBlock.builder().add("$L(request, $L", handler, response);
+    for (int i = 0; i < arguments.size(); i++) {
+      call.add(", ").add(argument(i));
     }
+    return call.add(")").build();
   }
 
   boolean hasNamespace()
@@ -160,7 +203,7 @@ final class Route
   CodeBlock namespaceStatment()
   {
     if ("#".equals(namespace)) {
-      return CodeBlock.of("useNamespace(getUserNamespace(userData))");
+      return CodeBlock.of("useNamespace(namespaceOf(user))");
     } else {
       return CodeBlock.of("useNamespace($S)", namespace);
     }
@@ -171,38 +214,32 @@ final class Route
     return pattern == null || "".equals(pattern) || "/".equals(pattern);
   }
 
-  FieldSpec makeField()
-  {
-    if (isIndex()) {
-      return null;
-    }
-
-    final String pkg = RouterServlet.class.getPackage().getName();
-    final String servlet = RouterServlet.class.getSimpleName();
-
-    final ClassName pathClassName = ClassName.get(pkg, servlet, "Path");
-    final FieldSpec.Builder property = FieldSpec.builder(pathClassName, routeField(), Modifier.PRIVATE, Modifier.FINAL);
-
-    if (isParameterized()) {
-      final String extraArgs = Strings.repeat(", $S", parametersCount() - 1);
-      final String code = "parameterizedPath($S, $S, $T.of($S" + extraArgs + "), $T.compile($S))";
-      final Object[] args = new Object[5 + parametersCount()];
-      {
-        int i = 0;
-        args[i++] = this.path;
-        args[i++] = pattern;
-        args[i++] = ClassName.get(ImmutableList.class);
-        for (final String parameter : parameters) {
-          args[i++] = parameter;
+  /**
+   * @return the calls defining the route at a {@code RouterServlet.RoutesBuilder}, segment by segment.
+   */
+  CodeBlock definition()
+  {
+    final CodeBlock.Builder definition = CodeBlock.builder();
+    for (final String segment : PathSpec.segmentsOf(pattern)) {
+      final String parameter = PathSpec.plainParameterAt(segment);
+      if (parameter != null) {
+        definition.add(".parameter($S)", parameter);
+      } else {
+        final String segmentRegex = PathSpec.findRegex(segment);
+        if (segmentRegex == null) {
+          definition.add(".literal($S)", segment);
+        } else {
+          final ImmutableList<String> groups = PathSpec.findParameterNames(segment);
+          final Object[] args = new Object[1 + groups.size()];
+          args[0] = segmentRegex;
+          for (int i = 0; i < groups.size(); i++) {
+            args[i + 1] = groups.get(i);
+          }
+          definition.add(".constrainedParameter($S" + Strings.repeat(", $S", groups.size()) + ")", args);
         }
-        args[i++] = ClassName.get(Pattern.class);
-        args[i] = regex;
       }
-      property.initializer(code, args);
-    } else {
-      property.initializer("staticPath($S, $S)", new Object[]{this.path, pattern});
     }
-    return property.build();
+    return definition.add(hasTypedParameters() ? ".typedRoute($S)" : ".route($S)", isIndex() ? "/" : pattern).build();
   }
 
   boolean mustAccessUserData()
@@ -23,7 +23,10 @@
  */
 package ae.web.processor;
 
-import com.google.appengine.api.datastore.Entity;
+import ae.web.AppEngineEndPointServlet;
+import ae.web.PathParameters;
+import ae.web.ResponseCache;
+import ae.web.RouterServlet;
 import com.google.common.collect.ImmutableList;
 import com.squareup.javapoet.*;
 import com.squareup.javapoet.TypeSpec.Builder;
@@ -42,6 +45,13 @@ class RoutersCodeBuilder
 {
   private static final ClassName LOGGER_CLASS = ClassName.get(Logger.class);
   private static final ClassName LOGGER_FACTORY_CLASS = ClassName.get(LoggerFactory.class);
+  private static final ClassName ROUTES_CLASS = ClassName.get(RouterServlet.class).nestedClass("Routes");
+  private static final ClassName LOGGED_USER_CLASS = ClassName.get(AppEngineEndPointServlet.class).nestedClass("LoggedUser");
+  private static final ClassName PATH_PARAMETERS_CLASS = ClassName.get(PathParameters.class);
+  private static final ClassName ROUTES_BUILDER_CLASS = ClassName.get(RouterServlet.class).nestedClass("RoutesBuilder");
+  private static final ClassName RESPONSE_CACHE_CLASS = ClassName.get(ResponseCache.class);
+  private static final ClassName LOOKUP_CLASS = RESPONSE_CACHE_CLASS.nestedClass("Lookup");
+  private static final ClassName RECORDING_CLASS = RESPONSE_CACHE_CLASS.nestedClass("Recording");
 
   private final TypeName stringArray;
 
@@ -77,11 +87,37 @@ class RoutersCodeBuilder
                                  .addStatement("return LOGGER")
                                  .build());
     }
+    addCheckedRoles(router, declarations);
     addRouteFields(router, declarations);
     addRouteHandlers(router, declarations, isDevelopmentEnvironment);
     return JavaFile.builder(classname.packageName(), router.build()).skipJavaLangImports(true).build();
   }
 
+  /**
+   * Roles are assigned a bit at compile time, so each route checks its roles with a single mask. Endpoints checking
+   * more roles than the bits of a mask are rejected when their routes are read.
+   */
+  void addCheckedRoles(final TypeSpec.Builder router, final EndPointSpec declarations)
+  {
+    if (!declarations.hasRoleConstraints()) {
+      return;
+    }
+    final ImmutableList<String> roles = declarations.roles();
+    final CodeBlock.Builder names = CodeBlock.builder().add("{");
+    for (int i = 0; i < roles.size(); i++) {
+      names.add(i == 0 ? "$S" : ", $S", roles.get(i));
+    }
+    router.addField(FieldSpec.builder(stringArray, "CHECKED_ROLES", Modifier.PRIVATE, Modifier.STATIC, Modifier.FINAL)
+                             .initializer(names.add("}").build())
+                             .build());
+    router.addMethod(MethodSpec.methodBuilder("checkedRoles")
+                               .addAnnotation(Override.class)
+                               .addModifiers(Modifier.PROTECTED, Modifier.FINAL)
+                               .returns(stringArray)
+                               .addStatement("return CHECKED_ROLES")
+                               .build());
+  }
+
   void addRouteFields(final TypeSpec.Builder router, final EndPointSpec declarations)
   {
     for (final HttpVerb httpVerb : HttpVerb.values()) {
@@ -91,17 +127,50 @@ class RoutersCodeBuilder
         continue;
       }
 
-      String last = null;
-      for (final Route route : routes) {
-        if (!route.pattern.equals(last)) {
-          final FieldSpec routeField = route.makeField();
-          if (routeField != null) {
-            router.addField(routeField);
-            last = route.pattern;
-          }
-        }
+      router.addField(FieldSpec.builder(ROUTES_CLASS, routesField(httpVerb), Modifier.PRIVATE, Modifier.FINAL)
+                               .initializer("$L()", routesDefinition(httpVerb))
+                               .build());
+    }
+    for (final Route route : declarations.routes) {
+      if (route.isCached()) {
+        router.addField(FieldSpec.builder(RESPONSE_CACHE_CLASS, route.cacheField(), Modifier.PRIVATE, Modifier.FINAL)
+                                 .initializer(route.cache.initializer(declarations.superClass + "." + route.handler))
+                                 .build());
       }
     }
+    for (final HttpVerb httpVerb : HttpVerb.values()) {
+      final ImmutableList<Route> routes = declarations.routesByVerb.get(httpVerb);
+
+      if (!routes.isEmpty()) {
+        router.addMethod(defineRoutes(httpVerb, routes));
+      }
+    }
+  }
+
+  /**
+   * Routes are defined one statement per route, as a single chained expression for all of them can be deeper than
+   * javac is able to handle for endpoints defining lots of routes.
+   */
+  MethodSpec defineRoutes(final HttpVerb httpVerb, final ImmutableList<Route> routes)
+  {
+    final MethodSpec.Builder definition = MethodSpec.methodBuilder(routesDefinition(httpVerb))
+                                                    .addModifiers(Modifier.PRIVATE, Modifier.STATIC)
+                                                    .returns(ROUTES_CLASS)
+                                                    .addStatement("final $T routes = routes()", ROUTES_BUILDER_CLASS);
+    for (final Route route : routes) {
+      definition.addStatement("routes$L", route.definition());
+    }
+    return definition.addStatement("return routes.build()").build();
+  }
+
+  static String routesDefinition(final HttpVerb httpVerb)
+  {
+    return "routesOf" + httpVerb.name();
+  }
+
+  static String routesField(final HttpVerb httpVerb)
+  {
+    return httpVerb.name() + "_routes";
   }
 
   void addRouteHandlers(final Builder router, final EndPointSpec declarations, boolean isDevelopmentEnvironment)
@@ -114,7 +183,7 @@ class RoutersCodeBuilder
           overrideVerbHandlerOnDevelopmentEnvironment(httpVerb);
         }
       } else {
-        router.addMethod(overrideVerbHandler(httpVerb, routes, isDevelopmentEnvironment));
+        router.addMethod(overrideVerbHandler(httpVerb, routes, declarations.roles(), isDevelopmentEnvironment));
       }
     }
   }
@@ -134,7 +203,10 @@ class RoutersCodeBuilder
     return httpVerbHandler.build();
   }
 
-  MethodSpec overrideVerbHandler(final HttpVerb httpVerb, final ImmutableList<Route> routes, boolean isDevelopmentEnvironment)
+  MethodSpec overrideVerbHandler(final HttpVerb httpVerb,
+                                 final ImmutableList<Route> routes,
+                                 final ImmutableList<String> checkedRoles,
+                                 boolean isDevelopmentEnvironment)
   {
     final MethodSpec.Builder httpVerbHandler = MethodSpec
                                                    .methodBuilder(httpVerb.handler)
@@ -144,16 +216,22 @@ class RoutersCodeBuilder
                                                    .addParameter(HttpServletResponse.class, "response", Modifier.FINAL)
                                                    .addException(ServletException.class)
                                                    .addException(IOException.class);
-    boolean hasUserData = false;
+    if (hasTypedRoutes(routes)) {
+      httpVerbHandler.addStatement("final $T parameters = pathParameters()", PATH_PARAMETERS_CLASS);
+      httpVerbHandler.beginControlFlow("switch ($L.match(request, parameters))", routesField(httpVerb));
+    } else {
+      httpVerbHandler.beginControlFlow("switch ($L.match(request))", routesField(httpVerb));
+    }
+    int position = 0;
     for (final Route route : routes) {
-      if (!hasUserData && route.mustAccessUserData()) {
-        httpVerbHandler.addStatement("final $T userData = getLoggedUser()", ClassName.get(Entity.class));
-        hasUserData = true;
+      httpVerbHandler.beginControlFlow("case $L:", position++);
+      if (route.mustAccessUserData()) {
+        httpVerbHandler.addStatement("final $T user = loggedUser()", LOGGED_USER_CLASS);
       }
-      final MethodSpec.Builder ifMatchesRoute = route.makeMatcher(httpVerbHandler);
-      addHandle(ifMatchesRoute, route);
+      addHandle(httpVerbHandler, route, checkedRoles);
       httpVerbHandler.endControlFlow();
     }
+    httpVerbHandler.endControlFlow();
 
     if (isDevelopmentEnvironment) {
       httpVerbHandler.addStatement("response.setHeader(\"Access-Control-Allow-Origin\", \"*\")");
@@ -162,6 +240,16 @@ class RoutersCodeBuilder
     return httpVerbHandler.build();
   }
 
+  boolean hasTypedRoutes(final Iterable<Route> routes)
+  {
+    for (final Route r : routes) {
+      if (r.hasTypedParameters()) {
+        return true;
+      }
+    }
+    return false;
+  }
+
   boolean hasDynamicRoutes(final Iterable<Route> routes)
   {
     for (final Route r : routes) {
@@ -208,17 +296,25 @@ class RoutersCodeBuilder
     return maxParametersCount;
   }
 
-  void addHandle(final MethodSpec.Builder control, final Route route)
+  void addHandle(final MethodSpec.Builder control, final Route route, final ImmutableList<String> checkedRoles)
   {
     if (route.hasRoleConstrains()) {
-      control.beginControlFlow("if (!" + route.rolesExpr() + ')', (Object[]) route.roles)
+      control.beginControlFlow("if (!userRoleIsIn(user, 0x$LL))", Long.toHexString(route.rolesMask(checkedRoles)))
              .addStatement("notAuthorized(response)")
              .addStatement("return")
              .endControlFlow();
     }
+    if (route.hasTypedParameters()) {
+      addConversions(control, route);
+    }
     if (route.hasNamespace()) {
       control.addStatement(route.namespaceStatment());
     }
+    if (route.hasEntityTag()) {
+      control.beginControlFlow("if (notModified(request, response, $L))", route.entityTag)
+             .addStatement("return")
+             .endControlFlow();
+    }
     if (route.useCredentials) {
       throw new IllegalStateException("credentials unsupported by now");
 //      control.addStatement(
@@ -228,9 +324,39 @@ class RoutersCodeBuilder
 //          //ClassName.get(OAuth2Flow.class),
 //          route.action,
 //          route.arguments());
+    } else if (route.isCached()) {
+      control.addStatement("final $T cached = $L.lookup(request, $L)",
+                           LOOKUP_CLASS,
+                           route.cacheField(),
+                           route.cache.varyByUser ? "currentUserId()" : "null")
+             .beginControlFlow("if (cached.replay(response))")
+             .addStatement("return")
+             .endControlFlow()
+             .addStatement("final $T recording = cached.record(response)", RECORDING_CLASS)
+             .addStatement("$L", route.handlerCall("recording"))
+             .addStatement("cached.store(recording)");
     } else {
-      control.addStatement("$L(request, response)", route.handler);
+      control.addStatement("$L", route.handlerCall("response"));
     }
     control.addStatement("return");
   }
+
+  /**
+   * Path parameters that can't be converted to the type received by the handler (as {@code abc} for a {@code long})
+   * are answered as a bad request, instead of failing at the handler call.
+   */
+  void addConversions(final MethodSpec.Builder control, final Route route)
+  {
+    for (int i = 0; i < route.arguments.size(); i++) {
+      control.addStatement("final $T $L", route.argumentTypes.get(i), Route.argument(i));
+    }
+    control.beginControlFlow("try");
+    for (int i = 0; i < route.arguments.size(); i++) {
+      control.addStatement("$L = $L", Route.argument(i), route.arguments.get(i));
+    }
+    control.nextControlFlow("catch (final $T e)", IllegalArgumentException.class)
+           .addStatement("invalidPathParameter(response)")
+           .addStatement("return")
+           .endControlFlow();
+  }
 }
@@ -23,15 +23,26 @@
  */
 package ae.web.processor;
 
+import ae.cached;
 import ae.endpoint;
+import ae.etag;
 import ae.multitenant;
+import com.google.common.collect.ImmutableList;
+import com.squareup.javapoet.CodeBlock;
 
 import javax.annotation.processing.Messager;
 import javax.lang.model.element.Element;
 import javax.lang.model.element.ExecutableElement;
 import javax.lang.model.element.Name;
 import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.TypeMirror;
 import javax.tools.Diagnostic;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
 
 import static javax.lang.model.util.ElementFilter.methodsIn;
 
@@ -46,6 +57,9 @@ class RoutesReader
 
   private final EndPointSpec.Builder routes;
 
+  /* roles checked by the routes read so far, each one takes a bit of the masks checked by the generated router */
+  private final Set<String> checkedRoles = new LinkedHashSet<>();
+
   private boolean success;
 
   RoutesReader(final Messager messager, final EndPointSpec.Builder routes)
@@ -61,6 +75,7 @@ class RoutesReader
   boolean buildRoutesFor(final TypeElement endpoint)
   {
     this.success = true;
+    this.checkedRoles.clear();
     final String baseUri = makeEndpointPath(getEndpointPathKind(endpoint), endpoint);
     routes.path(baseUri + "/*");
     for (final ExecutableElement method : methodsIn(endpoint.getEnclosedElements())) {
@@ -68,6 +83,10 @@ class RoutesReader
         buildRoute(endpoint, baseUri, httpVerb, method);
       }
     }
+    if (checkedRoles.size() > Long.SIZE) {
+      error("at most " + Long.SIZE + " roles can be checked by an endpoint, but " + checkedRoles.size()
+            + " roles are checked", endpoint);
+    }
     return this.success;
   }
 
@@ -86,12 +105,15 @@ class RoutesReader
     if (path == null) {
       return;
     }
+    final String[] roles = getRoles(method, endpoint);
+    checkedRoles.addAll(Arrays.asList(roles));
     makeRoute(httpVerb,
               getUri(baseUri, method, path),
               handlerPath(method, path),
               isOAuth2(method, endpoint),
-              getRoles(method, endpoint),
+              roles,
               getNamespace(method, endpoint),
+              getCache(httpVerb, method),
               method);
   }
 
@@ -144,16 +166,149 @@ class RoutesReader
     }
   }
 
+  /**
+   * @return the caching of the route responses, or null if they aren't cached (or they can't be, reporting errors).
+   */
+  CacheSpec getCache(final HttpVerb httpVerb, final ExecutableElement method)
+  {
+    final cached declaration = method.getAnnotation(cached.class);
+    if (declaration == null) {
+      return null;
+    }
+    if (httpVerb != HttpVerb.GET) {
+      error("only GET actions can be @cached", method);
+      return null;
+    }
+    if (declaration.ttl() <= 0) {
+      error("@cached.ttl must be positive", method);
+      return null;
+    }
+    if (declaration.localCacheSize() < 0) {
+      error("@cached.localCacheSize can't be negative", method);
+      return null;
+    }
+    final Set<String> kinds = new HashSet<>();
+    for (final String kind : declaration.kinds()) {
+      if (kind.trim().isEmpty() || kind.startsWith("__")) {
+        error("@cached.kinds must name the kinds of models, but '" + kind + "' is not a valid kind", method);
+        return null;
+      }
+      if (!kinds.add(kind)) {
+        error("@cached.kinds declares '" + kind + "' more than once", method);
+        return null;
+      }
+    }
+    return CacheSpec.of(declaration);
+  }
+
   private void makeRoute(final HttpVerb verb,
                          final String endPointUri,
                          final String handlerUri,
                          final boolean useCredentials,
                          final String[] roles,
                          final String namespace,
+                         final CacheSpec cache,
                          final ExecutableElement method)
   {
     final PathSpec path = PathSpec.from(endPointUri, handlerUri);
-    this.routes.addRoute(path.makeRoute(verb, method, useCredentials, roles, namespace));
+    final ImmutableList<CodeBlock> arguments = handlerArguments(method, path);
+    if (arguments != null) {
+      final CodeBlock entityTag = entityTagCall(verb, method, arguments);
+      this.routes.addRoute(path.makeRoute(verb, method, useCredentials, roles, namespace, arguments, cache, entityTag));
+    }
+  }
+
+  /**
+   * The method declared by {@code @etag} receives the request and the same path parameters received by the handler.
+   *
+   * @return the call computing the entity tag of the route responses, or null if there is none (or it can't be
+   * called, reporting errors).
+   */
+  private CodeBlock entityTagCall(final HttpVerb verb,
+                                  final ExecutableElement method,
+                                  final ImmutableList<CodeBlock> arguments)
+  {
+    final etag declaration = method.getAnnotation(etag.class);
+    if (declaration == null) {
+      return null;
+    }
+    if (verb != HttpVerb.GET) {
+      error("only GET actions can declare an @etag", method);
+      return null;
+    }
+    final String name = declaration.value();
+    for (final ExecutableElement candidate : methodsIn(method.getEnclosingElement().getEnclosedElements())) {
+      if (candidate.getSimpleName().contentEquals(name)) {
+        if (!"java.lang.String".equals(candidate.getReturnType().toString())
+            || candidate.getParameters().size() != 1 + arguments.size()) {
+          error("@etag method '" + name + "' must return String, receiving the request and the path parameters "
+                + "received by the action", method);
+          return null;
+        }
+        final CodeBlock.Builder call = CodeBlock.builder().add("$L(request", name);
+        for (int i = 0; i < arguments.size(); i++) {
+          call.add(", ").add(Route.argument(i));
+        }
+        return call.add(")").build();
+      }
+    }
+    error("@etag method '" + name + "' not defined", method);
+    return null;
+  }
+
+  /**
+   * Handlers can receive the parameters of their path after the request and the response, by name and converted to
+   * their type. A handler must receive all its path parameters, or none of them (reading them as request attributes).
+   *
+   * @return the path parameters to pass to the handler, or null if any of them can't be passed (reporting errors).
+   */
+  private ImmutableList<CodeBlock> handlerArguments(final ExecutableElement method, final PathSpec path)
+  {
+    final List<? extends VariableElement> declared = method.getParameters();
+    if (declared.size() <= 2) {
+      return ImmutableList.of();
+    }
+    final ImmutableList.Builder<CodeBlock> arguments = ImmutableList.builder();
+    boolean valid = true;
+    for (final VariableElement parameter : declared.subList(2, declared.size())) {
+      final String name = parameter.getSimpleName().toString();
+      final int position = path.parameters.indexOf(name);
+      final String conversion = conversionOf(parameter.asType());
+      if (position < 0) {
+        error("path parameter '" + name + "' not defined at '" + path.pattern + '\'', parameter);
+        valid = false;
+      } else if (conversion == null) {
+        error("path parameter '" + name + "' can't be received as " + parameter.asType(), parameter);
+        valid = false;
+      } else {
+        arguments.add(CodeBlock.of("parameters.$L($L)", conversion, position));
+      }
+    }
+    if (valid && declared.size() - 2 != path.parameters.size()) {
+      error("handler must receive all the path parameters defined at '" + path.pattern + "', or none of them", method);
+      valid = false;
+    }
+    return valid ? arguments.build() : null;
+  }
+
+  private static String conversionOf(final TypeMirror type)
+  {
+    switch (type.toString()) {
+      case "java.lang.String":
+        return "asString";
+      case "boolean":
+        return "asPrimitiveBoolean";
+      case "int":
+        return "asPrimitiveInt";
+      case "long":
+        return "asPrimitiveLong";
+      case "double":
+        return "asPrimitiveDouble";
+      case "com.google.appengine.api.datastore.Key":
+        return "asKey";
+      default:
+        return null;
+    }
   }
 
   private void error(final String message, final Element e)
@@ -106,6 +106,16 @@ public class RoutesProcessingTest
         .hasSourceEquivalentTo(JavaFileObjects.forResource("generated/endpoints/Roles__aeImpl.java"));
   }
 
+  @Test
+  public void should_fail_when_endpoint_checks_more_roles_than_a_mask_can_hold()
+  {
+    final Compilation compilation = compiler.compile(
+        JavaFileObjects.forResource("TooManyRoles.java")
+    );
+    assertThat(compilation).failed();
+    assertThat(compilation).hadErrorContaining("at most 64 roles can be checked by an endpoint");
+  }
+
   @Test
   public void should_be_able_to_generate_aeImpl_for_multitenant_restricted_roles_uri()
   {
@@ -117,4 +127,80 @@ public class RoutesProcessingTest
         .generatedSourceFile("test.Tasks__aeImpl")
         .hasSourceEquivalentTo(JavaFileObjects.forResource("generated/endpoints/RolesMultiTenantUri__aeImpl.java"));
   }
+
+  @Test
+  public void should_be_able_to_generate_aeImpl_passing_typed_path_parameters()
+  {
+    final Compilation compilation = compiler.compile(
+        JavaFileObjects.forResource("TypedParameters.java")
+    );
+    assertThat(compilation).succeeded();
+    assertThat(compilation)
+        .generatedSourceFile("test.Tasks__aeImpl")
+        .hasSourceEquivalentTo(JavaFileObjects.forResource("generated/endpoints/TypedParameters__aeImpl.java"));
+  }
+
+  @Test
+  public void should_fail_when_handler_receives_undefined_path_parameters()
+  {
+    final Compilation compilation = compiler.compile(
+        JavaFileObjects.forResource("UndefinedPathParameter.java")
+    );
+    assertThat(compilation).failed();
+    assertThat(compilation).hadErrorContaining("path parameter 'taskId' not defined at '/{id}'");
+  }
+
+  @Test
+  public void should_be_able_to_generate_aeImpl_caching_responses()
+  {
+    final Compilation compilation = compiler.compile(
+        JavaFileObjects.forResource("CachedResponses.java")
+    );
+    assertThat(compilation).succeeded();
+    assertThat(compilation)
+        .generatedSourceFile("test.Tasks__aeImpl")
+        .hasSourceEquivalentTo(JavaFileObjects.forResource("generated/endpoints/CachedResponses__aeImpl.java"));
+  }
+
+  @Test
+  public void should_fail_when_caching_responses_of_non_GET_actions()
+  {
+    final Compilation compilation = compiler.compile(
+        JavaFileObjects.forResource("CachedPost.java")
+    );
+    assertThat(compilation).failed();
+    assertThat(compilation).hadErrorContaining("only GET actions can be @cached");
+  }
+
+  @Test
+  public void should_fail_when_cached_responses_declare_invalid_kinds()
+  {
+    final Compilation compilation = compiler.compile(
+        JavaFileObjects.forResource("CachedUnknownKinds.java")
+    );
+    assertThat(compilation).failed();
+    assertThat(compilation).hadErrorContaining("'' is not a valid kind");
+  }
+
+  @Test
+  public void should_be_able_to_generate_aeImpl_checking_entity_tags()
+  {
+    final Compilation compilation = compiler.compile(
+        JavaFileObjects.forResource("EntityTags.java")
+    );
+    assertThat(compilation).succeeded();
+    assertThat(compilation)
+        .generatedSourceFile("test.Tasks__aeImpl")
+        .hasSourceEquivalentTo(JavaFileObjects.forResource("generated/endpoints/EntityTags__aeImpl.java"));
+  }
+
+  @Test
+  public void should_fail_when_entity_tag_method_is_not_defined()
+  {
+    final Compilation compilation = compiler.compile(
+        JavaFileObjects.forResource("UndefinedEntityTag.java")
+    );
+    assertThat(compilation).failed();
+    assertThat(compilation).hadErrorContaining("@etag method 'tasksVersion' not defined");
+  }
 }
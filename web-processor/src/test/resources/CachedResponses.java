@@ -0,0 +1,23 @@
+package test;
+
+import ae.*;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+@endpoint class Tasks extends TestEndPoint
+{
+  @GET @cached(ttl = 300, kinds = {"Task", "Owner"}) void index(final HttpServletRequest request,
+                                                                final HttpServletResponse response)
+  {
+  }
+
+  @GET("/{id}") @cached(varyBy = cached.Vary.USER, localCacheSize = 0)
+  void get(final HttpServletRequest request, final HttpServletResponse response, final long id)
+  {
+  }
+
+  @PUT("/{id}") void update(final HttpServletRequest request, final HttpServletResponse response)
+  {
+  }
+}
@@ -0,0 +1,13 @@
+package test;
+
+import ae.*;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+@endpoint class Tasks extends TestEndPoint
+{
+  @GET @cached(kinds = {"Task", ""}) void index(final HttpServletRequest request, final HttpServletResponse response)
+  {
+  }
+}
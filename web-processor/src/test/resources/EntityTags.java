@@ -0,0 +1,30 @@
+package test;
+
+import ae.*;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+@endpoint class Tasks extends TestEndPoint
+{
+  @GET @etag("tasksVersion") @cached(kinds = "Task") void index(final HttpServletRequest request,
+                                                               final HttpServletResponse response)
+  {
+  }
+
+  String tasksVersion(final HttpServletRequest request)
+  {
+    return null;
+  }
+
+  @GET("/{id}") @etag("taskVersion") void get(final HttpServletRequest request,
+                                              final HttpServletResponse response,
+                                              final long id)
+  {
+  }
+
+  String taskVersion(final HttpServletRequest request, final long id)
+  {
+    return null;
+  }
+}
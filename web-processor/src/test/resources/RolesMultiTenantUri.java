@@ -23,7 +23,7 @@ import javax.servlet.http.HttpServletResponse;
   {
   }
 
-  @PUT("{id}") void update(final HttpServletRequest request, final HttpServletResponse response)
+  @PUT("{id}") @roles({"sys", "a", "b", "c", "d"}) void update(final HttpServletRequest request, final HttpServletResponse response)
   {
   }
 
@@ -0,0 +1,29 @@
+package test;
+
+import ae.*;
+import com.google.appengine.api.datastore.Key;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+@endpoint class Tasks extends TestEndPoint
+{
+  @GET("/{id}") void get(final HttpServletRequest request, final HttpServletResponse response, final long id)
+  {
+  }
+
+  @GET("/{id}/notes/{note: [a-z]+}") void note(final HttpServletRequest request,
+                                               final HttpServletResponse response,
+                                               final String note,
+                                               final long id)
+  {
+  }
+
+  @GET("/{owner}/pending") void pending(final HttpServletRequest request, final HttpServletResponse response)
+  {
+  }
+
+  @PUT("/{key}") void update(final HttpServletRequest request, final HttpServletResponse response, final Key key)
+  {
+  }
+}
@@ -0,0 +1,13 @@
+package test;
+
+import ae.*;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+@endpoint class Tasks extends TestEndPoint
+{
+  @GET("/{id}") void get(final HttpServletRequest request, final HttpServletResponse response, final long taskId)
+  {
+  }
+}
@@ -0,0 +1,99 @@
+package test;
+
+import ae.web.PathParameters;
+import ae.web.ResponseCache;
+import ae.web.RouterServlet;
+import java.io.IOException;
+import javax.annotation.Generated;
+import javax.servlet.ServletException;
+import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+@Generated(
+    value = "AE/web-processor",
+    comments = "",
+    date = "2017-02-23"
+)
+@WebServlet("/api/tasks/*")
+public final class Tasks__aeImpl extends Tasks {
+  private static final long serialVersionUID = 1487851200000L;
+
+  private static final Logger LOGGER = LoggerFactory.getLogger("test.Tasks");
+
+  private final RouterServlet.Routes GET_routes = routesOfGET();
+
+  private final RouterServlet.Routes PUT_routes = routesOfPUT();
+
+  private final ResponseCache index_cache = new ResponseCache("test.Tasks.index", 300, 100, 0, "Task", "Owner");
+
+  private final ResponseCache get_cache = new ResponseCache("test.Tasks.get", 60, 0, ResponseCache.VARY_BY_USER);
+
+  @Override
+  protected final Logger logger() {
+    return LOGGER;
+  }
+
+  private static RouterServlet.Routes routesOfGET() {
+    final RouterServlet.RoutesBuilder routes = routes();
+    routes.route("/");
+    routes.parameter("id").typedRoute("/{id}");
+    return routes.build();
+  }
+
+  private static RouterServlet.Routes routesOfPUT() {
+    final RouterServlet.RoutesBuilder routes = routes();
+    routes.parameter("id").route("/{id}");
+    return routes.build();
+  }
+
+  @Override
+  public void doGet(final HttpServletRequest request, final HttpServletResponse response) throws
+      ServletException, IOException {
+    final PathParameters parameters = pathParameters();
+    switch (GET_routes.match(request, parameters)) {
+      case 0: {
+        final ResponseCache.Lookup cached = index_cache.lookup(request, null);
+        if (cached.replay(response)) {
+          return;
+        }
+        final ResponseCache.Recording recording = cached.record(response);
+        index(request, recording);
+        cached.store(recording);
+        return;
+      }
+      case 1: {
+        final long argument0;
+        try {
+          argument0 = parameters.asPrimitiveLong(0);
+        } catch (final IllegalArgumentException e) {
+          invalidPathParameter(response);
+          return;
+        }
+        final ResponseCache.Lookup cached = get_cache.lookup(request, currentUserId());
+        if (cached.replay(response)) {
+          return;
+        }
+        final ResponseCache.Recording recording = cached.record(response);
+        get(request, recording, argument0);
+        cached.store(recording);
+        return;
+      }
+    }
+    unhandledGet(request, response);
+  }
+
+  @Override
+  public void doPut(final HttpServletRequest request, final HttpServletResponse response) throws
+      ServletException, IOException {
+    switch (PUT_routes.match(request)) {
+      case 0: {
+        update(request, response);
+        return;
+      }
+    }
+    unhandledPut(request, response);
+  }
+}
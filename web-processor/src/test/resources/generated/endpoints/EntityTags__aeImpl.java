@@ -0,0 +1,77 @@
+package test;
+
+import ae.web.PathParameters;
+import ae.web.ResponseCache;
+import ae.web.RouterServlet;
+import java.io.IOException;
+import javax.annotation.Generated;
+import javax.servlet.ServletException;
+import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+@Generated(
+    value = "AE/web-processor",
+    comments = "",
+    date = "2017-02-23"
+)
+@WebServlet("/api/tasks/*")
+public final class Tasks__aeImpl extends Tasks {
+  private static final long serialVersionUID = 1487851200000L;
+
+  private static final Logger LOGGER = LoggerFactory.getLogger("test.Tasks");
+
+  private final RouterServlet.Routes GET_routes = routesOfGET();
+
+  private final ResponseCache index_cache = new ResponseCache("test.Tasks.index", 60, 100, 0, "Task");
+
+  @Override
+  protected final Logger logger() {
+    return LOGGER;
+  }
+
+  private static RouterServlet.Routes routesOfGET() {
+    final RouterServlet.RoutesBuilder routes = routes();
+    routes.route("/");
+    routes.parameter("id").typedRoute("/{id}");
+    return routes.build();
+  }
+
+  @Override
+  public void doGet(final HttpServletRequest request, final HttpServletResponse response) throws
+      ServletException, IOException {
+    final PathParameters parameters = pathParameters();
+    switch (GET_routes.match(request, parameters)) {
+      case 0: {
+        if (notModified(request, response, tasksVersion(request))) {
+          return;
+        }
+        final ResponseCache.Lookup cached = index_cache.lookup(request, null);
+        if (cached.replay(response)) {
+          return;
+        }
+        final ResponseCache.Recording recording = cached.record(response);
+        index(request, recording);
+        cached.store(recording);
+        return;
+      }
+      case 1: {
+        final long argument0;
+        try {
+          argument0 = parameters.asPrimitiveLong(0);
+        } catch (final IllegalArgumentException e) {
+          invalidPathParameter(response);
+          return;
+        }
+        if (notModified(request, response, taskVersion(request, argument0))) {
+          return;
+        }
+        get(request, response, argument0);
+        return;
+      }
+    }
+    unhandledGet(request, response);
+  }
+}
@@ -1,10 +1,8 @@
 package test;
 
+import ae.web.AppEngineEndPointServlet;
 import ae.web.RouterServlet;
-import com.google.appengine.api.datastore.Entity;
-import com.google.common.collect.ImmutableList;
 import java.io.IOException;
-import java.util.regex.Pattern;
 import javax.annotation.Generated;
 import javax.servlet.ServletException;
 import javax.servlet.annotation.WebServlet;
@@ -24,35 +22,63 @@ public final class Tasks__aeImpl extends Tasks {
 
   private static final Logger LOGGER = LoggerFactory.getLogger("test.Tasks");
 
-  private final RouterServlet.Path GET_get = parameterizedPath("/admin/tasks/{id}", "/{id}", ImmutableList.of("id"), Pattern.compile("/(?<id>[^/]+)"));
+  private final RouterServlet.Routes GET_routes = routesOfGET();
 
-  private final RouterServlet.Path GET_author = staticPath("/admin/tasks/author", "/author");
+  private final RouterServlet.Routes POST_routes = routesOfPOST();
 
-  private final RouterServlet.Path PUT_update = parameterizedPath("/admin/tasks/{id}", "/{id}", ImmutableList.of("id"), Pattern.compile("/(?<id>[^/]+)"));
+  private final RouterServlet.Routes PUT_routes = routesOfPUT();
 
-  private final RouterServlet.Path DELETE_delete = parameterizedPath("/admin/tasks/{id}", "/{id}", ImmutableList.of("id"), Pattern.compile("/(?<id>[^/]+)"));
+  private final RouterServlet.Routes DELETE_routes = routesOfDELETE();
 
   @Override
   protected final Logger logger() {
     return LOGGER;
   }
 
+  private static RouterServlet.Routes routesOfGET() {
+    final RouterServlet.RoutesBuilder routes = routes();
+    routes.route("/");
+    routes.parameter("id").route("/{id}");
+    routes.literal("author").route("/author");
+    return routes.build();
+  }
+
+  private static RouterServlet.Routes routesOfPOST() {
+    final RouterServlet.RoutesBuilder routes = routes();
+    routes.route("/");
+    return routes.build();
+  }
+
+  private static RouterServlet.Routes routesOfPUT() {
+    final RouterServlet.RoutesBuilder routes = routes();
+    routes.parameter("id").route("/{id}");
+    return routes.build();
+  }
+
+  private static RouterServlet.Routes routesOfDELETE() {
+    final RouterServlet.RoutesBuilder routes = routes();
+    routes.parameter("id").route("/{id}");
+    return routes.build();
+  }
+
   @Override
   public void doGet(final HttpServletRequest request, final HttpServletResponse response) throws
       ServletException, IOException {
-    if (indexPath.matches(request)) {
-      index(request, response);
-      return;
-    }
-    final Entity userData = getLoggedUser();
-    if (GET_get.matches(request)) {
-      useNamespace(getUserNamespace(userData));
-      get(request, response);
-      return;
-    }
-    if (GET_author.matches(request)) {
-      author(request, response);
-      return;
+    switch (GET_routes.match(request)) {
+      case 0: {
+        index(request, response);
+        return;
+      }
+      case 1: {
+        final AppEngineEndPointServlet.LoggedUser user = loggedUser();
+        useNamespace(namespaceOf(user));
+        get(request, response);
+        return;
+      }
+      case 2: {
+        author(request, response);
+        return;
+      }
     }
     unhandledGet(request, response);
   }
@@ -60,11 +86,13 @@ public final class Tasks__aeImpl extends Tasks {
   @Override
   public void doPost(final HttpServletRequest request, final HttpServletResponse response) throws
       ServletException, IOException {
-    final Entity userData = getLoggedUser();
-    if (indexPath.matches(request)) {
-      useNamespace(getUserNamespace(userData));
-      save(request, response);
-      return;
+    switch (POST_routes.match(request)) {
+      case 0: {
+        final AppEngineEndPointServlet.LoggedUser user = loggedUser();
+        useNamespace(namespaceOf(user));
+        save(request, response);
+        return;
+      }
     }
     unhandledPost(request, response);
   }
@@ -72,9 +100,11 @@ public final class Tasks__aeImpl extends Tasks {
   @Override
   public void doPut(final HttpServletRequest request, final HttpServletResponse response) throws
       ServletException, IOException {
-    if (PUT_update.matches(request)) {
-      update(request, response);
-      return;
+    switch (PUT_routes.match(request)) {
+      case 0: {
+        update(request, response);
+        return;
+      }
     }
     unhandledPut(request, response);
   }
@@ -82,10 +112,12 @@ public final class Tasks__aeImpl extends Tasks {
   @Override
   public void doDelete(final HttpServletRequest request, final HttpServletResponse response) throws
       ServletException, IOException {
-    if (DELETE_delete.matches(request)) {
-      delete(request, response);
-      return;
+    switch (DELETE_routes.match(request)) {
+      case 0: {
+        delete(request, response);
+        return;
+      }
     }
     unhandledDelete(request, response);
   }
-}
\ No newline at end of file
+}
@@ -1,10 +1,8 @@
 package test;
 
+import ae.web.AppEngineEndPointServlet;
 import ae.web.RouterServlet;
-import com.google.appengine.api.datastore.Entity;
-import com.google.common.collect.ImmutableList;
 import java.io.IOException;
-import java.util.regex.Pattern;
 import javax.annotation.Generated;
 import javax.servlet.ServletException;
 import javax.servlet.annotation.WebServlet;
@@ -24,46 +22,83 @@ public final class Tasks__aeImpl extends Tasks {
 
   private static final Logger LOGGER = LoggerFactory.getLogger("test.Tasks");
 
-  private final RouterServlet.Path GET_get = parameterizedPath("/api/tasks/{id}", "/{id}", ImmutableList.of("id"), Pattern.compile("/(?<id>[^/]+)"));
+  private static final String[] CHECKED_ROLES = {"user", "configurator"};
 
-  private final RouterServlet.Path GET_author = staticPath("/api/tasks/author", "/author");
+  private final RouterServlet.Routes GET_routes = routesOfGET();
 
-  private final RouterServlet.Path PUT_update = parameterizedPath("/api/tasks/{id}", "/{id}", ImmutableList.of("id"), Pattern.compile("/(?<id>[^/]+)"));
+  private final RouterServlet.Routes POST_routes = routesOfPOST();
 
-  private final RouterServlet.Path DELETE_delete = parameterizedPath("/api/tasks/{id}", "/{id}", ImmutableList.of("id"), Pattern.compile("/(?<id>[^/]+)"));
+  private final RouterServlet.Routes PUT_routes = routesOfPUT();
+
+  private final RouterServlet.Routes DELETE_routes = routesOfDELETE();
 
   @Override
   protected final Logger logger() {
     return LOGGER;
   }
 
+  @Override
+  protected final String[] checkedRoles() {
+    return CHECKED_ROLES;
+  }
+
+  private static RouterServlet.Routes routesOfGET() {
+    final RouterServlet.RoutesBuilder routes = routes();
+    routes.route("/");
+    routes.parameter("id").route("/{id}");
+    routes.literal("author").route("/author");
+    return routes.build();
+  }
+
+  private static RouterServlet.Routes routesOfPOST() {
+    final RouterServlet.RoutesBuilder routes = routes();
+    routes.route("/");
+    return routes.build();
+  }
+
+  private static RouterServlet.Routes routesOfPUT() {
+    final RouterServlet.RoutesBuilder routes = routes();
+    routes.parameter("id").route("/{id}");
+    return routes.build();
+  }
+
+  private static RouterServlet.Routes routesOfDELETE() {
+    final RouterServlet.RoutesBuilder routes = routes();
+    routes.parameter("id").route("/{id}");
+    return routes.build();
+  }
+
   @Override
   public void doGet(final HttpServletRequest request, final HttpServletResponse response) throws
       ServletException, IOException {
-    final Entity userData = getLoggedUser();
-    if (indexPath.matches(request)) {
-      if (!userRoleIsIn(userData, "user", "configurator")) {
-        notAuthorized(response);
+    switch (GET_routes.match(request)) {
+      case 0: {
+        final AppEngineEndPointServlet.LoggedUser user = loggedUser();
+        if (!userRoleIsIn(user, 0x3L)) {
+          notAuthorized(response);
+          return;
+        }
+        index(request, response);
         return;
       }
-      index(request, response);
-      return;
-    }
-    if (GET_get.matches(request)) {
-      if (!userRoleIsIn(userData, "user", "configurator")) {
-        notAuthorized(response);
+      case 1: {
+        final AppEngineEndPointServlet.LoggedUser user = loggedUser();
+        if (!userRoleIsIn(user, 0x3L)) {
+          notAuthorized(response);
+          return;
+        }
+        get(request, response);
         return;
       }
-      get(request, response);
-      return;
-    }
-    if (GET_author.matches(request)) {
-      if (!userRoleIsIn(userData, "user", "configurator")) {
-        notAuthorized(response);
+      case 2: {
+        final AppEngineEndPointServlet.LoggedUser user = loggedUser();
+        if (!userRoleIsIn(user, 0x3L)) {
+          notAuthorized(response);
+          return;
+        }
+        author(request, response);
         return;
       }
-      author(request, response);
-      return;
     }
     unhandledGet(request, response);
   }
@@ -71,14 +106,16 @@ public final class Tasks__aeImpl extends Tasks {
   @Override
   public void doPost(final HttpServletRequest request, final HttpServletResponse response) throws
       ServletException, IOException {
-    final Entity userData = getLoggedUser();
-    if (indexPath.matches(request)) {
-      if (!userRoleIsIn(userData, "user", "configurator")) {
-        notAuthorized(response);
+    switch (POST_routes.match(request)) {
+      case 0: {
+        final AppEngineEndPointServlet.LoggedUser user = loggedUser();
+        if (!userRoleIsIn(user, 0x3L)) {
+          notAuthorized(response);
+          return;
+        }
+        save(request, response);
         return;
       }
-      save(request, response);
-      return;
     }
     unhandledPost(request, response);
   }
@@ -86,14 +123,16 @@ public final class Tasks__aeImpl extends Tasks {
   @Override
   public void doPut(final HttpServletRequest request, final HttpServletResponse response) throws
       ServletException, IOException {
-    final Entity userData = getLoggedUser();
-    if (PUT_update.matches(request)) {
-      if (!userRoleIsIn(userData, "user", "configurator")) {
-        notAuthorized(response);
+    switch (PUT_routes.match(request)) {
+      case 0: {
+        final AppEngineEndPointServlet.LoggedUser user = loggedUser();
+        if (!userRoleIsIn(user, 0x3L)) {
+          notAuthorized(response);
+          return;
+        }
+        update(request, response);
         return;
       }
-      update(request, response);
-      return;
     }
     unhandledPut(request, response);
   }
@@ -101,15 +140,17 @@ public final class Tasks__aeImpl extends Tasks {
   @Override
   public void doDelete(final HttpServletRequest request, final HttpServletResponse response) throws
       ServletException, IOException {
-    final Entity userData = getLoggedUser();
-    if (DELETE_delete.matches(request)) {
-      if (!userRoleIsIn(userData, "user", "configurator")) {
-        notAuthorized(response);
+    switch (DELETE_routes.match(request)) {
+      case 0: {
+        final AppEngineEndPointServlet.LoggedUser user = loggedUser();
+        if (!userRoleIsIn(user, 0x3L)) {
+          notAuthorized(response);
+          return;
+        }
+        delete(request, response);
         return;
       }
-      delete(request, response);
-      return;
     }
     unhandledDelete(request, response);
   }
-}
\ No newline at end of file
+}
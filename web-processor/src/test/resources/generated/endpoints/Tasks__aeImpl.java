@@ -1,9 +1,7 @@
 package test;
 
 import ae.web.RouterServlet;
-import com.google.common.collect.ImmutableList;
 import java.io.IOException;
-import java.util.regex.Pattern;
 import javax.annotation.Generated;
 import javax.servlet.ServletException;
 import javax.servlet.annotation.WebServlet;
@@ -23,33 +21,61 @@ public final class Tasks__aeImpl extends Tasks {
 
   private static final Logger LOGGER = LoggerFactory.getLogger("test.Tasks");
 
-  private final RouterServlet.Path GET_get = parameterizedPath("/api/tasks/{id}", "/{id}", ImmutableList.of("id"), Pattern.compile("/(?<id>[^/]+)"));
+  private final RouterServlet.Routes GET_routes = routesOfGET();
 
-  private final RouterServlet.Path GET_author = staticPath("/api/tasks/author", "/author");
+  private final RouterServlet.Routes POST_routes = routesOfPOST();
 
-  private final RouterServlet.Path PUT_update = parameterizedPath("/api/tasks/{id}", "/{id}", ImmutableList.of("id"), Pattern.compile("/(?<id>[^/]+)"));
+  private final RouterServlet.Routes PUT_routes = routesOfPUT();
 
-  private final RouterServlet.Path DELETE_delete = parameterizedPath("/api/tasks/{id}", "/{id}", ImmutableList.of("id"), Pattern.compile("/(?<id>[^/]+)"));
+  private final RouterServlet.Routes DELETE_routes = routesOfDELETE();
 
   @Override
   protected final Logger logger() {
     return LOGGER;
   }
 
+  private static RouterServlet.Routes routesOfGET() {
+    final RouterServlet.RoutesBuilder routes = routes();
+    routes.route("/");
+    routes.parameter("id").route("/{id}");
+    routes.literal("author").route("/author");
+    return routes.build();
+  }
+
+  private static RouterServlet.Routes routesOfPOST() {
+    final RouterServlet.RoutesBuilder routes = routes();
+    routes.route("/");
+    return routes.build();
+  }
+
+  private static RouterServlet.Routes routesOfPUT() {
+    final RouterServlet.RoutesBuilder routes = routes();
+    routes.parameter("id").route("/{id}");
+    return routes.build();
+  }
+
+  private static RouterServlet.Routes routesOfDELETE() {
+    final RouterServlet.RoutesBuilder routes = routes();
+    routes.parameter("id").route("/{id}");
+    return routes.build();
+  }
+
   @Override
   public void doGet(final HttpServletRequest request, final HttpServletResponse response) throws
       ServletException, IOException {
-    if (indexPath.matches(request)) {
-      index(request, response);
-      return;
-    }
-    if (GET_get.matches(request)) {
-      get(request, response);
-      return;
-    }
-    if (GET_author.matches(request)) {
-      author(request, response);
-      return;
+    switch (GET_routes.match(request)) {
+      case 0: {
+        index(request, response);
+        return;
+      }
+      case 1: {
+        get(request, response);
+        return;
+      }
+      case 2: {
+        author(request, response);
+        return;
+      }
     }
     unhandledGet(request, response);
   }
@@ -57,9 +83,11 @@ public final class Tasks__aeImpl extends Tasks {
   @Override
   public void doPost(final HttpServletRequest request, final HttpServletResponse response) throws
       ServletException, IOException {
-    if (indexPath.matches(request)) {
-      save(request, response);
-      return;
+    switch (POST_routes.match(request)) {
+      case 0: {
+        save(request, response);
+        return;
+      }
     }
     unhandledPost(request, response);
   }
@@ -67,9 +95,11 @@ public final class Tasks__aeImpl extends Tasks {
   @Override
   public void doPut(final HttpServletRequest request, final HttpServletResponse response) throws
       ServletException, IOException {
-    if (PUT_update.matches(request)) {
-      update(request, response);
-      return;
+    switch (PUT_routes.match(request)) {
+      case 0: {
+        update(request, response);
+        return;
+      }
     }
     unhandledPut(request, response);
   }
@@ -77,9 +107,11 @@ public final class Tasks__aeImpl extends Tasks {
   @Override
   public void doDelete(final HttpServletRequest request, final HttpServletResponse response) throws
       ServletException, IOException {
-    if (DELETE_delete.matches(request)) {
-      delete(request, response);
-      return;
+    switch (DELETE_routes.match(request)) {
+      case 0: {
+        delete(request, response);
+        return;
+      }
     }
     unhandledDelete(request, response);
   }
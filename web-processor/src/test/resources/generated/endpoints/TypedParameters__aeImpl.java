@@ -0,0 +1,105 @@
+package test;
+
+import ae.web.PathParameters;
+import ae.web.RouterServlet;
+import com.google.appengine.api.datastore.Key;
+import java.io.IOException;
+import javax.annotation.Generated;
+import javax.servlet.ServletException;
+import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+@Generated(
+    value = "AE/web-processor",
+    comments = "",
+    date = "2017-02-23"
+)
+@WebServlet("/api/tasks/*")
+public final class Tasks__aeImpl extends Tasks {
+  private static final long serialVersionUID = 1487851200000L;
+
+  private static final Logger LOGGER = LoggerFactory.getLogger("test.Tasks");
+
+  private final RouterServlet.Routes GET_routes = routesOfGET();
+
+  private final RouterServlet.Routes PUT_routes = routesOfPUT();
+
+  @Override
+  protected final Logger logger() {
+    return LOGGER;
+  }
+
+  private static RouterServlet.Routes routesOfGET() {
+    final RouterServlet.RoutesBuilder routes = routes();
+    routes.parameter("id").typedRoute("/{id}");
+    routes.parameter("id").literal("notes").constrainedParameter("(?<note>[a-z]+)", "note").typedRoute("/{id}/notes/{note: [a-z]+}");
+    routes.parameter("owner").literal("pending").route("/{owner}/pending");
+    return routes.build();
+  }
+
+  private static RouterServlet.Routes routesOfPUT() {
+    final RouterServlet.RoutesBuilder routes = routes();
+    routes.parameter("key").typedRoute("/{key}");
+    return routes.build();
+  }
+
+  @Override
+  public void doGet(final HttpServletRequest request, final HttpServletResponse response) throws
+      ServletException, IOException {
+    final PathParameters parameters = pathParameters();
+    switch (GET_routes.match(request, parameters)) {
+      case 0: {
+        final long argument0;
+        try {
+          argument0 = parameters.asPrimitiveLong(0);
+        } catch (final IllegalArgumentException e) {
+          invalidPathParameter(response);
+          return;
+        }
+        get(request, response, argument0);
+        return;
+      }
+      case 1: {
+        final String argument0;
+        final long argument1;
+        try {
+          argument0 = parameters.asString(1);
+          argument1 = parameters.asPrimitiveLong(0);
+        } catch (final IllegalArgumentException e) {
+          invalidPathParameter(response);
+          return;
+        }
+        note(request, response, argument0, argument1);
+        return;
+      }
+      case 2: {
+        pending(request, response);
+        return;
+      }
+    }
+    unhandledGet(request, response);
+  }
+
+  @Override
+  public void doPut(final HttpServletRequest request, final HttpServletResponse response) throws
+      ServletException, IOException {
+    final PathParameters parameters = pathParameters();
+    switch (PUT_routes.match(request, parameters)) {
+      case 0: {
+        final Key argument0;
+        try {
+          argument0 = parameters.asKey(0);
+        } catch (final IllegalArgumentException e) {
+          invalidPathParameter(response);
+          return;
+        }
+        update(request, response, argument0);
+        return;
+      }
+    }
+    unhandledPut(request, response);
+  }
+}
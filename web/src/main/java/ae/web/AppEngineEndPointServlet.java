@@ -24,6 +24,8 @@
 package ae.web;
 
 import ae.db.ActiveEntity;
+import ae.db.JsonWriter;
+import ae.db.UnitOfWork;
 import argo.jdom.JsonNode;
 import argo.jdom.JsonNodeFactories;
 import argo.jdom.JsonStringNode;
@@ -33,8 +35,11 @@ import com.google.appengine.api.users.User;
 import com.google.appengine.api.users.UserServiceFactory;
 import com.google.common.collect.ImmutableList;
 
+import java.io.IOException;
 import java.util.*;
+import javax.servlet.ServletException;
 import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
 
 public abstract class AppEngineEndPointServlet extends EndPointServlet
 {
@@ -43,6 +48,33 @@ public abstract class AppEngineEndPointServlet extends EndPointServlet
     // nothing to do
   }
 
+  /**
+   * Handles the request inside a {@link UnitOfWork} when {@link #coalescesWrites()}, so the entities saved and deleted
+   * while handling it are written together once its handler returns, or before, as soon as its response starts to
+   * be sent.
+   */
+  @Override protected void service(final HttpServletRequest request, final HttpServletResponse response)
+      throws ServletException, IOException
+  {
+    if (!coalescesWrites()) {
+      super.service(request, response);
+      return;
+    }
+    try (UnitOfWork work = UnitOfWork.begin()) {
+      super.service(request, new FlushingResponse(response, work));
+    }
+  }
+
+  /**
+   * @return true to coalesce the writes done while handling each request. They are written before any part of the
+   * response is sent, so a failed write is answered as an error instead of the rendered response (writes done after
+   * rendering are written once the handler returns, when the response may be already committed).
+   */
+  protected boolean coalescesWrites()
+  {
+    return false;
+  }
+
   protected boolean userRoleIs(final Entity userData, final String roleName)
   {
     final String r = getUserRoleName(userData);
@@ -67,6 +99,173 @@ public abstract class AppEngineEndPointServlet extends EndPointServlet
     return r.equals(r1) || r.equals(r2) || r.equals(r3) || r.equals(r4);
   }
 
+  private static final String[] NO_ROLES = {};
+
+  private static final long UNRESOLVED_ROLES_MASK = -1L;
+
+  /**
+   * @return the roles checked by the endpoint routes. The role at position {@code i} is represented by bit {@code i}
+   * at roles masks.
+   */
+  protected String[] checkedRoles()
+  {
+    return NO_ROLES;
+  }
+
+  /**
+   * @param user  the logged user.
+   * @param roles mask of the authorized roles, as defined by {@link #checkedRoles()}.
+   * @return true if the role of the user is one of the authorized roles.
+   */
+  protected final boolean userRoleIsIn(final LoggedUser user, final long roles)
+  {
+    return (rolesMaskOf(user) & roles) != 0L;
+  }
+
+  /**
+   * @return the mask of the roles of the user, resolved at most once while the user is cached.
+   */
+  protected final long rolesMaskOf(final LoggedUser user)
+  {
+    long mask = user.rolesMask;
+    if (mask == UNRESOLVED_ROLES_MASK) {
+      mask = 0L;
+      final String role = roleOf(user);
+      final String[] roles = checkedRoles();
+      for (int i = 0; i < roles.length; i++) {
+        if (roles[i].equals(role)) {
+          mask |= 1L << i;
+        }
+      }
+      user.rolesMask = mask;
+    }
+    return mask;
+  }
+
+  /**
+   * Logged user data, with its role and namespace resolved at most once while it is cached.
+   */
+  protected static final class LoggedUser
+  {
+    private final Entity data;
+    final long expiresAt;
+    private volatile String role;
+    private volatile String namespace;
+    private volatile long rolesMask = UNRESOLVED_ROLES_MASK;
+
+    LoggedUser(final Entity data, final long expiresAt)
+    {
+      this.data = data;
+      this.expiresAt = expiresAt;
+    }
+
+    /**
+     * @return a copy of the user data, as the data is shared by the requests of the user while it is cached.
+     */
+    public Entity data()
+    {
+      return data == null ? null : data.clone();
+    }
+  }
+
+  private volatile LoggedUsers loggedUsers;
+
+  /**
+   * @return max amount of users kept resolved by this servlet, {@code 0} to resolve the user at every request.
+   */
+  protected int loggedUsersCacheSize()
+  {
+    return 1000;
+  }
+
+  /**
+   * @return max amount of milliseconds a resolved user is kept, so changes to its role or namespace are seen after
+   * at most this time.
+   */
+  protected long loggedUsersTimeToLive()
+  {
+    return 60_000L;
+  }
+
+  private LoggedUsers loggedUsers()
+  {
+    LoggedUsers users = loggedUsers;
+    if (users == null) {
+      synchronized (this) {
+        users = loggedUsers;
+        if (users == null) {
+          users = new LoggedUsers(loggedUsersCacheSize(), loggedUsersTimeToLive());
+          loggedUsers = users;
+        }
+      }
+    }
+    return users;
+  }
+
+  /**
+   * Resolves the logged user, reusing the data resolved for the same user id by previous requests (until it expires).
+   *
+   * @return the logged user.
+   * @throws IllegalStateException if the data of the logged user can't be found.
+   */
+  protected final LoggedUser loggedUser()
+  {
+    final String userId = loggedUsersCacheSize() > 0 ? currentUserId() : null;
+    if (userId == null) {
+      return new LoggedUser(loggedUserData(), 0L);
+    }
+    final LoggedUsers users = loggedUsers();
+    final long now = System.currentTimeMillis();
+    LoggedUser user = users.get(userId, now);
+    if (user == null) {
+      final Entity data = loggedUserData();
+      user = new LoggedUser(data, users.expirationFrom(now));
+      if (data != null) {
+        users.put(userId, user);
+      }
+    }
+    return user;
+  }
+
+  private Entity loggedUserData()
+  {
+    try {
+      return getLoggedUser();
+    } catch (final EntityNotFoundException e) {
+      throw new IllegalStateException("no data found for logged user", e);
+    }
+  }
+
+  /**
+   * Discards the resolved data of a user, to be called when its role or namespace are changed.
+   */
+  protected final void forgetLoggedUser(final String userId)
+  {
+    if (loggedUsers != null) {
+      loggedUsers.invalidate(userId);
+    }
+  }
+
+  protected final String roleOf(final LoggedUser user)
+  {
+    String role = user.role;
+    if (role == null) {
+      role = getUserRoleName(user.data);
+      user.role = role;
+    }
+    return role;
+  }
+
+  protected final String namespaceOf(final LoggedUser user)
+  {
+    String namespace = user.namespace;
+    if (namespace == null) {
+      namespace = getUserNamespace(user.data);
+      user.namespace = namespace;
+    }
+    return namespace;
+  }
+
   protected final String getUserRoleName(final Entity userData) {
     final UserRole role = getUserRole(userData);
     if (role == null) {
@@ -154,6 +353,26 @@ public abstract class AppEngineEndPointServlet extends EndPointServlet
     );
   }
 
+  /**
+   * Writes the page to the response as {@link #buildPage(ActiveEntity, QueryResultList)} does, but streaming its
+   * elements as the iterator yields them. The cursor is written after the elements, as it is only known once they
+   * are consumed.
+   * <p>
+   * This method commits the response.
+   */
+  protected void streamPage(final HttpServletResponse response,
+                            final ActiveEntity ae,
+                            final QueryResultIterator<Entity> page)
+      throws ServletException, IOException
+  {
+    final JsonWriter out = startStream(response, ContentType.APPLICATION_JSON);
+    out.beginObject().name("data").beginArray();
+    writeElements(out, ae, page, false);
+    out.endArray().name("cursor").string(page.getCursor().toWebSafeString());
+    out.endObject();
+    out.flush();
+  }
+
   protected DatastoreService datastore()
   {
     return DatastoreServiceFactory.getDatastoreService();
@@ -0,0 +1,398 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2018 ActiveEngine.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ae.web;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
+
+/**
+ * Response compressing its body with the content coding accepted by the client.
+ * <p>
+ * The body is buffered until it reaches the compression threshold. Bodies smaller than the threshold, or whose
+ * content type isn't compressible, are sent as they are; larger ones (and streamed ones, once flushed) are
+ * compressed as they are written, using pooled deflaters. Entity tags are suffixed with the content coding, as they
+ * tag a different representation; they are suffixed as soon as they are set, whether the body ends up compressed or
+ * not, so a {@code 304 Not Modified} carries the same tag as the response it validates.
+ */
+final class CompressedResponse extends HttpServletResponseWrapper
+{
+  static final String GZIP = "gzip";
+  static final String DEFLATE = "deflate";
+
+  private static final byte[] GZIP_HEADER = {0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, (byte) 0xff};
+
+  private final String encoding;
+  private final int threshold;
+  private long contentLength = -1L;
+  private Body body;
+  private PrintWriter writer;
+
+  CompressedResponse(final HttpServletResponse response, final String encoding, final int threshold)
+  {
+    super(response);
+    this.encoding = encoding;
+    this.threshold = threshold;
+  }
+
+  /**
+   * Negotiates the content coding of the response.
+   *
+   * @param acceptEncoding the {@code Accept-Encoding} header of the request.
+   * @return {@link #GZIP}, {@link #DEFLATE} or {@code null} when the client accepts neither of them.
+   */
+  static String negotiate(final String acceptEncoding)
+  {
+    if (acceptEncoding == null) {
+      return null;
+    }
+    double gzip = -1;
+    double deflate = -1;
+    double any = -1;
+    for (final String coding : acceptEncoding.split(",")) {
+      final int parameters = coding.indexOf(';');
+      final String name = (parameters < 0 ? coding : coding.substring(0, parameters)).trim();
+      final double quality = parameters < 0 ? 1 : qualityOf(coding.substring(parameters + 1));
+      if (GZIP.equalsIgnoreCase(name) || "x-gzip".equalsIgnoreCase(name)) {
+        gzip = quality;
+      } else if (DEFLATE.equalsIgnoreCase(name)) {
+        deflate = quality;
+      } else if ("*".equals(name)) {
+        any = quality;
+      }
+    }
+    if (gzip < 0) {
+      gzip = any;
+    }
+    if (deflate < 0) {
+      deflate = any;
+    }
+    if (gzip > 0 && gzip >= deflate) {
+      return GZIP;
+    }
+    if (deflate > 0) {
+      return DEFLATE;
+    }
+    return null;
+  }
+
+  private static double qualityOf(final String parameters)
+  {
+    for (final String parameter : parameters.split(";")) {
+      final String value = parameter.trim();
+      if (value.startsWith("q=")) {
+        try {
+          return Double.parseDouble(value.substring(2).trim());
+        } catch (final NumberFormatException e) {
+          return 0;
+        }
+      }
+    }
+    return 1;
+  }
+
+  static boolean isCompressible(final String contentType)
+  {
+    if (contentType == null) {
+      return false;
+    }
+    final String type = contentType.toLowerCase();
+    return type.startsWith("text/")
+           || type.startsWith("application/json")
+           || type.startsWith("application/x-ndjson")
+           || type.startsWith("application/xml")
+           || type.startsWith("application/x-yaml")
+           || type.startsWith("application/javascript");
+  }
+
+  @Override public void setContentLength(final int len)
+  {
+    this.contentLength = len;
+  }
+
+  @Override public void setContentLengthLong(final long len)
+  {
+    this.contentLength = len;
+  }
+
+  @Override public void setHeader(final String name, final String value)
+  {
+    if ("ETag".equalsIgnoreCase(name)) {
+      super.setHeader(name, value == null ? null : value.substring(0, value.length() - 1) + '-' + encoding + '"');
+      return;
+    } else if ("Content-Length".equalsIgnoreCase(name)) {
+      this.contentLength = Long.parseLong(value);
+      return;
+    }
+    super.setHeader(name, value);
+  }
+
+  @Override public ServletOutputStream getOutputStream()
+      throws IOException
+  {
+    if (writer != null) {
+      throw new IllegalStateException("getWriter() has already been called for this response");
+    }
+    return body();
+  }
+
+  @Override public PrintWriter getWriter()
+      throws IOException
+  {
+    if (writer == null) {
+      if (body != null) {
+        throw new IllegalStateException("getOutputStream() has already been called for this response");
+      }
+      final String characterEncoding = getCharacterEncoding();
+      writer = new PrintWriter(new OutputStreamWriter(body(), characterEncoding == null ? "ISO-8859-1" : characterEncoding));
+    }
+    return writer;
+  }
+
+  @Override public void flushBuffer()
+      throws IOException
+  {
+    if (writer != null) {
+      writer.flush();
+    } else if (body != null) {
+      body.flush();
+    }
+    super.flushBuffer();
+  }
+
+  @Override public void reset()
+  {
+    super.reset();
+    resetBuffer();
+    this.contentLength = -1L;
+  }
+
+  @Override public void resetBuffer()
+  {
+    super.resetBuffer();
+    if (body != null) {
+      body.resetBuffer();
+    }
+  }
+
+  private Body body()
+  {
+    if (body == null) {
+      body = new Body();
+    }
+    return body;
+  }
+
+  /**
+   * Sends the body written so far, completing the compressed data.
+   */
+  void finish()
+      throws IOException
+  {
+    if (writer != null) {
+      writer.flush();
+    }
+    if (body != null) {
+      body.finish();
+    } else if (contentLength >= 0) {
+      super.setContentLengthLong(contentLength);
+    }
+  }
+
+  /**
+   * Returns the deflater to its pool, if it wasn't already by {@link #finish()}. The compressed data is left
+   * incomplete, so this is meant for responses whose handler failed.
+   */
+  void release()
+  {
+    if (body != null) {
+      body.release();
+    }
+  }
+
+  private final class Body extends ServletOutputStream
+  {
+    private ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+    private OutputStream out;
+    private Deflater deflater;
+    private CRC32 crc;
+    private boolean finished;
+
+    @Override public void write(final int b)
+        throws IOException
+    {
+      if (out == null) {
+        if (buffer.size() + 1 < threshold) {
+          buffer.write(b);
+          return;
+        }
+        start(true);
+      }
+      out.write(b);
+      if (crc != null) {
+        crc.update(b);
+      }
+    }
+
+    @Override public void write(final byte[] b, final int off, final int len)
+        throws IOException
+    {
+      if (out == null) {
+        if (buffer.size() + len < threshold) {
+          buffer.write(b, off, len);
+          return;
+        }
+        start(true);
+      }
+      out.write(b, off, len);
+      if (crc != null) {
+        crc.update(b, off, len);
+      }
+    }
+
+    /**
+     * Streamed bodies are compressed once flushed, even before reaching the threshold.
+     */
+    @Override public void flush()
+        throws IOException
+    {
+      if (out == null) {
+        if (buffer.size() == 0) {
+          return;
+        }
+        start(true);
+      }
+      out.flush();
+    }
+
+    @Override public void close()
+        throws IOException
+    {
+      finish();
+    }
+
+    @Override public boolean isReady()
+    {
+      return true;
+    }
+
+    @Override public void setWriteListener(final WriteListener writeListener)
+    {
+      throw new UnsupportedOperationException("non blocking writes aren't supported by compressed responses, "
+                                              + "disable them with a negative compressionThreshold()");
+    }
+
+    void resetBuffer()
+    {
+      if (out == null) {
+        buffer.reset();
+      }
+    }
+
+    private void start(final boolean compress)
+        throws IOException
+    {
+      final HttpServletResponse response = (HttpServletResponse) getResponse();
+      if (compress && isCompressible(getContentType()) && !response.containsHeader("Content-Encoding")) {
+        response.setHeader("Content-Encoding", encoding);
+        final ServletOutputStream raw = response.getOutputStream();
+        if (GZIP.equals(encoding)) {
+          raw.write(GZIP_HEADER);
+          deflater = Deflaters.GZIP.acquire();
+          crc = new CRC32();
+        } else {
+          deflater = Deflaters.DEFLATE.acquire();
+        }
+        out = new DeflaterOutputStream(raw, deflater, 8192, true);
+      } else {
+        if (contentLength >= 0) {
+          response.setContentLengthLong(contentLength);
+        } else if (!compress) {
+          response.setContentLength(buffer.size());
+        }
+        out = response.getOutputStream();
+      }
+      final byte[] buffered = buffer.toByteArray();
+      buffer = null;
+      if (buffered.length > 0) {
+        write(buffered, 0, buffered.length);
+      }
+    }
+
+    void finish()
+        throws IOException
+    {
+      if (finished) {
+        return;
+      }
+      finished = true;
+      if (out == null) {
+        start(false);
+      }
+      if (deflater != null) {
+        try {
+          ((DeflaterOutputStream) out).finish();
+          if (crc != null) {
+            final ServletOutputStream raw = getResponse().getOutputStream();
+            writeInt(raw, (int) crc.getValue());
+            writeInt(raw, (int) deflater.getBytesRead());
+          }
+        } finally {
+          release();
+        }
+      }
+      out.flush();
+    }
+
+    void release()
+    {
+      if (deflater != null) {
+        if (GZIP.equals(encoding)) {
+          Deflaters.GZIP.release(deflater);
+        } else {
+          Deflaters.DEFLATE.release(deflater);
+        }
+        deflater = null;
+      }
+    }
+
+    private void writeInt(final OutputStream raw, final int value)
+        throws IOException
+    {
+      raw.write(value & 0xff);
+      raw.write((value >> 8) & 0xff);
+      raw.write((value >> 16) & 0xff);
+      raw.write((value >> 24) & 0xff);
+    }
+  }
+}
@@ -0,0 +1,78 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2018 ActiveEngine.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ae.web;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.zip.Deflater;
+
+/**
+ * Pool of deflaters, so compressing a response doesn't allocate (and later release) the native memory of a new one.
+ */
+final class Deflaters
+{
+  private static final int CAPACITY = 32;
+
+  /**
+   * Deflaters writing raw deflate data, to be wrapped in the gzip format.
+   */
+  static final Deflaters GZIP = new Deflaters(true);
+
+  /**
+   * Deflaters writing the zlib format, used by the {@code deflate} content coding.
+   */
+  static final Deflaters DEFLATE = new Deflaters(false);
+
+  private final boolean nowrap;
+  private final ArrayBlockingQueue<Deflater> idle = new ArrayBlockingQueue<>(CAPACITY);
+
+  private Deflaters(final boolean nowrap)
+  {
+    this.nowrap = nowrap;
+  }
+
+  Deflater acquire()
+  {
+    final Deflater deflater = idle.poll();
+    if (deflater == null) {
+      return new Deflater(Deflater.DEFAULT_COMPRESSION, nowrap);
+    }
+    return deflater;
+  }
+
+  /**
+   * @return amount of deflaters kept for reuse.
+   */
+  int idle()
+  {
+    return idle.size();
+  }
+
+  void release(final Deflater deflater)
+  {
+    deflater.reset();
+    if (!idle.offer(deflater)) {
+      deflater.end();
+    }
+  }
+}
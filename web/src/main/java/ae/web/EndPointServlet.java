@@ -1,5 +1,7 @@
 package ae.web;
 
+import ae.db.EntityModel;
+import ae.db.JsonWriter;
 import ae.db.Validation;
 import argo.format.CompactJsonFormatter;
 import argo.format.JsonFormatter;
@@ -7,6 +9,9 @@ import argo.format.PrettyJsonFormatter;
 import argo.jdom.JdomParser;
 import argo.jdom.JsonNode;
 import argo.saj.InvalidSyntaxException;
+import com.google.appengine.api.datastore.Entity;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
 
 import javax.servlet.ServletException;
 import javax.servlet.http.HttpServletRequest;
@@ -15,7 +20,10 @@ import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.Reader;
 import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
 import java.util.Date;
+import java.util.Iterator;
+import java.util.function.Consumer;
 import java.util.function.Supplier;
 import java.util.logging.Level;
 
@@ -59,6 +67,44 @@ public abstract class EndPointServlet extends RouterServlet
     // nothing to do
   }
 
+  /**
+   * Compresses the response body with the content coding accepted by the client (gzip or deflate), when it is at
+   * least {@link #compressionThreshold()} bytes long or when it is streamed.
+   * <p>
+   * Compressed bodies are written in blocking mode only, so handlers writing through a
+   * {@link javax.servlet.WriteListener} must disable compression (with a negative {@link #compressionThreshold()}).
+   */
+  @Override protected void service(final HttpServletRequest request, final HttpServletResponse response)
+      throws ServletException, IOException
+  {
+    final int threshold = compressionThreshold();
+    if (threshold < 0) {
+      super.service(request, response);
+      return;
+    }
+    response.addHeader("Vary", "Accept-Encoding");
+    final String encoding = CompressedResponse.negotiate(request.getHeader("Accept-Encoding"));
+    if (encoding == null) {
+      super.service(request, response);
+      return;
+    }
+    final CompressedResponse compressed = new CompressedResponse(response, encoding, threshold);
+    try {
+      super.service(request, compressed);
+      compressed.finish();
+    } finally {
+      compressed.release();
+    }
+  }
+
+  /**
+   * @return min amount of bytes of the response bodies to compress, responses are never compressed if negative.
+   */
+  protected int compressionThreshold()
+  {
+    return 1024;
+  }
+
   /* request manipulation ************************************************** */
 
   /**
@@ -103,6 +149,37 @@ public abstract class EndPointServlet extends RouterServlet
     return JDOM_PARSER.parse(content);
   }
 
+  /**
+   * Reads an entity from the JSON object at the request body, parsing it as a stream so no JSON document is built.
+   */
+  protected Entity readEntity(final HttpServletRequest request, final EntityModel model)
+      throws IOException, ServletException
+  {
+    try {
+      return model.fromJson(request.getReader());
+    } catch (final InvalidSyntaxException e) {
+      throw new ServletException(e);
+    }
+  }
+
+  /**
+   * Reads the entities of the JSON array at the request body, performing {@code action} on each one as soon as it is
+   * read.
+   *
+   * @return the amount of entities read.
+   */
+  protected int readEntities(final HttpServletRequest request,
+                             final EntityModel model,
+                             final Consumer<Entity> action)
+      throws IOException, ServletException
+  {
+    try {
+      return model.fromJson(request.getReader(), action);
+    } catch (final InvalidSyntaxException e) {
+      throw new ServletException(e);
+    }
+  }
+
   /* response manipulation ************************************************* */
   protected static String to(final String location)
   {
@@ -208,6 +285,32 @@ public abstract class EndPointServlet extends RouterServlet
     send(response, content);
   }
 
+  /**
+   * Renders the json as {@link #renderJson(HttpServletResponse, JsonNode)} does, tagging it as
+   * {@link #writeJson(HttpServletRequest, HttpServletResponse, CharSequence)} does.
+   */
+  protected void renderJson(final HttpServletRequest request, final HttpServletResponse response, final JsonNode json)
+      throws ServletException, IOException
+  {
+    writeJson(request, response, JSON_FORMATTER.format(json));
+  }
+
+  /**
+   * Writes the json content encoded as UTF-8, with a strong entity tag made from the encoded bytes. When the request
+   * already has the tagged content, the response is {@code 304 Not Modified} and no body is sent. Responses already
+   * tagged by version (see {@link #notModified(HttpServletRequest, HttpServletResponse, String)}) keep their tag.
+   * <p>
+   * This method commits the response.
+   *
+   * @throws javax.servlet.ServletException if the response is already committed.
+   */
+  protected void writeJson(final HttpServletRequest request, final HttpServletResponse response, final CharSequence content)
+      throws ServletException, IOException
+  {
+    set(response, ContentType.APPLICATION_JSON);
+    sendTagged(request, response, content);
+  }
+
   protected void writeText(final HttpServletResponse response, final CharSequence content)
       throws ServletException, IOException
   {
@@ -237,6 +340,22 @@ public abstract class EndPointServlet extends RouterServlet
     }
   }
 
+  void sendTagged(final HttpServletRequest request, final HttpServletResponse response, final CharSequence content)
+      throws ServletException, IOException
+  {
+    if (response.isCommitted()) {
+      throw new ServletException("The response has already been committed");
+    }
+    final byte[] body = content == null ? new byte[0] : content.toString().getBytes(StandardCharsets.UTF_8);
+    if (!response.containsHeader("ETag") && notModified(request, response, entityTag(body))) {
+      return;
+    }
+    response.setCharacterEncoding("UTF-8");
+    set(response, StatusCode.OK);
+    response.setContentLength(body.length);
+    response.getOutputStream().write(body);
+  }
+
   void commit(final HttpServletResponse response, final String content)
       throws IOException
   {
@@ -244,12 +363,193 @@ public abstract class EndPointServlet extends RouterServlet
       set(response, ContentType.TEXT_HTML);
     }
     if (content != null) {
-      response.setContentLength(content.getBytes().length);
-      response.getWriter().append(content);
+      final String encoding = response.getCharacterEncoding();
+      final byte[] body = content.getBytes(encoding == null ? "ISO-8859-1" : encoding);
+      response.setContentLength(body.length);
+      response.getOutputStream().write(body);
     }
     set(response, StatusCode.OK);
   }
 
+  /* conditional requests */
+
+  /**
+   * Sets the entity tag of the response, answering {@code 304 Not Modified} when the request already has the tagged
+   * content (as stated by its {@code If-None-Match} header).
+   *
+   * @param etag the entity tag of the response content, as made by {@link #entityTag(byte[])} or
+   *             {@link #entityTag(Object...)}; {@code null} means the content isn't tagged.
+   * @return true if the response was answered as not modified, so its content must not be written.
+   */
+  protected final boolean notModified(final HttpServletRequest request,
+                                      final HttpServletResponse response,
+                                      final String etag)
+  {
+    if (etag == null) {
+      return false;
+    }
+    response.setHeader("ETag", etag);
+    if (matchesEntityTag(request.getHeader("If-None-Match"), etag)) {
+      set(response, StatusCode.NOT_MODIFIED);
+      return true;
+    }
+    return false;
+  }
+
+  /**
+   * @return the strong entity tag of the content.
+   */
+  protected static String entityTag(final byte[] content)
+  {
+    return '"' + Hashing.murmur3_128().hashBytes(content).toString() + '"';
+  }
+
+  /**
+   * Makes a strong entity tag from the version of the content, instead of from the content itself, so it can be
+   * checked before the content is built. The version is usually made of the keys of the entities at the content and
+   * the stamps of their last updates.
+   *
+   * @return the strong entity tag of the content version.
+   */
+  protected static String entityTag(final Object... version)
+  {
+    final Hasher hasher = Hashing.murmur3_128().newHasher();
+    for (final Object part : version) {
+      hasher.putString(String.valueOf(part), StandardCharsets.UTF_8).putByte((byte) 0);
+    }
+    return '"' + hasher.hash().toString() + '"';
+  }
+
+  /**
+   * Weak comparison of the entity tag with the ones at an {@code If-None-Match} header, as required for it.
+   */
+  static boolean matchesEntityTag(final String ifNoneMatch, final String etag)
+  {
+    if (ifNoneMatch == null) {
+      return false;
+    }
+    final String opaqueTag = opaqueTagOf(etag);
+    for (final String candidate : ifNoneMatch.split(",")) {
+      final String tag = candidate.trim();
+      if ("*".equals(tag) || opaqueTag.equals(opaqueTagOf(tag))) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * @return the entity tag without its weakness indicator, nor the content coding suffix of compressed responses.
+   */
+  private static String opaqueTagOf(final String etag)
+  {
+    final String tag = etag.startsWith("W/") ? etag.substring(2) : etag;
+    if (tag.endsWith('-' + CompressedResponse.GZIP + '"')) {
+      return tag.substring(0, tag.length() - CompressedResponse.GZIP.length() - 2) + '"';
+    }
+    if (tag.endsWith('-' + CompressedResponse.DEFLATE + '"')) {
+      return tag.substring(0, tag.length() - CompressedResponse.DEFLATE.length() - 2) + '"';
+    }
+    return tag;
+  }
+
+  /* streamed contents */
+
+  /**
+   * Amount of elements written to the response between flushes, when streaming.
+   */
+  protected static final int STREAM_CHUNK_SIZE = 100;
+
+  protected void streamJson(final HttpServletResponse response,
+                            final EntityModel model,
+                            final Iterable<Entity> elements)
+      throws ServletException, IOException
+  {
+    streamJson(response, model, elements.iterator());
+  }
+
+  /**
+   * Writes the elements to the response as a compact JSON array, writing one element at a time as the iterator
+   * yields them with {@link EntityModel#writeJson(Entity, JsonWriter)}, so neither the whole JSON tree nor its text
+   * are kept in memory.
+   * <p>
+   * This method commits the response.
+   *
+   * @throws javax.servlet.ServletException if the response is already committed.
+   */
+  protected void streamJson(final HttpServletResponse response,
+                            final EntityModel model,
+                            final Iterator<Entity> elements)
+      throws ServletException, IOException
+  {
+    final JsonWriter out = startStream(response, ContentType.APPLICATION_JSON);
+    out.beginArray();
+    writeElements(out, model, elements, false);
+    out.endArray();
+    out.flush();
+  }
+
+  protected void streamNdJson(final HttpServletResponse response,
+                              final EntityModel model,
+                              final Iterable<Entity> elements)
+      throws ServletException, IOException
+  {
+    streamNdJson(response, model, elements.iterator());
+  }
+
+  /**
+   * Writes the elements to the response as newline delimited JSON (one compact JSON object per line), formatting one
+   * element at a time as the iterator yields them with {@link EntityModel#writeJson(Entity, JsonWriter)}.
+   * <p>
+   * This method commits the response.
+   *
+   * @throws javax.servlet.ServletException if the response is already committed.
+   */
+  protected void streamNdJson(final HttpServletResponse response,
+                              final EntityModel model,
+                              final Iterator<Entity> elements)
+      throws ServletException, IOException
+  {
+    final JsonWriter out = startStream(response, ContentType.APPLICATION_X_NDJSON);
+    writeElements(out, model, elements, true);
+    out.flush();
+  }
+
+  JsonWriter startStream(final HttpServletResponse response, final ContentType contentType)
+      throws ServletException, IOException
+  {
+    if (response.isCommitted()) {
+      throw new ServletException("The response has already been committed");
+    }
+    set(response, StatusCode.OK);
+    set(response, contentType);
+    response.setCharacterEncoding("UTF-8");
+    return JsonWriter.to(response.getOutputStream());
+  }
+
+  /**
+   * @return the amount of elements written.
+   */
+  int writeElements(final JsonWriter out,
+                    final EntityModel model,
+                    final Iterator<Entity> elements,
+                    final boolean lineDelimited)
+      throws IOException
+  {
+    int written = 0;
+    while (elements.hasNext()) {
+      model.writeJson(elements.next(), out);
+      if (lineDelimited) {
+        out.newLine();
+      }
+      written++;
+      if (written % STREAM_CHUNK_SIZE == 0) {
+        out.flush();
+      }
+    }
+    return written;
+  }
+
   protected void unprocessableEntity(final HttpServletResponse response)
       throws IOException
   {
@@ -350,6 +650,7 @@ public abstract class EndPointServlet extends RouterServlet
     public static final ContentType APPLICATION_FORM_URLENCODED = new ContentType(
         "application/x-www-form-urlencoded");
     public static final ContentType APPLICATION_JSON = new ContentType("application/json");
+    public static final ContentType APPLICATION_X_NDJSON = new ContentType("application/x-ndjson");
     public static final ContentType APPLICATION_XML = new ContentType("application/xml");
     public static final ContentType APPLICATION_X_YAML = new ContentType("application/x-yaml");
     public static final ContentType TEXT_HTML = new ContentType("text/html");
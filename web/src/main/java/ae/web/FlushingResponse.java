@@ -0,0 +1,186 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2018 ActiveEngine.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ae.web;
+
+import ae.db.UnitOfWork;
+import java.io.FilterWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
+
+/**
+ * Response flushing the writes enqueued at a {@link UnitOfWork} once, when it starts to be committed: before the first
+ * part of its body is written, or before it's otherwise committed.
+ * <p>
+ * So a failed write is reported while the response can still be answered as an error, instead of after the handler
+ * rendered a successful response. Writes enqueued while the body is being written are flushed when the unit of work
+ * is closed.
+ */
+final class FlushingResponse extends HttpServletResponseWrapper
+{
+  private final UnitOfWork work;
+  private boolean flushed;
+  private Body body;
+  private PrintWriter writer;
+
+  FlushingResponse(final HttpServletResponse response, final UnitOfWork work)
+  {
+    super(response);
+    this.work = work;
+  }
+
+  @Override public ServletOutputStream getOutputStream()
+      throws IOException
+  {
+    if (body == null) {
+      body = new Body(super.getOutputStream());
+    }
+    return body;
+  }
+
+  @Override public PrintWriter getWriter()
+      throws IOException
+  {
+    if (writer == null) {
+      writer = new PrintWriter(new FilterWriter(super.getWriter())
+      {
+        @Override public void write(final int c)
+            throws IOException
+        {
+          flushWork();
+          super.write(c);
+        }
+
+        @Override public void write(final char[] buffer, final int off, final int len)
+            throws IOException
+        {
+          flushWork();
+          super.write(buffer, off, len);
+        }
+
+        @Override public void write(final String str, final int off, final int len)
+            throws IOException
+        {
+          flushWork();
+          super.write(str, off, len);
+        }
+
+        @Override public void flush()
+            throws IOException
+        {
+          flushWork();
+          super.flush();
+        }
+      });
+    }
+    return writer;
+  }
+
+  @Override public void flushBuffer()
+      throws IOException
+  {
+    flushWork();
+    super.flushBuffer();
+  }
+
+  @Override public void sendError(final int sc, final String msg)
+      throws IOException
+  {
+    flushWork();
+    super.sendError(sc, msg);
+  }
+
+  @Override public void sendError(final int sc)
+      throws IOException
+  {
+    flushWork();
+    super.sendError(sc);
+  }
+
+  @Override public void sendRedirect(final String location)
+      throws IOException
+  {
+    flushWork();
+    super.sendRedirect(location);
+  }
+
+  private void flushWork()
+  {
+    if (!flushed) {
+      flushed = true;
+      work.flush();
+    }
+  }
+
+  private final class Body extends ServletOutputStream
+  {
+    private final ServletOutputStream out;
+
+    Body(final ServletOutputStream out)
+    {
+      this.out = out;
+    }
+
+    @Override public void write(final int b)
+        throws IOException
+    {
+      flushWork();
+      out.write(b);
+    }
+
+    @Override public void write(final byte[] b, final int off, final int len)
+        throws IOException
+    {
+      flushWork();
+      out.write(b, off, len);
+    }
+
+    @Override public void flush()
+        throws IOException
+    {
+      flushWork();
+      out.flush();
+    }
+
+    @Override public void close()
+        throws IOException
+    {
+      flushWork();
+      out.close();
+    }
+
+    @Override public boolean isReady()
+    {
+      return out.isReady();
+    }
+
+    @Override public void setWriteListener(final WriteListener writeListener)
+    {
+      out.setWriteListener(writeListener);
+    }
+  }
+}
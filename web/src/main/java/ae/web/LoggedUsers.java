@@ -0,0 +1,92 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2018 ActiveEngine.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ae.web;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Bounded cache of resolved logged users, mapped by user id. Entries expire after a fixed time to live, and the least
+ * recently used entry is evicted when the cache is full.
+ */
+final class LoggedUsers
+{
+  private final int capacity;
+  private final long timeToLive;
+  private final LinkedHashMap<String, AppEngineEndPointServlet.LoggedUser> users;
+
+  LoggedUsers(final int capacity, final long timeToLive)
+  {
+    if (capacity < 1) {
+      throw new IllegalArgumentException("capacity < 1");
+    }
+    if (timeToLive <= 0) {
+      throw new IllegalArgumentException("timeToLive <= 0");
+    }
+    this.capacity = capacity;
+    this.timeToLive = timeToLive;
+    this.users = new LinkedHashMap<String, AppEngineEndPointServlet.LoggedUser>(16, 0.75f, true)
+    {
+      private static final long serialVersionUID = -1218519606513941347L;
+
+      @Override protected boolean removeEldestEntry(final Map.Entry<String, AppEngineEndPointServlet.LoggedUser> eldest)
+      {
+        return size() > LoggedUsers.this.capacity;
+      }
+    };
+  }
+
+  synchronized AppEngineEndPointServlet.LoggedUser get(final String userId, final long now)
+  {
+    final AppEngineEndPointServlet.LoggedUser user = users.get(userId);
+    if (user == null) {
+      return null;
+    }
+    if (user.expiresAt <= now) {
+      users.remove(userId);
+      return null;
+    }
+    return user;
+  }
+
+  synchronized void put(final String userId, final AppEngineEndPointServlet.LoggedUser user)
+  {
+    users.put(userId, user);
+  }
+
+  synchronized void invalidate(final String userId)
+  {
+    users.remove(userId);
+  }
+
+  synchronized void clear()
+  {
+    users.clear();
+  }
+
+  long expirationFrom(final long now)
+  {
+    return now + timeToLive;
+  }
+}
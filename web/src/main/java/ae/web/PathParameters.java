@@ -0,0 +1,155 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2018 ActiveEngine.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ae.web;
+
+import com.google.appengine.api.datastore.Key;
+import com.google.appengine.api.datastore.KeyFactory;
+import java.util.Arrays;
+
+/**
+ * Parameters found at the path of a request, as bounds of the path info.
+ *
+ * Instances are reused for all the requests dispatched by a thread, values are extracted from the path only when
+ * asked for, and numeric values are parsed in place, without extracting their segment. Values that can't be converted
+ * to the asked type are reported as {@link IllegalArgumentException}s.
+ */
+public final class PathParameters
+{
+  private String path;
+  private int[] bounds = new int[8];
+
+  PathParameters()
+  {
+    // nothing more to do
+  }
+
+  void reset(final String path)
+  {
+    this.path = path;
+  }
+
+  void set(final int parameter, final int from, final int to)
+  {
+    final int at = 2 * parameter;
+    if (at + 1 >= bounds.length) {
+      bounds = Arrays.copyOf(bounds, Math.max(2 * bounds.length, at + 2));
+    }
+    bounds[at] = from;
+    bounds[at + 1] = to;
+  }
+
+  private int from(final int parameter)
+  {
+    return bounds[2 * parameter];
+  }
+
+  private int to(final int parameter)
+  {
+    return bounds[2 * parameter + 1];
+  }
+
+  public String asString(final int parameter)
+  {
+    return path.substring(from(parameter), to(parameter));
+  }
+
+  public boolean asPrimitiveBoolean(final int parameter)
+  {
+    final int from = from(parameter);
+    final int length = to(parameter) - from;
+    return length == 4 && path.regionMatches(true, from, "true", 0, 4);
+  }
+
+  public int asPrimitiveInt(final int parameter)
+  {
+    final long value = parseLong(parameter);
+    if (value < Integer.MIN_VALUE || value > Integer.MAX_VALUE) {
+      throw invalidNumber(parameter);
+    }
+    return (int) value;
+  }
+
+  public long asPrimitiveLong(final int parameter)
+  {
+    return parseLong(parameter);
+  }
+
+  public double asPrimitiveDouble(final int parameter)
+  {
+    return Double.parseDouble(asString(parameter));
+  }
+
+  public Key asKey(final int parameter)
+  {
+    return KeyFactory.stringToKey(asString(parameter));
+  }
+
+  /* same rules than Long.parseLong(String), over the bounds of the parameter */
+  private long parseLong(final int parameter)
+  {
+    int i = from(parameter);
+    final int to = to(parameter);
+    if (i == to) {
+      throw invalidNumber(parameter);
+    }
+
+    boolean negative = false;
+    long limit = -Long.MAX_VALUE;
+    final char first = path.charAt(i);
+    if (first == '-' || first == '+') {
+      if (first == '-') {
+        negative = true;
+        limit = Long.MIN_VALUE;
+      }
+      if (++i == to) {
+        throw invalidNumber(parameter);
+      }
+    }
+
+    final long minimum = limit / 10;
+    long result = 0;
+    for (; i < to; i++) {
+      final int digit = Character.digit(path.charAt(i), 10);
+      if (digit < 0 || result < minimum) {
+        throw invalidNumber(parameter);
+      }
+      result *= 10;
+      if (result < limit + digit) {
+        throw invalidNumber(parameter);
+      }
+      result -= digit;
+    }
+    return negative ? result : -result;
+  }
+
+  private NumberFormatException invalidNumber(final int parameter)
+  {
+    return new NumberFormatException("For input string: \"" + asString(parameter) + '"');
+  }
+
+  @Override public String toString()
+  {
+    return "PathParameters{path='" + path + "'}";
+  }
+}
@@ -0,0 +1,582 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2018 ActiveEngine.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ae.web;
+
+import ae.db.ActiveEntity;
+import com.google.appengine.api.NamespaceManager;
+import com.google.appengine.api.memcache.Expiration;
+import com.google.appengine.api.memcache.MemcacheService;
+import com.google.appengine.api.memcache.MemcacheServiceFactory;
+import com.google.common.base.Strings;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.io.Serializable;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.Cookie;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
+
+/**
+ * Cache of the responses of a route, used by routes declaring {@code @cached}.
+ * <p>
+ * Responses are kept already encoded, with their content type, headers and ETag, at memcache and at an in-process LRU
+ * cache. Each response is stored along with the write versions of the kinds read by the route, as kept at memcache by
+ * every model, and it is served only while those versions don't change. So writes done at any instance discard the
+ * cached responses at every instance. The versions are read from memcache at every lookup, with a single call.
+ * <p>
+ * Responses are always cached per namespace and query string, as the write versions are kept per namespace and the
+ * query string can select a different response. Responses setting cookies are never cached.
+ */
+public final class ResponseCache
+{
+  public static final int VARY_BY_USER = 1;
+
+  /**
+   * Responses larger than this are not cached, as memcache values are limited to 1MB.
+   */
+  static final int MAX_BODY_SIZE = 1000 * 1000;
+
+  private static final long[] NO_VERSIONS = {};
+
+  private final String name;
+  private final int ttl;
+  private final int varyBy;
+  private final String[] kinds;
+  private final LinkedHashMap<String, Response> local;
+
+  /**
+   * @param name           name of the route, unique at the application.
+   * @param ttl            max amount of seconds a response is cached.
+   * @param localCacheSize max amount of responses kept at the in-process cache, {@code 0} to use memcache only.
+   * @param varyBy         request properties selecting different responses, other than its path and query string:
+   *                       {@link #VARY_BY_USER} or {@code 0}.
+   * @param kinds          kinds read by the route, writes to them discard the cached responses.
+   */
+  public ResponseCache(final String name, final int ttl, final int localCacheSize, final int varyBy, final String... kinds)
+  {
+    if (name == null) {
+      throw new NullPointerException("name");
+    }
+    if (ttl <= 0) {
+      throw new IllegalArgumentException("ttl <= 0");
+    }
+    if (localCacheSize < 0) {
+      throw new IllegalArgumentException("localCacheSize < 0");
+    }
+    this.name = name;
+    this.ttl = ttl;
+    this.varyBy = varyBy;
+    this.kinds = kinds.clone();
+    if (localCacheSize == 0) {
+      this.local = null;
+    } else {
+      this.local = new LinkedHashMap<String, Response>(16, 0.75f, true)
+      {
+        private static final long serialVersionUID = 1L;
+
+        @Override protected boolean removeEldestEntry(final Map.Entry<String, Response> eldest)
+        {
+          return size() > localCacheSize;
+        }
+      };
+    }
+  }
+
+  /**
+   * Starts the lookup of the response to a request, at the current namespace.
+   *
+   * @param request the request to respond.
+   * @param userId  id of the logged user, only used when the responses vary by user.
+   * @return the lookup of the response.
+   */
+  public Lookup lookup(final HttpServletRequest request, final String userId)
+  {
+    final String namespace = Strings.nullToEmpty(NamespaceManager.get());
+    final MemcacheService memcache = MemcacheServiceFactory.getMemcacheService();
+    return new Lookup(memcache,
+                      keyOf(request, namespace, userId),
+                      versionsOf(memcache, namespace),
+                      request.getHeader("If-None-Match"));
+  }
+
+  String keyOf(final HttpServletRequest request, final String namespace, final String userId)
+  {
+    final StringBuilder key = new StringBuilder("ae.responses:").append(name)
+                                                                 .append('|').append(namespace)
+                                                                 .append('|').append(request.getRequestURI());
+    final String query = request.getQueryString();
+    if (query != null) {
+      key.append('?').append(query);
+    }
+    if ((varyBy & VARY_BY_USER) != 0) {
+      key.append('|').append(userId);
+    }
+    return key.toString();
+  }
+
+  /**
+   * @return the current write versions of the kinds, or null if they can't be kept at memcache.
+   */
+  private long[] versionsOf(final MemcacheService memcache, final String namespace)
+  {
+    if (kinds.length == 0) {
+      return NO_VERSIONS;
+    }
+    final List<String> keys = new ArrayList<>(kinds.length);
+    for (final String kind : kinds) {
+      keys.add(ActiveEntity.writeVersionKey(kind, namespace));
+    }
+    final Map<String, Object> current = memcache.getAll(keys);
+    final long[] versions = new long[kinds.length];
+    for (int i = 0; i < versions.length; i++) {
+      final String key = keys.get(i);
+      Long version = (Long) current.get(key);
+      if (version == null) {
+        memcache.put(key, System.currentTimeMillis(), null, MemcacheService.SetPolicy.ADD_ONLY_IF_NOT_PRESENT);
+        version = (Long) memcache.get(key);
+        if (version == null) {
+          return null;
+        }
+      }
+      versions[i] = version;
+    }
+    return versions;
+  }
+
+  private Response localResponse(final String key)
+  {
+    if (local == null) {
+      return null;
+    }
+    synchronized (local) {
+      return local.get(key);
+    }
+  }
+
+  private void keepLocally(final String key, final Response response)
+  {
+    if (local != null) {
+      synchronized (local) {
+        local.put(key, response);
+      }
+    }
+  }
+
+  /**
+   * Lookup of the response to a request: replays the cached response if it is still valid, otherwise it records the
+   * response written by the route and stores it.
+   */
+  public final class Lookup
+  {
+    private final MemcacheService memcache;
+    private final String key;
+    private final long[] versions;
+    private final String ifNoneMatch;
+
+    Lookup(final MemcacheService memcache, final String key, final long[] versions, final String ifNoneMatch)
+    {
+      this.memcache = memcache;
+      this.key = key;
+      this.versions = versions;
+      this.ifNoneMatch = ifNoneMatch;
+    }
+
+    /**
+     * Writes the cached response, if there is a valid one. When the request already has it, it is answered as
+     * {@code 304 Not Modified} instead.
+     *
+     * @return true if the cached response was written, so the route must not be run.
+     */
+    public boolean replay(final HttpServletResponse response)
+        throws IOException
+    {
+      if (versions == null) {
+        return false;
+      }
+      final long now = System.currentTimeMillis();
+      Response cached = localResponse(key);
+      if (!isValid(cached, now)) {
+        final Object stored = memcache.get(key);
+        cached = stored instanceof Response ? (Response) stored : null;
+        if (!isValid(cached, now)) {
+          return false;
+        }
+        keepLocally(key, cached);
+      }
+      cached.writeTo(response, ifNoneMatch);
+      return true;
+    }
+
+    private boolean isValid(final Response cached, final long now)
+    {
+      return cached != null && now < cached.expiresAt && Arrays.equals(versions, cached.versions);
+    }
+
+    /**
+     * @return the response to pass to the route, recording what it writes.
+     */
+    public Recording record(final HttpServletResponse response)
+    {
+      return new Recording(response);
+    }
+
+    /**
+     * Caches the recorded response, if it was successful.
+     */
+    public void store(final Recording recording)
+        throws IOException
+    {
+      final byte[] body = recording.finish();
+      if (versions == null || body == null) {
+        return;
+      }
+      final Response cached = new Response(versions,
+                                            System.currentTimeMillis() + ttl * 1000L,
+                                            recording.getContentType(),
+                                            recording.getCharacterEncoding(),
+                                            recording.headers(),
+                                            body);
+      memcache.put(key, cached, Expiration.byDeltaSeconds(ttl));
+      keepLocally(key, cached);
+    }
+  }
+
+  /**
+   * Cached response.
+   */
+  static final class Response implements Serializable
+  {
+    private static final long serialVersionUID = 2L;
+
+    final long[] versions;
+    final long expiresAt;
+    final String contentType;
+    final String characterEncoding;
+    /* names and values of the headers set by the route, one after the other */
+    final String[] headers;
+    final byte[] body;
+    final String etag;
+
+    Response(final long[] versions,
+             final long expiresAt,
+             final String contentType,
+             final String characterEncoding,
+             final String[] headers,
+             final byte[] body)
+    {
+      this.versions = versions;
+      this.expiresAt = expiresAt;
+      this.contentType = contentType;
+      this.characterEncoding = characterEncoding;
+      this.headers = headers;
+      this.body = body;
+      this.etag = EndPointServlet.entityTag(body);
+    }
+
+    void writeTo(final HttpServletResponse response, final String ifNoneMatch)
+        throws IOException
+    {
+      for (int i = 0; i < headers.length; i += 2) {
+        response.addHeader(headers[i], headers[i + 1]);
+      }
+      if (!response.containsHeader("ETag")) { // routes tagged by version were already checked against it
+        response.setHeader("ETag", etag);
+        if (EndPointServlet.matchesEntityTag(ifNoneMatch, etag)) {
+          response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+          return;
+        }
+      }
+      response.setStatus(HttpServletResponse.SC_OK);
+      if (contentType != null) {
+        response.setContentType(contentType);
+      }
+      if (characterEncoding != null) {
+        response.setCharacterEncoding(characterEncoding);
+      }
+      response.setContentLength(body.length);
+      response.getOutputStream().write(body);
+    }
+  }
+
+  /**
+   * Response passed to a cached route, that writes to the actual response while it keeps a copy of the body written
+   * and of the headers set.
+   */
+  public static final class Recording extends HttpServletResponseWrapper
+  {
+    private static final DateTimeFormatter HTTP_DATE = DateTimeFormatter.ofPattern("EEE, dd MMM yyyy HH:mm:ss 'GMT'",
+                                                                                   Locale.US)
+                                                                         .withZone(ZoneOffset.UTC);
+
+    private ByteArrayOutputStream body = new ByteArrayOutputStream();
+    private final List<String> headers = new ArrayList<>();
+    private int status = SC_OK;
+    private Copier output;
+    private PrintWriter writer;
+
+    Recording(final HttpServletResponse response)
+    {
+      super(response);
+    }
+
+    @Override public void setStatus(final int sc)
+    {
+      this.status = sc;
+      super.setStatus(sc);
+    }
+
+    @Override @Deprecated public void setStatus(final int sc, final String sm)
+    {
+      this.status = sc;
+      super.setStatus(sc, sm);
+    }
+
+    @Override public void sendError(final int sc)
+        throws IOException
+    {
+      this.status = sc;
+      super.sendError(sc);
+    }
+
+    @Override public void setHeader(final String name, final String value)
+    {
+      removeHeader(name);
+      recordHeader(name, value);
+      super.setHeader(name, value);
+    }
+
+    @Override public void addHeader(final String name, final String value)
+    {
+      recordHeader(name, value);
+      super.addHeader(name, value);
+    }
+
+    @Override public void setDateHeader(final String name, final long date)
+    {
+      removeHeader(name);
+      recordHeader(name, HTTP_DATE.format(Instant.ofEpochMilli(date)));
+      super.setDateHeader(name, date);
+    }
+
+    @Override public void addDateHeader(final String name, final long date)
+    {
+      recordHeader(name, HTTP_DATE.format(Instant.ofEpochMilli(date)));
+      super.addDateHeader(name, date);
+    }
+
+    @Override public void setIntHeader(final String name, final int value)
+    {
+      removeHeader(name);
+      recordHeader(name, Integer.toString(value));
+      super.setIntHeader(name, value);
+    }
+
+    @Override public void addIntHeader(final String name, final int value)
+    {
+      recordHeader(name, Integer.toString(value));
+      super.addIntHeader(name, value);
+    }
+
+    @Override public void addCookie(final Cookie cookie)
+    {
+      body = null;
+      super.addCookie(cookie);
+    }
+
+    @Override public void sendError(final int sc, final String msg)
+        throws IOException
+    {
+      this.status = sc;
+      super.sendError(sc, msg);
+    }
+
+    @Override public void sendRedirect(final String location)
+        throws IOException
+    {
+      this.status = SC_FOUND;
+      super.sendRedirect(location);
+    }
+
+    @Override public ServletOutputStream getOutputStream()
+        throws IOException
+    {
+      if (writer != null) {
+        throw new IllegalStateException("getWriter() has already been called for this response");
+      }
+      return output();
+    }
+
+    @Override public PrintWriter getWriter()
+        throws IOException
+    {
+      if (writer == null) {
+        if (output != null) {
+          throw new IllegalStateException("getOutputStream() has already been called for this response");
+        }
+        final String encoding = getCharacterEncoding();
+        writer = new PrintWriter(new OutputStreamWriter(output(), encoding == null ? "ISO-8859-1" : encoding));
+      }
+      return writer;
+    }
+
+    @Override public void flushBuffer()
+        throws IOException
+    {
+      if (writer != null) {
+        writer.flush();
+      }
+      super.flushBuffer();
+    }
+
+    private Copier output()
+        throws IOException
+    {
+      if (output == null) {
+        output = new Copier(super.getOutputStream());
+      }
+      return output;
+    }
+
+    /**
+     * The content type, length and ETag are replayed by the cache itself, and responses setting cookies are not
+     * cached.
+     */
+    private void recordHeader(final String name, final String value)
+    {
+      if ("Set-Cookie".equalsIgnoreCase(name)) {
+        body = null;
+      } else if (!"Content-Type".equalsIgnoreCase(name)
+                 && !"Content-Length".equalsIgnoreCase(name)
+                 && !"ETag".equalsIgnoreCase(name)) {
+        headers.add(name);
+        headers.add(value);
+      }
+    }
+
+    private void removeHeader(final String name)
+    {
+      for (int i = headers.size() - 2; i >= 0; i -= 2) {
+        if (headers.get(i).equalsIgnoreCase(name)) {
+          headers.remove(i + 1);
+          headers.remove(i);
+        }
+      }
+    }
+
+    /**
+     * @return names and values of the recorded headers, one after the other.
+     */
+    String[] headers()
+    {
+      return headers.toArray(new String[0]);
+    }
+
+    /**
+     * @return the body written, or null if the response must not be cached.
+     */
+    byte[] finish()
+    {
+      if (writer != null) {
+        writer.flush();
+      }
+      if (status != SC_OK || body == null) {
+        return null;
+      }
+      return body.toByteArray();
+    }
+
+    private void copy(final byte[] bytes, final int offset, final int length)
+    {
+      if (body != null) {
+        if (body.size() + length > MAX_BODY_SIZE) {
+          body = null;
+        } else {
+          body.write(bytes, offset, length);
+        }
+      }
+    }
+
+    private final class Copier extends ServletOutputStream
+    {
+      private final ServletOutputStream out;
+      private final byte[] single = new byte[1];
+
+      Copier(final ServletOutputStream out)
+      {
+        this.out = out;
+      }
+
+      @Override public void write(final int b)
+          throws IOException
+      {
+        out.write(b);
+        single[0] = (byte) b;
+        copy(single, 0, 1);
+      }
+
+      @Override public void write(final byte[] b, final int off, final int len)
+          throws IOException
+      {
+        out.write(b, off, len);
+        copy(b, off, len);
+      }
+
+      @Override public void flush()
+          throws IOException
+      {
+        out.flush();
+      }
+
+      @Override public void close()
+          throws IOException
+      {
+        out.close();
+      }
+
+      @Override public boolean isReady()
+      {
+        return out.isReady();
+      }
+
+      @Override public void setWriteListener(final WriteListener writeListener)
+      {
+        out.setWriteListener(writeListener);
+      }
+    }
+  }
+}
@@ -0,0 +1,350 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2018 ActiveEngine.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ae.web;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import javax.servlet.http.HttpServletRequest;
+
+/**
+ * Segment trie of the routes handled for an http verb.
+ *
+ * The route of a request is resolved in one left to right scan of its path info. At each segment, literal segments
+ * are tried first, then constrained parameters (in declaration order) and plain parameters at last, backtracking when
+ * the remaining segments can't be matched. Only constrained parameters use regular expressions, and only over their
+ * own segment.
+ *
+ * Parameters of typed routes are recorded as bounds at a {@link PathParameters}, parameters of the other routes are
+ * set as request attributes.
+ */
+final class RouteTable implements RouterServlet.Routes
+{
+  private static final long serialVersionUID = 7110417931337154213L;
+
+  private static final int NO_MORE_SEGMENTS = -1;
+
+  private final Node root;
+  private final String[] patterns;
+  /* name of the plain parameter found at each segment of each route, null for other segments */
+  private final String[][] parameters;
+  /* position of the first parameter found at each segment of each route */
+  private final int[][] positions;
+  private final boolean[] typed;
+
+  RouteTable(final Node root,
+             final String[] patterns,
+             final String[][] parameters,
+             final int[][] positions,
+             final boolean[] typed)
+  {
+    this.root = root;
+    this.patterns = patterns;
+    this.parameters = parameters;
+    this.positions = positions;
+    this.typed = typed;
+  }
+
+  @Override public int match(final HttpServletRequest request)
+  {
+    return match(request, null);
+  }
+
+  @Override public int match(final HttpServletRequest request, final PathParameters values)
+  {
+    final String path = request.getPathInfo();
+    if (path == null || path.length() <= 1) {
+      return root.route;
+    }
+    if (values != null) {
+      values.reset(path);
+    }
+    return match(root, path, path.charAt(0) == '/' ? 1 : 0, 0, request, values);
+  }
+
+  private boolean recordsBounds(final int route, final PathParameters values)
+  {
+    return values != null && typed[route];
+  }
+
+  private int match(final Node node,
+                    final String path,
+                    final int from,
+                    final int depth,
+                    final HttpServletRequest request,
+                    final PathParameters values)
+  {
+    if (from == NO_MORE_SEGMENTS) {
+      return node.route;
+    }
+    final int slash = path.indexOf('/', from);
+    final int to = slash < 0 ? path.length() : slash;
+    final int next = slash < 0 ? NO_MORE_SEGMENTS : slash + 1;
+
+    final Node literal = node.literal(path, from, to);
+    if (literal != null) {
+      final int route = match(literal, path, next, depth + 1, request, values);
+      if (route >= 0) {
+        return route;
+      }
+    }
+
+    for (final Constrained constrained : node.constrained) {
+      final Matcher matcher = constrained.regex.matcher(path).region(from, to);
+      if (matcher.matches()) {
+        final int route = match(constrained.node, path, next, depth + 1, request, values);
+        if (route >= 0) {
+          if (recordsBounds(route, values)) {
+            int position = positions[route][depth];
+            for (final String group : constrained.groups) {
+              values.set(position++, matcher.start(group), matcher.end(group));
+            }
+          } else {
+            for (final String group : constrained.groups) {
+              request.setAttribute(group, matcher.group(group));
+            }
+          }
+          return route;
+        }
+      }
+    }
+
+    if (node.parameter != null && from < to) {
+      final int route = match(node.parameter, path, next, depth + 1, request, values);
+      if (route >= 0) {
+        if (recordsBounds(route, values)) {
+          values.set(positions[route][depth], from, to);
+        } else {
+          request.setAttribute(parameters[route][depth], path.substring(from, to));
+        }
+        return route;
+      }
+    }
+
+    return -1;
+  }
+
+  @Override public String toString()
+  {
+    return "Routes" + Arrays.toString(patterns);
+  }
+
+  static final class Node implements Serializable
+  {
+    private static final long serialVersionUID = -3204592040163734318L;
+
+    private static final Constrained[] NO_CONSTRAINED = new Constrained[0];
+    private static final int[] NO_HASHES = new int[0];
+    private static final String[] NO_LITERALS = new String[0];
+    private static final Node[] NO_NODES = new Node[0];
+
+    int route = -1;
+    Node parameter;
+    Constrained[] constrained = NO_CONSTRAINED;
+
+    /* literal children, sorted by the hash of their segment */
+    private int[] hashes = NO_HASHES;
+    private String[] literals = NO_LITERALS;
+    private Node[] children = NO_NODES;
+
+    private transient Map<String, Node> literalsToAdd;
+    private transient Map<String, Constrained> constrainedToAdd;
+
+    Node literal(final String segment)
+    {
+      if (literalsToAdd == null) {
+        literalsToAdd = new LinkedHashMap<>();
+      }
+      return literalsToAdd.computeIfAbsent(segment, s -> new Node());
+    }
+
+    Node constrained(final String regex, final String[] groups)
+    {
+      if (constrainedToAdd == null) {
+        constrainedToAdd = new LinkedHashMap<>();
+      }
+      return constrainedToAdd.computeIfAbsent(regex, r -> new Constrained(Pattern.compile(r), groups, new Node())).node;
+    }
+
+    Node parameter()
+    {
+      if (parameter == null) {
+        parameter = new Node();
+      }
+      return parameter;
+    }
+
+    void freeze()
+    {
+      if (literalsToAdd != null) {
+        final Map.Entry<String, Node>[] entries = literalsToAdd.entrySet().toArray(new Map.Entry[0]);
+        Arrays.sort(entries, (a, b) -> Integer.compare(a.getKey().hashCode(), b.getKey().hashCode()));
+        hashes = new int[entries.length];
+        literals = new String[entries.length];
+        children = new Node[entries.length];
+        for (int i = 0; i < entries.length; i++) {
+          hashes[i] = entries[i].getKey().hashCode();
+          literals[i] = entries[i].getKey();
+          children[i] = entries[i].getValue();
+          children[i].freeze();
+        }
+        literalsToAdd = null;
+      }
+      if (constrainedToAdd != null) {
+        constrained = constrainedToAdd.values().toArray(NO_CONSTRAINED);
+        for (final Constrained c : constrained) {
+          c.node.freeze();
+        }
+        constrainedToAdd = null;
+      }
+      if (parameter != null) {
+        parameter.freeze();
+      }
+    }
+
+    /**
+     * Finds the literal child for {@code path[from, to)}, without extracting the segment.
+     */
+    Node literal(final String path, final int from, final int to)
+    {
+      if (hashes.length == 0) {
+        return null;
+      }
+      final int length = to - from;
+      int hash = 0;
+      for (int i = from; i < to; i++) {
+        hash = 31 * hash + path.charAt(i);
+      }
+      int i = Arrays.binarySearch(hashes, hash);
+      if (i < 0) {
+        return null;
+      }
+      while (i > 0 && hashes[i - 1] == hash) {
+        i--;
+      }
+      for (; i < hashes.length && hashes[i] == hash; i++) {
+        final String literal = literals[i];
+        if (literal.length() == length && path.regionMatches(from, literal, 0, length)) {
+          return children[i];
+        }
+      }
+      return null;
+    }
+  }
+
+  static final class Constrained implements Serializable
+  {
+    private static final long serialVersionUID = 2496103388146627004L;
+
+    final Pattern regex;
+    final String[] groups;
+    final Node node;
+
+    Constrained(final Pattern regex, final String[] groups, final Node node)
+    {
+      this.regex = regex;
+      this.groups = groups;
+      this.node = node;
+    }
+  }
+
+  static final class Builder
+  {
+    private final Node root = new Node();
+    private final List<String> patterns = new ArrayList<>();
+    private final List<String[]> parameters = new ArrayList<>();
+    private final List<int[]> positions = new ArrayList<>();
+    private final List<Boolean> typed = new ArrayList<>();
+    private final List<String> segmentParameters = new ArrayList<>();
+    private final List<Integer> segmentPositions = new ArrayList<>();
+    private int parametersCount;
+    private Node current = root;
+
+    void literal(final String segment)
+    {
+      current = current.literal(segment);
+      segment(null, 0);
+    }
+
+    void parameter(final String name)
+    {
+      current = current.parameter();
+      segment(name, 1);
+    }
+
+    void constrainedParameter(final String regex, final String[] groups)
+    {
+      current = current.constrained(regex, groups.clone());
+      segment(null, groups.length);
+    }
+
+    private void segment(final String parameter, final int definedParameters)
+    {
+      segmentParameters.add(parameter);
+      segmentPositions.add(parametersCount);
+      parametersCount += definedParameters;
+    }
+
+    void route(final String pattern, final boolean typedParameters)
+    {
+      if (current.route < 0) {
+        current.route = patterns.size();
+      }
+      patterns.add(pattern);
+      parameters.add(segmentParameters.toArray(new String[0]));
+      final int[] routePositions = new int[segmentPositions.size()];
+      for (int i = 0; i < routePositions.length; i++) {
+        routePositions[i] = segmentPositions.get(i);
+      }
+      positions.add(routePositions);
+      typed.add(typedParameters);
+      segmentParameters.clear();
+      segmentPositions.clear();
+      parametersCount = 0;
+      current = root;
+    }
+
+    RouteTable build()
+    {
+      if (current != root) {
+        throw new IllegalStateException("segments defined after last route");
+      }
+      root.freeze();
+      final boolean[] typedRoutes = new boolean[typed.size()];
+      for (int i = 0; i < typedRoutes.length; i++) {
+        typedRoutes[i] = typed.get(i);
+      }
+      return new RouteTable(root,
+                            patterns.toArray(new String[0]),
+                            parameters.toArray(new String[0][]),
+                            positions.toArray(new int[0][]),
+                            typedRoutes);
+    }
+  }
+}
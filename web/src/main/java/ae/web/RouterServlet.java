@@ -43,6 +43,82 @@ public abstract class RouterServlet extends javax.servlet.http.HttpServlet
     boolean matches(final HttpServletRequest request);
   }
 
+  /**
+   * Routes handled for an http verb.
+   */
+  protected interface Routes extends Serializable
+  {
+    /**
+     * Resolves the route of a request, setting the parameters defined at its path as request attributes.
+     *
+     * @return position of the matched route (as it was defined at its {@link RoutesBuilder}), or {@code -1} when
+     * no route matches the request path.
+     */
+    int match(final HttpServletRequest request);
+
+    /**
+     * Resolves the route of a request, recording the parameters of typed routes at {@code values} (by position at
+     * the route pattern) instead of setting them as request attributes.
+     *
+     * @return position of the matched route, or {@code -1} when no route matches the request path.
+     */
+    int match(final HttpServletRequest request, final PathParameters values);
+  }
+
+  /**
+   * Defines routes segment by segment, each route being closed by {@link #route(String)}.
+   */
+  protected static final class RoutesBuilder
+  {
+    private final RouteTable.Builder table = new RouteTable.Builder();
+
+    RoutesBuilder()
+    {
+      // nothing more to do
+    }
+
+    public RoutesBuilder literal(final String segment)
+    {
+      table.literal(segment);
+      return this;
+    }
+
+    public RoutesBuilder parameter(final String name)
+    {
+      table.parameter(name);
+      return this;
+    }
+
+    /**
+     * Defines a segment that must match a regex, its named groups being the parameters defined at the segment.
+     */
+    public RoutesBuilder constrainedParameter(final String regex, final String... groups)
+    {
+      table.constrainedParameter(regex, groups);
+      return this;
+    }
+
+    public RoutesBuilder route(final String pattern)
+    {
+      table.route(pattern, false);
+      return this;
+    }
+
+    /**
+     * Closes a route whose handler receives its path parameters as arguments.
+     */
+    public RoutesBuilder typedRoute(final String pattern)
+    {
+      table.route(pattern, true);
+      return this;
+    }
+
+    public Routes build()
+    {
+      return table.build();
+    }
+  }
+
   protected RouterServlet()
   {
     // nothing more to do
@@ -100,8 +176,31 @@ public abstract class RouterServlet extends javax.servlet.http.HttpServlet
     response.setStatus(HttpServletResponse.SC_FORBIDDEN);
   }
 
+  /**
+   * Answers requests whose path parameters can't be converted to the types received by their handler.
+   */
+  protected void invalidPathParameter(final HttpServletResponse response)
+  {
+    response.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+  }
+
   protected static Path indexPath = IndexPath.INSTANCE;
 
+  protected static RoutesBuilder routes()
+  {
+    return new RoutesBuilder();
+  }
+
+  private static final ThreadLocal<PathParameters> PATH_PARAMETERS = ThreadLocal.withInitial(PathParameters::new);
+
+  /**
+   * @return the path parameters holder of the current thread, reused by every request it dispatches.
+   */
+  protected static PathParameters pathParameters()
+  {
+    return PATH_PARAMETERS.get();
+  }
+
   protected static Path staticPath(final String uri, final String path)
   {
     return new StaticPath(uri, path);
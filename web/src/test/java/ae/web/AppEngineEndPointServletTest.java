@@ -0,0 +1,298 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2018 ActiveEngine.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ae.web;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import ae.db.PersistenceException;
+import ae.db.UnitOfWork;
+import com.google.appengine.api.datastore.Entity;
+import com.google.appengine.tools.development.testing.LocalDatastoreServiceTestConfig;
+import com.google.appengine.tools.development.testing.LocalMemcacheServiceTestConfig;
+import com.google.appengine.tools.development.testing.LocalServiceTestHelper;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+public class AppEngineEndPointServletTest {
+
+  private final LocalServiceTestHelper helper = new LocalServiceTestHelper(new LocalDatastoreServiceTestConfig(),
+                                                                           new LocalMemcacheServiceTestConfig());
+
+  private final Task task = new Task();
+
+  @BeforeMethod
+  public void setUp()
+  {
+    helper.setUp();
+  }
+
+  @AfterMethod
+  public void tearDown()
+  {
+    helper.tearDown();
+  }
+
+  @Test
+  public void should_represent_the_role_of_the_user_by_the_bit_of_its_position_at_checked_roles()
+  {
+    //given:
+    final Tasks endpoint = new Tasks("user", "admin", "auditor");
+    endpoint.role = "admin";
+    final AppEngineEndPointServlet.LoggedUser user = user();
+    //when:
+    final long mask = endpoint.rolesMaskOf(user);
+    //then:
+    assertThat(mask).isEqualTo(0b010L);
+    assertThat(endpoint.userRoleIsIn(user, 0b110L)).isTrue();
+    assertThat(endpoint.userRoleIsIn(user, 0b101L)).isFalse();
+  }
+
+  @Test
+  public void should_resolve_the_roles_mask_once_per_user()
+  {
+    //given:
+    final Tasks endpoint = new Tasks("user", "admin");
+    endpoint.role = "user";
+    final AppEngineEndPointServlet.LoggedUser user = user();
+    //when:
+    endpoint.rolesMaskOf(user);
+    endpoint.role = "admin";
+    final boolean isUser = endpoint.userRoleIsIn(user, 0b01L);
+    //then:
+    assertThat(isUser).isTrue();
+    assertThat(endpoint.resolvedRoles).isEqualTo(1);
+  }
+
+  @Test
+  public void should_not_authorize_users_with_unchecked_roles()
+  {
+    //given:
+    final Tasks endpoint = new Tasks("user", "admin");
+    endpoint.role = "guest";
+    final AppEngineEndPointServlet.LoggedUser user = user();
+    //expect:
+    assertThat(endpoint.rolesMaskOf(user)).isZero();
+    assertThat(endpoint.userRoleIsIn(user, 0b11L)).isFalse();
+  }
+
+  @Test
+  public void should_use_every_bit_of_the_mask()
+  {
+    //given:
+    final String[] roles = new String[Long.SIZE];
+    for (int i = 0; i < roles.length; i++) {
+      roles[i] = "role" + i;
+    }
+    final Tasks endpoint = new Tasks(roles);
+    endpoint.role = "role63";
+    final AppEngineEndPointServlet.LoggedUser user = user();
+    //expect:
+    assertThat(endpoint.rolesMaskOf(user)).isEqualTo(Long.MIN_VALUE);
+    assertThat(endpoint.userRoleIsIn(user, Long.MIN_VALUE)).isTrue();
+    assertThat(endpoint.userRoleIsIn(user, Long.MAX_VALUE)).isFalse();
+  }
+
+  @Test
+  public void should_not_share_the_data_of_cached_users()
+  {
+    //given:
+    final Entity data = new Entity("User", "ana");
+    data.setProperty("role", "admin");
+    final AppEngineEndPointServlet.LoggedUser user = new AppEngineEndPointServlet.LoggedUser(data, Long.MAX_VALUE);
+    //when:
+    user.data().setProperty("role", "guest");
+    //then:
+    assertThat(user.data()).isNotSameAs(data).isEqualTo(data);
+    assertThat(user.data().getProperty("role")).isEqualTo("admin");
+  }
+
+  @Test
+  public void should_write_coalesced_entities_before_sending_the_response() throws Exception
+  {
+    //given:
+    final boolean[] writtenBeforeBody = new boolean[1];
+    final ResponseCacheTest.Output output = new ResponseCacheTest.Output()
+    {
+      @Override public void write(final int b)
+      {
+        writtenBeforeBody[0] = UnitOfWork.current().isEmpty();
+        super.write(b);
+      }
+    };
+    final HttpServletResponse response = response(output);
+    //when:
+    new SavingTasks().service(post(), response);
+    //then:
+    assertThat(writtenBeforeBody[0]).isTrue();
+    assertThat(output.text()).isEqualTo("{}");
+  }
+
+  @Test
+  public void should_flush_coalesced_writes_once_when_the_response_is_committed() throws Exception
+  {
+    //given:
+    final List<Boolean> flushedBeforeWrites = new ArrayList<>();
+    final ResponseCacheTest.Output output = new ResponseCacheTest.Output()
+    {
+      @Override public void write(final int b)
+      {
+        flushedBeforeWrites.add(UnitOfWork.current().isEmpty());
+        super.write(b);
+      }
+    };
+    final SavingTasks endpoint = new SavingTasks()
+    {
+      @Override protected void doPost(final HttpServletRequest request, final HttpServletResponse response)
+          throws IOException
+      {
+        task.save(task.make("write the tests"));
+        response.getOutputStream().write('[');
+        task.save(task.make("review the tests"));
+        response.getOutputStream().write(']');
+      }
+    };
+    //when:
+    endpoint.service(post(), response(output));
+    //then: the second task is written when the unit of work is closed
+    assertThat(flushedBeforeWrites).containsExactly(true, false);
+    assertThat(task.findByName("review the tests")).isNotNull();
+  }
+
+  @Test
+  public void should_not_send_the_response_when_coalesced_writes_fail() throws Exception
+  {
+    //given:
+    task.saveFailure = new IllegalStateException("datastore unavailable");
+    final ResponseCacheTest.Output output = new ResponseCacheTest.Output();
+    final HttpServletResponse response = response(output);
+    //when:
+    assertThatThrownBy(() -> new SavingTasks().service(post(), response))
+        .isInstanceOf(PersistenceException.class)
+        .hasCause(task.saveFailure);
+    //then: the response isn't committed, so it can still be answered as an error
+    assertThat(output.bytes()).isEmpty();
+    verify(response, never()).setStatus(HttpServletResponse.SC_OK);
+  }
+
+  private static HttpServletRequest post()
+  {
+    final HttpServletRequest request = mock(HttpServletRequest.class);
+    when(request.getMethod()).thenReturn("POST");
+    return request;
+  }
+
+  private static HttpServletResponse response(final ResponseCacheTest.Output output) throws IOException
+  {
+    final HttpServletResponse response = mock(HttpServletResponse.class);
+    when(response.getOutputStream()).thenReturn(output);
+    return response;
+  }
+
+  private static AppEngineEndPointServlet.LoggedUser user()
+  {
+    return new AppEngineEndPointServlet.LoggedUser(null, Long.MAX_VALUE);
+  }
+
+  static class Tasks extends AppEngineEndPointServlet {
+
+    private final String[] checkedRoles;
+    String role;
+    int resolvedRoles;
+
+    Tasks(final String... checkedRoles)
+    {
+      this.checkedRoles = checkedRoles;
+    }
+
+    @Override protected String[] checkedRoles()
+    {
+      return checkedRoles;
+    }
+
+    @Override protected UserRole getUserRole(final Entity userData)
+    {
+      resolvedRoles++;
+      final String name = role;
+      return new UserRole()
+      {
+        @Override public String name()
+        {
+          return name;
+        }
+
+        @Override public Long code()
+        {
+          return null;
+        }
+      };
+    }
+
+    @Override protected String getUserNamespace(final Entity userData)
+    {
+      return null;
+    }
+
+    @Override protected Entity getLoggedUser()
+    {
+      return null;
+    }
+
+    @Override protected Logger logger()
+    {
+      return LoggerFactory.getLogger(AppEngineEndPointServletTest.class);
+    }
+  }
+
+  /**
+   * Saves a task and renders an empty object, coalescing its writes.
+   */
+  class SavingTasks extends Tasks {
+
+    @Override protected boolean coalescesWrites()
+    {
+      return true;
+    }
+
+    @Override protected void doPost(final HttpServletRequest request, final HttpServletResponse response)
+        throws ServletException, IOException
+    {
+      task.save(task.make("write the tests"));
+      writeJson(response, "{}");
+    }
+  }
+}
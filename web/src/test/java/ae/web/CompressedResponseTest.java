@@ -0,0 +1,256 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2018 ActiveEngine.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ae.web;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.mockito.Matchers.anyString;
+
+import com.google.common.io.ByteStreams;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.testng.annotations.Test;
+
+public class CompressedResponseTest {
+
+  @Test
+  public void should_negotiate_accepted_content_coding()
+  {
+    assertThat(CompressedResponse.negotiate(null)).isNull();
+    assertThat(CompressedResponse.negotiate("identity")).isNull();
+    assertThat(CompressedResponse.negotiate("gzip, deflate, br")).isEqualTo("gzip");
+    assertThat(CompressedResponse.negotiate("deflate")).isEqualTo("deflate");
+    assertThat(CompressedResponse.negotiate("gzip;q=0, deflate")).isEqualTo("deflate");
+    assertThat(CompressedResponse.negotiate("gzip;q=0.5, deflate;q=0.8")).isEqualTo("deflate");
+    assertThat(CompressedResponse.negotiate("*")).isEqualTo("gzip");
+    assertThat(CompressedResponse.negotiate("*;q=0")).isNull();
+  }
+
+  @Test
+  public void should_send_small_bodies_uncompressed()
+      throws IOException
+  {
+    //given:
+    final ResponseCacheTest.Output output = new ResponseCacheTest.Output();
+    final HttpServletResponse response = response(output, "application/json");
+    final CompressedResponse compressed = new CompressedResponse(response, "gzip", 1024);
+    //when:
+    compressed.setContentLength(7);
+    compressed.getOutputStream().write("[1,2,3]".getBytes(StandardCharsets.UTF_8));
+    compressed.finish();
+    //then:
+    assertThat(output.text()).isEqualTo("[1,2,3]");
+    verify(response).setContentLengthLong(7L);
+    verify(response, never()).setHeader("Content-Encoding", "gzip");
+  }
+
+  @Test
+  public void should_gzip_large_bodies()
+      throws IOException
+  {
+    for (int i = 0; i < 2; i++) { // the second time uses a pooled deflater
+      //given:
+      final ResponseCacheTest.Output output = new ResponseCacheTest.Output();
+      final HttpServletResponse response = response(output, "application/json");
+      final CompressedResponse compressed = new CompressedResponse(response, "gzip", 1024);
+      final String json = largeJson();
+      //when:
+      compressed.setHeader("ETag", "\"tag\"");
+      compressed.getWriter().append(json);
+      compressed.finish();
+      //then:
+      verify(response).setHeader("Content-Encoding", "gzip");
+      verify(response).setHeader("ETag", "\"tag-gzip\"");
+      assertThat(output.bytes().length).isLessThan(json.length() / 5);
+      assertThat(decoded(new GZIPInputStream(new ByteArrayInputStream(output.bytes())))).isEqualTo(json);
+    }
+  }
+
+  @Test
+  public void should_gzip_bodies_written_byte_by_byte()
+      throws IOException
+  {
+    //given:
+    final ResponseCacheTest.Output output = new ResponseCacheTest.Output();
+    final HttpServletResponse response = response(output, "application/json");
+    final CompressedResponse compressed = new CompressedResponse(response, "gzip", 1024);
+    final String json = largeJson();
+    //when:
+    for (final byte b : json.getBytes(StandardCharsets.UTF_8)) {
+      compressed.getOutputStream().write(b);
+    }
+    compressed.finish();
+    //then:
+    verify(response).setHeader("Content-Encoding", "gzip");
+    assertThat(decoded(new GZIPInputStream(new ByteArrayInputStream(output.bytes())))).isEqualTo(json);
+  }
+
+  @Test
+  public void should_deflate_large_bodies()
+      throws IOException
+  {
+    //given:
+    final ResponseCacheTest.Output output = new ResponseCacheTest.Output();
+    final HttpServletResponse response = response(output, "application/json");
+    final CompressedResponse compressed = new CompressedResponse(response, "deflate", 1024);
+    final String json = largeJson();
+    //when:
+    compressed.getOutputStream().write(json.getBytes(StandardCharsets.UTF_8));
+    compressed.finish();
+    //then:
+    verify(response).setHeader("Content-Encoding", "deflate");
+    assertThat(decoded(new InflaterInputStream(new ByteArrayInputStream(output.bytes())))).isEqualTo(json);
+  }
+
+  @Test
+  public void should_compress_streamed_bodies_once_flushed()
+      throws IOException
+  {
+    //given:
+    final ResponseCacheTest.Output output = new ResponseCacheTest.Output();
+    final HttpServletResponse response = response(output, "application/x-ndjson");
+    final CompressedResponse compressed = new CompressedResponse(response, "gzip", 1024);
+    //when:
+    compressed.getOutputStream().write("{\"id\":1}\n".getBytes(StandardCharsets.UTF_8));
+    compressed.getOutputStream().flush();
+    compressed.getOutputStream().write("{\"id\":2}\n".getBytes(StandardCharsets.UTF_8));
+    compressed.finish();
+    //then:
+    verify(response).setHeader("Content-Encoding", "gzip");
+    assertThat(decoded(new GZIPInputStream(new ByteArrayInputStream(output.bytes()))))
+        .isEqualTo("{\"id\":1}\n{\"id\":2}\n");
+  }
+
+  @Test
+  public void should_not_compress_binary_bodies()
+      throws IOException
+  {
+    //given:
+    final ResponseCacheTest.Output output = new ResponseCacheTest.Output();
+    final HttpServletResponse response = response(output, "image/png");
+    final CompressedResponse compressed = new CompressedResponse(response, "gzip", 16);
+    final byte[] image = new byte[100];
+    //when:
+    compressed.getOutputStream().write(image);
+    compressed.finish();
+    //then:
+    assertThat(output.bytes()).isEqualTo(image);
+    verify(response, never()).setHeader("Content-Encoding", "gzip");
+  }
+
+  @Test
+  public void should_release_the_deflater_when_the_handler_fails()
+      throws IOException
+  {
+    //given: a handler failing after its body started to be compressed
+    while (Deflaters.GZIP.idle() > 0) {
+      Deflaters.GZIP.acquire().end();
+    }
+    final EndPointServlet endpoint = new EndPointServlet()
+    {
+      @Override protected void doGet(final HttpServletRequest request, final HttpServletResponse response)
+          throws IOException
+      {
+        response.getWriter().append(largeJson()).flush();
+        throw new IllegalStateException("handler failed");
+      }
+
+      @Override protected Logger logger()
+      {
+        return LoggerFactory.getLogger(CompressedResponseTest.class);
+      }
+    };
+    final HttpServletRequest request = mock(HttpServletRequest.class);
+    when(request.getMethod()).thenReturn("GET");
+    when(request.getHeader("Accept-Encoding")).thenReturn("gzip");
+    final HttpServletResponse response = response(new ResponseCacheTest.Output(), "application/json");
+    //when:
+    assertThatThrownBy(() -> endpoint.service(request, response)).hasMessage("handler failed");
+    //then:
+    verify(response).setHeader("Content-Encoding", "gzip");
+    assertThat(Deflaters.GZIP.idle()).isEqualTo(1);
+  }
+
+  @Test
+  public void should_tag_not_modified_responses_as_the_compressed_ones()
+      throws IOException
+  {
+    //given:
+    final HttpServletResponse response = response(new ResponseCacheTest.Output(), "application/json");
+    final CompressedResponse compressed = new CompressedResponse(response, "gzip", 1024);
+    //when:
+    compressed.setHeader("ETag", "\"tag\"");
+    compressed.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+    compressed.finish();
+    //then:
+    verify(response).setHeader("ETag", "\"tag-gzip\"");
+    verify(response, never()).setHeader("ETag", "\"tag\"");
+  }
+
+  @Test
+  public void should_match_entity_tags_of_compressed_responses()
+  {
+    assertThat(EndPointServlet.matchesEntityTag("\"tag-gzip\"", "\"tag\"")).isTrue();
+    assertThat(EndPointServlet.matchesEntityTag("\"tag-deflate\"", "\"tag\"")).isTrue();
+    assertThat(EndPointServlet.matchesEntityTag("\"tag-gzip\"", "\"other\"")).isFalse();
+  }
+
+  private static String largeJson()
+  {
+    final StringBuilder json = new StringBuilder("[");
+    for (int i = 0; i < 1000; i++) {
+      json.append(i == 0 ? "" : ",").append("{\"id\":").append(i).append(",\"name\":\"task ").append(i).append("\"}");
+    }
+    return json.append(']').toString();
+  }
+
+  private static String decoded(final InputStream in)
+      throws IOException
+  {
+    return new String(ByteStreams.toByteArray(in), StandardCharsets.UTF_8);
+  }
+
+  private static HttpServletResponse response(final ResponseCacheTest.Output output, final String contentType)
+      throws IOException
+  {
+    final HttpServletResponse response = mock(HttpServletResponse.class);
+    when(response.getOutputStream()).thenReturn(output);
+    when(response.getCharacterEncoding()).thenReturn("UTF-8");
+    when(response.getContentType()).thenReturn(contentType);
+    when(response.containsHeader(anyString())).thenReturn(false);
+    return response;
+  }
+}
@@ -0,0 +1,134 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2018 ActiveEngine.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ae.web;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.testng.annotations.Test;
+
+public class ConditionalRequestsTest {
+
+  private final EndPointServlet endpoint = new EndPointServlet()
+  {
+    @Override protected Logger logger()
+    {
+      return LoggerFactory.getLogger(ConditionalRequestsTest.class);
+    }
+  };
+
+  @Test
+  public void should_match_entity_tags_weakly()
+  {
+    assertThat(EndPointServlet.matchesEntityTag(null, "\"a\"")).isFalse();
+    assertThat(EndPointServlet.matchesEntityTag("\"b\"", "\"a\"")).isFalse();
+    assertThat(EndPointServlet.matchesEntityTag("\"a\"", "\"a\"")).isTrue();
+    assertThat(EndPointServlet.matchesEntityTag("W/\"a\"", "\"a\"")).isTrue();
+    assertThat(EndPointServlet.matchesEntityTag("\"b\", \"a\"", "\"a\"")).isTrue();
+    assertThat(EndPointServlet.matchesEntityTag("*", "\"a\"")).isTrue();
+  }
+
+  @Test
+  public void should_tag_versions_by_their_parts()
+  {
+    assertThat(EndPointServlet.entityTag("Task(1)", 10L)).isEqualTo(EndPointServlet.entityTag("Task(1)", 10L));
+    assertThat(EndPointServlet.entityTag("Task(1)", 10L)).isNotEqualTo(EndPointServlet.entityTag("Task(1)", 11L));
+    assertThat(EndPointServlet.entityTag("a", "bc")).isNotEqualTo(EndPointServlet.entityTag("ab", "c"));
+  }
+
+  @Test
+  public void should_write_tagged_json()
+      throws ServletException, IOException
+  {
+    //given:
+    final ResponseCacheTest.Output output = new ResponseCacheTest.Output();
+    final HttpServletResponse response = response(output);
+    //when:
+    endpoint.writeJson(request(null), response, "{\"id\":1}");
+    //then:
+    assertThat(output.text()).isEqualTo("{\"id\":1}");
+    verify(response).setStatus(200);
+    verify(response).setHeader("ETag", EndPointServlet.entityTag("{\"id\":1}".getBytes(StandardCharsets.UTF_8)));
+  }
+
+  @Test
+  public void should_answer_not_modified_when_request_has_the_tagged_json()
+      throws ServletException, IOException
+  {
+    //given:
+    final String etag = EndPointServlet.entityTag("{\"id\":1}".getBytes(StandardCharsets.UTF_8));
+    final ResponseCacheTest.Output output = new ResponseCacheTest.Output();
+    final HttpServletResponse response = response(output);
+    //when:
+    endpoint.writeJson(request(etag), response, "{\"id\":1}");
+    //then:
+    assertThat(output.text()).isEmpty();
+    verify(response).setStatus(304);
+    verify(response, never()).getOutputStream();
+  }
+
+  @Test
+  public void should_keep_the_version_tag_of_the_response()
+      throws ServletException, IOException
+  {
+    //given:
+    final String version = EndPointServlet.entityTag("Task(1)", 10L);
+    final ResponseCacheTest.Output output = new ResponseCacheTest.Output();
+    final HttpServletResponse response = response(output);
+    assertThat(endpoint.notModified(request(null), response, version)).isFalse();
+    when(response.containsHeader("ETag")).thenReturn(true);
+    //when:
+    endpoint.writeJson(request(null), response, "{\"id\":1}");
+    //then:
+    assertThat(output.text()).isEqualTo("{\"id\":1}");
+    verify(response).setHeader("ETag", version);
+    final String contentTag = EndPointServlet.entityTag("{\"id\":1}".getBytes(StandardCharsets.UTF_8));
+    verify(response, never()).setHeader("ETag", contentTag);
+  }
+
+  private static HttpServletRequest request(final String ifNoneMatch)
+  {
+    final HttpServletRequest request = mock(HttpServletRequest.class);
+    when(request.getHeader("If-None-Match")).thenReturn(ifNoneMatch);
+    return request;
+  }
+
+  private static HttpServletResponse response(final ResponseCacheTest.Output output)
+      throws IOException
+  {
+    final HttpServletResponse response = mock(HttpServletResponse.class);
+    when(response.getOutputStream()).thenReturn(output);
+    return response;
+  }
+}
@@ -0,0 +1,77 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2018 ActiveEngine.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ae.web;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.testng.annotations.Test;
+
+public class LoggedUsersTest {
+
+  @Test
+  public void should_keep_users_until_they_expire()
+  {
+    //given:
+    final LoggedUsers users = new LoggedUsers(10, 1000L);
+    final AppEngineEndPointServlet.LoggedUser user = user(users.expirationFrom(0L));
+    users.put("1", user);
+    //expect:
+    assertThat(users.get("1", 999L)).isSameAs(user);
+    assertThat(users.get("1", 1000L)).isNull();
+    assertThat(users.get("1", 0L)).isNull();
+  }
+
+  @Test
+  public void should_evict_least_recently_used_user_when_full()
+  {
+    //given:
+    final LoggedUsers users = new LoggedUsers(2, 1000L);
+    users.put("1", user(1000L));
+    users.put("2", user(1000L));
+    users.get("1", 0L);
+    //when:
+    users.put("3", user(1000L));
+    //then:
+    assertThat(users.get("1", 0L)).isNotNull();
+    assertThat(users.get("2", 0L)).isNull();
+    assertThat(users.get("3", 0L)).isNotNull();
+  }
+
+  @Test
+  public void should_forget_invalidated_users()
+  {
+    //given:
+    final LoggedUsers users = new LoggedUsers(2, 1000L);
+    users.put("1", user(1000L));
+    //when:
+    users.invalidate("1");
+    //then:
+    assertThat(users.get("1", 0L)).isNull();
+  }
+
+  private static AppEngineEndPointServlet.LoggedUser user(final long expiresAt)
+  {
+    return new AppEngineEndPointServlet.LoggedUser(null, expiresAt);
+  }
+}
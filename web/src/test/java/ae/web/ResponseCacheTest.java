@@ -0,0 +1,281 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2018 ActiveEngine.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ae.web;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+
+import ae.db.ActiveEntity;
+import com.google.appengine.api.memcache.MemcacheServiceFactory;
+import com.google.appengine.tools.development.testing.LocalMemcacheServiceTestConfig;
+import com.google.appengine.tools.development.testing.LocalServiceTestHelper;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.Cookie;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+public class ResponseCacheTest {
+
+  private final LocalServiceTestHelper helper = new LocalServiceTestHelper(new LocalMemcacheServiceTestConfig());
+
+  @BeforeMethod
+  public void setUp()
+  {
+    helper.setUp();
+  }
+
+  @AfterMethod
+  public void tearDown()
+  {
+    helper.tearDown();
+  }
+
+  @Test
+  public void should_replay_stored_responses()
+      throws IOException
+  {
+    //given:
+    final ResponseCache cache = new ResponseCache("tasks.index", 60, 10, 0, "Task");
+    respond(cache, request("/tasks", null), 200, "[1,2,3]");
+    final Output output = new Output();
+    final HttpServletResponse response = response(output);
+    //when:
+    final boolean replayed = cache.lookup(request("/tasks", null), null).replay(response);
+    //then:
+    assertThat(replayed).isTrue();
+    assertThat(output.text()).isEqualTo("[1,2,3]");
+    verify(response).setContentType("application/json");
+    verify(response).setHeader("ETag", EndPointServlet.entityTag("[1,2,3]".getBytes(StandardCharsets.UTF_8)));
+  }
+
+  @Test
+  public void should_answer_not_modified_when_request_has_the_cached_response()
+      throws IOException
+  {
+    //given:
+    final ResponseCache cache = new ResponseCache("tasks.index", 60, 10, 0, "Task");
+    respond(cache, request("/tasks", null), 200, "[1,2,3]");
+    final HttpServletRequest request = request("/tasks", null);
+    when(request.getHeader("If-None-Match")).thenReturn(EndPointServlet.entityTag("[1,2,3]".getBytes(StandardCharsets.UTF_8)));
+    final HttpServletResponse response = response(new Output());
+    //when:
+    final boolean replayed = cache.lookup(request, null).replay(response);
+    //then:
+    assertThat(replayed).isTrue();
+    verify(response).setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+    verify(response, never()).getOutputStream();
+  }
+
+  @Test
+  public void should_keep_the_version_tag_of_replayed_responses()
+      throws IOException
+  {
+    //given:
+    final ResponseCache cache = new ResponseCache("tasks.index", 60, 10, 0, "Task");
+    respond(cache, request("/tasks", null), 200, "[1,2,3]");
+    final Output output = new Output();
+    final HttpServletResponse response = response(output);
+    when(response.containsHeader("ETag")).thenReturn(true);
+    //when:
+    final boolean replayed = cache.lookup(request("/tasks", null), null).replay(response);
+    //then:
+    assertThat(replayed).isTrue();
+    assertThat(output.text()).isEqualTo("[1,2,3]");
+    verify(response, never()).setHeader(eq("ETag"), anyString());
+  }
+
+  @Test
+  public void should_replay_responses_stored_by_other_instances()
+      throws IOException
+  {
+    //given:
+    respond(new ResponseCache("tasks.index", 60, 10, 0, "Task"), request("/tasks", null), 200, "[1,2,3]");
+    final ResponseCache cache = new ResponseCache("tasks.index", 60, 10, 0, "Task");
+    final Output output = new Output();
+    //when:
+    final boolean replayed = cache.lookup(request("/tasks", null), null).replay(response(output));
+    //then:
+    assertThat(replayed).isTrue();
+    assertThat(output.text()).isEqualTo("[1,2,3]");
+  }
+
+  @Test
+  public void should_discard_responses_once_a_read_kind_is_written()
+      throws IOException
+  {
+    //given:
+    final ResponseCache cache = new ResponseCache("tasks.index", 60, 10, 0, "Task");
+    respond(cache, request("/tasks", null), 200, "[1,2,3]");
+    //when:
+    MemcacheServiceFactory.getMemcacheService().increment(ActiveEntity.writeVersionKey("Task", ""), 1L);
+    //then:
+    final HttpServletResponse response = response(new Output());
+    assertThat(cache.lookup(request("/tasks", null), null).replay(response)).isFalse();
+    verify(response, never()).getOutputStream();
+  }
+
+  @Test
+  public void should_not_cache_unsuccessful_responses()
+      throws IOException
+  {
+    //given:
+    final ResponseCache cache = new ResponseCache("tasks.index", 60, 10, 0, "Task");
+    //when:
+    respond(cache, request("/tasks", null), 404, "not found");
+    //then:
+    assertThat(cache.lookup(request("/tasks", null), null).replay(response(new Output()))).isFalse();
+  }
+
+  @Test
+  public void should_cache_responses_by_query_string()
+      throws IOException
+  {
+    //given:
+    final ResponseCache cache = new ResponseCache("tasks.index", 60, 10, 0);
+    respond(cache, request("/tasks", "page=1"), 200, "[1]");
+    //expect:
+    assertThat(cache.lookup(request("/tasks", "page=2"), null).replay(response(new Output()))).isFalse();
+    assertThat(cache.lookup(request("/tasks", null), null).replay(response(new Output()))).isFalse();
+    assertThat(cache.lookup(request("/tasks", "page=1"), null).replay(response(new Output()))).isTrue();
+  }
+
+  @Test
+  public void should_replay_the_headers_set_by_the_route()
+      throws IOException
+  {
+    //given:
+    final ResponseCache cache = new ResponseCache("tasks.index", 60, 10, 0, "Task");
+    final HttpServletRequest request = request("/tasks", null);
+    final ResponseCache.Lookup lookup = cache.lookup(request, null);
+    final ResponseCache.Recording recording = lookup.record(response(new Output()));
+    recording.setHeader("Cache-Control", "no-cache");
+    recording.setHeader("Cache-Control", "max-age=60");
+    recording.addHeader("Link", "</tasks?page=2>; rel=\"next\"");
+    recording.setDateHeader("Last-Modified", 0L);
+    recording.setHeader("Content-Length", "3");
+    recording.getWriter().append("[1]");
+    lookup.store(recording);
+    final HttpServletResponse response = response(new Output());
+    //when:
+    cache.lookup(request, null).replay(response);
+    //then:
+    verify(response).addHeader("Cache-Control", "max-age=60");
+    verify(response, never()).addHeader("Cache-Control", "no-cache");
+    verify(response).addHeader("Link", "</tasks?page=2>; rel=\"next\"");
+    verify(response).addHeader("Last-Modified", "Thu, 01 Jan 1970 00:00:00 GMT");
+    verify(response, never()).addHeader("Content-Length", "3");
+    verify(response).setContentLength(3);
+  }
+
+  @Test
+  public void should_not_cache_responses_setting_cookies()
+      throws IOException
+  {
+    //given:
+    final ResponseCache cache = new ResponseCache("tasks.index", 60, 10, 0, "Task");
+    final ResponseCache.Lookup lookup = cache.lookup(request("/tasks", null), null);
+    final ResponseCache.Recording recording = lookup.record(response(new Output()));
+    //when:
+    recording.addCookie(new Cookie("session", "42"));
+    recording.getWriter().append("[1]");
+    lookup.store(recording);
+    //then:
+    assertThat(cache.lookup(request("/tasks", null), null).replay(response(new Output()))).isFalse();
+  }
+
+  private static void respond(final ResponseCache cache,
+                              final HttpServletRequest request,
+                              final int status,
+                              final String body)
+      throws IOException
+  {
+    final HttpServletResponse response = response(new Output());
+    final ResponseCache.Lookup lookup = cache.lookup(request, null);
+    assertThat(lookup.replay(response)).isFalse();
+    final ResponseCache.Recording recording = lookup.record(response);
+    recording.setStatus(status);
+    recording.setContentType("application/json");
+    recording.getWriter().append(body);
+    lookup.store(recording);
+  }
+
+  private static HttpServletRequest request(final String uri, final String query)
+  {
+    final HttpServletRequest request = mock(HttpServletRequest.class);
+    when(request.getRequestURI()).thenReturn(uri);
+    when(request.getQueryString()).thenReturn(query);
+    return request;
+  }
+
+  private static HttpServletResponse response(final Output output)
+      throws IOException
+  {
+    final HttpServletResponse response = mock(HttpServletResponse.class);
+    when(response.getOutputStream()).thenReturn(output);
+    when(response.getCharacterEncoding()).thenReturn("UTF-8");
+    when(response.getContentType()).thenReturn("application/json");
+    return response;
+  }
+
+  static class Output extends ServletOutputStream {
+    private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+    @Override public void write(final int b)
+    {
+      bytes.write(b);
+    }
+
+    @Override public boolean isReady()
+    {
+      return true;
+    }
+
+    @Override public void setWriteListener(final WriteListener writeListener)
+    {
+      // nothing to do
+    }
+
+    String text()
+    {
+      return new String(bytes(), StandardCharsets.UTF_8);
+    }
+
+    byte[] bytes()
+    {
+      return bytes.toByteArray();
+    }
+  }
+}
@@ -0,0 +1,207 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2018 ActiveEngine.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ae.web;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.mockito.Matchers.anyObject;
+import static org.mockito.Matchers.anyString;
+
+import javax.servlet.http.HttpServletRequest;
+import org.testng.annotations.Test;
+
+public class RouteTableTest {
+
+  private final RouterServlet.Routes tasks = RouterServlet.routes()
+                                                          .route("/")
+                                                          .parameter("id").route("/{id}")
+                                                          .literal("author").route("/author")
+                                                          .parameter("id").literal("comments").parameter("comment").route("/{id}/comments/{comment}")
+                                                          .build();
+
+  @Test
+  public void should_match_index_route_when_no_path_is_defined()
+  {
+    assertThat(tasks.match(request(null))).isEqualTo(0);
+    assertThat(tasks.match(request(""))).isEqualTo(0);
+    assertThat(tasks.match(request("/"))).isEqualTo(0);
+  }
+
+  @Test
+  public void should_prefer_literal_segments_over_parameters()
+  {
+    //given:
+    final HttpServletRequest request = request("/author");
+    //when:
+    final int route = tasks.match(request);
+    //then:
+    assertThat(route).isEqualTo(2);
+    verify(request, never()).setAttribute(anyString(), anyObject());
+  }
+
+  @Test
+  public void should_set_path_parameters_as_request_attributes()
+  {
+    //given:
+    final HttpServletRequest request = request("/42/comments/7");
+    //when:
+    final int route = tasks.match(request);
+    //then:
+    assertThat(route).isEqualTo(3);
+    verify(request).setAttribute("id", "42");
+    verify(request).setAttribute("comment", "7");
+  }
+
+  @Test
+  public void should_backtrack_to_parameters_when_literal_segments_do_not_match()
+  {
+    //given:
+    final RouterServlet.Routes routes = RouterServlet.routes()
+                                                     .literal("tasks").literal("pending").route("/tasks/pending")
+                                                     .parameter("kind").literal("done").route("/{kind}/done")
+                                                     .build();
+    final HttpServletRequest request = request("/tasks/done");
+    //when:
+    final int route = routes.match(request);
+    //then:
+    assertThat(route).isEqualTo(1);
+    verify(request).setAttribute("kind", "tasks");
+  }
+
+  @Test
+  public void should_try_constrained_parameters_before_plain_ones()
+  {
+    //given:
+    final RouterServlet.Routes routes = RouterServlet.routes()
+                                                     .literal("users").parameter("name").route("/users/{name}")
+                                                     .literal("users").constrainedParameter("(?<id>[0-9]+)", "id").route("/users/{id: [0-9]+}")
+                                                     .build();
+    final HttpServletRequest byId = request("/users/12");
+    final HttpServletRequest byName = request("/users/bob");
+    //when:
+    final int routeById = routes.match(byId);
+    final int routeByName = routes.match(byName);
+    //then:
+    assertThat(routeById).isEqualTo(1);
+    verify(byId).setAttribute("id", "12");
+    assertThat(routeByName).isEqualTo(0);
+    verify(byName).setAttribute("name", "bob");
+  }
+
+  @Test
+  public void should_distinguish_literal_segments_with_the_same_hash()
+  {
+    //given: "Aa" and "BB" have the same hash code
+    final RouterServlet.Routes routes = RouterServlet.routes()
+                                                     .literal("Aa").route("/Aa")
+                                                     .literal("BB").route("/BB")
+                                                     .build();
+    //expect:
+    assertThat(routes.match(request("/Aa"))).isEqualTo(0);
+    assertThat(routes.match(request("/BB"))).isEqualTo(1);
+    assertThat(routes.match(request("/Ab"))).isEqualTo(-1);
+  }
+
+  @Test
+  public void should_not_match_unknown_paths()
+  {
+    assertThat(tasks.match(request("/42/comments"))).isEqualTo(-1);
+    assertThat(tasks.match(request("/author/"))).isEqualTo(-1);
+    assertThat(tasks.match(request("//comments/7"))).isEqualTo(-1);
+    assertThat(tasks.match(request("/42/notes/7"))).isEqualTo(-1);
+  }
+
+  @Test
+  public void should_record_parameters_of_typed_routes_instead_of_setting_attributes()
+  {
+    //given:
+    final RouterServlet.Routes routes = RouterServlet.routes()
+                                                     .parameter("id").literal("notes").constrainedParameter("n(?<note>[0-9]+)", "note").typedRoute("/{id}/notes/n{note}")
+                                                     .parameter("owner").route("/{owner}")
+                                                     .build();
+    final PathParameters values = new PathParameters();
+    final HttpServletRequest typed = request("/-42/notes/n7");
+    final HttpServletRequest untyped = request("/bob");
+    //when:
+    final int typedRoute = routes.match(typed, values);
+    //then:
+    assertThat(typedRoute).isEqualTo(0);
+    assertThat(values.asPrimitiveLong(0)).isEqualTo(-42L);
+    assertThat(values.asPrimitiveInt(1)).isEqualTo(7);
+    assertThat(values.asString(1)).isEqualTo("7");
+    verify(typed, never()).setAttribute(anyString(), anyObject());
+    //when:
+    final int untypedRoute = routes.match(untyped, values);
+    //then:
+    assertThat(untypedRoute).isEqualTo(1);
+    verify(untyped).setAttribute("owner", "bob");
+  }
+
+  @Test
+  public void should_parse_numeric_path_parameters_as_Long_parseLong_does()
+  {
+    final RouterServlet.Routes routes = RouterServlet.routes().parameter("value").typedRoute("/{value}").build();
+    final PathParameters values = new PathParameters();
+    for (final String value : new String[]{"0", "+12", "-12", "9223372036854775807", "-9223372036854775808"}) {
+      routes.match(request('/' + value), values);
+      assertThat(values.asPrimitiveLong(0)).isEqualTo(Long.parseLong(value));
+    }
+    for (final String value : new String[]{"-", "+", "1a", "9223372036854775808", "-9223372036854775809"}) {
+      routes.match(request('/' + value), values);
+      assertThatThrownBy(() -> values.asPrimitiveLong(0)).isInstanceOf(NumberFormatException.class)
+                                                         .hasMessageContaining(value);
+    }
+    routes.match(request("/2147483648"), values);
+    assertThatThrownBy(() -> values.asPrimitiveInt(0)).isInstanceOf(NumberFormatException.class);
+    routes.match(request("/TRUE"), values);
+    assertThat(values.asPrimitiveBoolean(0)).isTrue();
+  }
+
+  @Test
+  public void should_report_unconvertible_path_parameters_as_illegal_arguments()
+  {
+    //given: generated routers answer these failures as bad requests
+    final RouterServlet.Routes routes = RouterServlet.routes().parameter("value").typedRoute("/{value}").build();
+    final PathParameters values = new PathParameters();
+    //when:
+    routes.match(request("/abc"), values);
+    //then:
+    assertThatThrownBy(() -> values.asPrimitiveLong(0)).isInstanceOf(IllegalArgumentException.class);
+    assertThatThrownBy(() -> values.asPrimitiveInt(0)).isInstanceOf(IllegalArgumentException.class);
+    assertThatThrownBy(() -> values.asPrimitiveDouble(0)).isInstanceOf(IllegalArgumentException.class);
+    assertThatThrownBy(() -> values.asKey(0)).isInstanceOf(IllegalArgumentException.class);
+    assertThat(values.asString(0)).isEqualTo("abc");
+  }
+
+  private static HttpServletRequest request(final String pathInfo)
+  {
+    final HttpServletRequest request = mock(HttpServletRequest.class);
+    when(request.getPathInfo()).thenReturn(pathInfo);
+    return request;
+  }
+}
@@ -0,0 +1,172 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2018 ActiveEngine.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ae.web;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import argo.format.CompactJsonFormatter;
+import argo.format.JsonFormatter;
+import com.google.appengine.api.datastore.DatastoreServiceFactory;
+import com.google.appengine.api.datastore.Entity;
+import com.google.appengine.api.datastore.Query;
+import com.google.appengine.api.datastore.QueryResultIterator;
+import com.google.appengine.tools.development.testing.LocalDatastoreServiceTestConfig;
+import com.google.appengine.tools.development.testing.LocalServiceTestHelper;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletResponse;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+public class StreamedContentsTest {
+
+  private static final JsonFormatter COMPACT_JSON = new CompactJsonFormatter();
+
+  private final LocalServiceTestHelper helper = new LocalServiceTestHelper(new LocalDatastoreServiceTestConfig());
+
+  private final Task task = new Task();
+  private final AppEngineEndPointServletTest.Tasks endpoint = new AppEngineEndPointServletTest.Tasks();
+
+  @BeforeMethod
+  public void setUp()
+  {
+    helper.setUp();
+  }
+
+  @AfterMethod
+  public void tearDown()
+  {
+    helper.tearDown();
+  }
+
+  @Test
+  public void should_stream_elements_as_the_array_of_their_json() throws Exception
+  {
+    //given:
+    final List<Entity> tasks = tasks(3);
+    final Output output = new Output();
+    final HttpServletResponse response = response(output);
+    //when:
+    endpoint.streamJson(response, task, tasks);
+    //then:
+    assertThat(output.text()).isEqualTo(COMPACT_JSON.format(task.toJson(tasks)));
+    verify(response).setStatus(HttpServletResponse.SC_OK);
+    verify(response).setCharacterEncoding("UTF-8");
+  }
+
+  @Test
+  public void should_stream_elements_as_a_line_of_json_each() throws Exception
+  {
+    //given:
+    final List<Entity> tasks = tasks(3);
+    final Output output = new Output();
+    //when:
+    endpoint.streamNdJson(response(output), task, tasks);
+    //then:
+    final StringBuilder lines = new StringBuilder();
+    for (final Entity data : tasks) {
+      lines.append(COMPACT_JSON.format(task.toJson(data))).append('\n');
+    }
+    assertThat(output.text()).isEqualTo(lines.toString());
+  }
+
+  @Test
+  public void should_flush_the_response_every_chunk_of_elements() throws Exception
+  {
+    //given:
+    final List<Entity> tasks = tasks(2 * EndPointServlet.STREAM_CHUNK_SIZE + 1);
+    final Output output = new Output();
+    //when:
+    endpoint.streamNdJson(response(output), task, tasks);
+    //then: once per chunk, and once the stream ends
+    assertThat(output.flushes).isEqualTo(3);
+    assertThat(output.text().split("\n")).hasSize(tasks.size());
+  }
+
+  @Test
+  public void should_write_the_cursor_of_a_page_after_its_elements() throws Exception
+  {
+    //given:
+    final List<Entity> tasks = tasks(3);
+    DatastoreServiceFactory.getDatastoreService().put(tasks);
+    final QueryResultIterator<Entity> page = DatastoreServiceFactory.getDatastoreService()
+                                                                    .prepare(new Query(task.kind()))
+                                                                    .asQueryResultIterator();
+    final Output output = new Output();
+    //when:
+    endpoint.streamPage(response(output), task, page);
+    //then:
+    assertThat(output.text()).isEqualTo("{\"data\":" + COMPACT_JSON.format(task.toJson(tasks))
+                                        + ",\"cursor\":\"" + page.getCursor().toWebSafeString() + "\"}");
+  }
+
+  @Test
+  public void should_not_stream_to_a_committed_response() throws Exception
+  {
+    //given:
+    final Output output = new Output();
+    final HttpServletResponse response = response(output);
+    when(response.isCommitted()).thenReturn(true);
+    final QueryResultIterator<Entity> page = DatastoreServiceFactory.getDatastoreService()
+                                                                    .prepare(new Query(task.kind()))
+                                                                    .asQueryResultIterator();
+    //expect:
+    assertThatThrownBy(() -> endpoint.streamJson(response, task, tasks(1))).isInstanceOf(ServletException.class);
+    assertThatThrownBy(() -> endpoint.streamNdJson(response, task, tasks(1))).isInstanceOf(ServletException.class);
+    assertThatThrownBy(() -> endpoint.streamPage(response, task, page)).isInstanceOf(ServletException.class);
+    assertThat(output.bytes()).isEmpty();
+  }
+
+  private List<Entity> tasks(final int count)
+  {
+    final List<Entity> tasks = new ArrayList<>(count);
+    for (int i = 0; i < count; i++) {
+      tasks.add(task.make(String.format("task %03d", i)));
+    }
+    return tasks;
+  }
+
+  private static HttpServletResponse response(final Output output) throws IOException
+  {
+    final HttpServletResponse response = mock(HttpServletResponse.class);
+    when(response.getOutputStream()).thenReturn(output);
+    return response;
+  }
+
+  static final class Output extends ResponseCacheTest.Output {
+    int flushes;
+
+    @Override public void flush()
+    {
+      flushes++;
+    }
+  }
+}
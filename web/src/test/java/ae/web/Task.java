@@ -0,0 +1,143 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2018 ActiveEngine.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ae.web;
+
+import static ae.db.DSL.canonicalName;
+import static ae.db.DSL.fieldName;
+import static ae.db.DSL.jsonName;
+import static ae.db.DSL.jsonPath;
+import static ae.db.DSL.noConstraints;
+
+import ae.db.Attribute;
+import ae.db.Field;
+import ae.db.JsonWriter;
+import ae.db.RootWithName;
+import ae.db.Validation;
+import ae.db.WithName;
+import argo.jdom.JsonNode;
+import argo.jdom.JsonNodeFactories;
+import com.google.appengine.api.datastore.Entity;
+import com.google.appengine.api.datastore.Key;
+import com.google.common.collect.ImmutableList;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Future;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Model written as db-processor would generate it, used to test how endpoints write and render entities.
+ */
+class Task extends RootWithName {
+
+  private static final long serialVersionUID = 1L;
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(Task.class);
+
+  final WithName.Name title = new WithName.Name(canonicalName("ae.web.Task.title"),
+                                                fieldName("title"),
+                                                jsonName("title"),
+                                                jsonPath("title"),
+                                                noConstraints);
+
+  /**
+   * When set, saving entities fails with it.
+   */
+  transient RuntimeException saveFailure;
+
+  @Override
+  protected Logger logger()
+  {
+    return LOGGER;
+  }
+
+  @Override
+  public String kind()
+  {
+    return "Task";
+  }
+
+  @Override
+  public WithName.Name modelIdentifier()
+  {
+    return title;
+  }
+
+  @Override
+  public ImmutableList<Field<?>> modelFields()
+  {
+    return ImmutableList.of();
+  }
+
+  @Override
+  public ImmutableList<Attribute> modelAttributes()
+  {
+    return ImmutableList.of(title);
+  }
+
+  @Override
+  public JsonNode toJson(final Entity data)
+  {
+    if (null == data) {
+      return JsonNodeFactories.nullNode();
+    }
+    return JsonNodeFactories.object(ImmutableList.of(title.makeJsonFieldFrom(data)));
+  }
+
+  @Override
+  public void writeJson(final Entity data, final JsonWriter out) throws IOException
+  {
+    if (null == data) {
+      out.nullValue();
+      return;
+    }
+    out.beginObject();
+    title.writeJsonField(data, out);
+    out.endObject();
+  }
+
+  @Override
+  public void updatePropertiesWithJsonContents(final Entity data, final JsonNode json)
+  {
+    // no properties
+  }
+
+  @Override
+  protected void doValidate(final Entity data, final Validation validation)
+  {
+    // nothing to validate
+  }
+
+  @Override
+  protected Future<List<Key>> saveEntities(final List<Entity> data)
+  {
+    if (saveFailure != null) {
+      final CompletableFuture<List<Key>> failed = new CompletableFuture<>();
+      failed.completeExceptionally(saveFailure);
+      return failed;
+    }
+    return super.saveEntities(data);
+  }
+}